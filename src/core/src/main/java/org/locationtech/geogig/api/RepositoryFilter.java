@@ -16,13 +16,16 @@ import java.util.Map;
 
 import org.geotools.filter.text.cql2.CQL;
 import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.opengis.feature.Feature;
 import org.opengis.filter.Filter;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Provides a filter for sparse repositories. A default filter can be applied to all feature types,
@@ -140,4 +143,28 @@ public class RepositoryFilter {
         }
         return false;
     }
+
+    /**
+     * Computes the area out of which no feature can pass this filter, so that whole trees and
+     * buckets outside of it can be skipped without evaluating their features one by one.
+     * 
+     * @return the union of the bounds of all the filters, or {@link Optional#absent()} if any of
+     *         them is not spatially bounded (for example, if it only filters by attribute values)
+     */
+    public Optional<Envelope> getBounds() {
+        if (repositoryFilters.isEmpty()) {
+            return Optional.absent();
+        }
+        Envelope bounds = new Envelope();
+        for (Filter typeFilter : repositoryFilters.values()) {
+            Envelope filterBounds = (Envelope) typeFilter.accept(
+                    ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if (filterBounds == null || Double.isInfinite(filterBounds.getWidth())
+                    || Double.isInfinite(filterBounds.getHeight())) {
+                return Optional.absent();
+            }
+            bounds.expandToInclude(filterBounds);
+        }
+        return Optional.of(bounds);
+    }
 }
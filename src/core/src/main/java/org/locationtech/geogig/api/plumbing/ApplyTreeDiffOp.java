@@ -0,0 +1,211 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.repository.SpatialOps;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Applies a set of {@link DiffEntry diffs} directly onto a root tree and returns the resulting root
+ * tree, without going through the {@link org.locationtech.geogig.repository.WorkingTree working
+ * tree} or the {@link org.locationtech.geogig.repository.StagingArea index}.
+ * <p>
+ * The diffs are expected in the form returned by {@link DiffTree} with
+ * {@link DiffTree#setReportTrees(boolean) setReportTrees(true)}: changes to features are applied
+ * to their parent trees, added trees are created with the reported metadata id, changes to a
+ * tree's metadata id are applied, and removed trees are removed along with anything underneath
+ * them. The node of a changed tree is never copied over as is, its contents are computed out of
+ * the base tree and the feature changes.
+ * <p>
+ * Each affected tree is loaded and built only once, deepest trees first, and the new trees are
+ * saved to the object database. No ref is updated as a result of this operation, it's up to the
+ * calling code to do so.
+ */
+public class ApplyTreeDiffOp extends AbstractGeoGigOp<RevTree> {
+
+    private RevTree baseTree;
+
+    private Iterator<DiffEntry> diffs;
+
+    /**
+     * @param baseTree the root tree to apply the diffs onto
+     * @return {@code this}
+     */
+    public ApplyTreeDiffOp setBaseTree(RevTree baseTree) {
+        this.baseTree = baseTree;
+        return this;
+    }
+
+    /**
+     * @param diffs the changes to apply
+     * @return {@code this}
+     */
+    public ApplyTreeDiffOp setDiffs(Iterator<DiffEntry> diffs) {
+        this.diffs = diffs;
+        return this;
+    }
+
+    /**
+     * @return the new root tree, already saved to the object database, or the base tree if there
+     *         were no changes to apply
+     */
+    @Override
+    protected RevTree _call() {
+        checkArgument(baseTree != null, "base tree not provided");
+        checkArgument(diffs != null, "diffs not provided");
+
+        final Map<String, RevTreeBuilder> builders = Maps.newHashMap();
+        final Map<String, ObjectId> metadataIds = Maps.newHashMap();
+        final Set<String> removedTrees = Sets.newHashSet();
+
+        while (diffs.hasNext()) {
+            final DiffEntry diff = diffs.next();
+            final NodeRef oldObject = diff.getOldObject();
+            final NodeRef newObject = diff.getNewObject();
+            final NodeRef ref = newObject == null ? oldObject : newObject;
+            final String parentPath = ref.getParentPath();
+            if (parentPath == null || isRemoved(parentPath, removedTrees)) {
+                // the root tree itself, or a child of a tree that's already been removed
+                continue;
+            }
+            if (TYPE.TREE.equals(ref.getType())) {
+                final String path = ref.path();
+                if (newObject == null) {
+                    builder(parentPath, ObjectId.NULL, builders, metadataIds).remove(
+                            oldObject.name());
+                    removedTrees.add(path);
+                } else {
+                    builder(path, newObject.getMetadataId(), builders, metadataIds);
+                    metadataIds.put(path, newObject.getMetadataId());
+                }
+            } else {
+                RevTreeBuilder parent = builder(parentPath, ref.getMetadataId(), builders,
+                        metadataIds);
+                if (newObject == null) {
+                    parent.remove(oldObject.name());
+                } else {
+                    parent.put(newObject.getNode());
+                }
+            }
+        }
+
+        if (builders.isEmpty()) {
+            return baseTree;
+        }
+
+        // make sure every changed tree's ancestors get rebuilt too
+        for (String path : Lists.newArrayList(builders.keySet())) {
+            for (String p = NodeRef.parentPath(path); p != null; p = NodeRef.parentPath(p)) {
+                builder(p, ObjectId.NULL, builders, metadataIds);
+            }
+        }
+
+        // build the trees bottom up, so that each tree is built after all its children
+        List<String> paths = Lists.newArrayList(builders.keySet());
+        Collections.sort(paths, new Comparator<String>() {
+            @Override
+            public int compare(String p1, String p2) {
+                return Integer.compare(depth(p2), depth(p1));
+            }
+        });
+
+        final ObjectDatabase db = objectDatabase();
+        RevTree newRoot = null;
+        for (String path : paths) {
+            if (isRemoved(path, removedTrees)) {
+                continue;
+            }
+            RevTree tree = builders.get(path).build();
+            db.put(tree);
+            if (NodeRef.ROOT.equals(path)) {
+                newRoot = tree;
+                continue;
+            }
+            ObjectId metadataId = metadataIds.get(path);
+            Envelope bounds = SpatialOps.boundsOf(tree);
+            Node node = Node.create(NodeRef.nodeFromPath(path), tree.getId(),
+                    metadataId == null ? ObjectId.NULL : metadataId, TYPE.TREE, bounds);
+            builders.get(NodeRef.parentPath(path)).put(node);
+        }
+        return newRoot;
+    }
+
+    /**
+     * Returns the builder for the tree at {@code path}, creating it out of the base tree's
+     * contents at that path, or as an empty tree if it doesn't exist in the base tree.
+     */
+    private RevTreeBuilder builder(final String path, final ObjectId defaultMetadataId,
+            Map<String, RevTreeBuilder> builders, Map<String, ObjectId> metadataIds) {
+
+        RevTreeBuilder builder = builders.get(path);
+        if (builder != null) {
+            return builder;
+        }
+        final ObjectDatabase db = objectDatabase();
+        if (NodeRef.ROOT.equals(path)) {
+            builder = new RevTreeBuilder(db, baseTree);
+        } else {
+            Optional<NodeRef> treeRef = command(FindTreeChild.class).setParent(baseTree)
+                    .setChildPath(path).call();
+            if (treeRef.isPresent() && TYPE.TREE.equals(treeRef.get().getType())) {
+                ObjectId treeId = treeRef.get().getObjectId();
+                RevTree tree = RevTree.EMPTY_TREE_ID.equals(treeId) ? RevTree.EMPTY : db
+                        .getTree(treeId);
+                builder = new RevTreeBuilder(db, tree);
+                if (!metadataIds.containsKey(path)) {
+                    metadataIds.put(path, treeRef.get().getMetadataId());
+                }
+            } else {
+                builder = new RevTreeBuilder(db);
+                if (!metadataIds.containsKey(path)) {
+                    metadataIds.put(path, defaultMetadataId);
+                }
+            }
+        }
+        builders.put(path, builder);
+        return builder;
+    }
+
+    private static boolean isRemoved(String path, Set<String> removedTrees) {
+        if (removedTrees.isEmpty()) {
+            return false;
+        }
+        for (String p = path; p != null; p = NodeRef.parentPath(p)) {
+            if (removedTrees.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int depth(String path) {
+        return NodeRef.ROOT.equals(path) ? 0 : NodeRef.depth(path);
+    }
+}
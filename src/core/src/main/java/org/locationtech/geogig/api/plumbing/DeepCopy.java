@@ -23,6 +23,7 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
 
@@ -143,8 +144,10 @@ public class DeepCopy extends AbstractGeoGigOp<ObjectId> {
             }
         };
 
-        // store objects into the target db and remove them from the origin db in one shot
-        to.putAll(from.getAll(ids));
+        // store objects into the target db in one shot, as raw bytes so that they're not parsed
+        // and encoded again if both databases use the same serialization format
+        BulkOpListener listener = BulkOpListener.NOOP_LISTENER;
+        to.putRaw(from.getRaw(ids, listener), listener);
     }
 
     /**
@@ -34,12 +34,14 @@ import org.locationtech.geogig.api.plumbing.diff.PathFilteringDiffConsumer;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.BucketIndex;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.Consumer;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.FilteringConsumer;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.ForwardingConsumer;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -74,6 +76,8 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
 
     private Predicate<Bounded> customFilter;
 
+    private Function<Consumer, ? extends FilteringConsumer> customFilteringConsumer;
+
     private Long limit;
 
     private ObjectId metadataId;
@@ -161,6 +165,17 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
         return this;
     }
 
+    /**
+     * Like {@link #setCustomFilter(Predicate)}, but for filters that need to look at both sides of
+     * each pair of nodes or buckets, given the function that creates it out of the consumer it
+     * forwards the accepted pairs to.
+     */
+    public DiffTree setCustomFilteringConsumer(
+            @Nullable Function<Consumer, ? extends FilteringConsumer> filteringConsumer) {
+        this.customFilteringConsumer = filteringConsumer;
+        return this;
+    }
+
     public DiffTree setChangeTypeFilter(@Nullable ChangeType changeType) {
         this.changeTypeFilter = changeType;
         return this;
@@ -218,6 +233,9 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
                 if (customFilter != null) {
                     consumer = new PreOrderDiffWalk.FilteringConsumer(consumer, customFilter);
                 }
+                if (customFilteringConsumer != null) {
+                    consumer = customFilteringConsumer.apply(consumer);
+                }
                 if (changeTypeFilter != null) {
                     consumer = new ChangeTypeFilteringDiffConsumer(changeTypeFilter, consumer);
                 }
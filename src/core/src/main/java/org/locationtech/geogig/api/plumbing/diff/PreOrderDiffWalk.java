@@ -1060,6 +1060,12 @@ public class PreOrderDiffWalk {
         }
     }
 
+    /**
+     * Forwards the pairs of nodes or buckets where at least one side matches a predicate.
+     * <p>
+     * Subclasses may override {@link #accept(Bounded, Bounded)} to act on the whole pair, which
+     * is called from the walk's worker threads and hence must be thread safe.
+     */
     public static class FilteringConsumer extends ForwardingConsumer {
 
         private final Predicate<Bounded> predicate;
@@ -1069,9 +1075,16 @@ public class PreOrderDiffWalk {
             this.predicate = predicate;
         }
 
+        /**
+         * @return whether the pair of nodes or buckets shall be forwarded to the delegate consumer
+         */
+        protected boolean accept(@Nullable Bounded left, @Nullable Bounded right) {
+            return predicate.apply(left) || predicate.apply(right);
+        }
+
         @Override
         public boolean feature(NodeRef left, NodeRef right) {
-            if (predicate.apply(left) || predicate.apply(right)) {
+            if (accept(left, right)) {
                 super.feature(left, right);
             }
             return true;
@@ -1079,7 +1092,7 @@ public class PreOrderDiffWalk {
 
         @Override
         public boolean tree(NodeRef left, NodeRef right) {
-            if (predicate.apply(left) || predicate.apply(right)) {
+            if (accept(left, right)) {
                 return super.tree(left, right);
             }
             return false;
@@ -1087,7 +1100,7 @@ public class PreOrderDiffWalk {
 
         @Override
         public void endTree(NodeRef left, NodeRef right) {
-            if (predicate.apply(left) || predicate.apply(right)) {
+            if (accept(left, right)) {
                 super.endTree(left, right);
             }
         }
@@ -1095,7 +1108,7 @@ public class PreOrderDiffWalk {
         @Override
         public boolean bucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
                 Bucket left, Bucket right) {
-            if (predicate.apply(left) || predicate.apply(right)) {
+            if (accept(left, right)) {
                 return super.bucket(leftParent, rightParent, bucketIndex, left, right);
             }
             return false;
@@ -1104,7 +1117,7 @@ public class PreOrderDiffWalk {
         @Override
         public void endBucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
                 Bucket left, Bucket right) {
-            if (predicate.apply(left) || predicate.apply(right)) {
+            if (accept(left, right)) {
                 super.endBucket(leftParent, rightParent, bucketIndex, left, right);
             }
         }
@@ -0,0 +1,42 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.api.plumbing.merge;
+
+import org.locationtech.geogig.api.FeatureInfo;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+
+/**
+ * Receives the outcome of a {@link ThreeWayMergeWalk} as it is computed.
+ * <p>
+ * NOTE: the walk may notify events from several threads concurrently, so implementations must be
+ * thread safe.
+ *
+ * @see MergeScenarioReport
+ */
+public interface MergeScenarioConsumer {
+
+    /**
+     * Called for each change that can't be merged automatically
+     */
+    public void conflicted(Conflict conflict);
+
+    /**
+     * Called for each change that can be applied as is onto the merge target
+     */
+    public void unconflicted(DiffEntry diff);
+
+    /**
+     * Called for each feature that was modified on both sides without conflicting attribute
+     * changes and whose merged version doesn't already exist in the repository
+     */
+    public void merged(FeatureInfo merged);
+
+    /**
+     * Called once the walk is done
+     */
+    public void finished();
+}
@@ -9,37 +9,19 @@
  */
 package org.locationtech.geogig.api.plumbing.merge;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Collections;
+import java.util.Comparator;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.FeatureInfo;
-import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevCommit;
-import org.locationtech.geogig.api.RevFeature;
-import org.locationtech.geogig.api.RevFeatureBuilder;
-import org.locationtech.geogig.api.RevFeatureType;
-import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
-import org.locationtech.geogig.api.plumbing.DiffFeature;
-import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.FindCommonAncestor;
-import org.locationtech.geogig.api.plumbing.FindTreeChild;
-import org.locationtech.geogig.api.plumbing.ResolveObjectType;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
-import org.locationtech.geogig.api.plumbing.RevParse;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
-import org.locationtech.geogig.api.plumbing.diff.DiffEntry.ChangeType;
-import org.locationtech.geogig.api.plumbing.diff.FeatureDiff;
-import org.opengis.feature.Feature;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Suppliers;
-import com.google.common.collect.Maps;
 
 /**
  * Reports conflicts between changes introduced by two different histories. Given a commit and
@@ -76,183 +58,71 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
                 .setRight(mergeInto).call();
         Preconditions.checkState(ancestor.isPresent(), "No ancestor commit could be found.");
 
-        Map<String, DiffEntry> mergeIntoDiffs = Maps.newHashMap();
-        MergeScenarioReport report = new MergeScenarioReport();
+        final RevCommit ancestorCommit = objectDatabase().getCommit(ancestor.get());
+        final RevTree ancestorTree = tree(ancestorCommit.getTreeId());
+        final RevTree oursTree = tree(mergeInto.getTreeId());
+        final RevTree theirsTree = tree(toMerge.getTreeId());
 
-        Iterator<DiffEntry> diffs = command(DiffTree.class).setOldTree(ancestor.get())
-                .setReportTrees(true).setNewTree(mergeInto.getId()).call();
-        while (diffs.hasNext()) {
-            DiffEntry diff = diffs.next();
-            String path = diff.oldPath() == null ? diff.newPath() : diff.oldPath();
-            mergeIntoDiffs.put(path, diff);
+        ReportConsumer consumer = new ReportConsumer();
+        new ThreeWayMergeWalk(context(), ancestorTree, oursTree, theirsTree).walk(consumer);
+        return consumer.report;
+    }
+
+    private RevTree tree(ObjectId treeId) {
+        if (RevTree.EMPTY_TREE_ID.equals(treeId)) {
+            return RevTree.EMPTY;
+        }
+        return objectDatabase().getTree(treeId);
+    }
+
+    /**
+     * Collects the walk results into a {@link MergeScenarioReport}, sorting them by path once the
+     * walk is finished so that the report doesn't depend on the order the parallel walk visited
+     * the trees, and parent trees are reported before their contents.
+     */
+    private static class ReportConsumer implements MergeScenarioConsumer {
+
+        private final MergeScenarioReport report = new MergeScenarioReport();
+
+        @Override
+        public synchronized void conflicted(Conflict conflict) {
+            report.addConflict(conflict);
+        }
+
+        @Override
+        public synchronized void unconflicted(DiffEntry diff) {
+            report.addUnconflicted(diff);
+        }
+
+        @Override
+        public synchronized void merged(FeatureInfo merged) {
+            report.addMerged(merged);
         }
 
-        Iterator<DiffEntry> toMergeDiffs = command(DiffTree.class).setOldTree(ancestor.get())
-                .setReportTrees(true).setNewTree(toMerge.getId()).call();
-        while (toMergeDiffs.hasNext()) {
-            DiffEntry toMergeDiff = toMergeDiffs.next();
-            String path = toMergeDiff.oldPath() == null ? toMergeDiff.newPath() : toMergeDiff
-                    .oldPath();
-            if (mergeIntoDiffs.containsKey(path)) {
-                RevCommit ancestorCommit = command(RevObjectParse.class)
-                        .setRefSpec(ancestor.get().toString()).call(RevCommit.class).get();
-                RevTree ancestorTree = command(RevObjectParse.class)
-                        .setObjectId(ancestorCommit.getTreeId()).call(RevTree.class).get();
-                Optional<NodeRef> ancestorVersion = command(FindTreeChild.class).setChildPath(path)
-                        .setParent(ancestorTree).call();
-                ObjectId ancestorVersionId = ancestorVersion.isPresent() ? ancestorVersion.get()
-                        .getNode().getObjectId() : ObjectId.NULL;
-                ObjectId theirs = toMergeDiff.getNewObject() == null ? ObjectId.NULL : toMergeDiff
-                        .getNewObject().getObjectId();
-                DiffEntry mergeIntoDiff = mergeIntoDiffs.get(path);
-                ObjectId ours = mergeIntoDiff.getNewObject() == null ? ObjectId.NULL
-                        : mergeIntoDiff.getNewObject().getObjectId();
-                if (!mergeIntoDiff.changeType().equals(toMergeDiff.changeType())) {
-                    report.addConflict(new Conflict(path, ancestorVersionId, ours, theirs));
-                    continue;
+        @Override
+        public synchronized void finished() {
+            Collections.sort(report.conflicts, new Comparator<Conflict>() {
+                @Override
+                public int compare(Conflict c1, Conflict c2) {
+                    return c1.getPath().compareTo(c2.getPath());
                 }
-                switch (toMergeDiff.changeType()) {
-                case ADDED:
-                    if (toMergeDiff.getNewObject().equals(mergeIntoDiff.getNewObject())) {
-                        // already added in current branch, no need to do anything
-                    } else {
-                        TYPE type = command(ResolveObjectType.class).setObjectId(
-                                toMergeDiff.getNewObject().getObjectId()).call();
-                        if (TYPE.TREE.equals(type)) {
-                            boolean conflict = !toMergeDiff.getNewObject().getMetadataId()
-                                    .equals(mergeIntoDiff.getNewObject().getMetadataId());
-                            if (conflict) {
-                                // In this case, we store the metadata id, not the element id
-                                ancestorVersionId = ancestorVersion.isPresent() ? ancestorVersion
-                                        .get().getMetadataId() : ObjectId.NULL;
-                                ours = mergeIntoDiff.getNewObject().getMetadataId();
-                                theirs = toMergeDiff.getNewObject().getMetadataId();
-                                report.addConflict(new Conflict(path, ancestorVersionId, ours,
-                                        theirs));
-                            }
-                            // if the metadata ids match, it means both branches have added the same
-                            // tree, maybe with different content, but there is no need to do
-                            // anything. The correct tree is already there and the merge can be run
-                            // safely, so we do not add it neither as a conflicted change nor as an
-                            // unconflicted one
-                        } else {
-                            report.addConflict(new Conflict(path, ancestorVersionId, ours, theirs));
-                        }
-                    }
-                    break;
-                case REMOVED:
-                    // removed by both histories => no conflict and no need to do anything
-                    break;
-                case MODIFIED:
-                    TYPE type = command(ResolveObjectType.class).setObjectId(
-                            toMergeDiff.getNewObject().getObjectId()).call();
-                    if (TYPE.TREE.equals(type)) {
-                        boolean conflict = !toMergeDiff.getNewObject().getMetadataId()
-                                .equals(mergeIntoDiff.getNewObject().getMetadataId());
-                        if (conflict) {
-                            // In this case, we store the metadata id, not the element id
-                            ancestorVersionId = ancestorVersion.isPresent() ? ancestorVersion.get()
-                                    .getMetadataId() : ObjectId.NULL;
-                            ours = mergeIntoDiff.getNewObject().getMetadataId();
-                            theirs = toMergeDiff.getNewObject().getMetadataId();
-                            report.addConflict(new Conflict(path, ancestorVersionId, ours, theirs));
-                        }
-                    } else {
-                        FeatureDiff toMergeFeatureDiff = command(DiffFeature.class)
-                                .setOldVersion(Suppliers.ofInstance(toMergeDiff.getOldObject()))
-                                .setNewVersion(Suppliers.ofInstance(toMergeDiff.getNewObject()))
-                                .call();
-                        FeatureDiff mergeIntoFeatureDiff = command(DiffFeature.class)
-                                .setOldVersion(Suppliers.ofInstance(mergeIntoDiff.getOldObject()))
-                                .setNewVersion(Suppliers.ofInstance(mergeIntoDiff.getNewObject()))
-                                .call();
-                        if (toMergeFeatureDiff.conflicts(mergeIntoFeatureDiff)) {
-                            report.addConflict(new Conflict(path, ancestorVersionId, ours, theirs));
-                        } else {
-                            // if the feature types are different we report a conflict and do not
-                            // try to perform automerge
-                            if (!toMergeDiff.getNewObject().getMetadataId()
-                                    .equals(mergeIntoDiff.getNewObject().getMetadataId())) {
-                                report.addConflict(new Conflict(path, ancestorVersionId, ours,
-                                        theirs));
-                            } else if (!toMergeFeatureDiff.equals(mergeIntoFeatureDiff)) {
-                                Feature mergedFeature = command(MergeFeaturesOp.class)
-                                        .setFirstFeature(mergeIntoDiff.getNewObject())
-                                        .setSecondFeature(toMergeDiff.getNewObject())
-                                        .setAncestorFeature(mergeIntoDiff.getOldObject()).call();
-                                RevFeature revFeature = RevFeatureBuilder.build(mergedFeature);
-                                if (revFeature.getId().equals(toMergeDiff.newObjectId())) {
-                                    // the resulting merged feature equals the feature to merge from
-                                    // the branch, which means that it exists in the repo and there
-                                    // is no need to add it
-                                    report.addUnconflicted(toMergeDiff);
-                                } else {
-                                    RevFeatureType featureType = command(RevObjectParse.class)
-                                            .setObjectId(
-                                                    mergeIntoDiff.getNewObject().getMetadataId())
-                                            .call(RevFeatureType.class).get();
-                                    FeatureInfo merged = new FeatureInfo(mergedFeature,
-                                            featureType, path);
-                                    report.addMerged(merged);
-                                }
-                            }
-                        }
-                    }
-                    break;
+            });
+            Collections.sort(report.unconflicted, new Comparator<DiffEntry>() {
+                @Override
+                public int compare(DiffEntry d1, DiffEntry d2) {
+                    return path(d1).compareTo(path(d2));
                 }
-            } else {
-                // If the element is a tree, not a feature, it might be a conflict even if the other
-                // branch has not modified it.
-                // If we are removing the tree, we have to make sure that there are no features
-                // modified in the other branch under it.
-                if (ChangeType.REMOVED.equals(toMergeDiff.changeType())) {
-                    TYPE type = command(ResolveObjectType.class).setObjectId(
-                            toMergeDiff.oldObjectId()).call();
-                    if (TYPE.TREE.equals(type)) {
-                        String parentPath = toMergeDiff.oldPath();
-                        Set<Entry<String, DiffEntry>> entries = mergeIntoDiffs.entrySet();
-                        boolean conflict = false;
-                        for (Entry<String, DiffEntry> entry : entries) {
-                            if (entry.getKey().startsWith(parentPath)) {
-                                if (!ChangeType.REMOVED.equals(entry.getValue().changeType())) {
-                                    RevCommit ancestorCommit = command(RevObjectParse.class)
-                                            .setRefSpec(ancestor.get().toString())
-                                            .call(RevCommit.class).get();
-                                    RevTree ancestorTree = command(RevObjectParse.class)
-                                            .setObjectId(ancestorCommit.getTreeId())
-                                            .call(RevTree.class).get();
-                                    Optional<NodeRef> ancestorVersion = command(FindTreeChild.class)
-                                            .setChildPath(path).setParent(ancestorTree).call();
-                                    ObjectId ancestorVersionId = ancestorVersion.isPresent() ? ancestorVersion
-                                            .get().getNode().getObjectId()
-                                            : ObjectId.NULL;
-                                    ObjectId theirs = toMergeDiff.getNewObject() == null ? ObjectId.NULL
-                                            : toMergeDiff.getNewObject().getObjectId();
-                                    String oursRefSpec = mergeInto.getId().toString() + ":"
-                                            + parentPath;
-                                    Optional<ObjectId> ours = command(RevParse.class).setRefSpec(
-                                            oursRefSpec).call();
-                                    report.addConflict(new Conflict(path, ancestorVersionId, ours
-                                            .get(), theirs));
-                                    conflict = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if (!conflict) {
-                            report.addUnconflicted(toMergeDiff);
-                        }
-                    } else {
-                        report.addUnconflicted(toMergeDiff);
-                    }
-                } else {
-                    report.addUnconflicted(toMergeDiff);
+            });
+            Collections.sort(report.merged, new Comparator<FeatureInfo>() {
+                @Override
+                public int compare(FeatureInfo f1, FeatureInfo f2) {
+                    return f1.getPath().compareTo(f2.getPath());
                 }
-            }
-
+            });
         }
 
-        return report;
-
+        private static String path(DiffEntry diff) {
+            return diff.oldPath() == null ? diff.newPath() : diff.oldPath();
+        }
     }
 }
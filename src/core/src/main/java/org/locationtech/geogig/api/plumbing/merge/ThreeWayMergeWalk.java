@@ -0,0 +1,342 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.api.plumbing.merge;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.FeatureInfo;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureBuilder;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.DiffFeature;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.api.plumbing.diff.FeatureDiff;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.Consumer;
+import org.locationtech.geogig.repository.DepthSearch;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.Feature;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+
+/**
+ * Computes the outcome of merging the changes made in a "theirs" tree onto an "ours" tree, both
+ * descending from a common "ancestor" tree, in a single pass over the three trees.
+ * <p>
+ * The walk is driven by a {@link PreOrderDiffWalk} between the ancestor and theirs trees, so
+ * subtrees that are equal on those two sides are never visited. For each changed tree the matching
+ * tree on the ours side is resolved, and:
+ * <ul>
+ * <li>if it's equal to the theirs version, both histories made the same changes and the subtree is
+ * skipped;
+ * <li>if it's equal to the ancestor version, every change underneath is reported as unconflicted
+ * without looking at the ours side any further;
+ * <li>otherwise each changed feature is looked up in the ours tree and compared against the
+ * ancestor and theirs versions to decide whether it's unconflicted, conflicted, or can be merged.
+ * </ul>
+ * Only the ours trees currently being traversed are held in memory, and results are streamed to a
+ * {@link MergeScenarioConsumer} as they're found.
+ */
+public class ThreeWayMergeWalk {
+
+    private final Context context;
+
+    private final RevTree ancestor;
+
+    private final RevTree ours;
+
+    private final RevTree theirs;
+
+    public ThreeWayMergeWalk(Context context, RevTree ancestor, RevTree ours, RevTree theirs) {
+        checkNotNull(context, "context");
+        checkNotNull(ancestor, "ancestor");
+        checkNotNull(ours, "ours");
+        checkNotNull(theirs, "theirs");
+        this.context = context;
+        this.ancestor = ancestor;
+        this.ours = ours;
+        this.theirs = theirs;
+    }
+
+    /**
+     * Walks the three trees notifying {@code consumer} of the merge outcome for every change made
+     * on the theirs side.
+     * <p>
+     * NOTE: the {@link MergeScenarioConsumer} must be thread safe.
+     */
+    public void walk(MergeScenarioConsumer consumer) {
+        checkNotNull(consumer);
+        if (!ours.getId().equals(theirs.getId())) {
+            ObjectDatabase db = context.objectDatabase();
+            PreOrderDiffWalk walk = new PreOrderDiffWalk(ancestor, theirs, db, db);
+            walk.walk(new MergeConsumer(consumer, db));
+        }
+        consumer.finished();
+    }
+
+    /**
+     * The ours side of a tree being traversed
+     */
+    private static class OursTree {
+
+        /**
+         * {@code null} if the tree doesn't exist on the ours side
+         */
+        @Nullable
+        final RevTree tree;
+
+        /**
+         * default metadata id for the tree's features
+         */
+        final ObjectId metadataId;
+
+        /**
+         * whether the tree is the same on the ancestor and ours sides
+         */
+        final boolean unchanged;
+
+        OursTree(@Nullable RevTree tree, ObjectId metadataId, boolean unchanged) {
+            this.tree = tree;
+            this.metadataId = metadataId;
+            this.unchanged = unchanged;
+        }
+    }
+
+    private class MergeConsumer implements Consumer {
+
+        private final MergeScenarioConsumer consumer;
+
+        private final ObjectDatabase db;
+
+        private final DepthSearch search;
+
+        private final ConcurrentMap<String, OursTree> oursTrees = Maps.newConcurrentMap();
+
+        MergeConsumer(MergeScenarioConsumer consumer, ObjectDatabase db) {
+            this.consumer = consumer;
+            this.db = db;
+            this.search = new DepthSearch(db);
+        }
+
+        @Override
+        public boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            final NodeRef ref = left == null ? right : left;
+            if (ref.getParentPath() == null) {
+                boolean unchanged = ours.getId().equals(ancestor.getId());
+                oursTrees.put(NodeRef.ROOT, new OursTree(ours, ObjectId.NULL, unchanged));
+                return true;
+            }
+
+            final OursTree parent = oursTrees.get(ref.getParentPath());
+            checkState(parent != null, "ours side of %s not resolved", ref.getParentPath());
+
+            final NodeRef oursRef = resolve(parent, left, ref);
+            mergeTree(left, right, oursRef);
+
+            if (sameVersion(oursRef, right)) {
+                // both sides made the same changes
+                return false;
+            }
+            final boolean unchanged = parent.unchanged || sameVersion(left, oursRef);
+            RevTree oursTree = null;
+            ObjectId metadataId = ObjectId.NULL;
+            if (oursRef != null) {
+                metadataId = oursRef.getMetadataId();
+                if (!unchanged) {
+                    ObjectId treeId = oursRef.getObjectId();
+                    oursTree = RevTree.EMPTY_TREE_ID.equals(treeId) ? RevTree.EMPTY : db
+                            .getTree(treeId);
+                }
+            }
+            oursTrees.put(ref.path(), new OursTree(oursTree, metadataId, unchanged));
+            return true;
+        }
+
+        @Override
+        public void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            final NodeRef ref = left == null ? right : left;
+            oursTrees.remove(ref.path());
+        }
+
+        @Override
+        public boolean bucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
+                @Nullable Bucket left, @Nullable Bucket right) {
+            return true;
+        }
+
+        @Override
+        public void endBucket(NodeRef leftParent, NodeRef rightParent, BucketIndex bucketIndex,
+                @Nullable Bucket left, @Nullable Bucket right) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+            final NodeRef ref = left == null ? right : left;
+            final OursTree parent = oursTrees.get(ref.getParentPath());
+            checkState(parent != null, "ours side of %s not resolved", ref.getParentPath());
+
+            final NodeRef oursRef = resolve(parent, left, ref);
+            mergeFeature(left, right, oursRef);
+            return true;
+        }
+
+        /**
+         * Resolves the ours version of the node at {@code ref}'s path
+         */
+        @Nullable
+        private NodeRef resolve(OursTree parent, @Nullable NodeRef ancestorRef, NodeRef ref) {
+            if (parent.unchanged) {
+                return ancestorRef;
+            }
+            if (parent.tree == null) {
+                return null;
+            }
+            Optional<Node> node = search.getDirectChild(parent.tree, ref.name(), 0);
+            if (!node.isPresent()) {
+                return null;
+            }
+            return new NodeRef(node.get(), ref.getParentPath(), node.get().getMetadataId()
+                    .or(parent.metadataId));
+        }
+
+        private void mergeTree(@Nullable NodeRef ancestorRef, @Nullable NodeRef theirsRef,
+                @Nullable NodeRef oursRef) {
+
+            final DiffEntry theirsDiff = new DiffEntry(ancestorRef, theirsRef);
+            if (sameVersion(ancestorRef, oursRef)) {
+                consumer.unconflicted(theirsDiff);
+                return;
+            }
+            final DiffEntry oursDiff = new DiffEntry(ancestorRef, oursRef);
+            final String path = path(theirsDiff);
+            if (!oursDiff.changeType().equals(theirsDiff.changeType())) {
+                consumer.conflicted(new Conflict(path, objectId(ancestorRef), objectId(oursRef),
+                        objectId(theirsRef)));
+                return;
+            }
+            switch (theirsDiff.changeType()) {
+            case ADDED:
+            case MODIFIED:
+                // if the metadata ids match, both branches have changed the same tree, maybe with
+                // different content, but the tree itself is not in conflict. Its contents are
+                // evaluated as the walk goes on
+                final ObjectId oursMetadata = oursRef.getMetadataId();
+                final ObjectId theirsMetadata = theirsRef.getMetadataId();
+                if (!oursMetadata.equals(theirsMetadata)) {
+                    // In this case, we store the metadata id, not the element id
+                    ObjectId ancestorMetadata = ancestorRef == null ? ObjectId.NULL : ancestorRef
+                            .getMetadataId();
+                    consumer.conflicted(new Conflict(path, ancestorMetadata, oursMetadata,
+                            theirsMetadata));
+                }
+                break;
+            case REMOVED:
+                // removed by both histories => no conflict and no need to do anything
+                break;
+            }
+        }
+
+        private void mergeFeature(@Nullable NodeRef ancestorRef, @Nullable NodeRef theirsRef,
+                @Nullable NodeRef oursRef) {
+
+            final DiffEntry theirsDiff = new DiffEntry(ancestorRef, theirsRef);
+            if (sameVersion(ancestorRef, oursRef)) {
+                consumer.unconflicted(theirsDiff);
+                return;
+            }
+            final DiffEntry oursDiff = new DiffEntry(ancestorRef, oursRef);
+            final String path = path(theirsDiff);
+            final Conflict conflict = new Conflict(path, objectId(ancestorRef), objectId(oursRef),
+                    objectId(theirsRef));
+            if (!oursDiff.changeType().equals(theirsDiff.changeType())) {
+                consumer.conflicted(conflict);
+                return;
+            }
+            switch (theirsDiff.changeType()) {
+            case ADDED:
+                if (!theirsRef.equals(oursRef)) {
+                    consumer.conflicted(conflict);
+                }
+                // otherwise already added in current branch, no need to do anything
+                break;
+            case REMOVED:
+                // removed by both histories => no conflict and no need to do anything
+                break;
+            case MODIFIED:
+                mergeModified(theirsDiff, oursDiff, conflict);
+                break;
+            }
+        }
+
+        private void mergeModified(DiffEntry theirsDiff, DiffEntry oursDiff, Conflict conflict) {
+            FeatureDiff theirsFeatureDiff = context.command(DiffFeature.class)
+                    .setOldVersion(Suppliers.ofInstance(theirsDiff.getOldObject()))
+                    .setNewVersion(Suppliers.ofInstance(theirsDiff.getNewObject())).call();
+            FeatureDiff oursFeatureDiff = context.command(DiffFeature.class)
+                    .setOldVersion(Suppliers.ofInstance(oursDiff.getOldObject()))
+                    .setNewVersion(Suppliers.ofInstance(oursDiff.getNewObject())).call();
+
+            if (theirsFeatureDiff.conflicts(oursFeatureDiff)) {
+                consumer.conflicted(conflict);
+                return;
+            }
+            final ObjectId oursMetadata = oursDiff.getNewObject().getMetadataId();
+            // if the feature types are different we report a conflict and do not try to perform
+            // automerge
+            if (!theirsDiff.getNewObject().getMetadataId().equals(oursMetadata)) {
+                consumer.conflicted(conflict);
+                return;
+            }
+            if (theirsFeatureDiff.equals(oursFeatureDiff)) {
+                return;
+            }
+            Feature mergedFeature = context.command(MergeFeaturesOp.class)
+                    .setFirstFeature(oursDiff.getNewObject())
+                    .setSecondFeature(theirsDiff.getNewObject())
+                    .setAncestorFeature(oursDiff.getOldObject()).call();
+            RevFeature revFeature = RevFeatureBuilder.build(mergedFeature);
+            if (revFeature.getId().equals(theirsDiff.newObjectId())) {
+                // the resulting merged feature equals the feature to merge from the branch, which
+                // means that it exists in the repo and there is no need to add it
+                consumer.unconflicted(theirsDiff);
+            } else {
+                RevFeatureType featureType = db.getFeatureType(oursMetadata);
+                consumer.merged(new FeatureInfo(mergedFeature, featureType, path(theirsDiff)));
+            }
+        }
+    }
+
+    private static String path(DiffEntry diff) {
+        return diff.oldPath() == null ? diff.newPath() : diff.oldPath();
+    }
+
+    private static ObjectId objectId(@Nullable NodeRef ref) {
+        return ref == null ? ObjectId.NULL : ref.getObjectId();
+    }
+
+    private static boolean sameVersion(@Nullable NodeRef ref1, @Nullable NodeRef ref2) {
+        if (ref1 == null || ref2 == null) {
+            return ref1 == ref2;
+        }
+        return ref1.getObjectId().equals(ref2.getObjectId())
+                && ref1.getMetadataId().equals(ref2.getMetadataId());
+    }
+}
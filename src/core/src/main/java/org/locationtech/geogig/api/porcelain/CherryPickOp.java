@@ -15,11 +15,12 @@ import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.ApplyTreeDiffOp;
 import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.RefParse;
 import org.locationtech.geogig.api.plumbing.UpdateRef;
-import org.locationtech.geogig.api.plumbing.WriteTree2;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.plumbing.merge.Conflict;
 import org.locationtech.geogig.api.plumbing.merge.ConflictsWriteOp;
@@ -96,14 +97,14 @@ public class CherryPickOp extends AbstractGeoGigOp<RevCommit> {
         MergeScenarioReport report = command(ReportCommitConflictsOp.class)
                 .setCommit(commitToApply).call();
         if (report.getConflicts().isEmpty()) {
-            // stage changes
-            index().stage(getProgressListener(), diff, 0);
-            // write new tree
-            ObjectId newTreeId = command(WriteTree2.class).call();
+            // apply the changes straight onto the current tree
+            RevTree newTree = command(ApplyTreeDiffOp.class).setBaseTree(index().getTree())
+                    .setDiffs(diff).call();
+            ObjectId newTreeId = newTree.getId();
+            repository.index().updateStageHead(newTreeId);
             RevCommit newCommit = command(CommitOp.class).setCommit(commitToApply).call();
 
             repository.workingTree().updateWorkHead(newTreeId);
-            repository.index().updateStageHead(newTreeId);
 
             getProgressListener().complete();
 
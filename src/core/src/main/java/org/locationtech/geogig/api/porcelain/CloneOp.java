@@ -129,10 +129,17 @@ public class CloneOp extends AbstractGeoGigOp<Void> {
         ProgressListener progressListener = getProgressListener();
         progressListener.started();
 
-        // Set up origin
-        Remote remote = command(RemoteAddOp.class).setName("origin").setURL(remoteURI)
-                .setMapped(localRepo.isSparse()).setUserName(username).setPassword(password)
-                .setBranch(localRepo.isSparse() ? branch.get() : null).call();
+        // Set up origin, unless it was set up by an interrupted clone of the same repository, in
+        // which case the fetch resumes from where it was left
+        Optional<Remote> existing = command(RemoteResolve.class).setName("origin").call();
+        Remote remote;
+        if (existing.isPresent() && remoteURI.equals(existing.get().getFetchURL())) {
+            remote = existing.get();
+        } else {
+            remote = command(RemoteAddOp.class).setName("origin").setURL(remoteURI)
+                    .setMapped(localRepo.isSparse()).setUserName(username).setPassword(password)
+                    .setBranch(localRepo.isSparse() ? branch.get() : null).call();
+        }
 
         if (!depth.isPresent()) {
             // See if we are cloning a shallow clone. If so, a depth must be specified.
@@ -9,15 +9,20 @@
  */
 package org.locationtech.geogig.api.porcelain;
 
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.util.Range;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.NodeRef;
@@ -29,7 +34,9 @@ import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.plumbing.RevParse;
 import org.locationtech.geogig.di.CanRunDuringConflict;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -254,20 +261,22 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             }
         }
 
+        final CommitLoader loader = new CommitLoader(objectDatabase(), graphDatabase());
         Iterator<RevCommit> history;
         if (firstParent) {
-            history = new LinearHistoryIterator(newestCommitId, repository());
+            history = new LinearHistoryIterator(newestCommitId, loader);
         } else {
             if (commits.isEmpty()) {
                 commits.add(newestCommitId);
             }
             if (topo) {
-                history = new TopologicalHistoryIterator(commits, repository(), graphDatabase());
+                history = new TopologicalHistoryIterator(commits, loader, graphDatabase());
             } else {
-                history = new ChronologicalHistoryIterator(commits, repository());
+                history = new ChronologicalHistoryIterator(commits, loader);
             }
         }
-        LogFilter filter = new LogFilter(oldestCommitId, timeRange, paths, author, commiter);
+        LogFilter filter = new LogFilter(oldestCommitId, timeRange, paths, author, commiter,
+                loader);
         Iterator<RevCommit> filteredCommits = Iterators.filter(history, filter);
         if (skip != null) {
             Iterators.advance(filteredCommits, skip.intValue());
@@ -278,32 +287,127 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
         return filteredCommits;
     }
 
+    /**
+     * Loads commits for the history iterators, fetching them in batches through
+     * {@link ObjectStore#getAll(Iterable, BulkOpListener, Class) getAll}.
+     * <p>
+     * When a requested commit is not already loaded, its closest ancestors are looked up with a
+     * single {@link GraphDatabase#getAncestors(ObjectId, int)} query to fetch up to
+     * {@link #PREFETCH_SIZE} commits in a single call, anticipating the commits the iterators are
+     * going to ask for next. Loaded commits are kept in a bounded cache.
+     */
+    private static class CommitLoader {
+
+        private static final int PREFETCH_SIZE = 128;
+
+        private static final int CACHE_SIZE = 4 * PREFETCH_SIZE;
+
+        private final ObjectStore db;
+
+        private final GraphDatabase graphDb;
+
+        private final Map<ObjectId, RevCommit> cache = new LinkedHashMap<ObjectId, RevCommit>(
+                CACHE_SIZE, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, RevCommit> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        CommitLoader(ObjectStore db, GraphDatabase graphDb) {
+            this.db = db;
+            this.graphDb = graphDb;
+        }
+
+        /**
+         * @return the commit with the given id, or {@code null} if it doesn't exist (e.g. at the
+         *         bottom of a shallow clone)
+         */
+        @Nullable
+        public RevCommit get(final ObjectId id) {
+            if (id.isNull()) {
+                return null;
+            }
+            RevCommit commit = cache.get(id);
+            if (commit == null) {
+                Iterator<RevCommit> commits = db.getAll(prefetchList(id),
+                        BulkOpListener.NOOP_LISTENER, RevCommit.class);
+                while (commits.hasNext()) {
+                    RevCommit c = commits.next();
+                    cache.put(c.getId(), c);
+                }
+                commit = cache.get(id);
+            }
+            return commit;
+        }
+
+        /**
+         * @return {@code id} followed by up to {@code PREFETCH_SIZE - 1} of its ancestors that are
+         *         not already loaded
+         */
+        private List<ObjectId> prefetchList(final ObjectId id) {
+            List<ObjectId> ids = Lists.newArrayListWithCapacity(PREFETCH_SIZE);
+            ids.add(id);
+            for (ObjectId ancestor : graphDb.getAncestors(id, PREFETCH_SIZE - 1)) {
+                if (!cache.containsKey(ancestor)) {
+                    ids.add(ancestor);
+                }
+            }
+            return ids;
+        }
+    }
+
     /**
      * Iterator that traverses the commit history backwards starting from the provided commit, in
-     * chronological order. It performs a reverse breadth-first search
+     * chronological order. It performs a reverse breadth-first search, keeping the commits to visit
+     * next in a priority queue ordered by committer timestamp, most recent first.
      * 
      */
     private static class ChronologicalHistoryIterator extends AbstractIterator<RevCommit> {
 
-        private final Repository repo;
+        private static final Comparator<RevCommit> MOST_RECENT_FIRST = new Comparator<RevCommit>() {
+            @Override
+            public int compare(RevCommit c1, RevCommit c2) {
+                int c = Long.compare(c2.getCommitter().getTimestamp(), c1.getCommitter()
+                        .getTimestamp());
+                if (c == 0) {
+                    c = c1.getId().compareTo(c2.getId());
+                }
+                return c;
+            }
+        };
+
+        private final CommitLoader loader;
 
-        private Set<RevCommit> parents;
+        private final PriorityQueue<RevCommit> parents;
+
+        private final Set<ObjectId> queued;
 
         /**
-         * Constructs a new {@code LinearHistoryIterator} with the given parameters.
+         * Constructs a new {@code ChronologicalHistoryIterator} with the given parameters.
          * 
-         * @param tip the first commit in the history
-         * @param repo the repository where the commits are stored.
+         * @param tips the commits to start computing history from
+         * @param loader the loader to fetch the commits with
          */
-        public ChronologicalHistoryIterator(final List<ObjectId> tips, final Repository repo) {
-            parents = Sets.newHashSet();
+        public ChronologicalHistoryIterator(final List<ObjectId> tips, final CommitLoader loader) {
+            this.loader = loader;
+            this.parents = new PriorityQueue<RevCommit>(11, MOST_RECENT_FIRST);
+            this.queued = Sets.newHashSet();
             for (ObjectId tip : tips) {
-                if (!tip.isNull()) {
-                    final RevCommit commit = repo.getCommit(tip);
+                enqueue(tip);
+            }
+        }
+
+        private void enqueue(ObjectId commitId) {
+            if (!commitId.isNull() && queued.add(commitId)) {
+                RevCommit commit = loader.get(commitId);
+                if (commit != null) {
                     parents.add(commit);
                 }
             }
-            this.repo = repo;
         }
 
         /**
@@ -313,30 +417,14 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          */
         @Override
         protected RevCommit computeNext() {
-            if (parents.isEmpty()) {
+            RevCommit mostRecent = parents.poll();
+            if (mostRecent == null) {
                 return endOfData();
-            } else {
-                Iterator<RevCommit> iter = parents.iterator();
-                // TODO: Maybe we should make RevCommit implement Comparable?
-                RevCommit mostRecent = iter.next();
-                while (iter.hasNext()) {
-                    RevCommit commit = iter.next();
-                    if (mostRecent.getCommitter().getTimestamp() < commit.getCommitter()
-                            .getTimestamp()) {
-                        mostRecent = commit;
-                    }
-                }
-                parents.remove(mostRecent);
-                RevCommit commit;
-                for (ObjectId parent : mostRecent.getParentIds()) {
-                    if (repo.commitExists(parent)) {
-                        commit = repo.getCommit(parent);
-                        parents.add(commit);
-                    }
-                }
-                return mostRecent;
             }
-
+            for (ObjectId parent : mostRecent.getParentIds()) {
+                enqueue(parent);
+            }
+            return mostRecent;
         }
     }
 
@@ -347,7 +435,7 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
      */
     private static class TopologicalHistoryIterator extends AbstractIterator<RevCommit> {
 
-        private final Repository repo;
+        private final CommitLoader loader;
 
         private Stack<RevCommit> tips;
 
@@ -361,22 +449,22 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          * Constructs a new {@code LinearHistoryIterator} with the given parameters.
          * 
          * @param tipsList the list of tips to start computing history from
-         * @param repo the repository where the commits are stored.
+         * @param loader the loader to fetch the commits with
          * @param graphDb
          */
-        public TopologicalHistoryIterator(final List<ObjectId> tipsList, final Repository repo,
-                GraphDatabase graphDb) {
+        public TopologicalHistoryIterator(final List<ObjectId> tipsList,
+                final CommitLoader loader, GraphDatabase graphDb) {
             this.graphDb = graphDb;
             tips = new Stack<RevCommit>();
             stopPoints = Lists.newArrayList();
             for (ObjectId tip : tipsList) {
                 if (!tip.isNull()) {
-                    final RevCommit commit = repo.getCommit(tip);
+                    final RevCommit commit = loader.get(tip);
                     tips.add(commit);
                     stopPoints.add(tip);
                 }
             }
-            this.repo = repo;
+            this.loader = loader;
         }
 
         /**
@@ -390,16 +478,16 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
                 lastCommit = tips.pop();
                 return lastCommit;
             }
-            Optional<ObjectId> parent = Optional.absent();
+            RevCommit parent = null;
             int index = 0;
             for (ObjectId parentId : lastCommit.getParentIds()) {
-                if (repo.commitExists(parentId)) {
-                    parent = Optional.of(parentId);
+                parent = loader.get(parentId);
+                if (parent != null) {
                     break;
                 }
                 index++;
             }
-            if (!parent.isPresent() || parent.get().isNull() || stopPoints.contains(parent.get())) {
+            if (parent == null || stopPoints.contains(parent.getId())) {
                 // move to the next tip and start traversing it
                 if (tips.isEmpty()) {
                     return endOfData();
@@ -409,15 +497,15 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             } else {
                 List<ObjectId> parents = lastCommit.getParentIds();
                 for (int i = index + 1; i < parents.size(); i++) {
-                    if (repo.commitExists(parents.get(i))) {
-                        final RevCommit commit = repo.getCommit(parents.get(i));
+                    final RevCommit commit = loader.get(parents.get(i));
+                    if (commit != null) {
                         tips.push(commit);
                     }
                 }
-                lastCommit = repo.getCommit(parent.get());
-                ImmutableList<ObjectId> children = this.graphDb.getChildren(parent.get());
+                lastCommit = parent;
+                ImmutableList<ObjectId> children = this.graphDb.getChildren(parent.getId());
                 if (children.size() > 1) {
-                    stopPoints.add(parent.get());
+                    stopPoints.add(parent.getId());
                 }
             }
 
@@ -434,19 +522,19 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         private Optional<ObjectId> nextCommitId;
 
-        private final Repository repo;
+        private final CommitLoader loader;
 
         /**
          * Constructs a new {@code LinearHistoryIterator} with the given parameters.
          * 
          * @param tip the first commit in the history
-         * @param repo the repository where the commits are stored.
+         * @param loader the loader to fetch the commits with
          */
         @SuppressWarnings("unchecked")
-        public LinearHistoryIterator(final ObjectId tip, final Repository repo) {
+        public LinearHistoryIterator(final ObjectId tip, final CommitLoader loader) {
             this.nextCommitId = (Optional<ObjectId>) (tip.isNull() ? Optional.absent() : Optional
                     .of(tip));
-            this.repo = repo;
+            this.loader = loader;
         }
 
         /**
@@ -457,11 +545,12 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
         @Override
         protected RevCommit computeNext() {
             if (nextCommitId.isPresent()) {
-                RevCommit commit = repo.getCommit(nextCommitId.get());
-                nextCommitId = commit.parentN(0);
-                if (nextCommitId.isPresent() && !repo.commitExists(nextCommitId.get())) {
-                    nextCommitId = Optional.absent();
+                RevCommit commit = loader.get(nextCommitId.get());
+                if (commit == null) {
+                    // reached the bottom of a shallow clone
+                    return endOfData();
                 }
+                nextCommitId = commit.parentN(0);
                 return commit;
             }
             return endOfData();
@@ -490,6 +579,8 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         private FindTreeChild findTreeChild;
 
+        private final CommitLoader loader;
+
         /**
          * Constructs a new {@code LogFilter} with the given parameters.
          * 
@@ -499,9 +590,10 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          *        of the provided paths
          * @param commiter the regexp pattern to filter author names
          * @param author the regexp pattern to filter commiter names
+         * @param loader the loader to fetch parent commits with
          */
         public LogFilter(final ObjectId oldestCommitId, final Range<Long> timeRange,
-                final Set<String> paths, Pattern author, Pattern commiter) {
+                final Set<String> paths, Pattern author, Pattern commiter, CommitLoader loader) {
             Preconditions.checkNotNull(oldestCommitId);
             Preconditions.checkNotNull(timeRange);
             this.oldestCommitId = oldestCommitId;
@@ -509,6 +601,7 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             this.author = author;
             this.committer = commiter;
             this.paths = paths;
+            this.loader = loader;
             findTreeChild = command(FindTreeChild.class);
         }
 
@@ -556,14 +649,14 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
                     int parentIndex = 0;
                     do {
                         ObjectId parentId = commit.parentN(parentIndex++).or(ObjectId.NULL);
-                        if (parentId.isNull() || !repository.commitExists(parentId)) {
+                        RevCommit otherCommit = loader.get(parentId);
+                        if (otherCommit == null) {
                             // we have reached the bottom of a shallow clone or the end of history.
                             if (!currentValue.isNull()) {
                                 applies = true;
                                 break;
                             }
                         } else {
-                            RevCommit otherCommit = repository.getCommit(parentId);
                             RevTree parentTree = repository.getTree(otherCommit.getTreeId());
                             parentValue = getPathHash(parentTree, path);
                             if (!parentValue.equals(currentValue)) {
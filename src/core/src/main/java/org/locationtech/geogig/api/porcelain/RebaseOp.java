@@ -23,8 +23,10 @@ import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SymRef;
 import org.locationtech.geogig.api.hooks.Hookable;
+import org.locationtech.geogig.api.plumbing.ApplyTreeDiffOp;
 import org.locationtech.geogig.api.plumbing.CatObject;
 import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.FindCommonAncestor;
@@ -438,11 +440,10 @@ public class RebaseOp extends AbstractGeoGigOp<Boolean> {
             MergeScenarioReport report = command(ReportCommitConflictsOp.class).setCommit(
                     commitToApply).call();
             if (report.getConflicts().isEmpty()) {
-                // stage changes
-                index().stage(getProgressListener(), diff, 0);
-
-                // write new tree
-                ObjectId newTreeId = command(WriteTree2.class).call();
+                // apply the changes straight onto the current tree
+                RevTree newTree = command(ApplyTreeDiffOp.class).setBaseTree(index().getTree())
+                        .setDiffs(diff).call();
+                ObjectId newTreeId = newTree.getId();
 
                 long timestamp = platform.currentTimeMillis();
                 // Create new commit
@@ -27,6 +27,7 @@ import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.ApplyTreeDiffOp;
 import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.plumbing.RefParse;
@@ -47,7 +48,6 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 /**
@@ -242,12 +242,23 @@ public class RevertOp extends AbstractGeoGigOp<Boolean> {
             String commitId = commitFile.get(0);
             RevCommit commit = repository.getCommit(ObjectId.valueOf(commitId));
             List<Conflict> conflicts = Lists.newArrayList();
+            List<DiffEntry> changes = Lists.newArrayList();
+            ObjectId newTreeId = null;
             if (useCommitChanges) {
-                conflicts = applyRevertedChanges(commit);
+                conflicts = applyRevertedChanges(commit, changes);
+                // apply the changes straight onto the current tree
+                newTreeId = command(ApplyTreeDiffOp.class).setBaseTree(index().getTree())
+                        .setDiffs(changes.iterator()).call().getId();
             }
             if (createCommit && conflicts.isEmpty()) {
-                createCommit(commit);
+                if (newTreeId == null) {
+                    newTreeId = command(WriteTree2.class).call();
+                }
+                createCommit(commit, newTreeId);
             } else {
+                if (newTreeId != null) {
+                    index().updateStageHead(newTreeId);
+                }
                 workingTree().updateWorkHead(repository.index().getTree().getId());
                 if (!conflicts.isEmpty()) {
                     // mark conflicted elements
@@ -276,7 +287,14 @@ public class RevertOp extends AbstractGeoGigOp<Boolean> {
 
     }
 
-    private List<Conflict> applyRevertedChanges(RevCommit commit) {
+    /**
+     * Computes the changes that revert the given commit on top of the current revert head.
+     * 
+     * @param commit the commit to revert
+     * @param changes the list where to add the changes that can be safely applied
+     * @return the list of conflicts found
+     */
+    private List<Conflict> applyRevertedChanges(RevCommit commit, List<DiffEntry> changes) {
 
         ObjectId parentCommitId = ObjectId.NULL;
         if (commit.getParentIds().size() > 0) {
@@ -308,7 +326,7 @@ public class RevertOp extends AbstractGeoGigOp<Boolean> {
                     conflicts.add(new Conflict(diff.newPath(), diff.oldObjectId(), node.get()
                             .getObjectId(), diff.newObjectId()));
                 } else {
-                    index().stage(getProgressListener(), Iterators.singletonIterator(diff), 1);
+                    changes.add(diff);
                 }
             } else {
                 // Feature was added or modified
@@ -317,7 +335,7 @@ public class RevertOp extends AbstractGeoGigOp<Boolean> {
                 ObjectId nodeId = node.get().getNode().getObjectId();
                 // Make sure it wasn't changed
                 if (node.isPresent() && nodeId.equals(diff.oldObjectId())) {
-                    index().stage(getProgressListener(), Iterators.singletonIterator(diff), 1);
+                    changes.add(diff);
                 } else {
                     // do not mark as conflict if reverting to the same feature currently in HEAD
                     if (!nodeId.equals(diff.newObjectId())) {
@@ -334,10 +352,8 @@ public class RevertOp extends AbstractGeoGigOp<Boolean> {
 
     }
 
-    private void createCommit(RevCommit commit) {
+    private void createCommit(RevCommit commit, ObjectId newTreeId) {
 
-        // write new tree
-        ObjectId newTreeId = command(WriteTree2.class).call();
         long timestamp = platform().currentTimeMillis();
         String committerName = resolveCommitter();
         String committerEmail = resolveCommitterEmail();
@@ -30,8 +30,8 @@ import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactory
 import org.locationtech.geogig.storage.fs.FileObjectDatabase;
 import org.locationtech.geogig.storage.fs.FileRefDatabase;
 import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
-import org.locationtech.geogig.storage.memory.HeapDeduplicationService;
 import org.locationtech.geogig.storage.memory.HeapGraphDatabase;
+import org.locationtech.geogig.storage.memory.OffHeapDeduplicationService;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Binder;
@@ -94,7 +94,8 @@ public class GeogigModule extends AbstractModule {
         bind(ObjectSerializingFactory.class).to(DataStreamSerializationFactoryV2.class).in(
                 Scopes.SINGLETON);
 
-        bind(DeduplicationService.class).to(HeapDeduplicationService.class).in(Scopes.SINGLETON);
+        bind(DeduplicationService.class).to(OffHeapDeduplicationService.class).in(
+                Scopes.SINGLETON);
 
         bindCommitGraphInterceptor();
 
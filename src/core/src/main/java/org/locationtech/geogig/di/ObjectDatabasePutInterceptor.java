@@ -19,6 +19,7 @@ import org.locationtech.geogig.storage.ForwardingObjectDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
@@ -112,6 +113,31 @@ class ObjectDatabasePutInterceptor implements Decorator {
             // }
         }
 
+        /**
+         * Only commits are parsed, to add them to the graph database, other objects are passed
+         * along as is.
+         */
+        @Override
+        public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+
+            final Iterator<RawObject> collectingIterator = Iterators.transform(objects,
+                    new Function<RawObject, RawObject>() {
+
+                        private final GraphDatabase graphDatabase = graphDb.get();
+
+                        @Override
+                        public RawObject apply(RawObject input) {
+                            if (RevObject.TYPE.COMMIT.equals(input.getType())) {
+                                RevCommit commit = (RevCommit) input.read();
+                                graphDatabase.put(commit.getId(), commit.getParentIds());
+                            }
+                            return input;
+                        }
+                    });
+
+            super.putRaw(collectingIterator, listener);
+        }
+
     }
 
 }
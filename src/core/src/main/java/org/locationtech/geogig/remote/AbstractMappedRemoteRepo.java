@@ -14,6 +14,7 @@ import static com.google.common.base.Preconditions.checkState;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -41,6 +42,7 @@ import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
 import org.locationtech.geogig.api.porcelain.SynchronizationException;
 import org.locationtech.geogig.api.porcelain.SynchronizationException.StatusCode;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.repository.SpatialOps;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
 
@@ -51,6 +53,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Abstract base implementation for mapped (sparse) clone.
@@ -133,13 +136,28 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
 
         Repository source;
 
+        /**
+         * The mappings looked up so far, each commit is both evaluated and checked for existence
+         * in the destination while traversing
+         */
+        private Map<ObjectId, ObjectId> mappings = new HashMap<ObjectId, ObjectId>();
+
         public PushCommitGatherer(Repository source) {
             this.source = source;
         }
 
+        private ObjectId getMapping(ObjectId commitId) {
+            ObjectId mapping = mappings.get(commitId);
+            if (mapping == null) {
+                mapping = source.graphDatabase().getMapping(commitId);
+                mappings.put(commitId, mapping);
+            }
+            return mapping;
+        }
+
         @Override
         protected Evaluation evaluate(CommitNode commitNode) {
-            if (!source.graphDatabase().getMapping(commitNode.getObjectId()).equals(ObjectId.NULL)) {
+            if (!getMapping(commitNode.getObjectId()).equals(ObjectId.NULL)) {
                 return Evaluation.EXCLUDE_AND_PRUNE;
             }
             return Evaluation.INCLUDE_AND_CONTINUE;
@@ -153,7 +171,7 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
         @Override
         protected boolean existsInDestination(ObjectId commitId) {
             // If the commit has not been mapped, it hasn't been pushed to the remote yet
-            return !source.graphDatabase().getMapping(commitId).equals(ObjectId.NULL);
+            return !getMapping(commitId).equals(ObjectId.NULL);
         }
 
     };
@@ -301,6 +319,30 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
      */
     protected abstract FilteredDiffIterator getFilteredChanges(RevCommit commit);
 
+    /**
+     * Computes the bounds of the features the sparse repository may be tracking when applying the
+     * changes of the given commit, that is, the bounds of the sparse commit its first parent is
+     * mapped to. Changes out of these bounds and out of the filter's can only be filtered out.
+     * 
+     * @param commit the commit from the full repository whose changes are to be fetched
+     * @return the bounds of the tracked features, empty if there are none
+     */
+    protected Envelope trackedBounds(RevCommit commit) {
+        Envelope bounds = new Envelope();
+        if (commit.getParentIds().size() > 0) {
+            ObjectId mappedCommit = localRepository.graphDatabase().getMapping(
+                    commit.getParentIds().get(0));
+            if (!mappedCommit.isNull()) {
+                Optional<ObjectId> treeId = localRepository.command(ResolveTreeish.class)
+                        .setTreeish(mappedCommit).call();
+                if (treeId.isPresent()) {
+                    bounds = SpatialOps.boundsOf(localRepository.getTree(treeId.get()));
+                }
+            }
+        }
+        return bounds;
+    }
+
     /**
      * Push all new objects from the specified {@link Ref} to the remote.
      * 
@@ -9,6 +9,8 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.util.Set;
+
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.api.Ref;
@@ -20,6 +22,7 @@ import org.locationtech.geogig.repository.Repository;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Provides a base implementation for different representations of the {@link IRemoteRepo}.
@@ -184,8 +187,21 @@ abstract class AbstractRemoteRepo implements IRemoteRepo {
      * @return the {@link CommitTraverser} to use.
      */
     protected CommitTraverser getFetchTraverser(Optional<Integer> fetchLimit) {
+        return getFetchTraverser(fetchLimit, ImmutableSet.<ObjectId> of());
+    }
 
-        RepositoryWrapper localWrapper = new LocalRepositoryWrapper(localRepository);
+    /**
+     * Returns the appropriate commit traverser to use for the fetch operation, taking the
+     * {@code incomplete} commits as missing from the local repository even if they exist in it.
+     * 
+     * @param fetchLimit the fetch limit to use
+     * @param incomplete commits saved by an interrupted fetch that shall be fetched again
+     * @return the {@link CommitTraverser} to use.
+     */
+    protected CommitTraverser getFetchTraverser(Optional<Integer> fetchLimit,
+            Set<ObjectId> incomplete) {
+
+        RepositoryWrapper localWrapper = new LocalRepositoryWrapper(localRepository, incomplete);
         RepositoryWrapper remoteWrapper = getRemoteWrapper();
 
         CommitTraverser traverser;
@@ -210,7 +226,8 @@ abstract class AbstractRemoteRepo implements IRemoteRepo {
             throws SynchronizationException {
 
         RepositoryWrapper localWrapper = new LocalRepositoryWrapper(localRepository);
-        RepositoryWrapper remoteWrapper = getRemoteWrapper();
+        RepositoryWrapper remoteWrapper = new NegotiatingRepositoryWrapper(getRemoteWrapper(),
+                localWrapper);
 
         CommitTraverser traverser;
         if (remoteWrapper.getRepoDepth().isPresent()) {
@@ -11,20 +11,33 @@ package org.locationtech.geogig.remote;
 
 import static java.lang.String.format;
 
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.BucketIndex;
 import org.locationtech.geogig.repository.PostOrderIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
@@ -44,21 +57,52 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 public final class BinaryPackedObjects {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BinaryPackedObjects.class);
 
+    /**
+     * Number of features, most recent first, that both ends of a pack keep in memory to be used as
+     * the base of {@link FeatureDelta delta encoded features}
+     */
+    static final int DELTA_WINDOW_SIZE = 1000;
+
+    private static final byte[] DELTA_HEADER = (FeatureDelta.HEADER + '\0').getBytes(Charset
+            .forName("US-ASCII"));
+
     private final ObjectSerializingFactory marshaller;
 
 
     private final ObjectStore database;
 
+    @Nullable
+    private List<ObjectId> deltaBase;
+
     public BinaryPackedObjects(ObjectStore database) {
         this.database = database;
         this.marshaller = DataStreamSerializationFactoryV1.INSTANCE;
     }
 
+    /**
+     * Enables delta encoding of the features written by this packer: a feature that was modified
+     * by a commit is sent as its differences against the version in the commit's first parent, as
+     * long as the receiving end is known to have that version, because it was sent earlier in the
+     * same stream and is still within the last {@link #DELTA_WINDOW_SIZE} features, or because it
+     * is reachable from {@code knownCommits}.
+     * <p>
+     * {@code knownCommits} are the commits whose contents are already in the receiving end's
+     * object database, which may be fewer than the {@code have} commits used to compute the
+     * objects to send.
+     * 
+     * @return {@code this}
+     */
+    public BinaryPackedObjects setDeltaBase(List<ObjectId> knownCommits) {
+        this.deltaBase = ImmutableList.copyOf(knownCommits);
+        return this;
+    }
+
     /**
      * @return the number of objects written
      */
@@ -81,8 +125,24 @@ public final class BinaryPackedObjects {
             }
         }
 
-        LOGGER.info("scanning for previsit list...");
         Stopwatch sw = Stopwatch.createStarted();
+        final Map<ObjectId, ObjectId> featureBases;
+        final Set<ObjectId> knownBases;
+        if (deltaBase == null) {
+            featureBases = null;
+            knownBases = null;
+        } else {
+            LOGGER.info("computing delta bases...");
+            featureBases = new ConcurrentHashMap<ObjectId, ObjectId>();
+            knownBases = Collections.newSetFromMap(new ConcurrentHashMap<ObjectId, Boolean>());
+            findFeatureBases(want, have, featureBases, knownBases, deduplicator);
+            deduplicator.reset();
+            LOGGER.info(String.format("Found %,d delta base candidates in %s",
+                    featureBases.size(), sw.stop()));
+            sw.reset().start();
+        }
+
+        LOGGER.info("scanning for previsit list...");
         ImmutableList<ObjectId> needsPrevisit = traverseCommits ? scanForPrevisitList(want, have,
                 deduplicator) : ImmutableList.copyOf(have);
         LOGGER.info(String.format(
@@ -104,16 +164,29 @@ public final class BinaryPackedObjects {
         Iterator<RevObject> objects = PostOrderIterator.range(want, new ArrayList<ObjectId>(
                 previsitResults), database, traverseCommits, deduplicator);
         long objectCount = 0;
+        long deltaCount = 0;
         LOGGER.info("PostOrderIterator.range took {}", sw.stop());
 
+        final Map<ObjectId, RevFeature> window = featureBases == null ? null : newDeltaWindow();
         try {
             LOGGER.info("writing objects to remote...");
             while (objects.hasNext()) {
                 RevObject object = objects.next();
-                funnel.funnel(object);
+                RevObject packed = object;
+                if (window != null && object instanceof RevFeature) {
+                    packed = deltaEncode((RevFeature) object, featureBases, knownBases, window);
+                    if (packed instanceof FeatureDelta) {
+                        deltaCount++;
+                    }
+                }
+                funnel.funnel(packed);
                 objectCount++;
                 callback.callback(Suppliers.ofInstance(object));
             }
+            if (window != null) {
+                LOGGER.info(String.format("%,d of %,d objects were delta encoded", deltaCount,
+                        objectCount));
+            }
         } catch (IOException e) {
             String causeMessage = Throwables.getRootCause(e).getMessage();
             LOGGER.info(String.format("writing of objects failed after %,d objects. Cause: '%s'",
@@ -123,6 +196,129 @@ public final class BinaryPackedObjects {
         return objectCount;
     }
 
+    /**
+     * Finds the previous version of the features modified by each commit in the range, that is,
+     * the feature at the same path in the commit's first parent.
+     * 
+     * @param featureBases where to collect the mappings of new feature ids to the ids of their
+     *        previous versions
+     * @param knownBases where to collect the previous versions that belong to commits the
+     *        receiving end already has, according to {@link #setDeltaBase}
+     */
+    private void findFeatureBases(List<ObjectId> want, List<ObjectId> have,
+            final Map<ObjectId, ObjectId> featureBases, final Set<ObjectId> knownBases,
+            Deduplicator deduplicator) {
+
+        List<RevCommit> range = Lists.newArrayList(Iterators.filter(
+                PostOrderIterator.rangeOfCommits(want, have, database, deduplicator),
+                RevCommit.class));
+        deduplicator.reset();
+
+        Set<ObjectId> unknownCommits = new HashSet<ObjectId>();
+        if (deltaBase.equals(have)) {
+            for (RevCommit c : range) {
+                unknownCommits.add(c.getId());
+            }
+        } else {
+            Iterator<RevObject> unknown = PostOrderIterator.rangeOfCommits(want, deltaBase,
+                    database, deduplicator);
+            while (unknown.hasNext()) {
+                unknownCommits.add(unknown.next().getId());
+            }
+            deduplicator.reset();
+        }
+
+        for (RevCommit commit : range) {
+            if (commit.getParentIds().isEmpty()) {
+                continue;
+            }
+            final ObjectId parentId = commit.getParentIds().get(0);
+            final RevCommit parent = database.getIfPresent(parentId, RevCommit.class);
+            if (parent == null) {
+                // shallow history
+                continue;
+            }
+            final boolean known = !unknownCommits.contains(parentId);
+            RevTree left = getTree(parent.getTreeId());
+            RevTree right = getTree(commit.getTreeId());
+            new PreOrderDiffWalk(left, right, database, database)
+                    .walk(new PreOrderDiffWalk.Consumer() {
+
+                        @Override
+                        public boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+                            if (left != null && right != null) {
+                                featureBases.put(right.objectId(), left.objectId());
+                                if (known) {
+                                    knownBases.add(left.objectId());
+                                }
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+                            return true;
+                        }
+
+                        @Override
+                        public void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+                        }
+
+                        @Override
+                        public boolean bucket(NodeRef leftParent, NodeRef rightParent,
+                                BucketIndex bucketIndex, @Nullable Bucket left,
+                                @Nullable Bucket right) {
+                            return true;
+                        }
+
+                        @Override
+                        public void endBucket(NodeRef leftParent, NodeRef rightParent,
+                                BucketIndex bucketIndex, @Nullable Bucket left,
+                                @Nullable Bucket right) {
+                        }
+                    });
+        }
+    }
+
+    private RevTree getTree(ObjectId treeId) {
+        return RevTree.EMPTY_TREE_ID.equals(treeId) ? RevTree.EMPTY : database.getTree(treeId);
+    }
+
+    /**
+     * @return the delta encoded version of {@code feature} if the receiving end is known to have
+     *         its previous version and the delta is worth it, {@code feature} itself otherwise
+     */
+    private RevObject deltaEncode(RevFeature feature, Map<ObjectId, ObjectId> featureBases,
+            Set<ObjectId> knownBases, Map<ObjectId, RevFeature> window) {
+
+        final ObjectId baseId = featureBases.get(feature.getId());
+        RevFeature base = null;
+        if (baseId != null) {
+            base = window.get(baseId);
+            if (base == null && knownBases.contains(baseId)) {
+                base = database.getIfPresent(baseId, RevFeature.class);
+            }
+        }
+        window.put(feature.getId(), feature);
+        FeatureDelta delta = base == null ? null : FeatureDelta.of(base, feature);
+        return delta == null ? feature : delta;
+    }
+
+    /**
+     * @return a map that keeps the last {@link #DELTA_WINDOW_SIZE} features put in it, which
+     *         behaves the same on both ends of a pack as long as the features are put in the order
+     *         they're written/read
+     */
+    @SuppressWarnings("serial")
+    private static Map<ObjectId, RevFeature> newDeltaWindow() {
+        return new LinkedHashMap<ObjectId, RevFeature>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, RevFeature> eldest) {
+                return size() > DELTA_WINDOW_SIZE;
+            }
+        };
+    }
+
     /**
      * Find commits which should be previsited to avoid resending objects that are already on the
      * receiving end. A commit should be previsited if:
@@ -231,13 +427,43 @@ public final class BinaryPackedObjects {
         return new IngestResults(countingListener.inserted(), countingListener.found());
     }
 
-    private Iterator<RevObject> streamToObjects(final InputStream in) {
+    /**
+     * Decodes the objects in the input stream lazily, without saving them to the database, for
+     * callers that need to control how they're ingested.
+     * 
+     * @return an iterator over the objects in the stream, in the order they were written
+     */
+    public Iterator<RevObject> read(final InputStream in) {
+        return streamToObjects(in);
+    }
+
+    private Iterator<RevObject> streamToObjects(final InputStream stream) {
+        final PushbackInputStream in = new PushbackInputStream(stream, DELTA_HEADER.length);
+        final Map<ObjectId, RevFeature> window = newDeltaWindow();
+        final Function<ObjectId, RevFeature> deltaBases = new Function<ObjectId, RevFeature>() {
+            @Override
+            public RevFeature apply(ObjectId baseId) {
+                RevFeature base = window.get(baseId);
+                if (base == null) {
+                    base = database.getIfPresent(baseId, RevFeature.class);
+                }
+                return base;
+            }
+        };
         return new AbstractIterator<RevObject>() {
             @Override
             protected RevObject computeNext() {
                 try {
                     ObjectId id = readObjectId(in);
-                    RevObject revObj = marshaller.read(id, in);
+                    RevObject revObj;
+                    if (readDeltaHeader(in)) {
+                        revObj = FeatureDelta.read(id, new DataInputStream(in), deltaBases);
+                    } else {
+                        revObj = marshaller.read(id, in);
+                    }
+                    if (revObj instanceof RevFeature) {
+                        window.put(id, (RevFeature) revObj);
+                    }
                     return revObj;
                 } catch (EOFException eof) {
                     return endOfData();
@@ -249,6 +475,32 @@ public final class BinaryPackedObjects {
         };
     }
 
+    /**
+     * Consumes the {@link FeatureDelta#HEADER delta header} if it's next in the stream, otherwise
+     * leaves the stream as it was.
+     * 
+     * @return whether the next object is a delta encoded feature
+     */
+    private static boolean readDeltaHeader(PushbackInputStream in) throws IOException {
+        byte[] read = new byte[DELTA_HEADER.length];
+        int count = 0;
+        while (count < DELTA_HEADER.length) {
+            int b = in.read();
+            if (b == -1) {
+                break;
+            }
+            read[count++] = (byte) b;
+            if (b != DELTA_HEADER[count - 1]) {
+                break;
+            }
+        }
+        if (count == DELTA_HEADER.length && read[count - 1] == DELTA_HEADER[count - 1]) {
+            return true;
+        }
+        in.unread(read, 0, count);
+        return false;
+    }
+
     private ObjectId readObjectId(final InputStream in) throws IOException {
         final int len = ObjectId.NUM_BYTES;
         byte[] rawBytes = new byte[len];
@@ -9,10 +9,15 @@
  */
 package org.locationtech.geogig.remote;
 
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import org.locationtech.geogig.api.ObjectId;
@@ -22,16 +27,30 @@ import com.google.common.collect.ImmutableList;
 /**
  * Provides a method of traversing the commit graph with overridable functions to determine when to
  * prune the traversal, and when to process a commit node.
+ * <p>
+ * The traversal keeps its state in hashed structures, so that it runs in time proportional to the
+ * number of commits traversed; the resulting {@link #commits} and {@link #have} lists are filled
+ * in once the traversal is finished.
  */
 abstract class CommitTraverser {
 
-    private Queue<CommitNode> commitQueue;
+    /**
+     * The commits pending to be visited, keyed by commit id, in the order they'll be visited
+     */
+    private LinkedHashMap<ObjectId, CommitNode> commitQueue;
+
+    /**
+     * The commits applied so far, in the order they'll end up in {@link #commits}
+     */
+    private LinkedHashSet<ObjectId> applied;
+
+    private Set<ObjectId> haveSet;
 
     public Stack<ObjectId> commits;
 
     public List<ObjectId> have;
 
-    private Hashtable<ObjectId, ImmutableList<ObjectId>> commitParents;
+    private Map<ObjectId, ImmutableList<ObjectId>> commitParents;
 
     /**
      * Traversal node that stores information about the ObjectId of the commit and it's depth from
@@ -104,7 +123,9 @@ abstract class CommitTraverser {
     public CommitTraverser() {
         commits = new Stack<ObjectId>();
         have = new LinkedList<ObjectId>();
-        commitParents = new Hashtable<ObjectId, ImmutableList<ObjectId>>();
+        applied = new LinkedHashSet<ObjectId>();
+        haveSet = new HashSet<ObjectId>();
+        commitParents = new HashMap<ObjectId, ImmutableList<ObjectId>>();
     }
 
     /**
@@ -122,11 +143,9 @@ abstract class CommitTraverser {
      * @param commitNode the commit to apply
      */
     protected void apply(CommitNode commitNode, ImmutableList<ObjectId> parents) {
-        if (commits.contains(commitNode.getObjectId())) {
-            commits.remove(commitNode.getObjectId());
-        }
-
-        commits.add(commitNode.getObjectId());
+        // a commit reached again through a longer path moves to the end
+        applied.remove(commitNode.getObjectId());
+        applied.add(commitNode.getObjectId());
     }
 
     /**
@@ -135,10 +154,16 @@ abstract class CommitTraverser {
      * @param startPoint the commit to start traversing from.
      */
     public final void traverse(ObjectId startPoint) {
-        this.commitQueue = new LinkedList<CommitNode>();
-        commitQueue.add(new CommitNode(startPoint, 1));
+        this.commitQueue = new LinkedHashMap<ObjectId, CommitNode>();
+        applied.clear();
+        applied.addAll(commits);
+        haveSet.clear();
+        haveSet.addAll(have);
+        commitQueue.put(startPoint, new CommitNode(startPoint, 1));
         while (!commitQueue.isEmpty()) {
-            CommitNode node = commitQueue.remove();
+            Iterator<CommitNode> head = commitQueue.values().iterator();
+            CommitNode node = head.next();
+            head.remove();
             Evaluation evaluation = evaluate(node);
             ImmutableList<ObjectId> parents;
             switch (evaluation) {
@@ -152,19 +177,25 @@ abstract class CommitTraverser {
                 addParents(node, parents);
                 break;
             case EXCLUDE_AND_PRUNE:
-                if (existsInDestination(node.getObjectId()) && !have.contains(node.getObjectId())) {
+                if (!haveSet.contains(node.getObjectId())
+                        && existsInDestination(node.getObjectId())) {
+                    haveSet.add(node.getObjectId());
                     have.add(node.getObjectId());
                 }
                 break;
             case EXCLUDE_AND_CONTINUE:
                 parents = getParents(node.getObjectId());
                 addParents(node, parents);
-                if (existsInDestination(node.getObjectId()) && !have.contains(node.getObjectId())) {
+                if (!haveSet.contains(node.getObjectId())
+                        && existsInDestination(node.getObjectId())) {
+                    haveSet.add(node.getObjectId());
                     have.add(node.getObjectId());
                 }
                 break;
             }
         }
+        commits.clear();
+        commits.addAll(applied);
         commitParents.clear();
     }
 
@@ -176,10 +207,9 @@ abstract class CommitTraverser {
     private void addParents(CommitNode commitNode, ImmutableList<ObjectId> parents) {
         for (ObjectId parent : parents) {
             CommitNode parentNode = new CommitNode(parent, commitNode.getDepth() + 1);
-            if (commitQueue.contains(parentNode)) {
-                commitQueue.remove(parentNode);
-            }
-            commitQueue.add(parentNode);
+            // move it to the end of the queue if it was already there
+            commitQueue.remove(parent);
+            commitQueue.put(parent, parentNode);
         }
     }
 
@@ -0,0 +1,329 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV1.readObjectId;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV1.readValue;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV1.writeHeader;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV1.writeValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.storage.datastream.Varint;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFilter;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * A {@link RevFeature} encoded as the differences against another version of it, as sent by
+ * {@link BinaryPackedObjects} in place of the full feature when delta encoding is enabled.
+ * <p>
+ * The delta is encoded attribute by attribute: unchanged attributes are not sent at all, and
+ * geometries with the same structure as the base geometry (i.e. same geometry types and number of
+ * points in each component) are sent as the list of changed coordinates. Any other attribute is
+ * sent in full.
+ * <p>
+ * The receiving end {@link #read reconstructs} the feature out of the base version and verifies
+ * the resulting object id matches the one sent.
+ */
+class FeatureDelta implements RevObject {
+
+    /**
+     * The header that identifies a delta encoded feature in a pack, in place of the
+     * {@code "feature"} header of a full one
+     */
+    static final String HEADER = "featuredelta";
+
+    private static final byte UNCHANGED = 0;
+
+    private static final byte VALUE = 1;
+
+    private static final byte COORDINATES = 2;
+
+    private final RevFeature base;
+
+    private final RevFeature feature;
+
+    private FeatureDelta(RevFeature base, RevFeature feature) {
+        this.base = base;
+        this.feature = feature;
+    }
+
+    /**
+     * @return the delta of {@code feature} against {@code base}, or {@code null} if the delta
+     *         wouldn't be smaller than the feature itself (i.e. all the attributes changed)
+     */
+    @Nullable
+    static FeatureDelta of(RevFeature base, RevFeature feature) {
+        checkNotNull(base);
+        checkNotNull(feature);
+        ImmutableList<Optional<Object>> baseValues = base.getValues();
+        ImmutableList<Optional<Object>> values = feature.getValues();
+        for (int i = 0; i < values.size() && i < baseValues.size(); i++) {
+            Optional<Object> value = values.get(i);
+            Optional<Object> baseValue = baseValues.get(i);
+            if (value.equals(baseValue)) {
+                return new FeatureDelta(base, feature);
+            }
+            if (value.orNull() instanceof Geometry && baseValue.orNull() instanceof Geometry) {
+                Geometry baseGeom = (Geometry) baseValue.get();
+                if (coordinateChanges(baseGeom, (Geometry) value.get()) != null) {
+                    return new FeatureDelta(base, feature);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public TYPE getType() {
+        return TYPE.FEATURE;
+    }
+
+    @Override
+    public ObjectId getId() {
+        return feature.getId();
+    }
+
+    RevFeature getFeature() {
+        return feature;
+    }
+
+    /**
+     * Writes the delta encoded feature, header included, to {@code out}
+     */
+    void write(OutputStream out) throws IOException {
+        DataOutput data = new DataOutputStream(out);
+        writeHeader(data, HEADER);
+        data.write(base.getId().getRawValue());
+
+        ImmutableList<Optional<Object>> baseValues = base.getValues();
+        ImmutableList<Optional<Object>> values = feature.getValues();
+        data.writeInt(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Optional<Object> value = values.get(i);
+            Optional<Object> baseValue = i < baseValues.size() ? baseValues.get(i) : null;
+            if (value.equals(baseValue)) {
+                data.writeByte(UNCHANGED);
+                continue;
+            }
+            List<IndexedCoordinate> changes = null;
+            if (baseValue != null && value.orNull() instanceof Geometry
+                    && baseValue.orNull() instanceof Geometry) {
+                changes = coordinateChanges((Geometry) baseValue.get(), (Geometry) value.get());
+            }
+            if (changes == null) {
+                data.writeByte(VALUE);
+                writeValue(value, data);
+            } else {
+                data.writeByte(COORDINATES);
+                writeCoordinates(changes, data);
+            }
+        }
+    }
+
+    /**
+     * Reads a delta encoded feature whose header has already been consumed, and reconstructs it
+     * out of the base feature provided by {@code bases}.
+     *
+     * @throws IllegalStateException if the base feature is not available or the reconstructed
+     *         feature doesn't hash out to {@code id}
+     */
+    static RevFeature read(ObjectId id, DataInput in, Function<ObjectId, RevFeature> bases)
+            throws IOException {
+        final ObjectId baseId = readObjectId(in);
+        final RevFeature base = bases.apply(baseId);
+        if (base == null) {
+            throw new IllegalStateException(String.format(
+                    "Base feature %s of delta encoded feature %s not found", baseId, id));
+        }
+        final ImmutableList<Optional<Object>> baseValues = base.getValues();
+        final int count = in.readInt();
+        ImmutableList.Builder<Optional<Object>> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            final byte op = in.readByte();
+            switch (op) {
+            case UNCHANGED:
+                builder.add(baseValues.get(i));
+                break;
+            case VALUE:
+                builder.add(readValue(in));
+                break;
+            case COORDINATES:
+                Geometry geom = (Geometry) ((Geometry) baseValues.get(i).get()).clone();
+                applyCoordinates(readCoordinates(in), geom);
+                builder.add(Optional.<Object> of(geom));
+                break;
+            default:
+                throw new IllegalStateException("Unknown delta operation " + op + " for "
+                        + id);
+            }
+        }
+        RevFeature feature = RevFeatureImpl.build(builder.build());
+        if (!id.equals(feature.getId())) {
+            throw new IllegalStateException(String.format(
+                    "Delta encoded feature %s reconstructed from %s hashes out to %s", id, baseId,
+                    feature.getId()));
+        }
+        return feature;
+    }
+
+    /**
+     * @return the coordinates of {@code geom} that differ from the ones in {@code base} along with
+     *         their indexes, or {@code null} if the geometries don't have the same structure or
+     *         most coordinates changed
+     */
+    @Nullable
+    private static List<IndexedCoordinate> coordinateChanges(Geometry base, Geometry geom) {
+        if (!sameStructure(base, geom)) {
+            return null;
+        }
+        Coordinate[] baseCoords = base.getCoordinates();
+        Coordinate[] coords = geom.getCoordinates();
+        List<IndexedCoordinate> changes = new ArrayList<IndexedCoordinate>();
+        for (int i = 0; i < coords.length; i++) {
+            Coordinate c = coords[i];
+            Coordinate b = baseCoords[i];
+            if (Double.compare(c.x, b.x) != 0 || Double.compare(c.y, b.y) != 0
+                    || Double.compare(c.z, b.z) != 0) {
+                changes.add(new IndexedCoordinate(i, c));
+                if (2 * changes.size() > coords.length) {
+                    return null;
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static boolean sameStructure(Geometry g1, Geometry g2) {
+        if (!g1.getGeometryType().equals(g2.getGeometryType())
+                || g1.getNumPoints() != g2.getNumPoints()
+                || g1.getNumGeometries() != g2.getNumGeometries()) {
+            return false;
+        }
+        if (g1 instanceof GeometryCollection) {
+            for (int i = 0; i < g1.getNumGeometries(); i++) {
+                if (!sameStructure(g1.getGeometryN(i), g2.getGeometryN(i))) {
+                    return false;
+                }
+            }
+        } else if (g1 instanceof Polygon) {
+            Polygon p1 = (Polygon) g1;
+            Polygon p2 = (Polygon) g2;
+            if (p1.getNumInteriorRing() != p2.getNumInteriorRing()) {
+                return false;
+            }
+            for (int i = 0; i < p1.getNumInteriorRing(); i++) {
+                if (p1.getInteriorRingN(i).getNumPoints() != p2.getInteriorRingN(i)
+                        .getNumPoints()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void writeCoordinates(List<IndexedCoordinate> changes, DataOutput data)
+            throws IOException {
+        Varint.writeUnsignedVarInt(changes.size(), data);
+        int previous = 0;
+        for (IndexedCoordinate c : changes) {
+            int index = c.index;
+            Varint.writeUnsignedVarInt(index - previous, data);
+            previous = index;
+            data.writeDouble(c.x);
+            data.writeDouble(c.y);
+            data.writeDouble(c.z);
+        }
+    }
+
+    private static List<IndexedCoordinate> readCoordinates(DataInput in) throws IOException {
+        final int size = Varint.readUnsignedVarInt(in);
+        List<IndexedCoordinate> changes = new ArrayList<IndexedCoordinate>(size);
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            index += Varint.readUnsignedVarInt(in);
+            double x = in.readDouble();
+            double y = in.readDouble();
+            double z = in.readDouble();
+            changes.add(new IndexedCoordinate(index, new Coordinate(x, y, z)));
+        }
+        return changes;
+    }
+
+    /**
+     * Applies the coordinate changes to {@code geom}, visiting its coordinates in the same order
+     * as {@link Geometry#getCoordinates()}
+     */
+    private static void applyCoordinates(final List<IndexedCoordinate> changes, Geometry geom) {
+        geom.apply(new CoordinateSequenceFilter() {
+
+            private int index;
+
+            private int next;
+
+            @Override
+            public void filter(CoordinateSequence seq, int i) {
+                if (next < changes.size() && changes.get(next).index == index) {
+                    IndexedCoordinate c = changes.get(next);
+                    seq.setOrdinate(i, CoordinateSequence.X, c.x);
+                    seq.setOrdinate(i, CoordinateSequence.Y, c.y);
+                    if (seq.getDimension() > 2) {
+                        seq.setOrdinate(i, CoordinateSequence.Z, c.z);
+                    }
+                    next++;
+                }
+                index++;
+            }
+
+            @Override
+            public boolean isDone() {
+                return next == changes.size();
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+    }
+
+    @SuppressWarnings("serial")
+    private static class IndexedCoordinate extends Coordinate {
+
+        private final int index;
+
+        IndexedCoordinate(int index, Coordinate c) {
+            super(c);
+            this.index = index;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureDelta[" + feature.getId() + " from " + base.getId() + "]";
+    }
+}
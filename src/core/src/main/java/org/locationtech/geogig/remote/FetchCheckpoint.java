@@ -0,0 +1,243 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.storage.Blobs;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps track, in the repository's {@link BlobStore}, of the commits requested by an ongoing fetch
+ * and of how many of them have been fully ingested, so that an interrupted fetch can be resumed
+ * instead of started over.
+ * <p>
+ * Commits are requested oldest first and the objects of each commit are received before the
+ * commit itself, so a commit is complete (i.e. all the objects it references are in the local
+ * repository) once it and all the commits requested before it have been received. The checkpoint
+ * is hence the list of requested commits, saved once per fetch, plus the number of leading commits
+ * in that list that are complete, saved as it grows.
+ * <p>
+ * Requested commits that are not complete may nonetheless have been saved to the local
+ * repository, and must not be taken as already present by the next fetch, see
+ * {@link #incomplete()}. The ones received during the current fetch are kept until they are
+ * complete, across as many requests as it takes to fill the gaps before them.
+ * <p>
+ * Each remote has its own checkpoint, keyed by its URL, so that fetching from another remote
+ * doesn't discard the progress of an interrupted fetch.
+ */
+class FetchCheckpoint {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FetchCheckpoint.class);
+
+    private static final String FETCH_FOLDER_PREFIX = "fetch/";
+
+    private final Repository repository;
+
+    private final String pendingKey;
+
+    private final String completeKey;
+
+    private List<ObjectId> pending;
+
+    private Map<ObjectId, Integer> indexes;
+
+    private BitSet received;
+
+    /**
+     * The received commits and tags that are not complete yet
+     */
+    private Map<ObjectId, RevObject> receivedObjects;
+
+    private int complete;
+
+    private int saved;
+
+    private FetchCheckpoint(Repository repository, String remote, List<ObjectId> pending,
+            int complete) {
+        this.repository = repository;
+        this.pendingKey = pendingKey(remote);
+        this.completeKey = completeKey(remote);
+        this.pending = pending;
+        this.complete = complete;
+        this.saved = complete;
+        this.indexes = Maps.newHashMap();
+        this.received = new BitSet();
+        this.receivedObjects = Maps.newHashMap();
+    }
+
+    /**
+     * @return the key of the blob holding the commits requested from {@code remote}
+     */
+    static String pendingKey(String remote) {
+        return FETCH_FOLDER_PREFIX + ObjectId.forString(remote) + "/pending";
+    }
+
+    /**
+     * @return the key of the blob holding how many of the commits requested from {@code remote}
+     *         are complete
+     */
+    static String completeKey(String remote) {
+        return FETCH_FOLDER_PREFIX + ObjectId.forString(remote) + "/complete";
+    }
+
+    /**
+     * Loads the checkpoint left by a previous fetch from {@code remote}, if any.
+     * <p>
+     * As a cheap verification of the saved state, the last complete commit must exist in the
+     * repository along with its root tree, otherwise none of the commits are taken as complete.
+     * 
+     * @param remote the URL of the remote repository
+     */
+    static FetchCheckpoint load(Repository repository, String remote) {
+        final BlobStore blobs = repository.blobStore();
+        List<ObjectId> pending = new ArrayList<ObjectId>();
+        for (String line : Blobs.readLines(blobs, pendingKey(remote))) {
+            if (!line.isEmpty()) {
+                pending.add(ObjectId.valueOf(line));
+            }
+        }
+        int complete = 0;
+        Optional<String> count = Blobs.getBlobAsString(blobs, completeKey(remote));
+        if (count.isPresent()) {
+            complete = Math.min(pending.size(), Integer.parseInt(count.get().trim()));
+        }
+        if (complete > 0 && !verify(repository.objectDatabase(), pending.get(complete - 1))) {
+            LOGGER.warn("Fetch checkpoint at {} is not consistent, all {} commits of the "
+                    + "interrupted fetch will be requested again", pending.get(complete - 1),
+                    pending.size());
+            complete = 0;
+        }
+        if (!pending.isEmpty()) {
+            LOGGER.info("Resuming interrupted fetch, {} of {} commits were completely fetched",
+                    complete, pending.size());
+        }
+        return new FetchCheckpoint(repository, remote, pending, complete);
+    }
+
+    private static boolean verify(ObjectDatabase db, ObjectId id) {
+        RevObject object = db.getIfPresent(id);
+        if (object instanceof RevCommit) {
+            return db.exists(((RevCommit) object).getTreeId());
+        }
+        return object != null;
+    }
+
+    /**
+     * @return the commits requested by the previous fetch that are not known to be complete, and
+     *         hence shall be requested again even if they exist in the repository
+     */
+    Set<ObjectId> incomplete() {
+        return ImmutableSet.copyOf(pending.subList(complete, pending.size()));
+    }
+
+    /**
+     * Starts tracking the fetch of {@code want}, sorted oldest first. Incomplete commits of the
+     * previous checkpoint that are not in {@code want} are kept as incomplete.
+     */
+    void start(List<ObjectId> want) {
+        Set<ObjectId> leftover = Sets.newLinkedHashSet(pending.subList(complete, pending.size()));
+        leftover.removeAll(want);
+
+        pending = ImmutableList.<ObjectId> builder().addAll(want).addAll(leftover).build();
+        indexes = Maps.newHashMap();
+        for (int i = 0; i < want.size(); i++) {
+            indexes.put(want.get(i), Integer.valueOf(i));
+        }
+        received = new BitSet(want.size());
+        receivedObjects = Maps.newHashMap();
+        complete = 0;
+
+        BlobStore blobs = repository.blobStore();
+        Blobs.putBlob(blobs, pendingKey, Joiner.on('\n').join(pending));
+        Blobs.putBlob(blobs, completeKey, "0");
+        saved = 0;
+    }
+
+    /**
+     * @return whether {@code id} is one of the commits requested by the current fetch
+     */
+    boolean isRequested(ObjectId id) {
+        return indexes.containsKey(id);
+    }
+
+    /**
+     * Marks a requested commit or tag as received, keeping it until it's complete, even if that
+     * takes more than one request to the remote.
+     *
+     * @return the commits and tags that became complete as a result, in the order they were
+     *         requested
+     */
+    List<RevObject> received(RevObject object) {
+        Integer index = indexes.get(object.getId());
+        if (index == null) {
+            return ImmutableList.of();
+        }
+        received.set(index.intValue());
+        receivedObjects.put(object.getId(), object);
+        List<RevObject> completed = new ArrayList<RevObject>();
+        while (complete < indexes.size() && received.get(complete)) {
+            RevObject completedObject = receivedObjects.remove(pending.get(complete));
+            Preconditions.checkState(completedObject != null,
+                    "Commit %s was marked as received but is not known", pending.get(complete));
+            completed.add(completedObject);
+            complete++;
+        }
+        return completed;
+    }
+
+    /**
+     * Saves the number of complete commits, if it changed since it was last saved.
+     */
+    void save() {
+        if (complete != saved) {
+            Blobs.putBlob(repository.blobStore(), completeKey, String.valueOf(complete));
+            saved = complete;
+        }
+    }
+
+    /**
+     * Called once all the requested commits are complete, removes the checkpoint unless there are
+     * incomplete commits left over from a previous fetch.
+     */
+    void finish() {
+        BlobStore blobs = repository.blobStore();
+        List<ObjectId> leftover = pending.subList(complete, pending.size());
+        if (leftover.isEmpty()) {
+            blobs.removeBlob(pendingKey);
+            blobs.removeBlob(completeKey);
+        } else {
+            Blobs.putBlob(blobs, pendingKey, Joiner.on('\n').join(leftover));
+            Blobs.putBlob(blobs, completeKey, "0");
+        }
+        pending = ImmutableList.copyOf(leftover);
+        indexes = Maps.newHashMap();
+        received = new BitSet();
+        receivedObjects = Maps.newHashMap();
+        complete = 0;
+        saved = 0;
+    }
+}
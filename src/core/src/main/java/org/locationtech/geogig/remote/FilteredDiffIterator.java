@@ -9,26 +9,45 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.Bounded;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RepositoryFilter;
+import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevObject.TYPE;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.Consumer;
 import org.locationtech.geogig.repository.Repository;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * An implementation of a {@link DiffEntry} iterator that filters entries based on a provided
  * {@link RepositoryFilter}.
+ * <p>
+ * The objects of the entries are fetched from the source repository in batches of
+ * {@link #BATCH_SIZE} entries, and feature types are only fetched once.
  */
 public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
 
+    private static final int BATCH_SIZE = 1000;
+
     protected boolean filtered = false;
 
     private Iterator<DiffEntry> source;
@@ -37,8 +56,20 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
 
     private RepositoryFilter repoFilter;
 
+    /**
+     * Set when the diff walk skips a pair of trees, buckets or features out of bounds, from the
+     * walk's worker threads
+     */
+    private final AtomicBoolean pruned = new AtomicBoolean();
+
+    private Iterator<DiffEntry> batch = Iterators.emptyIterator();
+
+    private Map<ObjectId, RevObject> batchObjects = new HashMap<ObjectId, RevObject>();
+
+    private Map<ObjectId, RevObject> featureTypes = new HashMap<ObjectId, RevObject>();
+
     public final boolean wasFiltered() {
-        return filtered;
+        return filtered || pruned.get();
     }
 
     /**
@@ -56,12 +87,47 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
         filtered = false;
     }
 
+    /**
+     * Constructs a new {@code FilteredDiffIterator} over the changes introduced by {@code commit}
+     * against its first parent.
+     * <p>
+     * If the filter is spatially bounded, the trees and buckets that lie entirely out of its
+     * bounds and out of {@code trackedBounds} are skipped while walking the diff, instead of
+     * fetching and evaluating every feature in them.
+     * 
+     * @param commit the commit to get the changes of
+     * @param sourceRepo the repository where the commit and its objects are stored
+     * @param repoFilter the filter to use
+     * @param trackedBounds the bounds of the features the sparse repository may be tracking, or
+     *        {@link Optional#absent()} if unknown, in which case no tree is skipped
+     */
+    public FilteredDiffIterator(RevCommit commit, Repository sourceRepo,
+            RepositoryFilter repoFilter, Optional<Envelope> trackedBounds) {
+        this(null, sourceRepo, repoFilter);
+        ObjectId parent = ObjectId.NULL;
+        if (commit.getParentIds().size() > 0) {
+            parent = commit.getParentIds().get(0);
+        }
+        DiffTree diff = sourceRepo.command(DiffTree.class).setOldVersion(parent.toString())
+                .setNewVersion(commit.getId().toString()).setReportTrees(true);
+
+        Optional<Envelope> filterBounds = repoFilter.getBounds();
+        if (filterBounds.isPresent() && trackedBounds.isPresent()) {
+            Envelope bounds = new Envelope(filterBounds.get());
+            bounds.expandToInclude(trackedBounds.get());
+            final InBounds inBounds = new InBounds(bounds);
+            diff.setCustomFilteringConsumer((consumer) -> new SpatialPruning(consumer, inBounds,
+                    pruned));
+        }
+        this.source = diff.call();
+    }
+
     /**
      * Compute the next {@link DiffEntry} that matches our {@link RepositoryFilter}.
      */
     protected DiffEntry computeNext() {
-        while (source.hasNext()) {
-            DiffEntry input = source.next();
+        while (batch.hasNext() || nextBatch()) {
+            DiffEntry input = batch.next();
 
             // HACK: ignore diff entries reporting a change to a tree, the feature changes will come
             // next and the new tree is built from them. I'm not totally sure this is the best way
@@ -77,16 +143,8 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
                 newObject = input.getNewObject();
                 if (newObject != null) {
                     // we are tracking this object, but we still need to process the new object
-                    RevObject object = sourceRepo.command(RevObjectParse.class)
-                            .setObjectId(newObject.getNode().getObjectId()).call().get();
-
-                    RevObject metadata = null;
-                    if (newObject.getMetadataId() != ObjectId.NULL) {
-                        metadata = sourceRepo.command(RevObjectParse.class)
-                                .setObjectId(newObject.getMetadataId()).call().get();
-                    }
-                    processObject(object);
-                    processObject(metadata);
+                    processObject(object(newObject.getNode().getObjectId()));
+                    processObject(metadata(newObject.getMetadataId()));
                 }
             } else {
                 newObject = filter(input.getNewObject());
@@ -102,17 +160,75 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
         return endOfData();
     }
 
+    /**
+     * Takes the next {@link #BATCH_SIZE} entries from the source and fetches all their objects
+     * and not yet known feature types at once.
+     * 
+     * @return {@code false} if the source has no more entries
+     */
+    private boolean nextBatch() {
+        batchObjects.clear();
+        if (!source.hasNext()) {
+            return false;
+        }
+        List<DiffEntry> entries = new ArrayList<DiffEntry>(BATCH_SIZE);
+        List<ObjectId> ids = new ArrayList<ObjectId>(2 * BATCH_SIZE);
+        while (entries.size() < BATCH_SIZE && source.hasNext()) {
+            DiffEntry entry = source.next();
+            entries.add(entry);
+            for (NodeRef node : new NodeRef[] { entry.getOldObject(), entry.getNewObject() }) {
+                if (node != null) {
+                    ids.add(node.getObjectId());
+                    ObjectId metadataId = node.getMetadataId();
+                    if (!metadataId.isNull() && !featureTypes.containsKey(metadataId)) {
+                        ids.add(metadataId);
+                    }
+                }
+            }
+        }
+        Iterator<RevObject> objects = sourceRepo.objectDatabase().getAll(ids);
+        while (objects.hasNext()) {
+            RevObject object = objects.next();
+            if (object.getType() == TYPE.FEATURETYPE) {
+                featureTypes.put(object.getId(), object);
+            } else {
+                batchObjects.put(object.getId(), object);
+            }
+        }
+        batch = entries.iterator();
+        return true;
+    }
+
+    private RevObject object(ObjectId id) {
+        RevObject object = batchObjects.get(id);
+        if (object == null) {
+            object = sourceRepo.objectDatabase().get(id);
+        }
+        return object;
+    }
+
+    @Nullable
+    private RevObject metadata(ObjectId metadataId) {
+        if (metadataId.isNull()) {
+            return null;
+        }
+        RevObject featureType = featureTypes.get(metadataId);
+        if (featureType == null) {
+            featureType = sourceRepo.objectDatabase().get(metadataId);
+            featureTypes.put(metadataId, featureType);
+        }
+        return featureType;
+    }
+
     private NodeRef filter(NodeRef node) {
         if (node == null) {
             return null;
         }
 
-        RevObject object = sourceRepo.objectDatabase().get(node.getObjectId());
+        RevObject object = object(node.getObjectId());
+
+        RevObject metadata = metadata(node.getMetadataId());
 
-        RevObject metadata = null;
-        if (!node.getMetadataId().isNull()) {
-            metadata = sourceRepo.objectDatabase().get(node.getMetadataId());
-        }
         if (node.getType() == TYPE.FEATURE) {
             if (trackingObject(object.getId())) {
                 // We are already tracking this object, continue to do so
@@ -152,4 +268,47 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
 
     }
 
+    /**
+     * Matches the trees, buckets and features that are not entirely out of the given bounds.
+     */
+    private static class InBounds implements Predicate<Bounded> {
+
+        private final Envelope bounds;
+
+        InBounds(Envelope bounds) {
+            this.bounds = new Envelope(bounds);
+            // node bounds are stored as floats, leave room for their rounding
+            double max = Math.max(Math.max(Math.abs(bounds.getMinX()), Math.abs(bounds.getMaxX())),
+                    Math.max(Math.abs(bounds.getMinY()), Math.abs(bounds.getMaxY())));
+            this.bounds.expandBy(Math.ulp((float) max));
+        }
+
+        @Override
+        public boolean apply(@Nullable Bounded input) {
+            return input != null && (!input.bounds().isPresent() || input.intersects(bounds));
+        }
+    }
+
+    /**
+     * Skips the pairs of trees, buckets and features of a diff that lie entirely out of the given
+     * bounds, flagging that the commit has changes that are filtered out if it skips any.
+     */
+    private static class SpatialPruning extends PreOrderDiffWalk.FilteringConsumer {
+
+        private final AtomicBoolean pruned;
+
+        SpatialPruning(Consumer delegate, InBounds inBounds, AtomicBoolean pruned) {
+            super(delegate, inBounds);
+            this.pruned = pruned;
+        }
+
+        @Override
+        protected boolean accept(@Nullable Bounded left, @Nullable Bounded right) {
+            boolean accept = super.accept(left, right);
+            if (!accept) {
+                pruned.set(true);
+            }
+            return accept;
+        }
+    }
 }
@@ -47,6 +47,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Provides a means of communicating between a local sparse clone and a remote http full repository.
@@ -105,14 +106,10 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         try {
             String expanded = repositoryURL.toString() + "/repo/manifest";
 
-            connection = (HttpURLConnection) new URL(expanded).openConnection();
-            connection.setRequestMethod("GET");
-
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
+            connection = HttpUtils.connect(expanded);
 
             // Get Response
-            InputStream is = connection.getInputStream();
+            InputStream is = HttpUtils.getResponseStream(connection);
             BufferedReader rd = new BufferedReader(new InputStreamReader(is));
             String line;
             try {
@@ -154,14 +151,10 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         try {
             String expanded = repositoryURL.toString() + "/repo/manifest";
 
-            connection = (HttpURLConnection) new URL(expanded).openConnection();
-            connection.setRequestMethod("GET");
-
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
+            connection = HttpUtils.connect(expanded);
 
             // Get Response
-            InputStream is = connection.getInputStream();
+            InputStream is = HttpUtils.getResponseStream(connection);
             try {
                 BufferedReader rd = new BufferedReader(new InputStreamReader(is));
                 String line;
@@ -223,7 +216,8 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
             }
         }
         // Get changes from commit, pass filter and my list of features
-        final JsonObject message = createFetchMessage(commit.getId(), tracked);
+        final JsonObject message = createFetchMessage(commit.getId(), tracked,
+                trackedBounds(commit));
         final URL resourceURL;
         try {
             resourceURL = new URL(repositoryURL.toString() + "/repo/filteredchanges");
@@ -236,7 +230,7 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         final OutputStream out;
         final Writer writer;
         try {
-            connection = (HttpURLConnection) resourceURL.openConnection();
+            connection = HttpUtils.openConnection(resourceURL.toString());
             connection.setDoOutput(true);
             connection.setDoInput(true);
             out = connection.getOutputStream();
@@ -247,19 +241,15 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
             throw Throwables.propagate(e);
         }
 
-        final InputStream in;
-        try {
-            in = connection.getInputStream();
-        } catch (IOException e) {
-            throw Throwables.propagate(e);
-        }
+        final InputStream in = HttpUtils.getResponseStream(connection);
 
         BinaryPackedChanges unpacker = new BinaryPackedChanges(localRepository);
 
         return new HttpFilteredDiffIterator(in, unpacker);
     }
 
-    private JsonObject createFetchMessage(ObjectId commitId, List<ObjectId> tracked) {
+    private JsonObject createFetchMessage(ObjectId commitId, List<ObjectId> tracked,
+            Envelope trackedBounds) {
         JsonObject message = new JsonObject();
         JsonArray trackedArray = new JsonArray();
         for (ObjectId id : tracked) {
@@ -267,6 +257,15 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         }
         message.add("commitId", new JsonPrimitive(commitId.toString()));
         message.add("tracked", trackedArray);
+        // lets the server skip the trees that can't hold tracked nor filtered features
+        JsonArray boundsArray = new JsonArray();
+        if (!trackedBounds.isNull()) {
+            boundsArray.add(new JsonPrimitive(trackedBounds.getMinX()));
+            boundsArray.add(new JsonPrimitive(trackedBounds.getMaxX()));
+            boundsArray.add(new JsonPrimitive(trackedBounds.getMinY()));
+            boundsArray.add(new JsonPrimitive(trackedBounds.getMaxY()));
+        }
+        message.add("trackedBounds", boundsArray);
         JsonArray filterArray = new JsonArray();
         ImmutableList<FilterDescription> repoFilters = filter.getFilterDescriptions();
         for (FilterDescription description : repoFilters) {
@@ -360,7 +359,7 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
             final HttpURLConnection connection;
             final OutputStream out;
             try {
-                connection = (HttpURLConnection) resourceURL.openConnection();
+                connection = HttpUtils.openConnection(resourceURL.toString());
                 connection.setDoOutput(true);
                 connection.setDoInput(true);
                 out = connection.getOutputStream();
@@ -383,7 +382,7 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
 
             final InputStream in;
             try {
-                in = connection.getInputStream();
+                in = HttpUtils.getResponseStream(connection);
                 BufferedReader rd = new BufferedReader(new InputStreamReader(in));
 
                 String line = rd.readLine();
@@ -20,12 +20,26 @@ import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.api.Ref;
@@ -34,9 +48,10 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.porcelain.ConfigGet;
 import org.locationtech.geogig.api.porcelain.SynchronizationException;
-import org.locationtech.geogig.remote.BinaryPackedObjects.IngestResults;
 import org.locationtech.geogig.remote.HttpUtils.ReportingOutputStream;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.DeduplicationService;
 import org.locationtech.geogig.storage.Deduplicator;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
@@ -46,11 +61,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -69,6 +88,16 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     /** Default limit in bytes for push to split the sent objects */
     private static final int DEFAULT_PUSH_BATCH_LIMIT = 4 * 1024 * 1024;
 
+    /** Default number of concurrent uploads for push */
+    private static final int DEFAULT_PUSH_THREADS = 4;
+
+    /** Default number of concurrent downloads for fetch */
+    private static final int DEFAULT_FETCH_THREADS = 4;
+
+    /** Marks the end of the objects of a fetch segment */
+    private static final List<RevObject> END_OF_SEGMENT = Collections
+            .unmodifiableList(new ArrayList<RevObject>(0));
+
     private URL repositoryURL;
 
     final private DeduplicationService deduplicationService;
@@ -193,20 +222,29 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     @Override
     public void fetchNewData(Ref ref, Optional<Integer> fetchLimit, ProgressListener progress) {
 
-        CommitTraverser traverser = getFetchTraverser(fetchLimit);
+        final FetchCheckpoint checkpoint = FetchCheckpoint.load(localRepository,
+                repositoryURL.toString());
+        CommitTraverser traverser = getFetchTraverser(fetchLimit, checkpoint.incomplete());
 
         try {
             progress.setDescription("Fetching objects from " + ref.getName());
             traverser.traverse(ref.getObjectId());
-            List<ObjectId> want = new LinkedList<ObjectId>();
-            want.addAll(traverser.commits);
-            Collections.reverse(want);
+            List<ObjectId> wanted = new ArrayList<ObjectId>(traverser.commits);
+            Collections.reverse(wanted);
+            Set<ObjectId> want = new LinkedHashSet<ObjectId>(wanted);
             Set<ObjectId> have = new HashSet<ObjectId>();
             have.addAll(traverser.have);
+            checkpoint.start(wanted);
             while (!want.isEmpty()) {
                 progress.setProgress(0);
-                fetchMoreData(want, have, progress);
+                final int pending = want.size();
+                fetchMoreData(want, have, checkpoint, progress);
+                if (want.size() == pending) {
+                    throw new IllegalStateException("Remote didn't send any of the "
+                            + pending + " requested commits");
+                }
             }
+            checkpoint.finish();
         } catch (Exception e) {
             Throwables.propagate(e);
         }
@@ -254,55 +292,83 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         endPush(nameToSet, ref.getObjectId(), originalRemoteRefValue.toString());
     }
 
+    /**
+     * Sends all the objects reachable from {@code toSend} and not from {@code roots} in a single
+     * pass: the objects to send are computed once and serialized into chunks of up to
+     * {@code push.chunk.limit} bytes, which are compressed and uploaded by up to
+     * {@code push.threads} concurrent requests while the next chunks are being prepared.
+     */
     private void sendPackedObjects(final List<ObjectId> toSend, final Set<ObjectId> roots,
             Deduplicator deduplicator, final ProgressListener progress) {
-        Set<ObjectId> sent = new HashSet<ObjectId>();
-        while (!toSend.isEmpty()) {
+        if (toSend.isEmpty()) {
+            return;
+        }
+        BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
+            @Override
+            public void callback(Supplier<RevObject> supplier) {
+                progress.setProgress(progress.getProgress() + 1);
+            }
+        };
+        ObjectStore database = localRepository.objectDatabase();
+        BinaryPackedObjects packer = new BinaryPackedObjects(database);
+
+        ImmutableList<ObjectId> have = ImmutableList.copyOf(roots);
+        final boolean traverseCommits = false;
+
+        Stopwatch sw = Stopwatch.createStarted();
+        ObjectSerializingFactory serializer = DataStreamSerializationFactoryV1.INSTANCE;
+        final int compressionLevel = HttpUtils.parseCompressionLevel(localRepository
+                .command(ConfigGet.class).setName("http.compression").call());
+        SendObjectsConnectionFactory outFactory = new SendObjectsConnectionFactory(repositoryURL,
+                compressionLevel);
+        final int pushBytesLimit = parsePushLimit();
+        final int pushThreads = parsePushThreads();
+        ObjectFunnel objectFunnel = ObjectFunnels.newParallelFunnel(outFactory, serializer,
+                pushBytesLimit, pushThreads);
+        try {
+            final long writtenObjectsCount;
             try {
-                BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
-                    @Override
-                    public void callback(Supplier<RevObject> supplier) {
-                        RevObject object = supplier.get();
-                        progress.setProgress(progress.getProgress() + 1);
-                        if (object instanceof RevCommit) {
-                            RevCommit commit = (RevCommit) object;
-                            toSend.remove(commit.getId());
-                            roots.removeAll(commit.getParentIds());
-                            roots.add(commit.getId());
-                        }
-                    }
-                };
-                ObjectStore database = localRepository.objectDatabase();
-                BinaryPackedObjects packer = new BinaryPackedObjects(database);
-
-                ImmutableList<ObjectId> have = ImmutableList.copyOf(roots);
-                final boolean traverseCommits = false;
-
-                Stopwatch sw = Stopwatch.createStarted();
-                ObjectSerializingFactory serializer = DataStreamSerializationFactoryV1.INSTANCE;
-                SendObjectsConnectionFactory outFactory;
-                ObjectFunnel objectFunnel;
-
-                outFactory = new SendObjectsConnectionFactory(repositoryURL);
-                int pushBytesLimit = parsePushLimit();
-                objectFunnel = ObjectFunnels.newFunnel(outFactory, serializer, pushBytesLimit);
-                final long writtenObjectsCount = packer.write(objectFunnel, toSend, have, sent,
-                        callback, traverseCommits, deduplicator);
+                writtenObjectsCount = packer.write(objectFunnel, toSend, have,
+                        new HashSet<ObjectId>(), callback, traverseCommits, deduplicator);
+            } finally {
                 objectFunnel.close();
-                sw.stop();
-
-                long compressedSize = outFactory.compressedSize;
-                long uncompressedSize = outFactory.uncompressedSize;
-                LOGGER.info(String.format("HttpRemoteRepo: Written %,d objects."
-                        + " Time to process: %s."
-                        + " Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
-                        writtenObjectsCount, sw, compressedSize, uncompressedSize));
-            } catch (IOException e) {
-                Throwables.propagate(e);
             }
+            sw.stop();
+
+            long compressedSize = outFactory.compressedSize.get();
+            long uncompressedSize = outFactory.uncompressedSize.get();
+            LOGGER.info(String.format("HttpRemoteRepo: Written %,d objects."
+                    + " Time to process: %s. Upload threads: %d."
+                    + " Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
+                    writtenObjectsCount, sw, pushThreads, compressedSize, uncompressedSize));
+            LOGGER.debug("HTTP transfers so far: {}", HttpUtils.stats());
+        } catch (IOException e) {
+            Throwables.propagate(e);
         }
     }
 
+    private int parsePushThreads() {
+        final String confKey = "push.threads";
+        Optional<String> configValue = localRepository.command(ConfigGet.class).setName(confKey)
+                .call();
+        int threads = DEFAULT_PUSH_THREADS;
+        if (configValue.isPresent()) {
+            try {
+                int tmpThreads = Integer.parseInt(configValue.get());
+                if (tmpThreads < 1) {
+                    LOGGER.warn("Value for {} must be at least 1 ({}). Using the default of {}",
+                            confKey, tmpThreads, threads);
+                } else {
+                    threads = tmpThreads;
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid config value for {}, using the default of {}", confKey,
+                        threads);
+            }
+        }
+        return threads;
+    }
+
     private int parsePushLimit() {
         final String confKey = "push.chunk.limit";
         Optional<String> configLimit = localRepository.command(ConfigGet.class).setName(confKey)
@@ -336,34 +402,40 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     private static class SendObjectsConnectionFactory implements Supplier<OutputStream> {
         private URL repositoryURL;
 
-        public SendObjectsConnectionFactory(URL repositoryURL) {
+        private final int compressionLevel;
+
+        public SendObjectsConnectionFactory(URL repositoryURL, int compressionLevel) {
             this.repositoryURL = repositoryURL;
+            this.compressionLevel = compressionLevel;
         }
 
-        private long compressedSize, uncompressedSize;
+        private final AtomicLong compressedSize = new AtomicLong(),
+                uncompressedSize = new AtomicLong();
 
         @Override
         public OutputStream get() {
             String expanded = repositoryURL.toString() + "/repo/sendobject";
             try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(expanded)
-                        .openConnection();
+                HttpURLConnection connection = HttpUtils.openConnection(expanded);
                 connection.setDoOutput(true);
                 connection.setDoInput(true);
-                connection.setUseCaches(false);
                 connection.setRequestMethod("POST");
                 connection.setChunkedStreamingMode(4096);
                 connection.setRequestProperty("content-length", "-1");
-                connection.setRequestProperty("content-encoding", "gzip");
+                if (compressionLevel != Deflater.NO_COMPRESSION) {
+                    connection.setRequestProperty("content-encoding", "gzip");
+                }
                 OutputStream out = connection.getOutputStream();
                 final ReportingOutputStream rout = HttpUtils.newReportingOutputStream(connection,
-                        out, true);
+                        out, compressionLevel);
                 return new FilterOutputStream(rout) {
                     @Override
                     public void close() throws IOException {
                         super.close();
-                        compressedSize += ((ReportingOutputStream) super.out).compressedSize();
-                        uncompressedSize += ((ReportingOutputStream) super.out).unCompressedSize();
+                        compressedSize.addAndGet(((ReportingOutputStream) super.out)
+                                .compressedSize());
+                        uncompressedSize.addAndGet(((ReportingOutputStream) super.out)
+                                .unCompressedSize());
                     }
                 };
             } catch (Exception e) {
@@ -392,79 +464,244 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     }
 
     /**
-     * Retrieve objects from the remote repository, and update have/want lists accordingly.
-     * Specifically, any retrieved commits are removed from the want list and added to the have
-     * list, and any parents of those commits are removed from the have list (it only represents the
-     * most recent common commits.) Retrieved objects are added to the local repository, and the
-     * want/have lists are updated in-place.
+     * Downloads the objects for the {@code want} commits.
+     * <p>
+     * The wanted commits are split in up to {@code fetch.threads} contiguous segments that are
+     * downloaded concurrently, each one in its own request. Each segment also declares the last
+     * commit of the previous segment as "have", so the remote doesn't send the contents already
+     * being sent by the previous segment. The download threads decode the objects and hand them in
+     * batches to the calling thread, which saves them to the object database.
+     * <p>
+     * {@code want} and {@code have} are updated as commits are completed, that is, once they and
+     * all the commits requested before them are received, so that the caller can request whatever
+     * is missing if a response ends prematurely. The completed commits are recorded in
+     * {@code checkpoint} so that an interrupted fetch can be resumed from them.
+     * <p>
+     * If {@code fetch.deltas} is enabled, the remote is asked to send modified features as deltas
+     * against their previous versions. Only the commits in {@code have} are declared as the base
+     * for those deltas, since the ones of the previous segments are still being downloaded.
      * 
      * @param want a list of ObjectIds that need to be fetched
      * @param have a list of ObjectIds that are in common with the remote repository
+     * @param checkpoint the checkpoint recording the completed commits
      * @param progress
      */
-    private void fetchMoreData(final List<ObjectId> want, final Set<ObjectId> have,
-            final ProgressListener progress) {
-        final JsonObject message = createFetchMessage(want, have);
-        final URL resourceURL;
+    private void fetchMoreData(final Set<ObjectId> want, final Set<ObjectId> have,
+            final FetchCheckpoint checkpoint, final ProgressListener progress) {
+
+        final List<List<ObjectId>> segments = split(want, parseFetchThreads());
+        final boolean deltas = parseFetchDeltas();
+        final ImmutableList<ObjectId> baseHave = ImmutableList.copyOf(have);
+        final int numSegments = segments.size();
+
+        final BlockingQueue<List<RevObject>> queue = new ArrayBlockingQueue<List<RevObject>>(
+                2 * numSegments);
+        final AtomicLong compressedSize = new AtomicLong(), uncompressedSize = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(numSegments,
+                new ThreadFactoryBuilder().setNameFormat("geogig-fetch-%d").setDaemon(true)
+                        .build());
+        List<Future<?>> downloads = Lists.newArrayListWithCapacity(numSegments);
+        Stopwatch sw = Stopwatch.createStarted();
+        CountingListener counts = BulkOpListener.newCountingListener();
         try {
-            resourceURL = new URL(repositoryURL.toString() + "/repo/batchobjects");
-        } catch (MalformedURLException e) {
-            throw Throwables.propagate(e);
+            for (int i = 0; i < numSegments; i++) {
+                List<ObjectId> segmentHave = baseHave;
+                if (i > 0) {
+                    List<ObjectId> previous = segments.get(i - 1);
+                    segmentHave = ImmutableList.<ObjectId> builder().addAll(baseHave)
+                            .add(previous.get(previous.size() - 1)).build();
+                }
+                JsonObject message = createFetchMessage(segments.get(i), segmentHave,
+                        deltas ? baseHave : null);
+                downloads.add(executor.submit(new SegmentDownload(message, queue,
+                        compressedSize, uncompressedSize)));
+            }
+
+            final ObjectStore database = localRepository.objectDatabase();
+            int finished = 0;
+            while (finished < numSegments) {
+                List<RevObject> batch = Uninterruptibles.takeUninterruptibly(queue);
+                if (batch == END_OF_SEGMENT) {
+                    finished++;
+                    continue;
+                }
+                database.putAll(batch.iterator(), counts);
+                for (RevObject object : batch) {
+                    if (!(object instanceof RevCommit || object instanceof RevTag)) {
+                        continue;
+                    }
+                    if (!checkpoint.isRequested(object.getId())) {
+                        fetched(object, want, have);
+                        continue;
+                    }
+                    // segments arrive out of order, a commit is only done once all the commits
+                    // requested before it are, otherwise its history may still be missing
+                    for (RevObject complete : checkpoint.received(object)) {
+                        fetched(complete, want, have);
+                    }
+                }
+                checkpoint.save();
+                progress.setProgress(progress.getProgress() + batch.size());
+            }
+            for (Future<?> download : downloads) {
+                Uninterruptibles.getUninterruptibly(download);
+            }
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+        sw.stop();
 
-        final HttpURLConnection connection;
-        try {
-            final Gson gson = new Gson();
-            OutputStream out;
-            final Writer writer;
-            connection = (HttpURLConnection) resourceURL.openConnection();
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.addRequestProperty("Accept-Encoding", "gzip");
-            out = connection.getOutputStream();
-            writer = new OutputStreamWriter(out);
-            gson.toJson(message, writer);
-            writer.flush();
-            out.flush();
-        } catch (IOException e) {
-            throw Throwables.propagate(e);
+        String msg = String
+                .format("Processed %,d objects in %d segments. Inserted: %,d. Existing: %,d. Time: %s. Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
+                        counts.inserted() + counts.found(), numSegments, counts.inserted(),
+                        counts.found(), sw, compressedSize.get(), uncompressedSize.get());
+        LOGGER.info(msg);
+        LOGGER.debug("HTTP transfers so far: {}", HttpUtils.stats());
+        progress.setDescription(msg);
+    }
+
+    /**
+     * Updates {@code want} and {@code have} once the commit or tag {@code object} and everything
+     * it references is in the local repository.
+     */
+    private static void fetched(RevObject object, Set<ObjectId> want, Set<ObjectId> have) {
+        Preconditions.checkState(object instanceof RevCommit || object instanceof RevTag,
+                "Expected a commit or tag, got %s", object);
+        if (object instanceof RevCommit) {
+            RevCommit commit = (RevCommit) object;
+            want.remove(commit.getId());
+            have.removeAll(commit.getParentIds());
+            have.add(commit.getId());
+        } else if (object instanceof RevTag) {
+            RevTag tag = (RevTag) object;
+            want.remove(tag.getId());
+            have.remove(tag.getCommitId());
+            have.add(tag.getId());
         }
+    }
 
-        final HttpUtils.ReportingInputStream in = HttpUtils.getResponseStream(connection);
+    /**
+     * Splits {@code list} in up to {@code maxSegments} contiguous segments of about the same size
+     */
+    private static List<List<ObjectId>> split(Collection<ObjectId> list, int maxSegments) {
+        final int numSegments = Math.max(1, Math.min(maxSegments, list.size()));
+        final int segmentSize = (list.size() + numSegments - 1) / numSegments;
+        return Lists.partition(ImmutableList.copyOf(list), Math.max(1, segmentSize));
+    }
 
-        BinaryPackedObjects unpacker = new BinaryPackedObjects(localRepository.objectDatabase());
-        BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
-            @Override
-            public void callback(Supplier<RevObject> supplier) {
-                RevObject object = supplier.get();
-                progress.setProgress(progress.getProgress() + 1);
-                if (object instanceof RevCommit) {
-                    RevCommit commit = (RevCommit) object;
-                    want.remove(commit.getId());
-                    have.removeAll(commit.getParentIds());
-                    have.add(commit.getId());
-                } else if (object instanceof RevTag) {
-                    RevTag tag = (RevTag) object;
-                    want.remove(tag.getId());
-                    have.remove(tag.getCommitId());
-                    have.add(tag.getId());
+    /**
+     * Downloads and decodes the objects for a single fetch request, handing them over to the
+     * ingesting thread in batches, followed by {@link #END_OF_SEGMENT}.
+     */
+    private class SegmentDownload implements Callable<Void> {
+
+        static final int BATCH_SIZE = 1000;
+
+        private final JsonObject message;
+
+        private final BlockingQueue<List<RevObject>> queue;
+
+        private final AtomicLong compressedSize, uncompressedSize;
+
+        SegmentDownload(JsonObject message, BlockingQueue<List<RevObject>> queue,
+                AtomicLong compressedSize, AtomicLong uncompressedSize) {
+            this.message = message;
+            this.queue = queue;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            try {
+                download();
+            } finally {
+                queue.put(END_OF_SEGMENT);
+            }
+            return null;
+        }
+
+        private void download() throws IOException, InterruptedException {
+            final HttpURLConnection connection = HttpUtils.openConnection(repositoryURL
+                    .toString() + "/repo/batchobjects");
+            try {
+                connection.setDoOutput(true);
+                connection.setDoInput(true);
+                OutputStream out = connection.getOutputStream();
+                Writer writer = new OutputStreamWriter(out);
+                new Gson().toJson(message, writer);
+                writer.flush();
+                out.flush();
+
+                final HttpUtils.ReportingInputStream in = HttpUtils
+                        .getResponseStream(connection);
+                try {
+                    BinaryPackedObjects unpacker = new BinaryPackedObjects(
+                            localRepository.objectDatabase());
+                    Iterator<RevObject> objects = unpacker.read(in);
+                    List<RevObject> batch = new ArrayList<RevObject>(BATCH_SIZE);
+                    while (objects.hasNext()) {
+                        batch.add(objects.next());
+                        if (batch.size() == BATCH_SIZE) {
+                            queue.put(batch);
+                            batch = new ArrayList<RevObject>(BATCH_SIZE);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        queue.put(batch);
+                    }
+                    compressedSize.addAndGet(in.compressedSize());
+                    uncompressedSize.addAndGet(in.unCompressedSize());
+                } finally {
+                    HttpUtils.consumeAndCloseStream(in);
                 }
+            } finally {
+                HttpUtils.consumeErrStreamAndCloseConnection(connection);
             }
-        };
+        }
+    }
 
-        Stopwatch sw = Stopwatch.createStarted();
-        IngestResults ingestResults = unpacker.ingest(in, callback);
-        sw.stop();
+    private int parseFetchThreads() {
+        final String confKey = "fetch.threads";
+        Optional<String> configValue = localRepository.command(ConfigGet.class).setName(confKey)
+                .call();
+        int threads = DEFAULT_FETCH_THREADS;
+        if (configValue.isPresent()) {
+            try {
+                int tmpThreads = Integer.parseInt(configValue.get());
+                if (tmpThreads < 1) {
+                    LOGGER.warn("Value for {} must be at least 1 ({}). Using the default of {}",
+                            confKey, tmpThreads, threads);
+                } else {
+                    threads = tmpThreads;
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid config value for {}, using the default of {}", confKey,
+                        threads);
+            }
+        }
+        return threads;
+    }
 
-        String msg = String
-                .format("Processed %,d objects. Inserted: %,d. Existing: %,d. Time: %s. Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
-                        ingestResults.total(), ingestResults.getInserted(),
-                        ingestResults.getExisting(), sw, in.compressedSize(), in.unCompressedSize());
-        LOGGER.info(msg);
-        progress.setDescription(msg);
+    /**
+     * Whether to ask the remote for delta encoded features, as configured by
+     * {@code fetch.deltas}. Remotes that don't support it just send the features in full.
+     */
+    private boolean parseFetchDeltas() {
+        Optional<String> configValue = localRepository.command(ConfigGet.class)
+                .setName("fetch.deltas").call();
+        return configValue.isPresent() && Boolean.parseBoolean(configValue.get());
     }
 
-    private JsonObject createFetchMessage(List<ObjectId> want, Set<ObjectId> have) {
+    /**
+     * @param deltaBase if not {@code null}, the commits whose contents are in the local
+     *        repository, so that the remote can send features as deltas against them
+     */
+    private JsonObject createFetchMessage(List<ObjectId> want, Iterable<ObjectId> have,
+            @Nullable Iterable<ObjectId> deltaBase) {
         JsonObject message = new JsonObject();
         JsonArray wantArray = new JsonArray();
         for (ObjectId id : want) {
@@ -476,6 +713,13 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         }
         message.add("want", wantArray);
         message.add("have", haveArray);
+        if (deltaBase != null) {
+            JsonArray deltaArray = new JsonArray();
+            for (ObjectId id : deltaBase) {
+                deltaArray.add(new JsonPrimitive(id.toString()));
+            }
+            message.add("deltas", deltaArray);
+        }
         return message;
     }
 
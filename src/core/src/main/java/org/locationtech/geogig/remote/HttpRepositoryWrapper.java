@@ -10,11 +10,13 @@
 package org.locationtech.geogig.remote;
 
 import java.net.URL;
+import java.util.List;
 
 import org.locationtech.geogig.api.ObjectId;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Provides an interface to make basic queries to a remote repository over http.
@@ -23,6 +25,8 @@ class HttpRepositoryWrapper implements RepositoryWrapper {
 
     private URL repositoryURL;
 
+    private boolean batchedQueries = true;
+
     /**
      * Constructs a new {@code HttpRepositoryWrapper} with the provided URL.
      * 
@@ -43,6 +47,32 @@ class HttpRepositoryWrapper implements RepositoryWrapper {
         return objectId.isNull() || HttpUtils.networkObjectExists(repositoryURL, objectId);
     }
 
+    /**
+     * Determines which of the provided objects exist in the repository with a single request,
+     * falling back to one request per object if the remote doesn't support batched queries.
+     * 
+     * @param objectIds the objects to look for
+     * @return the subset of {@code objectIds} that exist in the repository
+     */
+    @Override
+    public ImmutableSet<ObjectId> objectsExist(List<ObjectId> objectIds) {
+        if (batchedQueries && !objectIds.isEmpty()) {
+            Optional<ImmutableSet<ObjectId>> existing = HttpUtils.networkObjectsExist(
+                    repositoryURL, objectIds);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            batchedQueries = false;
+        }
+        ImmutableSet.Builder<ObjectId> existing = ImmutableSet.builder();
+        for (ObjectId id : objectIds) {
+            if (objectExists(id)) {
+                existing.add(id);
+            }
+        }
+        return existing.build();
+    }
+
     /**
      * Gets the parents of the specified commit from the repository.
      * 
@@ -16,11 +16,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -42,6 +48,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closeables;
 import com.google.common.io.CountingInputStream;
 import com.google.common.io.CountingOutputStream;
@@ -53,6 +60,10 @@ class HttpUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpUtils.class);
 
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final TransferStats STATS = new TransferStats();
+
     /**
      * Parse the provided ref string to a {@link Ref}. The input string should be in the following
      * format:
@@ -88,6 +99,11 @@ class HttpUtils {
 
     /**
      * Consumes the error stream of the provided connection and then closes it.
+     * <p>
+     * The connection is not {@link HttpURLConnection#disconnect() disconnected} unless consuming
+     * the error stream fails, so that once its response has been fully read the underlying socket
+     * goes back to the JVM's keep-alive cache and is reused by the next request to the same host
+     * (see the {@code http.keepAlive} and {@code http.maxConnections} system properties).
      * 
      * @param connection the connection to close
      */
@@ -99,9 +115,8 @@ class HttpUtils {
             InputStream es = ((HttpURLConnection) connection).getErrorStream();
             consumeAndCloseStream(es);
         } catch (IOException ex) {
-            throw Throwables.propagate(ex);
-        } finally {
             connection.disconnect();
+            throw Throwables.propagate(ex);
         }
     }
 
@@ -115,7 +130,8 @@ class HttpUtils {
         if (stream != null) {
             try {
                 // read the response body
-                while (stream.read() > -1) {
+                byte[] buff = new byte[4096];
+                while (stream.read(buff) > -1) {
                     ; // $codepro.audit.disable extraSemicolon
                 }
             } finally {
@@ -220,6 +236,62 @@ class HttpUtils {
         return exists;
     }
 
+    /**
+     * Determines which of the given objects exist in the remote repository with a single request.
+     * The ids are posted one per line, and the response has a {@code '1'} or {@code '0'} character
+     * for each of them, in the same order.
+     * 
+     * @param repositoryURL the URL of the repository
+     * @param objectIds the ids to check for
+     * @return the subset of {@code objectIds} that exist, or {@link Optional#absent()} if the
+     *         remote doesn't support batched queries
+     */
+    public static Optional<ImmutableSet<ObjectId>> networkObjectsExist(URL repositoryURL,
+            List<ObjectId> objectIds) {
+        HttpURLConnection connection = null;
+        ImmutableSet.Builder<ObjectId> existing = ImmutableSet.builder();
+        try {
+            String expanded = repositoryURL.toString() + "/repo/exists";
+            connection = openConnection(expanded);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setDoInput(true);
+            Writer writer = new OutputStreamWriter(connection.getOutputStream(), "US-ASCII");
+            for (ObjectId id : objectIds) {
+                writer.write(id.toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            writer.close();
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                LOGGER.debug("{} doesn't support batched object queries ({})", expanded,
+                        connection.getResponseCode());
+                return Optional.absent();
+            }
+            InputStream is = HttpUtils.getResponseStream(connection);
+            try {
+                BufferedReader rd = new BufferedReader(new InputStreamReader(is));
+                String line = rd.readLine();
+                if (line == null || line.length() != objectIds.size()) {
+                    return Optional.absent();
+                }
+                for (int i = 0; i < objectIds.size(); i++) {
+                    if (line.charAt(i) == '1') {
+                        existing.add(objectIds.get(i));
+                    }
+                }
+            } finally {
+                consumeAndCloseStream(is);
+            }
+        } catch (Exception e) {
+            Throwables.propagate(e);
+        } finally {
+            consumeErrStreamAndCloseConnection(connection);
+        }
+        return Optional.of(existing.build());
+    }
+
     /**
      * Updates the ref on the remote repository that matches the provided refspec to the new value.
      * 
@@ -478,15 +550,24 @@ class HttpUtils {
         }
     }
 
+    /**
+     * Opens a connection to the given URL that accepts compressed responses, to be read through
+     * {@link #getResponseStream}, and counts it in the {@link #stats() transfer statistics}.
+     */
+    public static HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setUseCaches(false);
+        connection.addRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+        STATS.requests.incrementAndGet();
+        return connection;
+    }
+
     /**
      * Connects to the given URL using HTTP GET method
      */
     public static HttpURLConnection connect(String url) throws IOException {
-        HttpURLConnection connection;
-        connection = (HttpURLConnection) new URL(url).openConnection();
+        HttpURLConnection connection = openConnection(url);
         connection.setRequestMethod("GET");
-        connection.setUseCaches(false);
-        // connection.addRequestProperty("Accept-Encoding", "gzip");
         LOGGER.debug("Connecting to '{}'...", url);
         connection.connect();
         int responseCode = connection.getResponseCode();
@@ -531,8 +612,7 @@ class HttpUtils {
         try {
             InputStream in = connection.getInputStream();
             String contentEncoding = connection.getHeaderField("Content-Encoding");
-            boolean gzip = "gzip".equalsIgnoreCase(contentEncoding);
-            reportingStream = HttpUtils.newReportingInputStream(in, gzip);
+            reportingStream = new ReportingInputStream(in, contentEncoding);
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
@@ -540,34 +620,149 @@ class HttpUtils {
     }
 
     public static ReportingInputStream newReportingInputStream(InputStream in, boolean gzip) {
-        return new ReportingInputStream(in, gzip);
+        return new ReportingInputStream(in, gzip ? "gzip" : null);
     }
 
     public static ReportingOutputStream newReportingOutputStream(HttpURLConnection connection,
             OutputStream out, boolean gzipEncode) {
-        return new ReportingOutputStream(connection, out, gzipEncode);
+        return newReportingOutputStream(connection, out, gzipEncode ? Deflater.DEFAULT_COMPRESSION
+                : Deflater.NO_COMPRESSION);
+    }
+
+    /**
+     * @param compressionLevel the gzip compression level, from {@link Deflater#BEST_SPEED} to
+     *        {@link Deflater#BEST_COMPRESSION} or {@link Deflater#DEFAULT_COMPRESSION}, or
+     *        {@link Deflater#NO_COMPRESSION} not to gzip the output at all
+     */
+    public static ReportingOutputStream newReportingOutputStream(HttpURLConnection connection,
+            OutputStream out, int compressionLevel) {
+        return new ReportingOutputStream(connection, out, compressionLevel);
+    }
+
+    /**
+     * Parses the {@code http.compression} config value: {@code none}, {@code fast}, {@code best},
+     * {@code default} or a gzip compression level from 1 to 9.
+     * 
+     * @return the compression level for {@link #newReportingOutputStream}
+     */
+    public static int parseCompressionLevel(Optional<String> configValue) {
+        if (!configValue.isPresent()) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        String value = configValue.get().trim().toLowerCase();
+        if ("none".equals(value)) {
+            return Deflater.NO_COMPRESSION;
+        } else if ("fast".equals(value)) {
+            return Deflater.BEST_SPEED;
+        } else if ("best".equals(value)) {
+            return Deflater.BEST_COMPRESSION;
+        } else if ("default".equals(value)) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        try {
+            int level = Integer.parseInt(value);
+            if (level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        LOGGER.warn("Invalid value for http.compression: '{}'. Using the default compression",
+                configValue.get());
+        return Deflater.DEFAULT_COMPRESSION;
+    }
+
+    /**
+     * @return the statistics of all the HTTP transfers made by this JVM
+     */
+    public static TransferStats stats() {
+        return STATS;
+    }
+
+    /**
+     * Counters of the requests made and bytes transferred, both as sent over the wire and
+     * uncompressed, for diagnostics. Bytes are accounted for when the reporting streams are
+     * closed.
+     */
+    public static class TransferStats {
+
+        private final AtomicLong requests = new AtomicLong();
+
+        private final AtomicLong bytesSent = new AtomicLong();
+
+        private final AtomicLong uncompressedBytesSent = new AtomicLong();
+
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        private final AtomicLong uncompressedBytesReceived = new AtomicLong();
+
+        private TransferStats() {
+            //
+        }
+
+        public long requests() {
+            return requests.get();
+        }
+
+        public long bytesSent() {
+            return bytesSent.get();
+        }
+
+        public long uncompressedBytesSent() {
+            return uncompressedBytesSent.get();
+        }
+
+        public long bytesReceived() {
+            return bytesReceived.get();
+        }
+
+        public long uncompressedBytesReceived() {
+            return uncompressedBytesReceived.get();
+        }
+
+        public void reset() {
+            requests.set(0);
+            bytesSent.set(0);
+            uncompressedBytesSent.set(0);
+            bytesReceived.set(0);
+            uncompressedBytesReceived.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d requests. Sent: %,d bytes (%,d uncompressed). "
+                    + "Received: %,d bytes (%,d uncompressed)", requests(), bytesSent(),
+                    uncompressedBytesSent(), bytesReceived(), uncompressedBytesReceived());
+        }
     }
 
     public static class ReportingInputStream extends FilterInputStream {
 
-        private boolean isGzipEncoded;
+        private boolean isCompressed;
 
         private CountingInputStream uncompressed;
 
         private CountingInputStream compressed;
 
-        private ReportingInputStream(InputStream in, boolean isGzipEncoded) {
+        private boolean closed;
+
+        private ReportingInputStream(InputStream in, @Nullable String contentEncoding) {
             super(new CountingInputStream(in));
-            this.isGzipEncoded = isGzipEncoded;
-            if (isGzipEncoded) {
+            this.isCompressed = "gzip".equalsIgnoreCase(contentEncoding)
+                    || "deflate".equalsIgnoreCase(contentEncoding);
+            if (isCompressed) {
                 compressed = (CountingInputStream) super.in;
-                GZIPInputStream gzipIn;
-                try {
-                    gzipIn = new GZIPInputStream(compressed);
-                } catch (IOException e) {
-                    throw Throwables.propagate(e);
+                InputStream decoded;
+                if ("gzip".equalsIgnoreCase(contentEncoding)) {
+                    try {
+                        decoded = new GZIPInputStream(compressed);
+                    } catch (IOException e) {
+                        throw Throwables.propagate(e);
+                    }
+                } else {
+                    decoded = new InflaterInputStream(compressed);
                 }
-                uncompressed = new CountingInputStream(gzipIn);
+                uncompressed = new CountingInputStream(decoded);
                 super.in = uncompressed;
             } else {
                 uncompressed = ((CountingInputStream) super.in);
@@ -576,7 +771,7 @@ class HttpUtils {
         }
 
         public boolean isCompressed() {
-            return isGzipEncoded;
+            return isCompressed;
         }
 
         public long compressedSize() {
@@ -586,6 +781,16 @@ class HttpUtils {
         public long unCompressedSize() {
             return uncompressed.getCount();
         }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                STATS.bytesReceived.addAndGet(compressedSize());
+                STATS.uncompressedBytesReceived.addAndGet(unCompressedSize());
+            }
+            super.close();
+        }
     }
 
     public static class ReportingOutputStream extends FilterOutputStream {
@@ -599,15 +804,19 @@ class HttpUtils {
         private final CountingOutputStream compressed;
 
         private ReportingOutputStream(HttpURLConnection connection, OutputStream out,
-                boolean gzipEncode) {
+                final int compressionLevel) {
             super(new CountingOutputStream(out));
-            this.gzipEncode = gzipEncode;
+            this.gzipEncode = compressionLevel != Deflater.NO_COMPRESSION;
             this.connection = connection;
             compressed = (CountingOutputStream) super.out;
             if (gzipEncode) {
                 GZIPOutputStream gzipOut;
                 try {
-                    gzipOut = new GZIPOutputStream(compressed);
+                    gzipOut = new GZIPOutputStream(compressed) {
+                        {
+                            def.setLevel(compressionLevel);
+                        }
+                    };
                 } catch (IOException e) {
                     throw Throwables.propagate(e);
                 }
@@ -633,6 +842,8 @@ class HttpUtils {
         @Override
         public void close() throws IOException {
             super.close();
+            STATS.bytesSent.addAndGet(compressedSize());
+            STATS.uncompressedBytesSent.addAndGet(unCompressedSize());
             // make sure we wait for the connection's ack before closing
             int responseCode = connection.getResponseCode();
             if (responseCode < 200 || responseCode > 299) {
@@ -13,10 +13,14 @@ import java.util.Iterator;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RepositoryFilter;
+import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.repository.Repository;
 
+import com.google.common.base.Optional;
+import com.vividsolutions.jts.geom.Envelope;
+
 /**
  * Overrides the basic implementation of {@link FilteredDiffIterator} by providing hints as to which
  * objects should be tracked, as well as copying affected features to the local repository.
@@ -39,6 +43,22 @@ class LocalFilteredDiffIterator extends FilteredDiffIterator {
         this.destinationRepo = destinationRepo;
     }
 
+    /**
+     * Constructs a new {@code LocalFilteredDiffIterator} over the changes introduced by
+     * {@code commit} against its first parent.
+     * 
+     * @param commit the commit to get the changes of
+     * @param sourceRepo the source full repository
+     * @param destinationRepo the sparse repository
+     * @param repoFilter the repository filter
+     * @param trackedBounds the bounds of the features the sparse repository may be tracking
+     */
+    public LocalFilteredDiffIterator(RevCommit commit, Repository sourceRepo,
+            Repository destinationRepo, RepositoryFilter repoFilter, Envelope trackedBounds) {
+        super(commit, sourceRepo, repoFilter, Optional.of(trackedBounds));
+        this.destinationRepo = destinationRepo;
+    }
+
     /**
      * Hints that objects that I have in the sparse repository should continue to be tracked.
      * 
@@ -293,15 +293,8 @@ public class LocalMappedRemoteRepo extends AbstractMappedRemoteRepo {
      */
     @Override
     protected FilteredDiffIterator getFilteredChanges(RevCommit commit) {
-        ObjectId parent = ObjectId.NULL;
-        if (commit.getParentIds().size() > 0) {
-            parent = commit.getParentIds().get(0);
-        }
-
-        Iterator<DiffEntry> changes = remoteRepo.command(DiffOp.class)
-                .setNewVersion(commit.getId()).setOldVersion(parent).setReportTrees(true).call();
-
-        return new LocalFilteredDiffIterator(changes, remoteRepo, localRepository, filter);
+        return new LocalFilteredDiffIterator(commit, remoteRepo, localRepository, filter,
+                trackedBounds(commit));
     }
 
     /**
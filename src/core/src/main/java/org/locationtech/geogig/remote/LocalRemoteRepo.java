@@ -399,7 +399,9 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
                 progress.setProgress(progress.getProgress() + 1);
             }
         };
-        to.putAll(from.getAll(ids), countingListener);
+        // copy the serialized objects, avoids parsing and encoding them again if both
+        // repositories use the same storage format
+        to.putRaw(from.getRaw(ids, BulkOpListener.NOOP_LISTENER), countingListener);
     }
 
     /**
@@ -9,11 +9,15 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.util.List;
+import java.util.Set;
+
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.repository.Repository;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Provides an interface to make basic queries to a local repository.
@@ -22,13 +26,28 @@ class LocalRepositoryWrapper implements RepositoryWrapper {
 
     private Repository localRepository;
 
+    private Set<ObjectId> incomplete;
+
     /**
      * Constructs a new {@code LocalRepositoryWrapper} using the provided repository.
      * 
      * @param repository the local repository
      */
     public LocalRepositoryWrapper(Repository repository) {
+        this(repository, ImmutableSet.<ObjectId> of());
+    }
+
+    /**
+     * Constructs a new {@code LocalRepositoryWrapper} using the provided repository, that reports
+     * the {@code incomplete} objects as not existing even if they're in the repository (e.g.
+     * commits saved by an interrupted fetch whose referenced objects may be missing).
+     * 
+     * @param repository the local repository
+     * @param incomplete the objects to report as missing
+     */
+    public LocalRepositoryWrapper(Repository repository, Set<ObjectId> incomplete) {
         this.localRepository = repository;
+        this.incomplete = incomplete;
     }
 
     /**
@@ -39,7 +58,28 @@ class LocalRepositoryWrapper implements RepositoryWrapper {
      */
     @Override
     public boolean objectExists(ObjectId objectId) {
-        return objectId.isNull() || localRepository.objectDatabase().exists(objectId);
+        if (objectId.isNull()) {
+            return true;
+        }
+        return !incomplete.contains(objectId)
+                && localRepository.objectDatabase().exists(objectId);
+    }
+
+    /**
+     * Determines which of the provided objects exist in the repository.
+     * 
+     * @param objectIds the objects to look for
+     * @return the subset of {@code objectIds} that exist in the repository
+     */
+    @Override
+    public ImmutableSet<ObjectId> objectsExist(List<ObjectId> objectIds) {
+        ImmutableSet.Builder<ObjectId> existing = ImmutableSet.builder();
+        for (ObjectId id : objectIds) {
+            if (objectExists(id)) {
+                existing.add(id);
+            }
+        }
+        return existing.build();
     }
 
     /**
@@ -0,0 +1,177 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Decorates the destination repository of a transfer so that the existence of commits is
+ * negotiated in batches instead of being queried one commit at a time.
+ * <p>
+ * The first time the existence of a commit that's not known yet is queried, the source history
+ * is walked from that commit in exponentially growing rounds (1, 2, 4... commits, up to
+ * {@link #MAX_ROUND_SIZE}), asking the destination which commits of each round it has with a
+ * single {@link RepositoryWrapper#objectsExist} call. The walk goes at most one round past the
+ * commits the destination has, so it covers about the same commits a {@link CommitTraverser}
+ * would visit, in a logarithmic number of round trips for short histories and in
+ * {@code commits / MAX_ROUND_SIZE} round trips for long ones.
+ */
+class NegotiatingRepositoryWrapper implements RepositoryWrapper {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(NegotiatingRepositoryWrapper.class);
+
+    static final int MAX_ROUND_SIZE = 4096;
+
+    private final RepositoryWrapper destination;
+
+    private final RepositoryWrapper source;
+
+    private final Map<ObjectId, Boolean> known = new HashMap<ObjectId, Boolean>();
+
+    /**
+     * @param destination the repository whose commits to negotiate
+     * @param source the repository whose history to walk
+     */
+    public NegotiatingRepositoryWrapper(RepositoryWrapper destination, RepositoryWrapper source) {
+        this.destination = destination;
+        this.source = source;
+    }
+
+    @Override
+    public boolean objectExists(ObjectId objectId) {
+        if (objectId.isNull()) {
+            return true;
+        }
+        Boolean exists = known.get(objectId);
+        if (exists == null) {
+            negotiate(objectId);
+            exists = known.get(objectId);
+        }
+        return exists.booleanValue();
+    }
+
+    @Override
+    public ImmutableSet<ObjectId> objectsExist(List<ObjectId> objectIds) {
+        ImmutableSet.Builder<ObjectId> existing = ImmutableSet.builder();
+        for (ObjectId id : objectIds) {
+            if (objectExists(id)) {
+                existing.add(id);
+            }
+        }
+        return existing.build();
+    }
+
+    /**
+     * Walks the source history from {@code start} until reaching commits the destination has,
+     * learning which commits the destination has in batches.
+     * <p>
+     * Each round is filled by walking ahead of the commits known to be missing without waiting
+     * for the destination's answer, so a linear history also benefits from the growing rounds.
+     * The next round starts over from the unknown parents of the missing commits, discarding
+     * whatever was walked past a commit the destination has.
+     */
+    private void negotiate(final ObjectId start) {
+        Map<ObjectId, ImmutableList<ObjectId>> parents;
+        parents = new HashMap<ObjectId, ImmutableList<ObjectId>>();
+        Set<ObjectId> open = new LinkedHashSet<ObjectId>();
+        Set<ObjectId> seeds = new LinkedHashSet<ObjectId>();
+        seeds.add(start);
+
+        int rounds = 0;
+        int queried = 0;
+        int roundSize = 1;
+        while (!seeds.isEmpty()) {
+            Set<ObjectId> round = new LinkedHashSet<ObjectId>();
+            Queue<ObjectId> walk = new ArrayDeque<ObjectId>(seeds);
+            while (round.size() < roundSize && !walk.isEmpty()) {
+                ObjectId id = walk.remove();
+                if (round.add(id)) {
+                    for (ObjectId parent : parents(id, parents)) {
+                        if (!known.containsKey(parent)) {
+                            walk.add(parent);
+                        }
+                    }
+                }
+            }
+            List<ObjectId> ids = new ArrayList<ObjectId>(round);
+            Set<ObjectId> existing = destination.objectsExist(ids);
+            rounds++;
+            queried += ids.size();
+            for (ObjectId id : ids) {
+                boolean exists = existing.contains(id);
+                known.put(id, Boolean.valueOf(exists));
+                if (!exists) {
+                    open.add(id);
+                }
+            }
+
+            seeds.clear();
+            for (Iterator<ObjectId> it = open.iterator(); it.hasNext();) {
+                boolean resolved = true;
+                for (ObjectId parent : parents(it.next(), parents)) {
+                    if (!known.containsKey(parent)) {
+                        seeds.add(parent);
+                        resolved = false;
+                    }
+                }
+                if (resolved) {
+                    it.remove();
+                }
+            }
+            roundSize = Math.min(2 * roundSize, MAX_ROUND_SIZE);
+        }
+        LOGGER.debug("Negotiated {} commits in {} rounds", queried, rounds);
+    }
+
+    private ImmutableList<ObjectId> parents(ObjectId commitId,
+            Map<ObjectId, ImmutableList<ObjectId>> cache) {
+        ImmutableList<ObjectId> parents = cache.get(commitId);
+        if (parents == null) {
+            ImmutableList.Builder<ObjectId> builder = ImmutableList.builder();
+            for (ObjectId parent : source.getParents(commitId)) {
+                if (!parent.isNull()) {
+                    builder.add(parent);
+                }
+            }
+            parents = builder.build();
+            cache.put(commitId, parents);
+        }
+        return parents;
+    }
+
+    @Override
+    public ImmutableList<ObjectId> getParents(ObjectId commitId) {
+        return destination.getParents(commitId);
+    }
+
+    @Override
+    public int getDepth(ObjectId commitId) {
+        return destination.getDepth(commitId);
+    }
+
+    @Override
+    public Optional<Integer> getRepoDepth() {
+        return destination.getRepoDepth();
+    }
+}
@@ -9,16 +9,24 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class ObjectFunnels {
 
@@ -34,6 +42,39 @@ public class ObjectFunnels {
         return new SizeLimitingFunnel(outputFactory, serializer, byteSoftLimit);
     }
 
+    /**
+     * Creates a funnel that serializes objects into in-memory chunks of about
+     * {@code byteSoftLimit} bytes and writes each chunk to a new stream obtained from
+     * {@code outputFactory} on a background thread, with up to {@code maxConcurrentWrites} chunks
+     * being written at the same time.
+     * <p>
+     * Any work done by the streams returned by {@code outputFactory} (e.g. compressing and
+     * uploading the data) happens in parallel, while the calling thread keeps producing the next
+     * chunks. At most {@code maxConcurrentWrites + 1} chunks are held in memory at any time.
+     * <p>
+     * {@link ObjectFunnel#close() close()} blocks until all the chunks are written, and throws the
+     * first error found, if any.
+     */
+    public static ObjectFunnel newParallelFunnel(final Supplier<OutputStream> outputFactory,
+            final ObjectSerializingFactory serializer, final int byteSoftLimit,
+            final int maxConcurrentWrites) {
+
+        return new ParallelFunnel(outputFactory, serializer, byteSoftLimit, maxConcurrentWrites);
+    }
+
+    /**
+     * Writes {@code object} with the given serializer, except for {@link FeatureDelta delta
+     * encoded features} which are written in their own format
+     */
+    private static void write(RevObject object, ObjectSerializingFactory serializer,
+            OutputStream out) throws IOException {
+        if (object instanceof FeatureDelta) {
+            ((FeatureDelta) object).write(out);
+        } else {
+            serializer.write(object, out);
+        }
+    }
+
     private static class DirectFunnel implements ObjectFunnel {
 
         private OutputStream out;
@@ -48,7 +89,7 @@ public class ObjectFunnels {
         @Override
         public void funnel(RevObject object) throws IOException {
             out.write(object.getId().getRawValue());
-            serializer.write(object, out);
+            write(object, serializer, out);
         }
 
         @Override
@@ -82,7 +123,7 @@ public class ObjectFunnels {
         public void funnel(RevObject object) throws IOException {
             OutputStream out = getCurrentTarget();
             out.write(object.getId().getRawValue());
-            serializer.write(object, out);
+            write(object, serializer, out);
             out.flush();
         }
 
@@ -111,4 +152,124 @@ public class ObjectFunnels {
         }
 
     }
+
+    private static class ParallelFunnel implements ObjectFunnel {
+
+        private final Supplier<OutputStream> outputFactory;
+
+        private final ObjectSerializingFactory serializer;
+
+        private final int byteSoftLimit;
+
+        private final int maxConcurrentWrites;
+
+        private final Semaphore writeSlots;
+
+        private final ExecutorService executor;
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        private ByteArrayOutputStream currentChunk;
+
+        private int chunkCount;
+
+        public ParallelFunnel(Supplier<OutputStream> outputFactory,
+                ObjectSerializingFactory serializer, final int byteSoftLimit,
+                final int maxConcurrentWrites) {
+            Preconditions.checkArgument(maxConcurrentWrites > 0,
+                    "maxConcurrentWrites shall be > 0: %s", maxConcurrentWrites);
+            this.outputFactory = outputFactory;
+            this.serializer = serializer;
+            this.byteSoftLimit = byteSoftLimit;
+            this.maxConcurrentWrites = maxConcurrentWrites;
+            this.writeSlots = new Semaphore(maxConcurrentWrites);
+            this.executor = Executors.newFixedThreadPool(maxConcurrentWrites,
+                    new ThreadFactoryBuilder().setNameFormat("geogig-funnel-writer-%d")
+                            .setDaemon(true).build());
+        }
+
+        @Override
+        public void funnel(RevObject object) throws IOException {
+            checkFailure();
+            if (currentChunk == null) {
+                currentChunk = new ByteArrayOutputStream(Math.min(byteSoftLimit, 1024 * 1024));
+            }
+            currentChunk.write(object.getId().getRawValue());
+            write(object, serializer, currentChunk);
+            if (currentChunk.size() >= byteSoftLimit) {
+                submit(currentChunk);
+                currentChunk = null;
+            }
+        }
+
+        private void submit(final ByteArrayOutputStream chunk) throws IOException {
+            try {
+                writeSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to write a chunk", e);
+            }
+            final int chunkNumber = ++chunkCount;
+            LOGGER.debug(String.format("Writing chunk %,d of %,d bytes", chunkNumber,
+                    chunk.size()));
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (failure.get() == null) {
+                                OutputStream out = outputFactory.get();
+                                try {
+                                    chunk.writeTo(out);
+                                } finally {
+                                    out.close();
+                                }
+                            }
+                        } catch (Throwable e) {
+                            LOGGER.warn("Error writing chunk " + chunkNumber, e);
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            writeSlots.release();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                writeSlots.release();
+                throw e;
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable e = failure.get();
+            if (e != null) {
+                if (e instanceof IOException) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (currentChunk != null && failure.get() == null) {
+                    ByteArrayOutputStream lastChunk = currentChunk;
+                    currentChunk = null;
+                    submit(lastChunk);
+                }
+                // wait for all pending writes to finish
+                writeSlots.acquireUninterruptibly(maxConcurrentWrites);
+                writeSlots.release(maxConcurrentWrites);
+            } finally {
+                currentChunk = null;
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            checkFailure();
+        }
+    }
 }
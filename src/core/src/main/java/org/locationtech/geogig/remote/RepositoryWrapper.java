@@ -9,10 +9,13 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.util.List;
+
 import org.locationtech.geogig.api.ObjectId;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Provides an interface to make basic queries to a repository.
@@ -27,6 +30,15 @@ interface RepositoryWrapper {
      */
     public boolean objectExists(ObjectId objectId);
 
+    /**
+     * Determines which of the provided objects exist in the repository, in as few round trips as
+     * possible.
+     * 
+     * @param objectIds the objects to look for
+     * @return the subset of {@code objectIds} that exist in the repository
+     */
+    public ImmutableSet<ObjectId> objectsExist(List<ObjectId> objectIds);
+
     /**
      * Gets the parents of the specified commit from the repository.
      * 
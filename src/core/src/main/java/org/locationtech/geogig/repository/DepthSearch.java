@@ -13,22 +13,32 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.locationtech.geogig.api.NodeRef.PATH_SEPARATOR;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.locationtech.geogig.api.Bucket;
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.NodePathStorageOrder;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 
 /**
  * Searches for a {@link Node} within a particular tree.
@@ -169,4 +179,63 @@ public class DepthSearch {
         RevTree subtree = objectDb.get(subtreeBucket.getObjectId(), RevTree.class);
         return getDirectChild(subtree, directChildName, subtreesDepth + 1);
     }
+
+    /**
+     * Searches for many direct children of {@code parent} at once, fetching all the bucket trees
+     * needed at each depth level in a single batch instead of one at a time.
+     * 
+     * @param parent the tree to search
+     * @param directChildNames the names of the children to search for
+     * @return the children found, by name
+     */
+    public Map<String, Node> getDirectChildren(final RevTree parent,
+            final Set<String> directChildNames) {
+        checkNotNull(parent, "parent");
+        checkNotNull(directChildNames, "directChildNames");
+
+        final Map<String, Node> found = new HashMap<String, Node>();
+
+        Map<RevTree, Collection<String>> level = new HashMap<RevTree, Collection<String>>();
+        level.put(parent, directChildNames);
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            Multimap<ObjectId, String> nextLevel = ArrayListMultimap.create();
+            for (Map.Entry<RevTree, Collection<String>> e : level.entrySet()) {
+                final RevTree tree = e.getKey();
+                final Collection<String> names = e.getValue();
+                if (tree.isEmpty()) {
+                    continue;
+                }
+                if (tree.buckets().isPresent()) {
+                    ImmutableSortedMap<Integer, Bucket> buckets = tree.buckets().get();
+                    for (String name : names) {
+                        Bucket bucket = buckets.get(refOrder.bucket(name, depth));
+                        if (bucket != null) {
+                            nextLevel.put(bucket.getObjectId(), name);
+                        }
+                    }
+                } else {
+                    Set<String> wanted = new HashSet<String>(names);
+                    List<Node> children = new ArrayList<Node>();
+                    children.addAll(tree.trees().or(ImmutableList.<Node> of()));
+                    children.addAll(tree.features().or(ImmutableList.<Node> of()));
+                    for (Node child : children) {
+                        if (wanted.contains(child.getName())) {
+                            found.put(child.getName(), child);
+                        }
+                    }
+                }
+            }
+            level = new HashMap<RevTree, Collection<String>>();
+            if (!nextLevel.isEmpty()) {
+                Iterator<RevTree> subtrees = objectDb.getAll(nextLevel.keySet(),
+                        BulkOpListener.NOOP_LISTENER, RevTree.class);
+                while (subtrees.hasNext()) {
+                    RevTree subtree = subtrees.next();
+                    level.put(subtree, nextLevel.get(subtree.getId()));
+                }
+            }
+        }
+        return found;
+    }
+
 }
@@ -31,6 +31,8 @@ import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
@@ -278,6 +280,96 @@ public abstract class AbstractObjectStore implements ObjectStore {
      */
     protected abstract boolean putInternal(ObjectId id, byte[] rawData);
 
+    /**
+     * This default implementation calls {@link #getRawInternal(ObjectId, boolean)} for each id and
+     * returns the uncompressed data; subclasses may override if appropriate.
+     */
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        checkNotNull(ids, "ids is null");
+        checkNotNull(listener, "listener is null");
+        checkState(isOpen(), "db is closed");
+
+        final Iterator<ObjectId> it = ids.iterator();
+        return new AbstractIterator<RawObject>() {
+            @Override
+            protected RawObject computeNext() {
+                while (it.hasNext()) {
+                    final ObjectId id = it.next();
+                    InputStream in = getRaw(id, false);
+                    if (in == null) {
+                        listener.notFound(id);
+                        continue;
+                    }
+                    final byte[] data;
+                    try {
+                        data = ByteStreams.toByteArray(in);
+                    } catch (IOException e) {
+                        throw Throwables.propagate(e);
+                    } finally {
+                        Closeables.closeQuietly(in);
+                    }
+                    listener.found(id, Integer.valueOf(data.length));
+                    return new RawObject(id, data, serializer);
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * This default implementation calls {@link #putInternal(ObjectId, byte[])} for each object;
+     * subclasses may override if appropriate.
+     */
+    @Override
+    public void putRaw(Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkState(isOpen(), "db is closed");
+
+        ByteArrayOutputStream rawOut = new ByteArrayOutputStream();
+        while (objects.hasNext()) {
+            RawObject object = objects.next();
+            rawOut.reset();
+
+            writeRaw(object, rawOut);
+            final byte[] rawData = rawOut.toByteArray();
+
+            final ObjectId id = object.getId();
+            final boolean added = putInternal(id, rawData);
+            if (added) {
+                listener.inserted(id, rawData.length);
+            } else {
+                listener.found(id, null);
+            }
+        }
+    }
+
+    /**
+     * Writes the serialized object to {@code target} in the same form as
+     * {@link #writeObject(RevObject, OutputStream)}, compressing its data as is if it's already in
+     * this store's format, or re-encoding it otherwise.
+     */
+    protected void writeRaw(RawObject object, OutputStream target) {
+        if (!object.isFormat(serializer)) {
+            writeObject(object.read(), target);
+            return;
+        }
+        LZFOutputStream cOut = new LZFOutputStream(target);
+        try {
+            cOut.write(object.getData());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            try {
+                cOut.flush();
+                cOut.close();
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
     @Override
     public Iterator<RevObject> getAll(final Iterable<ObjectId> ids) {
         checkState(isOpen(), "db is closed");
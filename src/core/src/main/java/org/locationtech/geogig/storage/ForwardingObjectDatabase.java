@@ -164,6 +164,16 @@ public class ForwardingObjectDatabase implements ObjectDatabase {
         subject.get().putAll(objects, listener);
     }
 
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return subject.get().getRaw(ids, listener);
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        subject.get().putRaw(objects, listener);
+    }
+
     @Override
     public long deleteAll(Iterator<ObjectId> ids) {
         return deleteAll(ids);
@@ -159,6 +159,17 @@ public class ForwardingObjectStore implements ObjectStore {
         subject.get().putAll(objects, listener);
     }
 
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return subject.get().getRaw(ids, listener);
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        checkWritable();
+        subject.get().putRaw(objects, listener);
+    }
+
     @Override
     public long deleteAll(Iterator<ObjectId> ids) {
         checkWritable();
@@ -0,0 +1,52 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.locationtech.geogig.api.ObjectId;
+
+/**
+ * Generic implementation of {@link GraphDatabase#getAncestors(ObjectId, int)}, walking the history
+ * breadth first with one {@link GraphDatabase#getParents(ObjectId)} call per commit, for the
+ * {@link GraphDatabase} implementations where that call is cheap.
+ */
+public final class GraphAncestors {
+
+    private GraphAncestors() {
+        // utility class
+    }
+
+    /**
+     * @return up to {@code limit} ancestors of {@code commitId}, breadth first
+     */
+    public static List<ObjectId> breadthFirst(GraphDatabase graphDb, ObjectId commitId,
+            int limit) {
+        List<ObjectId> ancestors = new ArrayList<ObjectId>();
+        Set<ObjectId> seen = new HashSet<ObjectId>();
+        seen.add(commitId);
+        Deque<ObjectId> queue = new ArrayDeque<ObjectId>();
+        queue.add(commitId);
+        while (!queue.isEmpty() && ancestors.size() < limit) {
+            for (ObjectId parent : graphDb.getParents(queue.poll())) {
+                if (ancestors.size() == limit) {
+                    break;
+                }
+                if (!parent.isNull() && seen.add(parent)) {
+                    ancestors.add(parent);
+                    queue.add(parent);
+                }
+            }
+        }
+        return ancestors;
+    }
+}
@@ -11,12 +11,14 @@ package org.locationtech.geogig.storage;
 
 import java.io.Closeable;
 import java.util.Iterator;
+import java.util.List;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.di.Singleton;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 @Beta
@@ -127,6 +129,20 @@ public interface GraphDatabase extends Closeable {
      */
     public ImmutableList<ObjectId> getParents(ObjectId commitId) throws IllegalArgumentException;
 
+    /**
+     * Retrieves the closest ancestors of the given commit, breadth first, in as few round trips to
+     * the storage as the implementation can.
+     * <p>
+     * Implementations that can't do better than one {@link #getParents(ObjectId)} call per commit
+     * shall delegate to {@link GraphAncestors#breadthFirst(GraphDatabase, ObjectId, int)}.
+     * 
+     * @param commitId the commit whose ancestors should be returned
+     * @param limit the maximum number of ancestors to return
+     * @return up to {@code limit} ancestors of the provided commit, each one only once, and
+     *         excluding the commit itself
+     */
+    public List<ObjectId> getAncestors(ObjectId commitId, int limit);
+
     /**
      * Retrieves all of the children for the given commit.
      * 
@@ -171,6 +187,19 @@ public interface GraphDatabase extends Closeable {
      */
     public int getDepth(final ObjectId commitId);
 
+    /**
+     * Finds the lowest common ancestor of two commits.
+     * <p>
+     * Implementations that can't compute it more efficiently shall delegate to
+     * {@link LowestCommonAncestor#find(GraphDatabase, ObjectId, ObjectId)}.
+     * 
+     * @param leftId the commit id of the left commit
+     * @param rightId the commit id of the right commit
+     * @return An {@link Optional} of the lowest common ancestor of the two commits, or
+     *         {@link Optional#absent()} if a common ancestor could not be found.
+     */
+    public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId);
+
     /**
      * Set a property on the provided commit node.
      * 
@@ -0,0 +1,57 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Computes the depth of a commit out of its ancestry edges, for {@link GraphDatabase}
+ * implementations that can fetch all of them at once.
+ */
+public final class GraphDepth {
+
+    private GraphDepth() {
+        // utility class
+    }
+
+    /**
+     * Walks the ancestry breadth first, visiting each commit once, and stops at the first commit
+     * that has no parents.
+     *
+     * @param start the commit to compute the depth of
+     * @param parents the parents of {@code start} and all of its ancestors
+     * @return the length of the shortest path from {@code start} to a commit without parents
+     */
+    public static <T> int of(T start, Multimap<T, T> parents) {
+        Set<T> seen = new HashSet<T>();
+        seen.add(start);
+        List<T> current = new ArrayList<T>();
+        current.add(start);
+        int depth = 0;
+        while (!current.isEmpty()) {
+            List<T> next = new ArrayList<T>();
+            for (T node : current) {
+                if (!parents.containsKey(node)) {
+                    return depth;
+                }
+                for (T parent : parents.get(node)) {
+                    if (seen.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+            current = next;
+            depth++;
+        }
+        return depth;
+    }
+}
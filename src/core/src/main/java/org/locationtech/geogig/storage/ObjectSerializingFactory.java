@@ -15,6 +15,7 @@ import java.io.OutputStream;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
 
 /**
  * The ObjectSerializingFactory is used to create instances of the various writers and readers used
@@ -71,4 +72,10 @@ public interface ObjectSerializingFactory {
     void write(RevObject o, OutputStream out) throws IOException;
 
     RevObject read(ObjectId id, InputStream in) throws IOException;
+
+    /**
+     * Reads only the type header of an object serialized by this factory, without parsing the
+     * rest of it.
+     */
+    TYPE readType(InputStream in) throws IOException;
 }
@@ -206,6 +206,31 @@ public interface ObjectStore extends Closeable {
      */
     public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener);
 
+    /**
+     * Queries the object store for the serialized form of the objects with the given ids, without
+     * parsing them.
+     * <p>
+     * The returned {@link RawObject}s are in the serialization format they're stored in, which
+     * callers can check through {@link RawObject#isFormat(ObjectSerializingFactory)}.
+     * 
+     * @param ids the ids of the objects to fetch from the database
+     * @param listener a listener that gets notified of {@link BulkOpListener#found found} and
+     *        {@link BulkOpListener#notFound(ObjectId) not found} items
+     * @return an iterator with the objects <b>found</b> on the database, in no particular order
+     */
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener);
+
+    /**
+     * Same as {@link #putAll(Iterator, BulkOpListener)} but for objects in their serialized form.
+     * <p>
+     * Objects whose {@link RawObject#getFormat() format} matches the one used by this store are
+     * saved as is, others are parsed and re-encoded.
+     * 
+     * @param objects the serialized objects to request for insertion into the object database
+     * @param listener a listener to get notifications of actually inserted objects
+     */
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener);
+
     /**
      * Shorthand for {@link #deleteAll(Iterator, BulkOpListener)} with
      * {@link BulkOpListener#NOOP_LISTENER} as second argument
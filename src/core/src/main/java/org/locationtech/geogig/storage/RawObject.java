@@ -0,0 +1,114 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+
+import com.google.common.base.Throwables;
+
+/**
+ * The serialized form of a {@link RevObject} as returned by {@link ObjectStore#getRaw} and
+ * accepted by {@link ObjectStore#putRaw}, so that objects can be copied between object stores
+ * without being parsed, as long as both stores use the same serialization format.
+ * <p>
+ * The {@link #getData() data} is the uncompressed output of {@link #getFormat() format}'s
+ * {@link ObjectSerializingFactory#write write} method, regardless of how the originating store
+ * keeps it on disk.
+ */
+public final class RawObject {
+
+    private final ObjectId id;
+
+    private final byte[] data;
+
+    private final ObjectSerializingFactory format;
+
+    public RawObject(ObjectId id, byte[] data, ObjectSerializingFactory format) {
+        checkNotNull(id, "id is null");
+        checkNotNull(data, "data is null");
+        checkNotNull(format, "format is null");
+        this.id = id;
+        this.data = data;
+        this.format = format;
+    }
+
+    /**
+     * Serializes {@code object} with the given {@code format}
+     */
+    public static RawObject of(RevObject object, ObjectSerializingFactory format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            format.write(object, out);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return new RawObject(object.getId(), out.toByteArray(), format);
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * @return the serialized object; the array is not copied so callers must not modify it
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public ObjectSerializingFactory getFormat() {
+        return format;
+    }
+
+    /**
+     * @return {@code true} if this object's data is in the same format as the one written by
+     *         {@code format}, and hence can be stored as is by an object store that uses it
+     */
+    public boolean isFormat(ObjectSerializingFactory format) {
+        return this.format.getClass().equals(format.getClass());
+    }
+
+    /**
+     * @return the type of the object, read out of the serialized data's header
+     */
+    public TYPE getType() {
+        try {
+            return format.readType(getInput());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public InputStream getInput() {
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Parses the serialized object
+     */
+    public RevObject read() {
+        try {
+            return format.read(id, getInput());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RawObject[" + id + ", " + data.length + " bytes]";
+    }
+}
@@ -9,9 +9,12 @@
  */
 package org.locationtech.geogig.storage;
 
+import java.util.List;
+
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 public class SynchronizedGraphDatabase implements GraphDatabase {
@@ -87,12 +90,24 @@ public class SynchronizedGraphDatabase implements GraphDatabase {
         }
     }
 
+    public List<ObjectId> getAncestors(ObjectId commitId, int limit) {
+        synchronized (delegate) {
+            return delegate.getAncestors(commitId, limit);
+        }
+    }
+
     public int getDepth(final ObjectId commitId) {
         synchronized (delegate) {
             return delegate.getDepth(commitId);
         }
     }
 
+    public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+        synchronized (delegate) {
+            return delegate.findLowestCommonAncestor(leftId, rightId);
+        }
+    }
+
     public void setProperty(ObjectId commitId, String propertyName, String propertyValue) {
         synchronized (delegate) {
             delegate.setProperty(commitId, propertyName, propertyValue);
@@ -107,6 +107,24 @@ public class DataStreamSerializationFactoryV1 implements ObjectSerializingFactor
             throw new IllegalArgumentException("Unrecognized object header: " + header);
     }
 
+    @Override
+    public TYPE readType(InputStream rawData) throws IOException {
+        DataInput in = new DataInputStream(rawData);
+        String header = readToMarker(in, NUL);
+        if ("commit".equals(header))
+            return TYPE.COMMIT;
+        else if ("tree".equals(header))
+            return TYPE.TREE;
+        else if ("feature".equals(header))
+            return TYPE.FEATURE;
+        else if ("featuretype".equals(header))
+            return TYPE.FEATURETYPE;
+        else if ("tag".equals(header))
+            return TYPE.TAG;
+        else
+            throw new IllegalArgumentException("Unrecognized object header: " + header);
+    }
+
     @SuppressWarnings("unchecked")
     private static <T extends RevObject> Serializer<T> serializer(TYPE type) {
         Serializer<? extends RevObject> serializer = serializers.get(type);
@@ -175,11 +193,7 @@ public class DataStreamSerializationFactoryV1 implements ObjectSerializingFactor
             writeHeader(data, "feature");
             data.writeInt(feature.getValues().size());
             for (Optional<Object> field : feature.getValues()) {
-                FieldType type = FieldType.forValue(field);
-                data.writeByte(type.getTag());
-                if (type != FieldType.NULL) {
-                    DataStreamValueSerializerV1.write(field, data);
-                }
+                FormatCommonV1.writeValue(field, data);
             }
         }
     }
@@ -73,6 +73,11 @@ public class DataStreamSerializationFactoryV2 implements ObjectSerializingFactor
         return object;
     }
 
+    @Override
+    public TYPE readType(InputStream rawData) throws IOException {
+        return readHeader(new DataInputStream(rawData));
+    }
+
     @Override
     public void write(RevObject o, OutputStream out) throws IOException {
         serializer(o.getType()).write(o, out);
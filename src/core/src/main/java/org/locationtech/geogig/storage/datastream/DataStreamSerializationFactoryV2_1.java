@@ -0,0 +1,101 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.readCommit;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.readFeatureType;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.readHeader;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.readTag;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.readTree;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.writeCommit;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.writeFeatureType;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.writeHeader;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.writeTag;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2.writeTree;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2_1.readFeature;
+import static org.locationtech.geogig.storage.datastream.FormatCommonV2_1.writeFeature;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTag;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.storage.ObjectSerializingFactory;
+
+/**
+ * Serialization factory for serial version 2.1, which only differs from
+ * {@link DataStreamSerializationFactoryV2 version 2} in the encoding of the feature values (see
+ * {@link FormatCommonV2_1}).
+ * <p>
+ * Objects serialized in version 2 can be read by this factory, but not the other way around, so
+ * the stores using it are versioned separately from the ones using version 2.
+ */
+public class DataStreamSerializationFactoryV2_1 implements ObjectSerializingFactory {
+
+    public static final DataStreamSerializationFactoryV2_1 INSTANCE = new DataStreamSerializationFactoryV2_1();
+
+    @Override
+    public RevObject read(ObjectId id, InputStream rawData) throws IOException {
+        DataInput in = new DataInputStream(rawData);
+        final TYPE type = readHeader(in);
+        switch (type) {
+        case COMMIT:
+            return readCommit(id, in);
+        case TREE:
+            return readTree(id, in);
+        case FEATURE:
+            return readFeature(id, in);
+        case FEATURETYPE:
+            return readFeatureType(id, in);
+        case TAG:
+            return readTag(id, in);
+        default:
+            throw new UnsupportedOperationException("No serializer for " + type);
+        }
+    }
+
+    @Override
+    public TYPE readType(InputStream rawData) throws IOException {
+        return readHeader(new DataInputStream(rawData));
+    }
+
+    @Override
+    public void write(RevObject o, OutputStream out) throws IOException {
+        DataOutput data = new DataOutputStream(out);
+        writeHeader(data, o.getType());
+        switch (o.getType()) {
+        case COMMIT:
+            writeCommit((RevCommit) o, data);
+            break;
+        case TREE:
+            writeTree((RevTree) o, data);
+            break;
+        case FEATURE:
+            writeFeature((RevFeature) o, data);
+            break;
+        case FEATURETYPE:
+            writeFeatureType((RevFeatureType) o, data);
+            break;
+        case TAG:
+            writeTag((RevTag) o, data);
+            break;
+        default:
+            throw new UnsupportedOperationException("No serializer for " + o.getType());
+        }
+    }
+}
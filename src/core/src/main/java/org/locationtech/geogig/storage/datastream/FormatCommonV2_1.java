@@ -0,0 +1,187 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import static org.locationtech.geogig.storage.datastream.Varint.readSignedVarLong;
+import static org.locationtech.geogig.storage.datastream.Varint.readUnsignedVarInt;
+import static org.locationtech.geogig.storage.datastream.Varint.writeSignedVarLong;
+import static org.locationtech.geogig.storage.datastream.Varint.writeUnsignedVarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.storage.FieldType;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Serialization format 2.1, which is {@link FormatCommonV2 format 2} except for the feature
+ * values, that use a more compact encoding when one applies:
+ * <ul>
+ * <li>{@link #STRING_MAP} for maps with only {@code String} keys and values, like OSM tags. Keys
+ * found in the {@link InternedMapKeys dictionary} are written as a one byte reference, any other
+ * string as varint-length UTF-8.
+ * <li>{@link #DELTA_LONG_ARRAY} for long arrays whose zig-zag varint deltas take less than the 8
+ * bytes per value of {@link FieldType#LONG_ARRAY}, like OSM way node ids.
+ * </ul>
+ * Every other value is written as in format 2, and both encodings read back as the same
+ * {@link Map} and {@code long[]} values, so they don't affect object ids. Features written in
+ * format 2 read the same in this format.
+ */
+public class FormatCommonV2_1 {
+
+    /**
+     * Value tag of the string map encoding, following the {@link FieldType} tags
+     */
+    static final byte STRING_MAP = 0x21;
+
+    /**
+     * Value tag of the delta encoded long array, following the {@link FieldType} tags
+     */
+    static final byte DELTA_LONG_ARRAY = 0x22;
+
+    public static void writeFeature(RevFeature feature, DataOutput data) throws IOException {
+        ImmutableList<Optional<Object>> values = feature.getValues();
+
+        writeUnsignedVarInt(values.size(), data);
+
+        for (Optional<Object> field : values) {
+            FieldType type = FieldType.forValue(field);
+            if (type == FieldType.MAP && isStringMap((Map<?, ?>) field.get())) {
+                data.writeByte(STRING_MAP);
+                writeStringMap((Map<?, ?>) field.get(), data);
+            } else if (type == FieldType.LONG_ARRAY && isDeltaCompact((long[]) field.get())) {
+                data.writeByte(DELTA_LONG_ARRAY);
+                writeDeltaLongArray((long[]) field.get(), data);
+            } else {
+                data.writeByte(type.getTag());
+                if (type != FieldType.NULL) {
+                    DataStreamValueSerializerV2.write(field, data);
+                }
+            }
+        }
+    }
+
+    public static RevFeature readFeature(ObjectId id, DataInput in) throws IOException {
+        final int count = readUnsignedVarInt(in);
+        final ImmutableList.Builder<Optional<Object>> builder = ImmutableList.builder();
+
+        for (int i = 0; i < count; i++) {
+            final byte fieldTag = in.readByte();
+            final Object value;
+            if (fieldTag == STRING_MAP) {
+                value = readStringMap(in);
+            } else if (fieldTag == DELTA_LONG_ARRAY) {
+                value = readDeltaLongArray(in);
+            } else {
+                final FieldType fieldType = FieldType.valueOf(fieldTag);
+                value = DataStreamValueSerializerV2.read(fieldType, in);
+            }
+            builder.add(Optional.fromNullable(value));
+        }
+
+        return new RevFeatureImpl(id, builder.build());
+    }
+
+    private static boolean isStringMap(Map<?, ?> map) {
+        for (Entry<?, ?> e : map.entrySet()) {
+            if (!(e.getKey() instanceof String) || !(e.getValue() instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the varint deltas of {@code longs} take less than the 8 bytes per value of
+     *         {@link FieldType#LONG_ARRAY}
+     */
+    private static boolean isDeltaCompact(long[] longs) {
+        final long fixedSize = 8L * longs.length;
+        long size = 0;
+        long prev = 0;
+        for (long l : longs) {
+            final long delta = l - prev;
+            // zig-zag, as in Varint.writeSignedVarLong
+            final long unsigned = (delta << 1) ^ (delta >> 63);
+            size += (64 - Long.numberOfLeadingZeros(unsigned | 1) + 6) / 7;
+            if (size >= fixedSize) {
+                return false;
+            }
+            prev = l;
+        }
+        return true;
+    }
+
+    private static void writeStringMap(Map<?, ?> map, DataOutput out) throws IOException {
+        writeUnsignedVarInt(map.size(), out);
+        for (Entry<?, ?> e : map.entrySet()) {
+            final String key = (String) e.getKey();
+            // 0 flags a key that's not in the dictionary and follows inline
+            Integer index = InternedMapKeys.indexOf(key);
+            if (index == null) {
+                writeUnsignedVarInt(0, out);
+                writeCompactString(key, out);
+            } else {
+                writeUnsignedVarInt(index.intValue() + 1, out);
+            }
+            writeCompactString((String) e.getValue(), out);
+        }
+    }
+
+    private static Map<Object, Object> readStringMap(DataInput in) throws IOException {
+        final int size = readUnsignedVarInt(in);
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final int keyRef = readUnsignedVarInt(in);
+            String key = keyRef == 0 ? readCompactString(in) : InternedMapKeys.keyAt(keyRef - 1);
+            map.put(key, readCompactString(in));
+        }
+        return map;
+    }
+
+    private static void writeDeltaLongArray(long[] longs, DataOutput data) throws IOException {
+        writeUnsignedVarInt(longs.length, data);
+        long prev = 0;
+        for (long l : longs) {
+            writeSignedVarLong(l - prev, data);
+            prev = l;
+        }
+    }
+
+    private static long[] readDeltaLongArray(DataInput in) throws IOException {
+        final int len = readUnsignedVarInt(in);
+        long[] longs = new long[len];
+        long prev = 0;
+        for (int i = 0; i < len; i++) {
+            prev += readSignedVarLong(in);
+            longs[i] = prev;
+        }
+        return longs;
+    }
+
+    private static String readCompactString(DataInput in) throws IOException {
+        byte[] utf8 = new byte[readUnsignedVarInt(in)];
+        in.readFully(utf8);
+        return new String(utf8, Charsets.UTF_8);
+    }
+
+    private static void writeCompactString(String value, DataOutput out) throws IOException {
+        byte[] utf8 = value.getBytes(Charsets.UTF_8);
+        writeUnsignedVarInt(utf8.length, out);
+        out.write(utf8);
+    }
+}
@@ -0,0 +1,76 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The dictionary of map keys the {@link FormatCommonV2_1#STRING_MAP string map} encoding writes as
+ * a one byte reference instead of the key itself.
+ * <p>
+ * String maps are mostly OSM tags, so the dictionary holds the most used OSM tag keys. It is part
+ * of the serialization format rather than of each repository, so that objects can be sent from a
+ * repository to another as they are. <b>Keys can hence never be removed nor reordered</b>, and
+ * there are at most 127 of them so that any reference fits in a single varint byte.
+ */
+final class InternedMapKeys {
+
+    static final ImmutableList<String> KEYS = ImmutableList.of("building", "source",
+            "highway", "name", "addr:housenumber", "addr:street", "addr:city", "addr:postcode",
+            "addr:country", "addr:state", "addr:place", "addr:suburb", "addr:housename",
+            "addr:interpolation", "natural", "source:date", "landuse", "surface", "power",
+            "waterway", "building:levels", "building:part", "amenity", "wall", "oneway", "ref",
+            "barrier", "access", "height", "maxspeed", "lanes", "layer", "service", "created_by",
+            "start_date", "leisure", "foot", "bicycle", "horse", "motor_vehicle", "hgv", "type",
+            "name:en", "int_name", "old_name", "alt_name", "note", "fixme", "FIXME",
+            "description", "operator", "railway", "shop", "tourism", "wikidata", "wikipedia",
+            "place", "population", "is_in", "ele", "water", "wetland", "crop", "lit", "bridge",
+            "tunnel", "width", "electrified", "gauge", "voltage", "frequency", "cables", "wires",
+            "route", "network", "religion", "denomination", "sport", "website", "phone",
+            "opening_hours", "cuisine", "level", "entrance", "roof:shape", "area", "historic",
+            "man_made", "boundary", "admin_level", "junction", "smoothness", "tracktype",
+            "cycleway", "sidewalk", "parking", "fee", "capacity", "colour", "material",
+            "designation", "shelter", "public_transport", "bus", "train", "usage",
+            "construction", "disused", "covered", "generator:source", "tiger:county",
+            "tiger:cfcc", "tiger:name_base", "tiger:name_type", "tiger:reviewed",
+            "tiger:zip_left", "tiger:zip_right", "tiger:tlid", "tiger:source",
+            "tiger:upload_uuid", "tiger:separated", "source:addr", "source:geometry",
+            "attribution", "import_uuid");
+
+    private static final Map<String, Integer> INDEX;
+    static {
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < KEYS.size(); i++) {
+            builder.put(KEYS.get(i), Integer.valueOf(i));
+        }
+        INDEX = builder.build();
+    }
+
+    private InternedMapKeys() {
+        // no instances
+    }
+
+    /**
+     * @return the index of {@code key} in the dictionary, or {@code null} if it's not in it
+     */
+    @Nullable
+    static Integer indexOf(String key) {
+        return INDEX.get(key);
+    }
+
+    /**
+     * @return the shared instance of the key at {@code index}
+     */
+    static String keyAt(int index) {
+        return KEYS.get(index);
+    }
+}
@@ -9,86 +9,293 @@
  */
 package org.locationtech.geogig.storage.memory;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
 
 import org.locationtech.geogig.api.ObjectId;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 
 /**
  * In memory directed graph implementation.
  * <p>
- * This class isn't used outside of {@link HeapGraphDatabase}. 
+ * Nodes are identified by a dense {@code int} index assigned on first addition. The raw bytes of
+ * each node's {@link ObjectId} are kept in a single {@code byte[]}, looked up through an open
+ * addressing hash table of indexes, and edges are kept as singly linked lists in parallel
+ * {@code int[]} arrays, so that the graph holds no per-node or per-edge objects.
+ * <p>
+ * This class isn't used outside of {@link HeapGraphDatabase}.
  * </p>
- * 
+ *
  * @author Justin Deoliveira, Boundless
  *
  */
 class Graph {
 
-    final Map<ObjectId,Node> nodes;
-    final Map<ObjectId,ObjectId> mappings;
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int NUM_BYTES = ObjectId.NUM_BYTES;
+
+    private static final byte ROOT_FLAG = 0x01;
+
+    /**
+     * number of nodes in the graph, node indexes are in the range {@code [0, size)}
+     */
+    private int size;
+
+    /**
+     * raw object ids, {@code NUM_BYTES} per node
+     */
+    private byte[] ids;
+
+    private byte[] flags;
+
+    /**
+     * head and tail of each node's outgoing (to parent) and incoming (from child) edge lists
+     */
+    private int[] firstOut, lastOut, firstIn, lastIn;
+
+    /**
+     * open addressing hash table of {@code node index + 1}, {@code 0} meaning empty slot
+     */
+    private int[] table;
+
+    private int edgeCount;
+
+    private int[] edgeSrc, edgeDst, nextOut, nextIn;
+
+    /**
+     * "extended" node attributes, expected to be set on very few nodes
+     */
+    private final Map<Integer, Map<String, String>> properties;
+
+    private final Map<ObjectId, ObjectId> mappings;
 
     /**
      * Creates an empty graph.
      */
     Graph() {
-        nodes = Maps.newConcurrentMap();
+        properties = Maps.newHashMap();
         mappings = Maps.newConcurrentMap();
+        clear();
     }
 
     /**
-     * Gets a node in the graph by its object id, creating a new node if one does already exist.
+     * @return the number of nodes in the graph
      */
-    public Node getOrAdd(ObjectId id) {
-        Optional<Node> n = get(id);
-        return n.isPresent() ? n.get() : newNode(id);
+    public synchronized int size() {
+        return size;
     }
 
     /**
-     * Looks up a node in the graph by its identifier. 
+     * Looks up a node in the graph by its identifier.
+     *
+     * @return the node index, or {@link #NONE} if the graph does not contain the node
      */
-    public Optional<Node> get(ObjectId id) {
-        return Optional.fromNullable(nodes.get(id));
+    public synchronized int get(ObjectId id) {
+        Preconditions.checkNotNull(id);
+        final int mask = table.length - 1;
+        for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+            final int entry = table[slot];
+            if (entry == 0) {
+                return NONE;
+            }
+            if (idEquals(entry - 1, id)) {
+                return entry - 1;
+            }
+        }
     }
 
     /**
-     * Creates a new node in the graph.
-     * 
-     * @param id The id of the new node. 
+     * Gets a node in the graph by its object id, creating a new node if one does not already exist.
+     *
+     * @return the node index
      */
-    public Node newNode(ObjectId id) {
-        Preconditions.checkNotNull(id);
-        Preconditions.checkState(nodes.get(id) == null);
-        Node n = new Node(id);
-        nodes.put(id, n);
-        return n;
+    public synchronized int getOrAdd(ObjectId id) {
+        int index = get(id);
+        return index == NONE ? newNode(id) : index;
+    }
+
+    /**
+     * @return the object id of the node at the given index
+     */
+    public synchronized ObjectId id(int index) {
+        checkIndex(index);
+        final int offset = index * NUM_BYTES;
+        return ObjectId.createNoClone(Arrays.copyOfRange(ids, offset, offset + NUM_BYTES));
+    }
+
+    /**
+     * Determines if a node is marked as a root node.
+     */
+    public synchronized boolean isRoot(int index) {
+        checkIndex(index);
+        return (flags[index] & ROOT_FLAG) != 0;
+    }
+
+    /**
+     * Marks/unmarks a node as a root node.
+     */
+    public synchronized void setRoot(int index, boolean root) {
+        checkIndex(index);
+        flags[index] = (byte) (root ? flags[index] | ROOT_FLAG : flags[index] & ~ROOT_FLAG);
+    }
+
+    /**
+     * @return {@code true} if the node has at least one outgoing relationship
+     */
+    public synchronized boolean hasOutgoing(int index) {
+        checkIndex(index);
+        return firstOut[index] != NONE;
+    }
+
+    /**
+     * Returns all nodes reachable from a node through an outgoing relationship, in insertion order.
+     */
+    public synchronized int[] to(int index) {
+        checkIndex(index);
+        int count = 0;
+        for (int e = firstOut[index]; e != NONE; e = nextOut[e]) {
+            count++;
+        }
+        int[] to = new int[count];
+        count = 0;
+        for (int e = firstOut[index]; e != NONE; e = nextOut[e]) {
+            to[count++] = edgeDst[e];
+        }
+        return to;
+    }
+
+    /**
+     * Returns all nodes related to a node through an incoming relationship, in insertion order.
+     */
+    public synchronized int[] from(int index) {
+        checkIndex(index);
+        int count = 0;
+        for (int e = firstIn[index]; e != NONE; e = nextIn[e]) {
+            count++;
+        }
+        int[] from = new int[count];
+        count = 0;
+        for (int e = firstIn[index]; e != NONE; e = nextIn[e]) {
+            from[count++] = edgeSrc[e];
+        }
+        return from;
     }
 
     /**
      * Relates two nodes in the graph.
-     * 
+     *
      * @param src The source (origin) node.
      * @param dst The destination (end) node.
      */
-    public Edge newEdge(Node src, Node dst) {
-        Edge e = new Edge(src, dst);
-        src.out.add(e);
-        dst.in.add(e);
-        return e;
+    public synchronized void newEdge(int src, int dst) {
+        checkIndex(src);
+        checkIndex(dst);
+        if (edgeCount == edgeSrc.length) {
+            final int capacity = grow(edgeCount);
+            edgeSrc = Arrays.copyOf(edgeSrc, capacity);
+            edgeDst = Arrays.copyOf(edgeDst, capacity);
+            nextOut = Arrays.copyOf(nextOut, capacity);
+            nextIn = Arrays.copyOf(nextIn, capacity);
+        }
+        final int e = edgeCount++;
+        edgeSrc[e] = src;
+        edgeDst[e] = dst;
+        nextOut[e] = NONE;
+        nextIn[e] = NONE;
+
+        if (lastOut[src] == NONE) {
+            firstOut[src] = e;
+        } else {
+            nextOut[lastOut[src]] = e;
+        }
+        lastOut[src] = e;
+
+        if (lastIn[dst] == NONE) {
+            firstIn[dst] = e;
+        } else {
+            nextIn[lastIn[dst]] = e;
+        }
+        lastIn[dst] = e;
     }
 
     /**
-     * Creates an mapping/alias. 
+     * Computes the length of the shortest path from a node to a node with no outgoing
+     * relationships, walking the graph breadth first and tracking visited nodes in a
+     * {@link BitSet}.
+     */
+    public synchronized int depth(final int start) {
+        checkIndex(start);
+        BitSet seen = new BitSet(size);
+        seen.set(start);
+
+        int[] current = new int[] { start };
+        int currentSize = 1;
+        int[] next = new int[16];
+        int depth = 0;
+        while (currentSize > 0) {
+            int nextSize = 0;
+            for (int i = 0; i < currentSize; i++) {
+                final int node = current[i];
+                if (firstOut[node] == NONE) {
+                    return depth;
+                }
+                for (int e = firstOut[node]; e != NONE; e = nextOut[e]) {
+                    final int parent = edgeDst[e];
+                    if (!seen.get(parent)) {
+                        seen.set(parent);
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, grow(nextSize));
+                        }
+                        next[nextSize++] = parent;
+                    }
+                }
+            }
+            int[] tmp = current;
+            current = next;
+            next = tmp;
+            currentSize = nextSize;
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Associates a property with a node.
+     */
+    public synchronized void put(int index, String key, String value) {
+        checkIndex(index);
+        Map<String, String> props = properties.get(Integer.valueOf(index));
+        if (props == null) {
+            props = Maps.newHashMap();
+            properties.put(Integer.valueOf(index), props);
+        }
+        props.put(key, value);
+    }
+
+    /**
+     * Retrieves a property of a node, or {@code null} if not set.
+     */
+    public synchronized String get(int index, String key) {
+        checkIndex(index);
+        Map<String, String> props = properties.get(Integer.valueOf(index));
+        return props == null ? null : props.get(key);
+    }
+
+    /**
+     * Creates an mapping/alias.
      */
     public void map(ObjectId mapped, ObjectId original) {
         mappings.put(mapped, original);
     }
 
     /**
-     * Returns a mapping, or <code>null</code> if one does not exist. 
+     * Returns a mapping, or <code>null</code> if one does not exist.
      *
      */
     public ObjectId getMapping(ObjectId commitId) {
@@ -98,9 +305,115 @@ class Graph {
     /**
      * Clears the contents of the graph.
      */
-    public void clear() {
-        nodes.clear();
+    public synchronized void clear() {
+        size = 0;
+        ids = new byte[INITIAL_CAPACITY * NUM_BYTES];
+        flags = new byte[INITIAL_CAPACITY];
+        firstOut = newIndexArray(INITIAL_CAPACITY);
+        lastOut = newIndexArray(INITIAL_CAPACITY);
+        firstIn = newIndexArray(INITIAL_CAPACITY);
+        lastIn = newIndexArray(INITIAL_CAPACITY);
+        table = new int[2 * INITIAL_CAPACITY];
+
+        edgeCount = 0;
+        edgeSrc = new int[INITIAL_CAPACITY];
+        edgeDst = new int[INITIAL_CAPACITY];
+        nextOut = new int[INITIAL_CAPACITY];
+        nextIn = new int[INITIAL_CAPACITY];
+
+        properties.clear();
         mappings.clear();
     }
 
+    private int newNode(ObjectId id) {
+        if (size == flags.length) {
+            final int capacity = grow(size);
+            ids = Arrays.copyOf(ids, capacity * NUM_BYTES);
+            flags = Arrays.copyOf(flags, capacity);
+            firstOut = copyOfIndexArray(firstOut, capacity);
+            lastOut = copyOfIndexArray(lastOut, capacity);
+            firstIn = copyOfIndexArray(firstIn, capacity);
+            lastIn = copyOfIndexArray(lastIn, capacity);
+        }
+        final int index = size++;
+        final int offset = index * NUM_BYTES;
+        for (int i = 0; i < NUM_BYTES; i++) {
+            ids[offset + i] = (byte) id.byteN(i);
+        }
+        if (2 * size > table.length) {
+            rehash(2 * table.length);
+        } else {
+            insert(table, index, hash(id));
+        }
+        return index;
+    }
+
+    private void rehash(final int tableSize) {
+        int[] newTable = new int[tableSize];
+        for (int index = 0; index < size; index++) {
+            insert(newTable, index, storedHash(index));
+        }
+        this.table = newTable;
+    }
+
+    private static void insert(int[] table, int index, int hash) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private boolean idEquals(int index, ObjectId id) {
+        final int offset = index * NUM_BYTES;
+        for (int i = 0; i < NUM_BYTES; i++) {
+            if ((ids[offset + i] & 0xFF) != id.byteN(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #hash(ObjectId)} but computed out of the stored raw id
+     */
+    private int storedHash(int index) {
+        final int offset = index * NUM_BYTES;
+        int h = (ids[offset] & 0xFF)//
+                | ((ids[offset + 1] & 0xFF) << 8)//
+                | ((ids[offset + 2] & 0xFF) << 16)//
+                | ((ids[offset + 3] & 0xFF) << 24);
+        return spread(h);
+    }
+
+    private static int hash(ObjectId id) {
+        return spread(id.hashCode());
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        return h & 0x7FFFFFFF;
+    }
+
+    private void checkIndex(int index) {
+        Preconditions.checkElementIndex(index, size);
+    }
+
+    private static int grow(int capacity) {
+        return capacity + Math.max(16, capacity >> 1);
+    }
+
+    private static int[] newIndexArray(int capacity) {
+        int[] array = new int[capacity];
+        Arrays.fill(array, NONE);
+        return array;
+    }
+
+    private static int[] copyOfIndexArray(int[] array, int capacity) {
+        final int length = array.length;
+        int[] copy = Arrays.copyOf(array, capacity);
+        Arrays.fill(copy, length, capacity, NONE);
+        return copy;
+    }
 }
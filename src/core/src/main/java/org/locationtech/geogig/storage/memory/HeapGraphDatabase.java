@@ -9,42 +9,33 @@
  */
 package org.locationtech.geogig.storage.memory;
 
-import static com.google.common.collect.Iterables.filter;
-import static com.google.common.collect.Iterables.transform;
-
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.plumbing.ResolveGeogigURI;
+import org.locationtech.geogig.storage.GraphAncestors;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.LowestCommonAncestor;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 /**
  * Provides an default in memory implementation of a GeoGig Graph Database.
+ * <p>
+ * Commit ids are mapped to dense {@code int} indexes and parent/child relationships are stored in
+ * primitive arrays by {@link Graph}, keeping the per-commit heap footprint to a few dozen bytes.
  */
 public class HeapGraphDatabase implements GraphDatabase {
 
-    static final Function<Node, ObjectId> NODE_TO_ID = new Function<Node, ObjectId>() {
-        @Override
-        public ObjectId apply(Node n) {
-            return n.id;
-        }
-    };
-
     static final Map<URI, Ref> graphs = Maps.newConcurrentMap();
 
     final Platform platform;
@@ -113,58 +104,62 @@ public class HeapGraphDatabase implements GraphDatabase {
 
     @Override
     public boolean exists(ObjectId commitId) {
-        return graph.get(commitId).isPresent();
+        return graph.get(commitId) != Graph.NONE;
     }
 
     @Override
     public ImmutableList<ObjectId> getParents(ObjectId commitId) throws IllegalArgumentException {
-        return graph.get(commitId).transform(new Function<Node, ImmutableList<ObjectId>>() {
-            @Override
-            public ImmutableList<ObjectId> apply(Node n) {
-                // transform outgoing nodes to id
-                // filter for null to skip fake root node
-                return new ImmutableList.Builder<ObjectId>().addAll(
-                        filter(transform(n.to(), NODE_TO_ID), Predicates.notNull())).build();
-            }
-        }).or(ImmutableList.<ObjectId> of());
+        final int index = graph.get(commitId);
+        if (index == Graph.NONE) {
+            return ImmutableList.of();
+        }
+        return toIds(graph.to(index));
     }
 
     @Override
     public ImmutableList<ObjectId> getChildren(ObjectId commitId) throws IllegalArgumentException {
-        return graph.get(commitId).transform(new Function<Node, ImmutableList<ObjectId>>() {
-            @Override
-            public ImmutableList<ObjectId> apply(Node n) {
-                return new ImmutableList.Builder<ObjectId>()
-                        .addAll(transform(n.from(), NODE_TO_ID)).build();
-            }
-        }).or(ImmutableList.<ObjectId> of());
+        final int index = graph.get(commitId);
+        if (index == Graph.NONE) {
+            return ImmutableList.of();
+        }
+        return toIds(graph.from(index));
+    }
+
+    private ImmutableList<ObjectId> toIds(int[] indexes) {
+        ImmutableList.Builder<ObjectId> builder = ImmutableList.builder();
+        for (int i : indexes) {
+            builder.add(graph.id(i));
+        }
+        return builder.build();
     }
 
     @Override
     public boolean put(ObjectId commitId, ImmutableList<ObjectId> parentIds) {
-        Node n = graph.getOrAdd(commitId);
-
-        if (parentIds.isEmpty()) {
-            // the root node, only update on first addition
-            if (!n.isRoot()) {
-                n.setRoot(true);
-                return true;
+        synchronized (graph) {
+            final int n = graph.getOrAdd(commitId);
+
+            if (parentIds.isEmpty()) {
+                // the root node, only update on first addition
+                if (!graph.isRoot(n)) {
+                    graph.setRoot(n, true);
+                    return true;
+                }
             }
-        }
 
-        // has the node been attached to graph?
-        if (Iterables.isEmpty(n.to())) {
-            // nope, attach it
-            for (ObjectId parent : parentIds) {
-                Node p = graph.getOrAdd(parent);
-                graph.newEdge(n, p);
-            }
+            // has the node been attached to graph?
+            if (!graph.hasOutgoing(n)) {
+                // nope, attach it
+                for (ObjectId parent : parentIds) {
+                    final int p = graph.getOrAdd(parent);
+                    graph.newEdge(n, p);
+                }
 
-            // only mark as updated if it is actually attached
-            boolean added = !Iterables.isEmpty(n.to());
-            return added;
+                // only mark as updated if it is actually attached
+                boolean added = graph.hasOutgoing(n);
+                return added;
+            }
+            return false;
         }
-        return false;
     }
 
     @Override
@@ -180,27 +175,31 @@ public class HeapGraphDatabase implements GraphDatabase {
     @Override
     public int getDepth(ObjectId commitId) {
         Preconditions.checkNotNull(commitId);
-        Optional<Node> nodeOpt = graph.get(commitId);
-        Preconditions.checkArgument(nodeOpt.isPresent(), "No graph entry for commit %s on %s",
+        final int index = graph.get(commitId);
+        Preconditions.checkArgument(index != Graph.NONE, "No graph entry for commit %s on %s",
                 commitId, this.toString());
-        Node node = nodeOpt.get();
-        PathToRootWalker walker = new PathToRootWalker(node);
-        int depth = 0;
-        O: while (walker.hasNext()) {
-            for (Node n : walker.next()) {
-                if (Iterables.size(n.to()) == 0) {
-                    break O;
-                }
-            }
-            depth++;
-        }
-        return depth;
+        return graph.depth(index);
+    }
+
+    @Override
+    public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+        return LowestCommonAncestor.find(this, leftId, rightId);
+    }
+
+    @Override
+    public List<ObjectId> getAncestors(ObjectId commitId, int limit) {
+        return GraphAncestors.breadthFirst(this, commitId, limit);
     }
 
     @Override
     public void setProperty(ObjectId commitId, String propertyName, String propertyValue) {
-        graph.get(commitId).get().put(propertyName, propertyValue);
-        ;
+        graph.put(nodeIndex(commitId), propertyName, propertyValue);
+    }
+
+    private int nodeIndex(ObjectId commitId) {
+        final int index = graph.get(commitId);
+        Preconditions.checkState(index != Graph.NONE, "No graph entry for commit %s", commitId);
+        return index;
     }
 
     @Override
@@ -235,48 +234,44 @@ public class HeapGraphDatabase implements GraphDatabase {
 
     protected class HeapGraphNode extends GraphNode {
 
-        Node node;
+        final int index;
 
-        public HeapGraphNode(Node node) {
-            this.node = node;
+        final ObjectId id;
+
+        public HeapGraphNode(int index) {
+            this.index = index;
+            this.id = graph.id(index);
         }
 
         @Override
         public ObjectId getIdentifier() {
-            return node.id;
+            return id;
         }
 
         @Override
         public Iterator<GraphEdge> getEdges(final Direction direction) {
-            Iterator<Edge> nodeEdges;
-            switch (direction) {
-            case OUT:
-                nodeEdges = node.out.iterator();
-                break;
-            case IN:
-                nodeEdges = node.in.iterator();
-                break;
-            default:
-                nodeEdges = Iterators.concat(node.in.iterator(), node.out.iterator());
+            List<GraphEdge> edges = new ArrayList<GraphEdge>();
+            if (direction == Direction.IN || direction == Direction.BOTH) {
+                for (int child : graph.from(index)) {
+                    edges.add(new GraphEdge(new HeapGraphNode(child), this));
+                }
             }
-            List<GraphEdge> edges = new LinkedList<GraphEdge>();
-            while (nodeEdges.hasNext()) {
-                Edge nodeEdge = nodeEdges.next();
-                edges.add(new GraphEdge(new HeapGraphNode(nodeEdge.src), new HeapGraphNode(
-                        nodeEdge.dst)));
+            if (direction == Direction.OUT || direction == Direction.BOTH) {
+                for (int parent : graph.to(index)) {
+                    edges.add(new GraphEdge(this, new HeapGraphNode(parent)));
+                }
             }
             return edges.iterator();
         }
 
         @Override
         public boolean isSparse() {
-            return node.props != null && node.props.containsKey(SPARSE_FLAG)
-                    && Boolean.valueOf(node.props.get(SPARSE_FLAG));
+            return Boolean.valueOf(graph.get(index, SPARSE_FLAG));
         }
     }
 
     @Override
     public GraphNode getNode(ObjectId id) {
-        return new HeapGraphNode(graph.get(id).get());
+        return new HeapGraphNode(nodeIndex(id));
     }
 }
@@ -0,0 +1,53 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number of bytes of off-heap memory shared by several {@link OffHeapDeduplicator}s, which
+ * reserve it before allocating their tables and give it back once they're done with them.
+ */
+class MemoryBudget {
+
+    private final AtomicLong available;
+
+    MemoryBudget(long maxMemory) {
+        this.available = new AtomicLong(maxMemory);
+    }
+
+    /**
+     * @return whether {@code bytes} were available and are now reserved
+     */
+    boolean tryReserve(long bytes) {
+        while (true) {
+            long current = available.get();
+            if (current < bytes) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves {@code bytes} even if they exceed the budget, for the minimal allocations a
+     * deduplicator can't work without.
+     */
+    void forceReserve(long bytes) {
+        available.addAndGet(-bytes);
+    }
+
+    void release(long bytes) {
+        available.addAndGet(bytes);
+    }
+
+    long available() {
+        return available.get();
+    }
+}
@@ -0,0 +1,98 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.memory;
+
+import java.io.File;
+import java.net.URI;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.plumbing.ResolveGeogigURI;
+import org.locationtech.geogig.repository.Hints;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.DeduplicationService;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+
+/**
+ * Creates {@link OffHeapDeduplicator}s whose off-heap memory, all of them together, is limited by
+ * the {@code dedup.maxmemory} config option, in bytes, spilling to the repository's {@code tmp}
+ * directory beyond that, or to the system's temporary directory if the repository is not in the
+ * file system.
+ */
+public class OffHeapDeduplicationService implements DeduplicationService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(OffHeapDeduplicationService.class);
+
+    public static final String MAX_MEMORY_CONFIG = "dedup.maxmemory";
+
+    public static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+
+    private final Platform platform;
+
+    private final ConfigDatabase configDB;
+
+    private final Hints hints;
+
+    private MemoryBudget budget;
+
+    @Inject
+    public OffHeapDeduplicationService(Platform platform, ConfigDatabase configDB,
+            @Nullable Hints hints) {
+        this.platform = platform;
+        this.configDB = configDB;
+        this.hints = hints;
+    }
+
+    @Override
+    public Deduplicator createDeduplicator() {
+        return new OffHeapDeduplicator(getBudget(), getSpillDir());
+    }
+
+    private synchronized MemoryBudget getBudget() {
+        if (budget == null) {
+            budget = new MemoryBudget(getMaxMemory());
+        }
+        return budget;
+    }
+
+    private File getSpillDir() {
+        Optional<URI> repoURI = new ResolveGeogigURI(platform, hints).call();
+        if (repoURI.isPresent() && "file".equals(repoURI.get().getScheme())) {
+            File tmpDir = new File(new File(repoURI.get()), "tmp");
+            Preconditions.checkState(tmpDir.exists() || tmpDir.mkdir(),
+                    "unable to create directory %s", tmpDir.getAbsolutePath());
+            return tmpDir;
+        }
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    private long getMaxMemory() {
+        Optional<String> configured;
+        try {
+            configured = configDB.get(MAX_MEMORY_CONFIG);
+        } catch (RuntimeException e) {
+            // not in a repository, use the default
+            configured = Optional.absent();
+        }
+        if (configured.isPresent()) {
+            try {
+                return Long.parseLong(configured.get().trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid value for {}: '{}'. Using the default value of {} bytes",
+                        MAX_MEMORY_CONFIG, configured.get(), DEFAULT_MAX_MEMORY);
+            }
+        }
+        return DEFAULT_MAX_MEMORY;
+    }
+}
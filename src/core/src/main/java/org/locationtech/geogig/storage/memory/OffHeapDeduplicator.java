@@ -0,0 +1,600 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * A {@link Deduplicator} whose memory usage is bounded, for transfers too big to track the visited
+ * ids in a heap {@code HashSet}.
+ * <p>
+ * Visited ids are kept as raw 20 byte values in an open addressing hash table allocated outside
+ * the java heap, which doubles in size as needed for as long as its {@link MemoryBudget}, which
+ * may be shared with other deduplicators, allows. Once the table is full it's spilled to disk as
+ * a sorted run of ids and cleared. Ids are looked up in the table first and then in each run,
+ * where a bloom filter avoids most of the disk accesses for ids that haven't been visited, and a
+ * fan-out index by the first two bytes of the id narrows the binary search otherwise. Runs are
+ * merged into one when there are more than {@link #MAX_RUNS} of them.
+ * <p>
+ * The table slot of an id is given by its leading bytes, and probing doesn't wrap around the end
+ * of the table, so the table is nearly sorted already and sorting it before a spill is cheap.
+ * <p>
+ * Besides the off-heap table, about 10 bits per spilled id are used in the heap for the bloom
+ * filters.
+ */
+public class OffHeapDeduplicator implements Deduplicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapDeduplicator.class);
+
+    private static final int ID_SIZE = ObjectId.NUM_BYTES;
+
+    private static final int MIN_CAPACITY_BITS = 10;
+
+    private static final int INITIAL_CAPACITY_BITS = 14;
+
+    /**
+     * Number of slots per off-heap buffer, so that no single buffer is too big to allocate
+     */
+    private static final int CHUNK_BITS = 20;
+
+    /**
+     * Slots past the end of the table where the probing of the last slots can overflow to
+     */
+    private static final int OVERFLOW = 1024;
+
+    private static final double LOAD_FACTOR = 0.75;
+
+    static final int MAX_RUNS = 8;
+
+    /**
+     * Number of ids per mapped region of a run, so that regions hold whole ids
+     */
+    private static final int IDS_PER_REGION = (1 << 30) / ID_SIZE;
+
+    private final MemoryBudget budget;
+
+    private final File tempDir;
+
+    private ByteBuffer[] chunks;
+
+    private int capacityBits;
+
+    private int size;
+
+    private boolean nullVisited;
+
+    private List<SortedRun> runs = new ArrayList<SortedRun>();
+
+    private final byte[] key = new byte[ID_SIZE];
+
+    /**
+     * @param maxMemory the maximum number of bytes to use for the off-heap table
+     * @param tempDir where to spill the table to once it reaches {@code maxMemory}
+     */
+    public OffHeapDeduplicator(long maxMemory, File tempDir) {
+        this(new MemoryBudget(maxMemory), tempDir);
+    }
+
+    /**
+     * @param budget the off-heap memory to reserve the table from
+     * @param tempDir where to spill the table to once it can't grow any further
+     */
+    OffHeapDeduplicator(MemoryBudget budget, File tempDir) {
+        this.budget = budget;
+        this.tempDir = tempDir;
+        int bits = INITIAL_CAPACITY_BITS;
+        while (bits > MIN_CAPACITY_BITS && !budget.tryReserve(tableBytes(bits))) {
+            bits--;
+        }
+        if (bits == MIN_CAPACITY_BITS && !budget.tryReserve(tableBytes(bits))) {
+            // the smallest table is needed anyway, it spills as soon as it's full
+            budget.forceReserve(tableBytes(bits));
+        }
+        allocate(bits);
+    }
+
+    private static long tableBytes(int capacityBits) {
+        return ((1L << capacityBits) + OVERFLOW) * ID_SIZE;
+    }
+
+    private void allocate(int bits) {
+        final long slots = (1L << bits) + OVERFLOW;
+        final int slotsPerChunk = 1 << CHUNK_BITS;
+        final int numChunks = (int) ((slots + slotsPerChunk - 1) / slotsPerChunk);
+        chunks = new ByteBuffer[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            long chunkSlots = Math.min(slotsPerChunk, slots - (long) i * slotsPerChunk);
+            chunks[i] = ByteBuffer.allocateDirect((int) chunkSlots * ID_SIZE);
+        }
+        capacityBits = bits;
+    }
+
+    private int slotCount() {
+        return (1 << capacityBits) + OVERFLOW;
+    }
+
+    @Override
+    public boolean isDuplicate(ObjectId id) {
+        if (id.isNull()) {
+            return nullVisited;
+        }
+        id.getRawValue(key);
+        return find(key) >= 0 || inRuns(key);
+    }
+
+    @Override
+    public boolean visit(ObjectId id) {
+        if (id.isNull()) {
+            boolean visited = nullVisited;
+            nullVisited = true;
+            return visited;
+        }
+        id.getRawValue(key);
+        int slot = find(key);
+        if (slot >= 0 || inRuns(key)) {
+            return true;
+        }
+        slot = -(slot + 1);
+        while (slot == slotCount() || size + 1 > LOAD_FACTOR * (1 << capacityBits)) {
+            growOrSpill();
+            slot = -(find(key) + 1);
+        }
+        put(slot, key);
+        size++;
+        return false;
+    }
+
+    @Override
+    public void removeDuplicates(List<ObjectId> ids) {
+        List<ObjectId> unique = new ArrayList<ObjectId>(ids.size());
+        for (ObjectId id : ids) {
+            if (!isDuplicate(id)) {
+                unique.add(id);
+            }
+        }
+        if (unique.size() < ids.size()) {
+            ids.clear();
+            ids.addAll(unique);
+        }
+    }
+
+    /**
+     * Forgets all the visited ids, keeping the table and its reserved memory for reuse.
+     */
+    @Override
+    public void reset() {
+        deleteRuns();
+        clear();
+        nullVisited = false;
+    }
+
+    @Override
+    public void release() {
+        deleteRuns();
+        if (chunks != null) {
+            chunks = null;
+            budget.release(tableBytes(capacityBits));
+        }
+    }
+
+    private void deleteRuns() {
+        for (SortedRun run : runs) {
+            run.delete();
+        }
+        runs = new ArrayList<SortedRun>();
+    }
+
+    /**
+     * @return the slot of {@code id} if present, or {@code -(slot + 1)} of the empty slot where it
+     *         would be inserted, {@code slot} being the number of slots if there's no room left
+     */
+    private int find(byte[] id) {
+        final int slots = slotCount();
+        for (int slot = home(id); slot < slots; slot++) {
+            ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+            int offset = (slot & ((1 << CHUNK_BITS) - 1)) * ID_SIZE;
+            if (isEmpty(chunk, offset)) {
+                return -(slot + 1);
+            }
+            if (compare(chunk, offset, id) == 0) {
+                return slot;
+            }
+        }
+        return -(slots + 1);
+    }
+
+    /**
+     * The first slot to probe for {@code id}, which is given by its leading bits so that slot
+     * order follows id order
+     */
+    private int home(byte[] id) {
+        int leading = ((id[0] & 0xFF) << 24) | ((id[1] & 0xFF) << 16) | ((id[2] & 0xFF) << 8)
+                | (id[3] & 0xFF);
+        return leading >>> (32 - capacityBits);
+    }
+
+    private void put(int slot, byte[] id) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int offset = (slot & ((1 << CHUNK_BITS) - 1)) * ID_SIZE;
+        for (int i = 0; i < ID_SIZE; i++) {
+            chunk.put(offset + i, id[i]);
+        }
+    }
+
+    private void get(int slot, byte[] target) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int offset = (slot & ((1 << CHUNK_BITS) - 1)) * ID_SIZE;
+        for (int i = 0; i < ID_SIZE; i++) {
+            target[i] = chunk.get(offset + i);
+        }
+    }
+
+    private static boolean isEmpty(ByteBuffer chunk, int offset) {
+        return chunk.getLong(offset) == 0 && chunk.getLong(offset + 8) == 0
+                && chunk.getInt(offset + 16) == 0;
+    }
+
+    private static int compare(ByteBuffer buffer, int offset, byte[] id) {
+        for (int i = 0; i < ID_SIZE; i++) {
+            int c = (buffer.get(offset + i) & 0xFF) - (id[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static int compare(byte[] id1, byte[] id2) {
+        for (int i = 0; i < ID_SIZE; i++) {
+            int c = (id1[i] & 0xFF) - (id2[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private boolean inRuns(byte[] id) {
+        for (SortedRun run : runs) {
+            if (run.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void growOrSpill() {
+        final int bits = capacityBits + 1;
+        if (bits <= 30 && budget.tryReserve(tableBytes(bits))) {
+            final long oldBytes = tableBytes(capacityBits);
+            if (rehash(bits)) {
+                budget.release(oldBytes);
+                return;
+            }
+            budget.release(tableBytes(bits));
+        }
+        spill();
+    }
+
+    /**
+     * Moves the ids to a new table of {@code 2^bits} slots
+     * 
+     * @return {@code false} if the ids don't fit in the new table due to clustering at its end,
+     *         in which case the current table is kept
+     */
+    private boolean rehash(int bits) {
+        final ByteBuffer[] oldChunks = chunks;
+        final int oldBits = capacityBits;
+        final int oldSlots = slotCount();
+        allocate(bits);
+        byte[] id = new byte[ID_SIZE];
+        for (int slot = 0; slot < oldSlots; slot++) {
+            ByteBuffer chunk = oldChunks[slot >>> CHUNK_BITS];
+            int offset = (slot & ((1 << CHUNK_BITS) - 1)) * ID_SIZE;
+            if (!isEmpty(chunk, offset)) {
+                for (int i = 0; i < ID_SIZE; i++) {
+                    id[i] = chunk.get(offset + i);
+                }
+                int free = -(find(id) + 1);
+                if (free == slotCount()) {
+                    chunks = oldChunks;
+                    capacityBits = oldBits;
+                    return false;
+                }
+                put(free, id);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the ids in the table to a new sorted run on disk and clears the table
+     */
+    private void spill() {
+        // compact the ids to the start of the table, preserving slot order
+        final int slots = slotCount();
+        byte[] id = new byte[ID_SIZE];
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+            int offset = (slot & ((1 << CHUNK_BITS) - 1)) * ID_SIZE;
+            if (!isEmpty(chunk, offset)) {
+                if (slot != count) {
+                    get(slot, id);
+                    put(count, id);
+                }
+                count++;
+            }
+        }
+        // ids are only out of order within collision clusters, so insertion sort is about linear
+        byte[] prev = new byte[ID_SIZE];
+        for (int i = 1; i < count; i++) {
+            get(i, id);
+            int j = i - 1;
+            get(j, prev);
+            while (compare(prev, id) > 0) {
+                put(j + 1, prev);
+                if (--j < 0) {
+                    break;
+                }
+                get(j, prev);
+            }
+            put(j + 1, id);
+        }
+
+        try {
+            File file = File.createTempFile("dedup", ".ids", tempDir);
+            file.deleteOnExit();
+            RunWriter writer = new RunWriter(file, count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    get(i, id);
+                    writer.write(id);
+                }
+            } finally {
+                writer.close();
+            }
+            runs.add(writer.open());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        LOGGER.debug("Spilled {} ids to disk, {} runs", count, runs.size());
+
+        clear();
+        if (runs.size() > MAX_RUNS) {
+            mergeRuns();
+        }
+    }
+
+    /**
+     * Empties the table in place
+     */
+    private void clear() {
+        for (ByteBuffer chunk : chunks) {
+            for (int i = 0; i < chunk.capacity(); i += 4) {
+                chunk.putInt(i, 0);
+            }
+        }
+        size = 0;
+    }
+
+    private void mergeRuns() {
+        long total = 0;
+        PriorityQueue<RunCursor> cursors = new PriorityQueue<RunCursor>();
+        for (SortedRun run : runs) {
+            total += run.count;
+            RunCursor cursor = new RunCursor(run);
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        try {
+            File file = File.createTempFile("dedup", ".ids", tempDir);
+            file.deleteOnExit();
+            RunWriter writer = new RunWriter(file, total);
+            try {
+                while (!cursors.isEmpty()) {
+                    RunCursor cursor = cursors.poll();
+                    writer.write(cursor.current);
+                    if (cursor.next()) {
+                        cursors.add(cursor);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            SortedRun merged = writer.open();
+            deleteRuns();
+            runs.add(merged);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        LOGGER.debug("Merged spilled ids into a single run of {} ids", total);
+    }
+
+    /**
+     * An immutable sorted list of ids on disk
+     */
+    private static class SortedRun {
+
+        private final File file;
+
+        private final long count;
+
+        private final MappedByteBuffer[] regions;
+
+        /**
+         * {@code fanout[p]} is the index of the first id whose two leading bytes are {@code >= p}
+         */
+        private final long[] fanout;
+
+        private final BloomFilter<byte[]> bloom;
+
+        SortedRun(File file, long count, long[] fanout, BloomFilter<byte[]> bloom)
+                throws IOException {
+            this.file = file;
+            this.count = count;
+            this.fanout = fanout;
+            this.bloom = bloom;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                int numRegions = (int) ((count + IDS_PER_REGION - 1) / IDS_PER_REGION);
+                regions = new MappedByteBuffer[numRegions];
+                for (int i = 0; i < numRegions; i++) {
+                    long first = (long) i * IDS_PER_REGION;
+                    long ids = Math.min(IDS_PER_REGION, count - first);
+                    regions[i] = channel.map(MapMode.READ_ONLY, first * ID_SIZE, ids * ID_SIZE);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+
+        boolean contains(byte[] id) {
+            if (!bloom.mightContain(id)) {
+                return false;
+            }
+            int prefix = ((id[0] & 0xFF) << 8) | (id[1] & 0xFF);
+            long low = fanout[prefix];
+            long high = fanout[prefix + 1] - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                int c = compare(region(mid), offset(mid), id);
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        ByteBuffer region(long index) {
+            return regions[(int) (index / IDS_PER_REGION)];
+        }
+
+        int offset(long index) {
+            return (int) (index % IDS_PER_REGION) * ID_SIZE;
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                LOGGER.debug("Unable to delete {}", file);
+            }
+        }
+    }
+
+    /**
+     * Writes a sorted run, building its fan-out index and bloom filter along the way
+     */
+    private static class RunWriter {
+
+        private final File file;
+
+        private final RandomAccessFile raf;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(ID_SIZE * 4096);
+
+        private final long[] fanout = new long[(1 << 16) + 1];
+
+        private final BloomFilter<byte[]> bloom;
+
+        private long count;
+
+        RunWriter(File file, long expectedIds) throws IOException {
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.bloom = BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(1, expectedIds),
+                    0.01);
+        }
+
+        void write(byte[] id) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(id);
+            bloom.put(id);
+            fanout[(((id[0] & 0xFF) << 8) | (id[1] & 0xFF)) + 1]++;
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            FileChannel channel = raf.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                raf.close();
+            }
+        }
+
+        SortedRun open() throws IOException {
+            for (int i = 1; i < fanout.length; i++) {
+                fanout[i] += fanout[i - 1];
+            }
+            return new SortedRun(file, count, fanout, bloom);
+        }
+    }
+
+    private static class RunCursor implements Comparable<RunCursor> {
+
+        private final SortedRun run;
+
+        private long index = -1;
+
+        final byte[] current = new byte[ID_SIZE];
+
+        RunCursor(SortedRun run) {
+            this.run = run;
+        }
+
+        boolean next() {
+            if (++index >= run.count) {
+                return false;
+            }
+            ByteBuffer region = run.region(index);
+            int offset = run.offset(index);
+            for (int i = 0; i < ID_SIZE; i++) {
+                current[i] = region.get(offset + i);
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunCursor o) {
+            return compare(current, o.current);
+        }
+    }
+}
@@ -896,6 +896,12 @@ public class TextSerializationFactory implements ObjectSerializingFactory {
         return OBJECT_READER.read(id, in);
     }
 
+    @Override
+    public TYPE readType(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        return RevObject.TYPE.valueOf(requireLine(reader).trim());
+    }
+
     @Override
     public void write(RevObject o, OutputStream out) throws IOException {
         writer(o.getType()).write(o, out);
@@ -0,0 +1,41 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.vividsolutions.jts.geom.Envelope;
+
+public class RepositoryFilterTest extends Assert {
+
+    @Test
+    public void testBoundsOfSpatialFilters() {
+        RepositoryFilter filter = new RepositoryFilter();
+        filter.addFilter("default", "CQL", "BBOX(pp,0,0,10,10)");
+        filter.addFilter("Lines", "CQL", "BBOX(pp,20,20,30,30) AND sp = 'StringProp2_1'");
+
+        Optional<Envelope> bounds = filter.getBounds();
+        assertTrue(bounds.isPresent());
+        assertEquals(new Envelope(0, 30, 0, 30), bounds.get());
+    }
+
+    @Test
+    public void testBoundsOfAttributeFilter() {
+        RepositoryFilter filter = new RepositoryFilter();
+        filter.addFilter("default", "CQL", "BBOX(pp,0,0,10,10)");
+        filter.addFilter("Lines", "CQL", "sp = 'StringProp2_1'");
+
+        assertFalse(filter.getBounds().isPresent());
+    }
+
+    @Test
+    public void testBoundsWithoutFilters() {
+        assertFalse(new RepositoryFilter().getBounds().isPresent());
+    }
+}
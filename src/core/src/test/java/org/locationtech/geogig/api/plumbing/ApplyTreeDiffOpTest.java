@@ -0,0 +1,146 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.MemoryModule;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.di.GeogigModule;
+import org.locationtech.geogig.repository.DepthSearch;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.util.Modules;
+
+public class ApplyTreeDiffOpTest extends Assert {
+
+    private Context context;
+
+    private ObjectDatabase odb;
+
+    private RevTree baseRoot;
+
+    private ObjectId metadataId;
+
+    @Before
+    public void setUp() {
+        context = Guice.createInjector(
+                Modules.override(new GeogigModule()).with(new MemoryModule(null))).getInstance(
+                Context.class);
+        odb = context.objectDatabase();
+        odb.open();
+
+        metadataId = ObjectId.forString("featureType");
+
+        // a/f1, a/b/f2, c/f3
+        RevTree b = new RevTreeBuilder(odb).put(feature("f2")).build();
+        odb.put(b);
+        RevTree a = new RevTreeBuilder(odb).put(feature("f1"))
+                .put(Node.tree("b", b.getId(), metadataId)).build();
+        odb.put(a);
+        RevTree c = new RevTreeBuilder(odb).put(feature("f3")).build();
+        odb.put(c);
+        baseRoot = new RevTreeBuilder(odb).put(Node.tree("a", a.getId(), metadataId))
+                .put(Node.tree("c", c.getId(), metadataId)).build();
+        odb.put(baseRoot);
+    }
+
+    @Test
+    public void testNoChanges() {
+        Iterator<DiffEntry> diffs = ImmutableList.<DiffEntry> of().iterator();
+        RevTree newRoot = context.command(ApplyTreeDiffOp.class).setBaseTree(baseRoot)
+                .setDiffs(diffs).call();
+        assertEquals(baseRoot.getId(), newRoot.getId());
+    }
+
+    @Test
+    public void testModifyAndAdd() {
+        Node f1Modified = Node.create("f1", ObjectId.forString("f1 modified"), ObjectId.NULL,
+                TYPE.FEATURE, null);
+        ObjectId newMetadataId = ObjectId.forString("newFeatureType");
+
+        Iterator<DiffEntry> diffs = ImmutableList.of(//
+                diff(ref("a", feature("f1")), ref("a", f1Modified)),//
+                diff(null, ref("a", Node.tree("d", RevTree.EMPTY_TREE_ID, newMetadataId))),//
+                diff(null, ref("a/d", feature("f4"))),//
+                diff(null, ref("", feature("f5")))).iterator();
+
+        RevTree newRoot = context.command(ApplyTreeDiffOp.class).setBaseTree(baseRoot)
+                .setDiffs(diffs).call();
+
+        assertEquals(f1Modified.getObjectId(), find(newRoot, "a/f1").get().getObjectId());
+        assertTrue(find(newRoot, "a/d/f4").isPresent());
+        assertEquals(newMetadataId, find(newRoot, "a/d").get().getMetadataId());
+        assertTrue(find(newRoot, "f5").isPresent());
+        // untouched content is preserved
+        assertTrue(find(newRoot, "a/b/f2").isPresent());
+        assertTrue(find(newRoot, "c/f3").isPresent());
+        assertEquals(metadataId, find(newRoot, "a").get().getMetadataId());
+    }
+
+    @Test
+    public void testRemoveTree() {
+        Optional<NodeRef> b = find(baseRoot, "a/b");
+
+        Iterator<DiffEntry> diffs = ImmutableList.of(//
+                diff(b.get(), null),//
+                diff(ref("a/b", feature("f2")), null),//
+                diff(ref("c", feature("f3")), null)).iterator();
+
+        RevTree newRoot = context.command(ApplyTreeDiffOp.class).setBaseTree(baseRoot)
+                .setDiffs(diffs).call();
+
+        assertFalse(find(newRoot, "a/b").isPresent());
+        assertTrue(find(newRoot, "a/f1").isPresent());
+        assertFalse(find(newRoot, "c/f3").isPresent());
+        assertTrue(find(newRoot, "c").isPresent());
+    }
+
+    @Test
+    public void testMetadataChange() {
+        NodeRef c = find(baseRoot, "c").get();
+        ObjectId newMetadataId = ObjectId.forString("newFeatureType");
+        NodeRef newC = ref("", Node.tree("c", c.getObjectId(), newMetadataId));
+
+        Iterator<DiffEntry> diffs = ImmutableList.of(diff(c, newC)).iterator();
+
+        RevTree newRoot = context.command(ApplyTreeDiffOp.class).setBaseTree(baseRoot)
+                .setDiffs(diffs).call();
+
+        assertEquals(newMetadataId, find(newRoot, "c").get().getMetadataId());
+        assertTrue(find(newRoot, "c/f3").isPresent());
+    }
+
+    private Optional<NodeRef> find(RevTree root, String path) {
+        return new DepthSearch(odb).find(root, path);
+    }
+
+    private DiffEntry diff(NodeRef oldObject, NodeRef newObject) {
+        return new DiffEntry(oldObject, newObject);
+    }
+
+    private NodeRef ref(String parentPath, Node node) {
+        return new NodeRef(node, parentPath, metadataId);
+    }
+
+    private Node feature(String name) {
+        return Node.create(name, ObjectId.forString(name), ObjectId.NULL, TYPE.FEATURE, null);
+    }
+}
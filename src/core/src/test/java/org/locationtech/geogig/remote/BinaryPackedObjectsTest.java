@@ -0,0 +1,232 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.memory.HeapDeduplicator;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class BinaryPackedObjectsTest extends RepositoryTestCase {
+
+    private static final byte[] DELTA_HEADER = (FeatureDelta.HEADER + '\0').getBytes(Charset
+            .forName("US-ASCII"));
+
+    /**
+     * The receiving end of the packs
+     */
+    private ObjectDatabase remote;
+
+    private RevCommit c1;
+
+    private RevCommit c2;
+
+    private RevCommit c3;
+
+    /**
+     * poly1 with a new name in c2, which can be delta encoded against poly1
+     */
+    private ObjectId poly1a;
+
+    /**
+     * points1 fully modified in c2, which can't be delta encoded
+     */
+    private ObjectId points1a;
+
+    /**
+     * poly1a with a new integer in c3
+     */
+    private ObjectId poly1b;
+
+    /**
+     * poly2 with one coordinate changed in c3
+     */
+    private ObjectId poly2a;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        remote = new HeapObjectDatabase();
+        remote.open();
+
+        insertAndAdd(poly1);
+        insertAndAdd(poly2);
+        insertAndAdd(points1);
+        c1 = commit("c1");
+
+        poly1a = insertAndAdd(feature(polyType, idPG1, "StringProp3_1a", new Integer(1000),
+                "POLYGON ((1 1, 2 2, 3 3, 4 4, 1 1))"));
+        points1a = insertAndAdd(points1_modified);
+        c2 = commit("c2");
+
+        poly1b = insertAndAdd(feature(polyType, idPG1, "StringProp3_1a", new Integer(1001),
+                "POLYGON ((1 1, 2 2, 3 3, 4 4, 1 1))"));
+        poly2a = insertAndAdd(feature(polyType, idPG2, "StringProp3_2", new Integer(2000),
+                "POLYGON ((6 6, 7 7, 8 8, 9 10, 6 6))"));
+        c3 = commit("c3");
+    }
+
+    @Override
+    protected void tearDownInternal() throws Exception {
+        remote.close();
+    }
+
+    @Test
+    public void testNoDeltaBase() throws Exception {
+        byte[] pack = pack(ImmutableList.of(c2.getId()), ImmutableList.of(c1.getId()), null);
+        assertEquals(0, countDeltas(pack));
+        assertSameObjects(unpack(pack));
+    }
+
+    /**
+     * The base of poly1a is taken from c1, which the receiving end has
+     */
+    @Test
+    public void testDeltaBaseIsHave() throws Exception {
+        copy(c1);
+
+        byte[] pack = pack(ImmutableList.of(c2.getId()), ImmutableList.of(c1.getId()),
+                ImmutableList.of(c1.getId()));
+        // points1a falls back to the full encoding
+        assertEquals(1, countDeltas(pack));
+
+        List<RevObject> objects = unpack(pack);
+        assertSameObjects(objects);
+        assertContains(objects, poly1a, points1a);
+    }
+
+    /**
+     * The base of poly1a is only in the sliding window, since it's sent earlier in the same pack
+     */
+    @Test
+    public void testDeltaBaseInWindow() throws Exception {
+        List<ObjectId> none = ImmutableList.of();
+        byte[] pack = pack(ImmutableList.of(c2.getId()), none, none);
+        assertEquals(1, countDeltas(pack));
+
+        // nothing is saved to the receiving end while reading
+        List<RevObject> objects = unpack(pack);
+        assertFalse(remote.exists(c1.getId()));
+        assertFalse(remote.exists(poly1a));
+        assertSameObjects(objects);
+        assertContains(objects, poly1a, points1a);
+    }
+
+    /**
+     * The receiving end only has c1, while c2 is being sent by another pack, so the features of c3
+     * can't be delta encoded against c2
+     */
+    @Test
+    public void testDeltaBaseDiffersFromHave() throws Exception {
+        copy(c1);
+
+        byte[] pack = pack(ImmutableList.of(c3.getId()), ImmutableList.of(c2.getId()),
+                ImmutableList.of(c1.getId()));
+        assertEquals(0, countDeltas(pack));
+
+        List<RevObject> objects = unpack(pack);
+        assertSameObjects(objects);
+        assertContains(objects, poly1b, poly2a);
+    }
+
+    @Test
+    public void testDeltaBaseMissingOnReceivingEnd() throws Exception {
+        copy(c1);
+
+        // wrongly declare c2 as known
+        byte[] pack = pack(ImmutableList.of(c3.getId()), ImmutableList.of(c2.getId()),
+                ImmutableList.of(c2.getId()));
+        assertEquals(2, countDeltas(pack));
+        try {
+            unpack(pack);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(poly1a.toString()));
+        }
+    }
+
+    /**
+     * Sends the contents of {@code commit} to the receiving end without delta encoding
+     */
+    private void copy(RevCommit commit) throws IOException {
+        byte[] pack = pack(ImmutableList.of(commit.getId()), ImmutableList.<ObjectId> of(), null);
+        new BinaryPackedObjects(remote).ingest(new ByteArrayInputStream(pack));
+    }
+
+    private byte[] pack(List<ObjectId> want, List<ObjectId> have,
+            @Nullable List<ObjectId> deltaBase) throws IOException {
+        BinaryPackedObjects packer = new BinaryPackedObjects(repo.objectDatabase());
+        if (deltaBase != null) {
+            packer.setDeltaBase(deltaBase);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectFunnel funnel = ObjectFunnels.newFunnel(out,
+                DataStreamSerializationFactoryV1.INSTANCE);
+        packer.write(funnel, want, have, true, new HeapDeduplicator());
+        funnel.close();
+        return out.toByteArray();
+    }
+
+    private List<RevObject> unpack(byte[] pack) {
+        return Lists.newArrayList(new BinaryPackedObjects(remote).read(new ByteArrayInputStream(
+                pack)));
+    }
+
+    /**
+     * Asserts the objects read from a pack are the same as the ones in the repository
+     */
+    private void assertSameObjects(List<RevObject> objects) {
+        assertFalse(objects.isEmpty());
+        for (RevObject object : objects) {
+            RevObject expected = repo.objectDatabase().get(object.getId());
+            assertEquals(expected.getType(), object.getType());
+            if (expected instanceof RevFeature) {
+                assertEquals(((RevFeature) expected).getValues(),
+                        ((RevFeature) object).getValues());
+            }
+        }
+    }
+
+    private void assertContains(List<RevObject> objects, ObjectId... ids) {
+        List<ObjectId> read = Lists.newArrayList();
+        for (RevObject object : objects) {
+            read.add(object.getId());
+        }
+        for (ObjectId id : ids) {
+            assertTrue(id.toString(), read.contains(id));
+        }
+    }
+
+    private static int countDeltas(byte[] pack) {
+        int count = 0;
+        for (int i = 0; i + DELTA_HEADER.length <= pack.length; i++) {
+            int j = 0;
+            while (j < DELTA_HEADER.length && pack[i + j] == DELTA_HEADER[j]) {
+                j++;
+            }
+            if (j == DELTA_HEADER.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class FeatureDeltaTest extends Assert {
+
+    private ObjectDatabase odb;
+
+    @Before
+    public void setUp() {
+        odb = new HeapObjectDatabase();
+        odb.open();
+    }
+
+    @After
+    public void tearDown() {
+        odb.close();
+    }
+
+    @Test
+    public void testAttributeChange() throws Exception {
+        RevFeature base = feature("name", 1, "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        RevFeature feature = feature("new name", 1, "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        RevFeature read = roundTrip(base, feature);
+        assertEquals(feature.getId(), read.getId());
+        assertEquals(feature.getValues(), read.getValues());
+    }
+
+    @Test
+    public void testCoordinateChange() throws Exception {
+        RevFeature base = feature("name", 1,
+                "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 3, 3 3, 3 2, 2 2))");
+        RevFeature feature = feature("name", 1,
+                "POLYGON((0 0, 10 0, 11 11, 0 10, 0 0), (2 2, 2 3, 3 3, 3 2, 2 2))");
+        RevFeature read = roundTrip(base, feature);
+        assertEquals(feature.getId(), read.getId());
+        assertEquals(feature.getValues(), read.getValues());
+    }
+
+    @Test
+    public void testGeometryStructureChange() throws Exception {
+        RevFeature base = feature("name", 1, "LINESTRING(0 0, 1 1)");
+        RevFeature feature = feature("name", 1, "LINESTRING(0 0, 1 1, 2 2)");
+        RevFeature read = roundTrip(base, feature);
+        assertEquals(feature.getId(), read.getId());
+    }
+
+    @Test
+    public void testAllChanged() throws Exception {
+        RevFeature base = feature("name", 1, "POINT(0 0)");
+        RevFeature feature = feature("new name", 2, "POINT(1 1)");
+        assertNull(FeatureDelta.of(base, feature));
+    }
+
+    @Test
+    public void testMissingBase() throws Exception {
+        RevFeature base = feature("name", 1, "POINT(0 0)");
+        RevFeature feature = feature("name", 2, "POINT(0 0)");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectFunnel funnel = ObjectFunnels.newFunnel(out,
+                DataStreamSerializationFactoryV1.INSTANCE);
+        funnel.funnel(FeatureDelta.of(base, feature));
+        funnel.close();
+
+        Iterator<RevObject> objects = new BinaryPackedObjects(odb).read(new ByteArrayInputStream(
+                out.toByteArray()));
+        try {
+            objects.next();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not found"));
+        }
+    }
+
+    /**
+     * Packs the base feature followed by the delta encoded feature and reads them back
+     */
+    private RevFeature roundTrip(RevFeature base, RevFeature feature) throws Exception {
+        FeatureDelta delta = FeatureDelta.of(base, feature);
+        assertNotNull(delta);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectFunnel funnel = ObjectFunnels.newFunnel(out,
+                DataStreamSerializationFactoryV1.INSTANCE);
+        funnel.funnel(base);
+        funnel.funnel(delta);
+        funnel.close();
+
+        Iterator<RevObject> objects = new BinaryPackedObjects(odb).read(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertEquals(base, objects.next());
+        RevObject read = objects.next();
+        assertFalse(objects.hasNext());
+        assertTrue(read instanceof RevFeature);
+        return (RevFeature) read;
+    }
+
+    private RevFeature feature(String name, int value, String wkt) throws Exception {
+        return RevFeatureImpl.build(ImmutableList.of(Optional.<Object> of(name),
+                Optional.<Object> of(Integer.valueOf(value)),
+                Optional.<Object> of(new WKTReader().read(wkt))));
+    }
+}
@@ -0,0 +1,134 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.porcelain.ConfigOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.storage.Blobs;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class FetchCheckpointTest extends RepositoryTestCase {
+
+    private static final String REMOTE = "http://localhost:8182/repos/remote";
+
+    private RevCommit c1, c2, c3;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+        insertAndAdd(points1);
+        c1 = commit("c1");
+        insertAndAdd(points2);
+        c2 = commit("c2");
+        insertAndAdd(points3);
+        c3 = commit("c3");
+    }
+
+    @Test
+    public void testNoCheckpoint() {
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        assertTrue(checkpoint.incomplete().isEmpty());
+    }
+
+    @Test
+    public void testCompletesInOrder() {
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        checkpoint.start(ImmutableList.of(c1.getId(), c2.getId(), c3.getId()));
+
+        assertTrue(checkpoint.isRequested(c2.getId()));
+        assertFalse(checkpoint.isRequested(ObjectId.forString("not requested")));
+
+        assertEquals(ImmutableList.of(), checkpoint.received(c2));
+        assertEquals(ImmutableList.of(c1, c2), checkpoint.received(c1));
+        checkpoint.save();
+        assertEquals("2",
+                Blobs.getBlobAsString(repo.blobStore(), FetchCheckpoint.completeKey(REMOTE))
+                        .get());
+
+        assertEquals(ImmutableList.of(c3), checkpoint.received(c3));
+        checkpoint.finish();
+        assertFalse(Blobs.getBlob(repo.blobStore(), FetchCheckpoint.pendingKey(REMOTE))
+                .isPresent());
+        assertFalse(Blobs.getBlob(repo.blobStore(), FetchCheckpoint.completeKey(REMOTE))
+                .isPresent());
+    }
+
+    @Test
+    public void testCompletesAcrossRequests() {
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        checkpoint.start(ImmutableList.of(c1.getId(), c2.getId(), c3.getId()));
+
+        // the first request ends prematurely, c3 arrived before c1 and c2
+        assertEquals(ImmutableList.of(), checkpoint.received(c3));
+
+        // the next request fills the gap, c3 is complete without being sent again
+        assertEquals(ImmutableList.of(c1), checkpoint.received(c1));
+        assertEquals(ImmutableList.of(c2, c3), checkpoint.received(c2));
+    }
+
+    @Test
+    public void testCheckpointPerRemote() {
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        checkpoint.start(ImmutableList.of(c1.getId(), c2.getId(), c3.getId()));
+        checkpoint.received(c1);
+        checkpoint.save();
+
+        assertTrue(FetchCheckpoint.load(repo, "http://localhost:8182/repos/other").incomplete()
+                .isEmpty());
+        assertEquals(ImmutableSet.of(c2.getId(), c3.getId()),
+                FetchCheckpoint.load(repo, REMOTE).incomplete());
+    }
+
+    @Test
+    public void testResume() {
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        checkpoint.start(ImmutableList.of(c1.getId(), c2.getId(), c3.getId()));
+        checkpoint.received(c1);
+        checkpoint.received(c3);
+        checkpoint.save();
+
+        // interrupted, c3 was saved but c2 wasn't
+        checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        assertEquals(ImmutableSet.of(c2.getId(), c3.getId()), checkpoint.incomplete());
+
+        // the resumed fetch may not request all of them again, the rest are kept as incomplete
+        checkpoint.start(ImmutableList.of(c2.getId()));
+        List<RevObject> complete = checkpoint.received(c2);
+        assertEquals(ImmutableList.of(c2), complete);
+        checkpoint.finish();
+
+        checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        assertEquals(ImmutableSet.of(c3.getId()), checkpoint.incomplete());
+    }
+
+    @Test
+    public void testInconsistentCheckpoint() {
+        RevCommit missing = new CommitBuilder(c2).setMessage("missing commit").build();
+        FetchCheckpoint checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        checkpoint.start(ImmutableList.of(c1.getId(), missing.getId(), c3.getId()));
+        checkpoint.received(c1);
+        checkpoint.received(missing);
+        checkpoint.save();
+
+        checkpoint = FetchCheckpoint.load(repo, REMOTE);
+        assertEquals(ImmutableSet.of(c1.getId(), missing.getId(), c3.getId()),
+                checkpoint.incomplete());
+    }
+}
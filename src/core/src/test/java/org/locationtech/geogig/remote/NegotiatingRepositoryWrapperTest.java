@@ -0,0 +1,107 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.porcelain.ConfigOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class NegotiatingRepositoryWrapperTest extends RepositoryTestCase {
+
+    private List<RevCommit> commits;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+        commits = new ArrayList<RevCommit>();
+        for (int i = 0; i < 10; i++) {
+            insertAndAdd(i % 2 == 0 ? points1 : points2);
+            commits.add(commit("c" + i));
+        }
+    }
+
+    @Test
+    public void testBatchedRounds() {
+        // the destination has the first 3 commits
+        CountingDestination destination = new CountingDestination(ImmutableSet.of(
+                commits.get(0).getId(), commits.get(1).getId(), commits.get(2).getId()));
+        NegotiatingRepositoryWrapper wrapper = new NegotiatingRepositoryWrapper(destination,
+                new LocalRepositoryWrapper(repo));
+
+        assertFalse(wrapper.objectExists(commits.get(9).getId()));
+        // rounds of 1, 2 and 4 missing commits, then the 3 commits the destination has
+        assertEquals(4, destination.calls);
+        assertEquals(10, destination.queried);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 3, wrapper.objectExists(commits.get(i).getId()));
+        }
+        assertTrue(wrapper.objectExists(ObjectId.NULL));
+        // everything was learned by the first negotiation
+        assertEquals(4, destination.calls);
+    }
+
+    private static class CountingDestination implements RepositoryWrapper {
+
+        private final Set<ObjectId> existing;
+
+        int calls;
+
+        int queried;
+
+        CountingDestination(Set<ObjectId> existing) {
+            this.existing = existing;
+        }
+
+        @Override
+        public boolean objectExists(ObjectId objectId) {
+            return existing.contains(objectId);
+        }
+
+        @Override
+        public ImmutableSet<ObjectId> objectsExist(List<ObjectId> objectIds) {
+            calls++;
+            queried += objectIds.size();
+            ImmutableSet.Builder<ObjectId> builder = ImmutableSet.builder();
+            for (ObjectId id : objectIds) {
+                if (existing.contains(id)) {
+                    builder.add(id);
+                }
+            }
+            return builder.build();
+        }
+
+        @Override
+        public ImmutableList<ObjectId> getParents(ObjectId commitId) {
+            return ImmutableList.of();
+        }
+
+        @Override
+        public int getDepth(ObjectId commitId) {
+            return 0;
+        }
+
+        @Override
+        public Optional<Integer> getRepoDepth() {
+            return Optional.absent();
+        }
+    }
+}
@@ -21,6 +21,8 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -43,6 +45,8 @@ import org.locationtech.geogig.di.GeogigModule;
 import org.locationtech.geogig.storage.ObjectDatabase;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Guice;
 import com.google.inject.util.Modules;
 
@@ -156,6 +160,31 @@ public class DepthSearchTest {
         }
     }
 
+    @Test
+    public void testGetDirectChildren() {
+        RevTreeBuilder builder = new RevTreeBuilder(odb);
+        for (int i = 0; i < 2000; i++) {
+            String name = "node" + i;
+            builder.put(Node.create(name, ObjectId.forString(name), NULL, FEATURE, null));
+        }
+        RevTree tree = builder.build();
+        odb.put(tree);
+        assertTrue(tree.buckets().isPresent());
+
+        Set<String> names = ImmutableSet.of("node0", "node999", "node1999", "node2000");
+        Map<String, Node> children = search.getDirectChildren(tree, names);
+        assertEquals(3, children.size());
+        for (String name : ImmutableList.of("node0", "node999", "node1999")) {
+            assertEquals(ObjectId.forString(name), children.get(name).getObjectId());
+            assertEquals(search.getDirectChild(tree, name, 0).get(), children.get(name));
+        }
+        assertFalse(children.containsKey("node2000"));
+
+        RevTree root = odb.getTree(rootTreeId);
+        children = search.getDirectChildren(root, ImmutableSet.of("path", "tree3", "tree4"));
+        assertEquals(ImmutableSet.of("path", "tree3"), children.keySet());
+    }
+
     private Optional<NodeRef> find(ObjectId rootTreeId, String rootChildPath) {
         return search.find(rootTreeId, rootChildPath);
     }
@@ -30,7 +30,9 @@ import org.locationtech.geogig.storage.GraphDatabase.Direction;
 import org.locationtech.geogig.storage.GraphDatabase.GraphEdge;
 import org.locationtech.geogig.storage.GraphDatabase.GraphNode;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Abstract test suite for {@link GraphDatabase} implementations.
@@ -193,6 +195,107 @@ public abstract class GraphDatabaseTest {
         assertEquals(1, database.getDepth(commit11));
     }
 
+    @Test
+    public void testDepthMergeHeavy() throws IOException {
+        // a ladder where each aN merges a(N-1) and b(N-1), and each bN branches off a(N-1), so
+        // the number of paths to the root doubles at every step
+        ObjectId rootId = ObjectId.forString("root commit");
+        database.put(rootId, ImmutableList.<ObjectId> of());
+        ObjectId a = ObjectId.forString("a0");
+        ObjectId b = ObjectId.forString("b0");
+        database.put(a, ImmutableList.of(rootId));
+        database.put(b, ImmutableList.of(rootId));
+        ObjectId previousA = a;
+        for (int i = 1; i <= 40; i++) {
+            previousA = a;
+            ObjectId nextA = ObjectId.forString("a" + i);
+            ObjectId nextB = ObjectId.forString("b" + i);
+            database.put(nextA, ImmutableList.of(a, b));
+            database.put(nextB, ImmutableList.of(a));
+            a = nextA;
+            b = nextB;
+        }
+        assertEquals(41, database.getDepth(a));
+        assertEquals(41, database.getDepth(b));
+        assertEquals(previousA, database.findLowestCommonAncestor(a, b).get());
+    }
+
+    @Test
+    public void testGetAncestors() throws IOException {
+        // root <- c1 <- c2 <- c3, and c3 merges c2 and a sibling branch s1 off c1
+        ObjectId rootId = ObjectId.forString("root commit");
+        database.put(rootId, ImmutableList.<ObjectId> of());
+        ObjectId c1 = ObjectId.forString("c1");
+        database.put(c1, ImmutableList.of(rootId));
+        ObjectId c2 = ObjectId.forString("c2");
+        database.put(c2, ImmutableList.of(c1));
+        ObjectId s1 = ObjectId.forString("s1");
+        database.put(s1, ImmutableList.of(c1));
+        ObjectId c3 = ObjectId.forString("c3");
+        database.put(c3, ImmutableList.of(c2, s1));
+
+        List<ObjectId> ancestors = database.getAncestors(c3, 10);
+        assertEquals(ImmutableSet.of(c2, s1, c1, rootId), ImmutableSet.copyOf(ancestors));
+        assertEquals(4, ancestors.size());
+        // closest first
+        assertEquals(ImmutableSet.of(c2, s1), ImmutableSet.copyOf(ancestors.subList(0, 2)));
+
+        ancestors = database.getAncestors(c3, 2);
+        assertEquals(ImmutableSet.of(c2, s1), ImmutableSet.copyOf(ancestors));
+
+        assertTrue(database.getAncestors(rootId, 10).isEmpty());
+    }
+
+    @Test
+    public void testFindLowestCommonAncestor() throws IOException {
+        // Same revision graph as in testDepth()
+        ObjectId rootId = ObjectId.forString("root commit");
+        ImmutableList<ObjectId> parents = ImmutableList.of();
+        database.put(rootId, parents);
+        ObjectId commit1 = ObjectId.forString("commit1");
+        parents = ImmutableList.of(rootId);
+        database.put(commit1, parents);
+        ObjectId commit2 = ObjectId.forString("commit2");
+        parents = ImmutableList.of(commit1);
+        database.put(commit2, parents);
+        ObjectId commit3 = ObjectId.forString("commit3");
+        parents = ImmutableList.of(commit2);
+        database.put(commit3, parents);
+        ObjectId commit4 = ObjectId.forString("commit4");
+        parents = ImmutableList.of(commit3);
+        database.put(commit4, parents);
+        ObjectId commit5 = ObjectId.forString("commit5");
+        parents = ImmutableList.of(commit3);
+        database.put(commit5, parents);
+        ObjectId commit6 = ObjectId.forString("commit6");
+        parents = ImmutableList.of(commit5, commit4);
+        database.put(commit6, parents);
+        ObjectId commit7 = ObjectId.forString("commit7");
+        parents = ImmutableList.of(rootId);
+        database.put(commit7, parents);
+        ObjectId commit8 = ObjectId.forString("commit8");
+        parents = ImmutableList.of(commit2);
+        database.put(commit8, parents);
+        ObjectId commit9 = ObjectId.forString("commit9");
+        parents = ImmutableList.of(commit7, commit8);
+        database.put(commit9, parents);
+        ObjectId commit10 = ObjectId.forString("commit10");
+        parents = ImmutableList.of();
+        database.put(commit10, parents);
+        ObjectId commit11 = ObjectId.forString("commit11");
+        parents = ImmutableList.of(commit10);
+        database.put(commit11, parents);
+
+        assertEquals(Optional.of(commit3), database.findLowestCommonAncestor(commit4, commit5));
+        assertEquals(Optional.of(commit3), database.findLowestCommonAncestor(commit5, commit4));
+        assertEquals(Optional.of(commit2), database.findLowestCommonAncestor(commit6, commit9));
+        assertEquals(Optional.of(commit2), database.findLowestCommonAncestor(commit8, commit6));
+        assertEquals(Optional.of(rootId), database.findLowestCommonAncestor(commit7, commit1));
+        assertEquals(Optional.of(commit1), database.findLowestCommonAncestor(commit1, commit4));
+        assertEquals(Optional.of(commit6), database.findLowestCommonAncestor(commit6, commit6));
+        assertEquals(Optional.absent(), database.findLowestCommonAncestor(commit9, commit11));
+    }
+
     @Test
     public void testProperties() throws IOException {
         ObjectId rootId = ObjectId.forString("root");
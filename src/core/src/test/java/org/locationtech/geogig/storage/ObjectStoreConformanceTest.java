@@ -47,6 +47,8 @@ import org.locationtech.geogig.api.TestPlatform;
 import org.locationtech.geogig.api.plumbing.diff.RevObjectTestSupport;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
@@ -590,4 +592,47 @@ public abstract class ObjectStoreConformanceTest {
         assertEquals(Sets.newHashSet(ids), Sets.newHashSet(found));
     }
 
+    @Test
+    public void testGetRaw() {
+        ImmutableList<RevObject> expected = ImmutableList.of(objects.feature(0, null, "some value"),
+                objects.feature(1, "value", new Integer(111)), RevTree.EMPTY);
+        db.putAll(expected.iterator());
+
+        Function<RevObject, ObjectId> toId = p -> p.getId();
+        List<ObjectId> ids = ImmutableList.<ObjectId> builder()
+                .addAll(Iterables.transform(expected, toId)).add(ObjectId.forString("fake1"))
+                .build();
+
+        CountingListener listener = BulkOpListener.newCountingListener();
+        Iterator<RawObject> raw = db.getRaw(ids, listener);
+        Set<RevObject> actual = new HashSet<>();
+        while (raw.hasNext()) {
+            actual.add(raw.next().read());
+        }
+        assertEquals(new HashSet<>(expected), actual);
+        assertEquals(expected.size(), listener.found());
+        assertEquals(1, listener.notFound());
+    }
+
+    @Test
+    public void testPutRaw() {
+        RevObject f1 = objects.feature(0, null, "some value");
+        RevObject f2 = objects.feature(1, "value", new Integer(111));
+        RevObject tree = RevTree.EMPTY;
+
+        // objects in different formats than the store's shall be re-encoded
+        ImmutableList<RawObject> raw = ImmutableList.of(//
+                RawObject.of(f1, DataStreamSerializationFactoryV1.INSTANCE),//
+                RawObject.of(f2, DataStreamSerializationFactoryV2.INSTANCE),//
+                RawObject.of(tree, DataStreamSerializationFactoryV2.INSTANCE));
+
+        CountingListener listener = BulkOpListener.newCountingListener();
+        db.putRaw(raw.iterator(), listener);
+        assertEquals(3, listener.inserted());
+
+        assertEquals(f1, db.get(f1.getId()));
+        assertEquals(f2, db.get(f2.getId()));
+        assertEquals(tree, db.get(tree.getId()));
+    }
+
 }
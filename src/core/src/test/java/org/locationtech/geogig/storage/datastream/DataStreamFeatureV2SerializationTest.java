@@ -9,12 +9,61 @@
  */
 package org.locationtech.geogig.storage.datastream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
 import org.locationtech.geogig.storage.RevFeatureSerializationTest;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 public class DataStreamFeatureV2SerializationTest extends RevFeatureSerializationTest {
     @Override
     protected ObjectSerializingFactory getObjectSerializingFactory() {
         return new DataStreamSerializationFactoryV2();
     }
+
+    /**
+     * The version 2 encoding of a feature is persisted by existing repositories, so it must not
+     * change, and {@link DataStreamSerializationFactoryV2_1 version 2.1} must read it the same
+     */
+    @Test
+    public void testFormatUnchanged() throws Exception {
+        Map<String, String> tags = ImmutableMap.of("highway", "residential");
+        RevFeature feature = RevFeatureImpl.build(ImmutableList.<Optional<Object>> of(
+                Optional.<Object> of(tags), Optional.<Object> of(new long[] { 1, 2 }),
+                Optional.absent()));
+
+        final byte[] expected = { 0x02, // FEATURE header
+                0x03, // value count
+                0x20, 0x01, // MAP of one entry
+                0x00, 0x07, 'h', 'i', 'g', 'h', 'w', 'a', 'y', //
+                0x08, 0x00, 0x0B, 'r', 'e', 's', 'i', 'd', 'e', 'n', 't', 'i', 'a', 'l', //
+                0x0D, 0x02, // LONG_ARRAY of two values
+                0, 0, 0, 0, 0, 0, 0, 1, //
+                0, 0, 0, 0, 0, 0, 0, 2, //
+                0x00 // NULL
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.write(feature, out);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+
+        for (ObjectSerializingFactory factory : ImmutableList.of(serializer,
+                DataStreamSerializationFactoryV2_1.INSTANCE)) {
+            RevFeature read = (RevFeature) factory.read(feature.getId(),
+                    new ByteArrayInputStream(expected));
+            assertEquals(3, read.getValues().size());
+            assertEquals(tags, read.getValues().get(0).get());
+            assertTrue(Arrays.equals(new long[] { 1, 2 }, (long[]) read.getValues().get(1).get()));
+            assertFalse(read.getValues().get(2).isPresent());
+        }
+    }
 }
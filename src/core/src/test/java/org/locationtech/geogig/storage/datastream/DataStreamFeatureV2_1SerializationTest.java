@@ -0,0 +1,86 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.datastream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RevFeatureSerializationTest;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class DataStreamFeatureV2_1SerializationTest extends RevFeatureSerializationTest {
+    @Override
+    protected ObjectSerializingFactory getObjectSerializingFactory() {
+        return DataStreamSerializationFactoryV2_1.INSTANCE;
+    }
+
+    @Test
+    public void testCompactEncodings() throws Exception {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("highway", "residential");
+        tags.put("name", "Calle Mayor");
+        tags.put("not:interned", "value");
+        tags.put("name:ja", "\u672c\u753a\u901a\u308a");
+        tags.put("", "");
+        long[] nodes = { 3000000000L, 3000000001L, 2999999000L, 5L, 3000000002L };
+        RevFeature feature = feature(tags, nodes);
+
+        byte[] encoded = write(serializer, feature);
+        byte[] v2 = write(new DataStreamSerializationFactoryV2(), feature);
+        assertEquals(FormatCommonV2_1.STRING_MAP, encoded[2]);
+        assertTrue(encoded.length < v2.length);
+
+        assertValues(tags, nodes, read(encoded, feature));
+    }
+
+    @Test
+    public void testFallbackEncodings() throws Exception {
+        Map<String, Object> mixed = new HashMap<>();
+        mixed.put("highway", "residential");
+        mixed.put("lanes", Integer.valueOf(2));
+        long[] spread = { Long.MIN_VALUE, Long.MAX_VALUE, 0L };
+        RevFeature feature = feature(mixed, spread);
+
+        // values with no compact encoding are written as in version 2
+        byte[] encoded = write(serializer, feature);
+        assertTrue(Arrays.equals(write(new DataStreamSerializationFactoryV2(), feature), encoded));
+
+        assertValues(mixed, spread, read(encoded, feature));
+    }
+
+    private RevFeature feature(Map<String, ?> map, long[] longs) {
+        return RevFeatureImpl.build(ImmutableList.<Optional<Object>> of(
+                Optional.<Object> of(map), Optional.<Object> of(longs), Optional.absent()));
+    }
+
+    private byte[] write(ObjectSerializingFactory factory, RevFeature feature) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        factory.write(feature, out);
+        return out.toByteArray();
+    }
+
+    private RevFeature read(byte[] encoded, RevFeature feature) throws IOException {
+        return (RevFeature) serializer.read(feature.getId(), new ByteArrayInputStream(encoded));
+    }
+
+    private void assertValues(Map<String, ?> map, long[] longs, RevFeature read) {
+        assertEquals(3, read.getValues().size());
+        assertEquals(map, read.getValues().get(0).get());
+        assertTrue(Arrays.equals(longs, (long[]) read.getValues().get(1).get()));
+        assertFalse(read.getValues().get(2).isPresent());
+    }
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.collect.Lists;
+
+public class OffHeapDeduplicatorTest extends Assert {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testVisitInMemory() throws Exception {
+        OffHeapDeduplicator dedup = new OffHeapDeduplicator(1024 * 1024, tmp.getRoot());
+        try {
+            assertVisits(dedup, 10000);
+            assertEquals(0, tmp.getRoot().list().length);
+        } finally {
+            dedup.release();
+        }
+    }
+
+    @Test
+    public void testSpillAndMerge() throws Exception {
+        // a table of 1024 slots, spilled every 768 ids, merged after MAX_RUNS spills
+        OffHeapDeduplicator dedup = new OffHeapDeduplicator(1, tmp.getRoot());
+        try {
+            assertVisits(dedup, 768 * (OffHeapDeduplicator.MAX_RUNS + 3));
+            assertTrue(tmp.getRoot().list().length <= OffHeapDeduplicator.MAX_RUNS);
+        } finally {
+            dedup.release();
+        }
+        assertEquals(0, tmp.getRoot().list().length);
+    }
+
+    @Test
+    public void testNullAndReset() throws Exception {
+        OffHeapDeduplicator dedup = new OffHeapDeduplicator(1, tmp.getRoot());
+        try {
+            assertFalse(dedup.visit(ObjectId.NULL));
+            assertTrue(dedup.visit(ObjectId.NULL));
+            assertVisits(dedup, 2000);
+            dedup.reset();
+            assertFalse(dedup.isDuplicate(ObjectId.NULL));
+            assertFalse(dedup.isDuplicate(id(0)));
+            assertEquals(0, tmp.getRoot().list().length);
+            assertVisits(dedup, 2000);
+        } finally {
+            dedup.release();
+        }
+    }
+
+    @Test
+    public void testSharedBudget() throws Exception {
+        // room for the initial tables of both, but not for either of them to grow
+        final long maxMemory = 1024 * 1024;
+        MemoryBudget budget = new MemoryBudget(maxMemory);
+        OffHeapDeduplicator first = new OffHeapDeduplicator(budget, tmp.getRoot());
+        OffHeapDeduplicator second = new OffHeapDeduplicator(budget, tmp.getRoot());
+        try {
+            final long available = budget.available();
+            assertTrue(available < maxMemory / 2);
+            assertVisits(first, 20000);
+            assertTrue(tmp.getRoot().list().length > 0);
+            assertEquals(available, budget.available());
+
+            // reset reuses the table
+            first.reset();
+            assertEquals(0, tmp.getRoot().list().length);
+            assertEquals(available, budget.available());
+            assertVisits(first, 2000);
+        } finally {
+            first.release();
+            second.release();
+        }
+        assertEquals(maxMemory, budget.available());
+    }
+
+    @Test
+    public void testRemoveDuplicates() throws Exception {
+        OffHeapDeduplicator dedup = new OffHeapDeduplicator(1, tmp.getRoot());
+        try {
+            for (int i = 0; i < 2000; i += 2) {
+                dedup.visit(id(i));
+            }
+            List<ObjectId> ids = new ArrayList<ObjectId>();
+            for (int i = 0; i < 2000; i++) {
+                ids.add(id(i));
+            }
+            dedup.removeDuplicates(ids);
+            List<ObjectId> expected = Lists.newArrayList();
+            for (int i = 1; i < 2000; i += 2) {
+                expected.add(id(i));
+            }
+            assertEquals(expected, ids);
+        } finally {
+            dedup.release();
+        }
+    }
+
+    private void assertVisits(OffHeapDeduplicator dedup, int count) {
+        for (int i = 0; i < count; i++) {
+            assertFalse(dedup.isDuplicate(id(i)));
+            assertFalse(dedup.visit(id(i)));
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(dedup.isDuplicate(id(i)));
+            assertTrue(dedup.visit(id(i)));
+        }
+        assertFalse(dedup.isDuplicate(id(count)));
+    }
+
+    private static ObjectId id(int i) {
+        return ObjectId.forString("id" + i);
+    }
+}
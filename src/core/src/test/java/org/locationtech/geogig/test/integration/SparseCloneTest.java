@@ -410,6 +410,46 @@ public class SparseCloneTest extends RemoteRepositoryTestCase {
         assertExists(localGeogig, oids.get(city1), oids.get(city1_modified));
     }
 
+    @Test
+    public void testPrunedChangesMarkCommitSparse() throws Exception {
+
+        Map<String, String> filter = new HashMap<String, String>();
+        filter.put("default", "BBOX(pp,9, -80, 15, -70,'EPSG:4326')");
+        createFilterFile(filter);
+
+        Feature city4 = feature(citiesType, "Cities.4", "Maracaibo", new Integer(1500000),
+                "POINT(12 -75)");
+
+        // Cities.1 is in the filter, the second commit adds a city in the filter and Cities.2,
+        // which is out of both the filter and the tracked bounds, so it's skipped by the diff walk
+        ObjectId city1Id = insertAndAdd(remoteGeogig.geogig, city1);
+        remoteGeogig.geogig.command(CommitOp.class).setMessage("Cities.1").call();
+        ObjectId city2Id = insertAndAdd(remoteGeogig.geogig, city2);
+        ObjectId city4Id = insertAndAdd(remoteGeogig.geogig, city4);
+        final RevCommit commit = remoteGeogig.geogig.command(CommitOp.class)
+                .setMessage("Cities.2 and Cities.4").call();
+
+        CloneOp clone = clone();
+        clone.setDepth(0);
+        clone.setRepositoryURL(remoteGeogig.envHome.getCanonicalPath()).setBranch("master").call();
+
+        Iterator<RevCommit> logs = localGeogig.geogig.command(LogOp.class).call();
+        List<RevCommit> logged = new ArrayList<RevCommit>();
+        for (; logs.hasNext();) {
+            logged.add(logs.next());
+        }
+
+        assertEquals(2, logged.size());
+        RevCommit mapped = logged.get(0);
+        assertEquals("Cities.2 and Cities.4", mapped.getMessage());
+        assertFalse(commit.getId().equals(mapped.getId()));
+        assertTrue(localGeogig.repo.graphDatabase().getNode(mapped.getId()).isSparse());
+        assertFalse(localGeogig.repo.graphDatabase().getNode(logged.get(1).getId()).isSparse());
+
+        assertExists(localGeogig, city1Id, city4Id);
+        assertNotExists(localGeogig, city2Id);
+    }
+
     @Test
     public void testFeatureMovingIntoAOI() throws Exception {
 
@@ -91,6 +91,9 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
     /** When the configured head is not a branch, we disallow transactions */
     private boolean allowTransactions = true;
 
+    /** @see #setWriterBatchSize(int) */
+    private int writerBatchSize = GeoGigFeatureWriter.DEFAULT_BATCH_SIZE;
+
     public GeoGigDataStore(GeoGIG geogig) {
         super();
         Preconditions.checkNotNull(geogig);
@@ -186,6 +189,25 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
         return this.refspec;
     }
 
+    /**
+     * Sets how many features the feature writers buffer before inserting them into the working
+     * tree at once. A batch size of {@code 1} inserts each feature as soon as it's written.
+     * 
+     * @param batchSize the number of features per batch, must be positive
+     */
+    public void setWriterBatchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
+        this.writerBatchSize = batchSize;
+    }
+
+    /**
+     * @return the number of features the feature writers buffer before inserting them into the
+     *         working tree
+     */
+    public int getWriterBatchSize() {
+        return writerBatchSize;
+    }
+
     /**
      * @return whether or not we can support transactions against the configured head
      */
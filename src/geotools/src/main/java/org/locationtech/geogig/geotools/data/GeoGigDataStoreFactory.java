@@ -103,6 +103,11 @@ public class GeoGigDataStoreFactory implements DataStoreFactorySpi {
     public static final Param CREATE = new Param("create", Boolean.class,
             "Optional flag to enable creation of a new repository if it does not exist", false);
 
+    public static final Param WRITER_BATCH_SIZE = new Param("writer_batch_size", Integer.class,
+            "Optional number of features to buffer when writing before inserting them at once",
+            false, Integer.valueOf(GeoGigFeatureWriter.DEFAULT_BATCH_SIZE), new KVP(Param.LEVEL,
+                    "advanced"));
+
     @Override
     public String getDisplayName() {
         return DISPLAY_NAME;
@@ -116,7 +121,7 @@ public class GeoGigDataStoreFactory implements DataStoreFactorySpi {
     @Override
     public Param[] getParametersInfo() {
         return new Param[] { RESOLVER_CLASS_NAME, REPOSITORY, BRANCH, HEAD, DEFAULT_NAMESPACE,
-                CREATE };
+                CREATE, WRITER_BATCH_SIZE };
     }
 
     @Override
@@ -188,6 +193,9 @@ public class GeoGigDataStoreFactory implements DataStoreFactorySpi {
         @Nullable
         final Boolean create = (Boolean) CREATE.lookUp(params);
 
+        @Nullable
+        final Integer writerBatchSize = (Integer) WRITER_BATCH_SIZE.lookUp(params);
+
         final URI repositoryDirectory = resolver.resolve(repositoryLocation);
 
         final RepositoryResolver initializer;
@@ -226,6 +234,9 @@ public class GeoGigDataStoreFactory implements DataStoreFactorySpi {
         if (effectiveHead != null) {
             store.setHead(effectiveHead);
         }
+        if (writerBatchSize != null) {
+            store.setWriterBatchSize(writerBatchSize.intValue());
+        }
         return store;
     }
 
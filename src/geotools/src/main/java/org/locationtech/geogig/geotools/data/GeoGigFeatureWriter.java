@@ -10,11 +10,15 @@
 package org.locationtech.geogig.geotools.data;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.repository.WorkingTree;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -22,10 +26,21 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import com.google.common.base.Preconditions;
 
 /**
- *
+ * A {@link FeatureWriter} that buffers the written features and inserts them into the working
+ * tree in batches, updating the type tree and its parents once per batch instead of once per
+ * feature.
+ * <p>
+ * Buffered features are inserted when the batch is full, before a {@link #remove()}, when the
+ * writer is closed, and when the transaction it writes to is committed while it's still open.
+ * They're discarded if the transaction is rolled back instead.
  */
 class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
 
+    /**
+     * Default number of features to buffer before inserting them into the working tree
+     */
+    static final int DEFAULT_BATCH_SIZE = 1000;
+
     private FeatureReader<SimpleFeatureType, SimpleFeature> reader;
 
     private WorkingTree workingTree;
@@ -34,23 +49,55 @@ class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeat
 
     private String typePath;
 
+    private final int batchSize;
+
+    private final List<SimpleFeature> pending;
+
+    @Nullable
+    private GeogigTransactionState transactionState;
+
     private GeoGigFeatureWriter(FeatureReader<SimpleFeatureType, SimpleFeature> reader,
-            String typePath, WorkingTree workingTree) {
+            String typePath, WorkingTree workingTree, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
         this.reader = reader;
         this.typePath = typePath;
         this.workingTree = workingTree;
+        this.batchSize = batchSize;
+        this.pending = new ArrayList<>(Math.min(batchSize, DEFAULT_BATCH_SIZE));
     }
 
     public static GeoGigFeatureWriter create(
             FeatureReader<SimpleFeatureType, SimpleFeature> reader, String typePath,
             WorkingTree workingTree) {
-        return new GeoGigFeatureWriter(reader, typePath, workingTree);
+        return create(reader, typePath, workingTree, DEFAULT_BATCH_SIZE);
+    }
+
+    public static GeoGigFeatureWriter create(
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader, String typePath,
+            WorkingTree workingTree, int batchSize) {
+        return new GeoGigFeatureWriter(reader, typePath, workingTree, batchSize);
     }
 
     public static GeoGigFeatureWriter createAppendable(
             FeatureReader<SimpleFeatureType, SimpleFeature> reader, String typePath,
             WorkingTree workingTree) {
-        return new GeoGigFeatureWriter(new InfiniteFeatureReader(reader), typePath, workingTree);
+        return createAppendable(reader, typePath, workingTree, DEFAULT_BATCH_SIZE);
+    }
+
+    public static GeoGigFeatureWriter createAppendable(
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader, String typePath,
+            WorkingTree workingTree, int batchSize) {
+        return new GeoGigFeatureWriter(new InfiniteFeatureReader(reader), typePath, workingTree,
+                batchSize);
+    }
+
+    /**
+     * Ties this writer to the state of the transaction it writes to, so that the features it
+     * buffers are committed or rolled back along with it
+     */
+    void setTransactionState(GeogigTransactionState transactionState) {
+        this.transactionState = transactionState;
+        transactionState.register(this);
     }
 
     @Override
@@ -72,6 +119,8 @@ class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeat
     @Override
     public void remove() throws IOException {
         Preconditions.checkState(last != null, "next() hasn't been called");
+        // keep the order of the changes
+        flush();
         String path = typePath;
         String featureId = last.getID();
         workingTree.delete(path, featureId);
@@ -80,13 +129,46 @@ class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeat
     @Override
     public void write() throws IOException {
         Preconditions.checkState(last != null, "next() hasn't been called");
-        String parentTreePath = typePath;
-        workingTree.insert(parentTreePath, last);
+        pending.add(last);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Inserts the buffered features into the working tree
+     */
+    void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            workingTree.insert(typePath, pending.iterator(), DefaultProgressListener.NULL, null,
+                    Integer.valueOf(pending.size()));
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Drops the buffered features without inserting them
+     */
+    void discard() {
+        pending.clear();
     }
 
     @Override
     public void close() throws IOException {
-        //
+        try {
+            flush();
+        } finally {
+            if (transactionState != null) {
+                transactionState.unregister(this);
+            }
+            reader.close();
+        }
     }
 
     private static final class InfiniteFeatureReader implements
@@ -217,11 +217,21 @@ class GeogigFeatureStore extends ContentFeatureStore {
         String path = delegate.getTypeTreePath();
         WorkingTree wtree = getFeatureSource().getWorkingTree();
 
+        final int batchSize = getDataStore().getWriterBatchSize();
+
         GeoGigFeatureWriter writer;
         if ((flags | WRITER_ADD) == WRITER_ADD) {
-            writer = GeoGigFeatureWriter.createAppendable(features, path, wtree);
+            writer = GeoGigFeatureWriter.createAppendable(features, path, wtree, batchSize);
         } else {
-            writer = GeoGigFeatureWriter.create(features, path, wtree);
+            writer = GeoGigFeatureWriter.create(features, path, wtree, batchSize);
+        }
+        final Transaction transaction = getTransaction();
+        if (!Transaction.AUTO_COMMIT.equals(transaction)) {
+            GeogigTransactionState state;
+            state = (GeogigTransactionState) transaction.getState(GeogigTransactionState.class);
+            if (state != null) {
+                writer.setTransactionState(state);
+            }
         }
         return writer;
     }
@@ -11,6 +11,7 @@ package org.locationtech.geogig.geotools.data;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.data.Transaction;
@@ -29,6 +30,8 @@ import org.locationtech.geogig.api.porcelain.NothingToCommitException;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 
 /**
  *
@@ -47,6 +50,11 @@ class GeogigTransactionState implements State {
 
     private Transaction tx;
 
+    /**
+     * Writers still open on this transaction, whose buffered features go with it
+     */
+    private final Set<GeoGigFeatureWriter> openWriters = Sets.newConcurrentHashSet();
+
     /**
      * @param entry
      */
@@ -71,6 +79,7 @@ class GeogigTransactionState implements State {
         if (transaction == null) {
             // Transaction.removeState has been called (during
             // transaction.close())
+            discardOpenWriters();
             if (this.geogigTx != null) {
                 // throw new
                 // IllegalStateException("Transaction is attempting to "
@@ -91,6 +100,20 @@ class GeogigTransactionState implements State {
         }
     }
 
+    void register(GeoGigFeatureWriter writer) {
+        openWriters.add(writer);
+    }
+
+    void unregister(GeoGigFeatureWriter writer) {
+        openWriters.remove(writer);
+    }
+
+    private void discardOpenWriters() {
+        for (GeoGigFeatureWriter writer : openWriters) {
+            writer.discard();
+        }
+    }
+
     @Override
     public void addAuthorization(String AuthID) throws IOException {
         // not required
@@ -110,6 +133,10 @@ class GeogigTransactionState implements State {
         final String author = fullName.isPresent() ? fullName.get() : txUserName.orNull();
         String commitMessage = getTransactionProperty(VERSIONING_COMMIT_MESSAGE).orNull();
 
+        // features buffered by writers not closed yet are part of this commit too
+        for (GeoGigFeatureWriter writer : ImmutableList.copyOf(openWriters)) {
+            writer.flush();
+        }
         this.geogigTx.command(AddOp.class).call();
         try {
             CommitOp commitOp = this.geogigTx.command(CommitOp.class);
@@ -195,6 +222,7 @@ class GeogigTransactionState implements State {
     @Override
     public void rollback() throws IOException {
         Preconditions.checkState(this.geogigTx != null);
+        discardOpenWriters();
         this.geogigTx.abort();
         this.geogigTx = null;
     }
@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
@@ -28,6 +29,7 @@ import org.locationtech.geogig.api.porcelain.BranchCreateOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.api.porcelain.LogOp;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.FilterFactory2;
@@ -234,6 +236,84 @@ public class GeoGigFeatureStoreTest extends RepositoryTestCase {
         }
     }
 
+    @Test
+    public void testFeatureWriterAppend() throws Exception {
+        dataStore.setWriterBatchSize(2);
+
+        Transaction tx = new DefaultTransaction();
+        points.setTransaction(tx);
+        try {
+            FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+            writer = dataStore.getFeatureWriterAppend(pointsName, tx);
+            write(writer, points1, points2, points3);
+            writer.close();
+
+            // assert transaction isolation
+            assertEquals(3, points.getFeatures().size());
+            assertEquals(0, dataStore.getFeatureSource(pointsName).getFeatures().size());
+
+            tx.commit();
+
+            assertEquals(3, dataStore.getFeatureSource(pointsName).getFeatures().size());
+        } catch (Exception e) {
+            tx.rollback();
+            throw e;
+        } finally {
+            tx.close();
+        }
+    }
+
+    @Test
+    public void testFeatureWriterFlushedOnCommit() throws Exception {
+        dataStore.setWriterBatchSize(10);
+
+        Transaction tx = new DefaultTransaction();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            writer = dataStore.getFeatureWriterAppend(pointsName, tx);
+            write(writer, points1, points2, points3);
+            // commit with the writer still open and its features still buffered
+            tx.commit();
+
+            assertEquals(3, dataStore.getFeatureSource(pointsName).getFeatures().size());
+        } catch (Exception e) {
+            tx.rollback();
+            throw e;
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+            tx.close();
+        }
+        assertEquals(3, dataStore.getFeatureSource(pointsName).getFeatures().size());
+    }
+
+    @Test
+    public void testFeatureWriterDiscardedOnRollback() throws Exception {
+        dataStore.setWriterBatchSize(10);
+
+        Transaction tx = new DefaultTransaction();
+        try {
+            FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+            writer = dataStore.getFeatureWriterAppend(pointsName, tx);
+            write(writer, points1, points2, points3);
+            tx.rollback();
+            writer.close();
+        } finally {
+            tx.close();
+        }
+        assertEquals(0, dataStore.getFeatureSource(pointsName).getFeatures().size());
+    }
+
+    private void write(FeatureWriter<SimpleFeatureType, SimpleFeature> writer,
+            Feature... features) throws Exception {
+        for (Feature feature : features) {
+            SimpleFeature next = writer.next();
+            next.setAttributes(((SimpleFeature) feature).getAttributes());
+            writer.write();
+        }
+    }
+
     @Test
     public void testModifyFeatures() throws Exception {
         // add features circumventing FeatureStore.addFeatures to keep the test
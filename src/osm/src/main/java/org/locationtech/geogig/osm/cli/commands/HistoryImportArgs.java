@@ -29,8 +29,11 @@ public class HistoryImportArgs {
     @Parameter(names = "--resume", description = "Resume import from last imported changeset on the current branch.")
     public boolean resume;
 
-    @Parameter(names = "--to", description = "final changeset id.")
-    public long endIndex = 1000;
+    @Parameter(names = "--to", description = "final changeset id. Defaults to 1000, or to the last changeset of the files given with --file")
+    public Long endIndex;
+
+    @Parameter(names = "--file", description = "Import from a local OSM full history file, or directory of changeset files, instead of the OSM API")
+    public File historyFile;
 
     @Parameter(names = "--saveto", description = "Directory where to save the changesets. Defaults to $TMP/changesets.osm")
     public File saveFolder;
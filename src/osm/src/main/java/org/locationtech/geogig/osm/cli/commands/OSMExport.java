@@ -16,19 +16,13 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
-import org.eclipse.jdt.annotation.Nullable;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.locationtech.geogig.api.Bounded;
 import org.locationtech.geogig.api.GeoGIG;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
-import org.locationtech.geogig.api.RevFeature;
-import org.locationtech.geogig.api.RevFeatureType;
-import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.api.plumbing.ResolveTreeish;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.RevParse;
 import org.locationtech.geogig.cli.AbstractCommand;
 import org.locationtech.geogig.cli.CLICommand;
@@ -36,32 +30,21 @@ import org.locationtech.geogig.cli.CommandFailedException;
 import org.locationtech.geogig.cli.GeogigCLI;
 import org.locationtech.geogig.cli.annotation.ReadOnly;
 import org.locationtech.geogig.geotools.plumbing.ExportOp;
-import org.locationtech.geogig.osm.internal.EntityConverter;
+import org.locationtech.geogig.osm.internal.EntityResolver;
 import org.locationtech.geogig.osm.internal.OSMUtils;
-import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.PropertyDescriptor;
+import org.locationtech.geogig.osm.internal.ParallelPbfWriter;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
-import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
-import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
-import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
-import org.openstreetmap.osmosis.core.domain.v0_6.Node;
-import org.openstreetmap.osmosis.core.domain.v0_6.Way;
-import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
 import org.openstreetmap.osmosis.xml.v0_6.XmlWriter;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.vividsolutions.jts.geom.Envelope;
 
-import crosby.binary.osmosis.OsmosisSerializer;
-
 /**
  * Exports features from a feature type into a shapefile.
  * 
@@ -113,23 +96,22 @@ public class OSMExport extends AbstractCommand implements CLICommand {
         Iterator<EntityContainer> nodes = getFeatures(ref + ":node");
         Iterator<EntityContainer> ways = getFeatures(ref + ":way");
         Iterator<EntityContainer> iterator = Iterators.concat(nodes, ways);
+        Sink writer;
         if (file.getName().endsWith(".pbf")) {
-            BlockOutputStream output = new BlockOutputStream(new FileOutputStream(file));
-            OsmosisSerializer serializer = new OsmosisSerializer(output);
-            while (iterator.hasNext()) {
-                EntityContainer entity = iterator.next();
-                serializer.process(entity);
-            }
-            serializer.complete();
+            writer = new ParallelPbfWriter(new FileOutputStream(file),
+                    OSMUtils.resolveThreads(geogig.getContext(), "osm.export.threads"));
         } else {
-            XmlWriter writer = new XmlWriter(file, CompressionMethod.None);
+            writer = new XmlWriter(file, CompressionMethod.None);
+        }
+        try {
+            writer.initialize(Collections.<String, Object> emptyMap());
             while (iterator.hasNext()) {
-                EntityContainer entity = iterator.next();
-                writer.process(entity);
+                writer.process(iterator.next());
             }
             writer.complete();
+        } finally {
+            writer.release();
         }
-
     }
 
     private Iterator<EntityContainer> getFeatures(String ref) {
@@ -158,43 +140,8 @@ public class OSMExport extends AbstractCommand implements CLICommand {
             op.setBoundsFilter(filter);
         }
         Iterator<NodeRef> iterator = op.call();
-        final EntityConverter converter = new EntityConverter();
-        Function<NodeRef, EntityContainer> function = new Function<NodeRef, EntityContainer>() {
-
-            @Override
-            @Nullable
-            public EntityContainer apply(@Nullable NodeRef ref) {
-                RevFeature revFeature = geogig.command(RevObjectParse.class)
-                        .setObjectId(ref.getObjectId()).call(RevFeature.class).get();
-                SimpleFeatureType featureType;
-                if (ref.path().startsWith(OSMUtils.NODE_TYPE_NAME)) {
-                    featureType = OSMUtils.nodeType();
-                } else {
-                    featureType = OSMUtils.wayType();
-                }
-                SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
-                RevFeatureType revFeatureType = RevFeatureTypeImpl.build(featureType);
-                List<PropertyDescriptor> descriptors = revFeatureType.sortedDescriptors();
-                ImmutableList<Optional<Object>> values = revFeature.getValues();
-                for (int i = 0; i < descriptors.size(); i++) {
-                    PropertyDescriptor descriptor = descriptors.get(i);
-                    Optional<Object> value = values.get(i);
-                    featureBuilder.set(descriptor.getName(), value.orNull());
-                }
-                SimpleFeature feature = featureBuilder.buildFeature(ref.name());
-                Entity entity = converter.toEntity(feature, null);
-                EntityContainer container;
-                if (entity instanceof Node) {
-                    container = new NodeContainer((Node) entity);
-                } else {
-                    container = new WayContainer((Way) entity);
-                }
-
-                return container;
-
-            }
-
-        };
-        return Iterators.transform(iterator, function);
+        EntityResolver resolver = new EntityResolver(geogig.getRepository().objectDatabase(),
+                null);
+        return resolver.resolve(iterator);
     }
 }
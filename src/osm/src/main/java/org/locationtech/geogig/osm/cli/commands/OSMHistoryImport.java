@@ -59,9 +59,11 @@ import org.locationtech.geogig.cli.CommandFailedException;
 import org.locationtech.geogig.cli.Console;
 import org.locationtech.geogig.cli.GeogigCLI;
 import org.locationtech.geogig.cli.InvalidParameterException;
+import org.locationtech.geogig.osm.internal.OSMHistoryImportOp;
 import org.locationtech.geogig.osm.internal.history.Change;
 import org.locationtech.geogig.osm.internal.history.Changeset;
 import org.locationtech.geogig.osm.internal.history.HistoryDownloader;
+import org.locationtech.geogig.osm.internal.history.LocalHistoryReader;
 import org.locationtech.geogig.osm.internal.history.Node;
 import org.locationtech.geogig.osm.internal.history.Primitive;
 import org.locationtech.geogig.osm.internal.history.Way;
@@ -107,6 +109,10 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
 
     @Override
     protected void runInternal(GeogigCLI cli) throws IOException {
+        if (args.historyFile != null) {
+            importLocalHistory(cli);
+            return;
+        }
         checkParameter(args.numThreads > 0 && args.numThreads < 7,
                 "numthreads must be between 1 and 6");
 
@@ -115,7 +121,7 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
         final String osmAPIUrl = resolveAPIURL();
 
         final long startIndex;
-        final long endIndex = args.endIndex;
+        final long endIndex = args.endIndex == null ? 1000 : args.endIndex.longValue();
         if (args.resume) {
             GeoGIG geogig = cli.getGeogig();
             long lastChangeset = getCurrentBranchChangeset(geogig);
@@ -124,7 +130,7 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
             startIndex = args.startIndex;
         }
         console.println(String.format("Obtaining OSM changesets %,d to %,d from %s", startIndex,
-                args.endIndex, osmAPIUrl));
+                endIndex, osmAPIUrl));
 
         final ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
                 .setNameFormat("osm-history-fetch-thread-%d").build();
@@ -152,6 +158,43 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
         }
     }
 
+    /**
+     * Imports the changesets of a local history file or directory, building the trees and commits
+     * of each changeset directly instead of going through the working tree
+     */
+    private void importLocalHistory(GeogigCLI cli) throws IOException {
+        final File source = args.historyFile;
+        checkParameter(source.exists(), "%s does not exist", source.getAbsolutePath());
+
+        Console console = cli.getConsole();
+        GeoGIG geogig = cli.getGeogig();
+        final long startIndex;
+        if (args.resume) {
+            startIndex = 1 + getCurrentBranchChangeset(geogig);
+        } else {
+            startIndex = args.startIndex;
+        }
+        final long endIndex = args.endIndex == null ? Long.MAX_VALUE : args.endIndex.longValue();
+        checkParameter(startIndex > 0 && startIndex <= endIndex,
+                "Invalid changeset range %s to %s", startIndex, endIndex);
+        console.println("Importing OSM changesets from " + source.getAbsolutePath());
+        console.flush();
+
+        LocalHistoryReader reader = new LocalHistoryReader(source, startIndex, endIndex);
+        Envelope env = parseBbox();
+        reader.setChangesetFilter(parseFilter(env));
+        final Long commits;
+        try {
+            commits = geogig.command(OSMHistoryImportOp.class)
+                    .setChangesets(reader.fetchChangesets()).setFeatureFilter(env)
+                    .setProgressListener(cli.getProgressListener()).call();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new CommandFailedException(e.getMessage(), e);
+        }
+        console.println(String.format("Imported %,d changesets. Last changeset: %,d",
+                commits.longValue(), getCurrentBranchChangeset(geogig)));
+    }
+
     private Predicate<Changeset> parseFilter(Envelope env) {
         if (env == null) {
             return Predicates.alwaysTrue();
@@ -43,6 +43,9 @@ public class OSMMap extends AbstractCommand implements CLICommand {
     @Parameter(names = { "--message", "-m" }, description = "The message for the commit to create")
     public String message;
 
+    @Parameter(names = { "--incremental" }, description = "Map only the data that changed since the mapping was last applied")
+    public boolean incremental;
+
     private GeoGIG geogig;
 
     /**
@@ -71,7 +74,7 @@ public class OSMMap extends AbstractCommand implements CLICommand {
                 : message;
 
         ObjectId newTreeId = geogig.command(OSMMapOp.class).setMapping(mapping).setMessage(message)
-                .call().getId();
+                .setIncremental(incremental).call().getId();
 
         Console console = cli.getConsole();
         if (newTreeId.equals(oldTreeId)) {
@@ -9,35 +9,23 @@
  */
 package org.locationtech.geogig.osm.internal;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
-import org.locationtech.geogig.api.RevFeature;
-import org.locationtech.geogig.api.RevFeatureType;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry.ChangeType;
 import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.di.CanRunDuringConflict;
-import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.PropertyDescriptor;
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
-import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
-import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
-import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
-import org.openstreetmap.osmosis.core.domain.v0_6.Node;
-import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.task.common.ChangeAction;
 
 import com.google.common.base.Function;
-import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 
 //import org.locationtech.geogig.api.plumbing.diff.DiffEntry.ChangeType;
@@ -119,46 +107,34 @@ public class CreateOSMChangesetOp extends AbstractGeoGigOp<Iterator<ChangeContai
                 .setNewVersion(newRefSpec).setOldVersion(oldRefSpec).setReportTrees(false).call();
         Iterator<DiffEntry> iterator = Iterators.concat(nodeIterator, wayIterator);
 
-        final EntityConverter converter = new EntityConverter();
-        Function<DiffEntry, ChangeContainer> function = new Function<DiffEntry, ChangeContainer>() {
+        final EntityResolver resolver = new EntityResolver(objectDatabase(), id);
+        Function<List<DiffEntry>, Iterator<ChangeContainer>> function;
+        function = new Function<List<DiffEntry>, Iterator<ChangeContainer>>() {
 
             @Override
-            @Nullable
-            public ChangeContainer apply(@Nullable DiffEntry diff) {
-                NodeRef ref = diff.changeType().equals(ChangeType.REMOVED) ? diff.getOldObject()
-                        : diff.getNewObject();
-                RevFeature revFeature = command(RevObjectParse.class).setObjectId(ref.getObjectId())
-                        .call(RevFeature.class).get();
-                RevFeatureType revFeatureType = command(RevObjectParse.class)
-                        .setObjectId(ref.getMetadataId()).call(RevFeatureType.class).get();
-                SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(
-                        (SimpleFeatureType) revFeatureType.type());
-                ImmutableList<PropertyDescriptor> descriptors = revFeatureType.sortedDescriptors();
-                ImmutableList<Optional<Object>> values = revFeature.getValues();
-                for (int i = 0; i < descriptors.size(); i++) {
-                    PropertyDescriptor descriptor = descriptors.get(i);
-                    Optional<Object> value = values.get(i);
-                    featureBuilder.set(descriptor.getName(), value.orNull());
+            public Iterator<ChangeContainer> apply(List<DiffEntry> batch) {
+                List<NodeRef> refs = new ArrayList<NodeRef>(batch.size());
+                for (DiffEntry diff : batch) {
+                    refs.add(diff.changeType().equals(ChangeType.REMOVED) ? diff.getOldObject()
+                            : diff.getNewObject());
                 }
-                SimpleFeature feature = featureBuilder.buildFeature(ref.name());
-                Entity entity = converter.toEntity(feature, id);
-                EntityContainer container;
-                if (entity instanceof Node) {
-                    container = new NodeContainer((Node) entity);
-                } else {
-                    container = new WayContainer((Way) entity);
+                List<EntityContainer> entities = resolver.resolve(refs);
+
+                List<ChangeContainer> changes = new ArrayList<ChangeContainer>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    ChangeType changeType = batch.get(i).changeType();
+                    ChangeAction action = changeType.equals(ChangeType.ADDED) ? ChangeAction.Create
+                            : changeType.equals(ChangeType.MODIFIED) ? ChangeAction.Modify
+                                    : ChangeAction.Delete;
+                    changes.add(new ChangeContainer(entities.get(i), action));
                 }
-
-                ChangeAction action = diff.changeType().equals(ChangeType.ADDED) ? ChangeAction.Create
-                        : diff.changeType().equals(ChangeType.MODIFIED) ? ChangeAction.Modify
-                                : ChangeAction.Delete;
-
-                return new ChangeContainer(container, action);
-
+                return changes.iterator();
             }
 
         };
-        return Iterators.transform(iterator, function);
+        Iterator<List<DiffEntry>> batches = Iterators.partition(iterator,
+                EntityResolver.BATCH_SIZE);
+        return Iterators.concat(Iterators.transform(batches, function));
     }
 
 }
@@ -0,0 +1,167 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+/**
+ * Resolves the OSM entities stored as features in a repository.
+ * <p>
+ * The features of each batch of refs are fetched from the object database at once, and the
+ * feature builders are cached by metadata id, so that feature types are only fetched the first
+ * time they are seen. Refs whose feature type can't be found are built with the default node or
+ * way type, depending on the tree they are in.
+ * <p>
+ * This class is not thread safe.
+ */
+public class EntityResolver {
+
+    /**
+     * The number of features fetched at a time by {@link #resolve(Iterator)}
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private final ObjectDatabase objects;
+
+    @Nullable
+    private final Long changesetId;
+
+    private final EntityConverter converter = new EntityConverter();
+
+    private final Map<ObjectId, FeatureBuilder> builders = new HashMap<ObjectId, FeatureBuilder>();
+
+    private final FeatureBuilder nodeBuilder = new FeatureBuilder(
+            RevFeatureTypeImpl.build(OSMUtils.nodeType()));
+
+    private final FeatureBuilder wayBuilder = new FeatureBuilder(
+            RevFeatureTypeImpl.build(OSMUtils.wayType()));
+
+    /**
+     * @param objects the database to fetch the features and feature types from
+     * @param changesetId the changeset id to replace the negative ones with, if any
+     * @see EntityConverter#toEntity
+     */
+    public EntityResolver(ObjectDatabase objects, @Nullable Long changesetId) {
+        this.objects = objects;
+        this.changesetId = changesetId;
+    }
+
+    /**
+     * Lazily resolves the entities of the given refs, a batch at a time.
+     *
+     * @return the entities, in the same order as the refs
+     */
+    public Iterator<EntityContainer> resolve(Iterator<NodeRef> refs) {
+        Iterator<List<NodeRef>> batches = Iterators.partition(refs, BATCH_SIZE);
+        Function<List<NodeRef>, Iterator<EntityContainer>> function;
+        function = new Function<List<NodeRef>, Iterator<EntityContainer>>() {
+            @Override
+            public Iterator<EntityContainer> apply(List<NodeRef> batch) {
+                return resolve(batch).iterator();
+            }
+        };
+        return Iterators.concat(Iterators.transform(batches, function));
+    }
+
+    /**
+     * Resolves the entities of the given refs, fetching all their features at once.
+     *
+     * @return the entities, in the same order as the refs
+     */
+    public List<EntityContainer> resolve(List<NodeRef> refs) {
+        Map<ObjectId, RevFeature> revFeatures = getFeatures(refs);
+        cacheBuilders(refs);
+
+        List<EntityContainer> entities = new ArrayList<EntityContainer>(refs.size());
+        for (NodeRef ref : refs) {
+            RevFeature revFeature = revFeatures.get(ref.getObjectId());
+            Preconditions.checkState(revFeature != null, "Feature %s not found",
+                    ref.getObjectId());
+            SimpleFeature feature = (SimpleFeature) builder(ref).build(ref.name(), revFeature);
+            Entity entity = converter.toEntity(feature, changesetId);
+            if (entity instanceof Node) {
+                entities.add(new NodeContainer((Node) entity));
+            } else {
+                entities.add(new WayContainer((Way) entity));
+            }
+        }
+        return entities;
+    }
+
+    private Map<ObjectId, RevFeature> getFeatures(List<NodeRef> refs) {
+        // identical features share the same object, so fetch each one once
+        Set<ObjectId> ids = new HashSet<ObjectId>();
+        for (NodeRef ref : refs) {
+            ids.add(ref.getObjectId());
+        }
+        Map<ObjectId, RevFeature> revFeatures = new HashMap<ObjectId, RevFeature>();
+        Iterator<RevFeature> all = objects.getAll(ids, NOOP_LISTENER, RevFeature.class);
+        while (all.hasNext()) {
+            RevFeature revFeature = all.next();
+            revFeatures.put(revFeature.getId(), revFeature);
+        }
+        return revFeatures;
+    }
+
+    /**
+     * Fetches the feature types of the refs that haven't been seen yet
+     */
+    private void cacheBuilders(List<NodeRef> refs) {
+        Set<ObjectId> missing = new HashSet<ObjectId>();
+        for (NodeRef ref : refs) {
+            ObjectId metadataId = ref.getMetadataId();
+            if (!metadataId.isNull() && !builders.containsKey(metadataId)) {
+                missing.add(metadataId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Iterator<RevFeatureType> types = objects.getAll(missing, NOOP_LISTENER,
+                RevFeatureType.class);
+        while (types.hasNext()) {
+            RevFeatureType type = types.next();
+            builders.put(type.getId(), new FeatureBuilder(type));
+        }
+    }
+
+    private FeatureBuilder builder(NodeRef ref) {
+        FeatureBuilder builder = builders.get(ref.getMetadataId());
+        if (builder == null) {
+            builder = ref.path().startsWith(OSMUtils.NODE_TYPE_NAME) ? nodeBuilder : wayBuilder;
+        }
+        return builder;
+    }
+}
@@ -11,29 +11,41 @@ package org.locationtech.geogig.osm.internal;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
-import org.locationtech.geogig.osm.internal.coordcache.MapdbPointCache;
+import org.locationtech.geogig.osm.internal.coordcache.DenseMappedPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
+import org.locationtech.geogig.repository.DepthSearch;
 import org.locationtech.geogig.repository.FeatureToDelete;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
-import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
@@ -47,7 +59,10 @@ import org.openstreetmap.osmosis.xml.v0_6.XmlChangeReader;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -62,7 +77,10 @@ import com.vividsolutions.jts.geom.PrecisionModel;
  * Changes are filtered to restrict additions to just those new features within the bbox of the
  * current OSM data in the repo, honoring the filter that might have been used to import that
  * preexistent data
- * 
+ * <p>
+ * The whole diff file is buffered before applying it, so that the nodes the changed ways use, and
+ * the nodes and ways the modifications refer to, are looked up in the repository in batches. The
+ * resulting inserts and deletes are then applied to the working tree in a single pass.
  */
 
 public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
@@ -100,30 +118,29 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
     }
 
+    /**
+     * @return the report of the applied changes, or {@code null} if cancelled
+     */
     public OSMReport parseDiffFileAndInsert() {
         final WorkingTree workTree = workingTree();
 
-        final int queueCapacity = 100 * 1000;
-        final int timeout = 1;
-        final TimeUnit timeoutUnit = TimeUnit.SECONDS;
-        // With this iterator and the osm parsing happening on a separate thread, we follow a
-        // producer/consumer approach so that the osm parse thread produces features into the
-        // iterator's queue, and WorkingTree.insert consumes them on this thread
-        QueueIterator<Feature> target = new QueueIterator<Feature>(queueCapacity, timeout,
-                timeoutUnit);
-
         XmlChangeReader reader = new XmlChangeReader(file, true, resolveCompressionMethod(file));
 
         ProgressListener progressListener = getProgressListener();
-        ConvertAndImportSink sink = new ConvertAndImportSink(target, context, workingTree(),
-                platform(), new SubProgressListener(progressListener, 100));
+        ConvertAndImportSink sink = new ConvertAndImportSink(context, workingTree(), platform(),
+                new SubProgressListener(progressListener, 100));
         reader.setChangeSink(sink);
-
-        Thread readerThread = new Thread(reader, "osm-diff-reader-thread");
-        readerThread.start();
+        try {
+            reader.run();
+        } catch (OsmosisRuntimeException e) {
+            if (progressListener.isCanceled()) {
+                return null;
+            }
+            throw e;
+        }
 
         // used to set the task status name, but report no progress so it does not interfere
-        // with the progress reported by the reader thread
+        // with the progress reported by the sink
         SubProgressListener noProgressReportingListener = new SubProgressListener(progressListener,
                 0) {
             @Override
@@ -139,7 +156,9 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
-        workTree.insert(parentTreePathResolver, target, noProgressReportingListener, null, null);
+        List<Feature> features = sink.getFeatures();
+        workTree.insert(parentTreePathResolver, features.iterator(), noProgressReportingListener,
+                null, Integer.valueOf(features.size()));
 
         OSMReport report = new OSMReport(sink.getCount(), sink.getNodeCount(), sink.getWayCount(),
                 sink.getUnprocessedCount(), sink.getLatestChangeset(), sink.getLatestTimestamp());
@@ -157,7 +176,8 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
     }
 
     /**
-     * A sink that processes OSM changes and translates the to the repository working tree
+     * A sink that buffers OSM changes and, once all of them are read, translates them to the
+     * features to insert in or delete from the repository working tree
      * 
      */
     static class ConvertAndImportSink implements ChangeSink {
@@ -185,26 +205,31 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private PointCache pointCache;
 
-        private QueueIterator<Feature> target;
-
         private ProgressListener progressListener;
 
-        private WorkingTree workTree;
+        private Context context;
+
+        private final Optional<NodeRef> nodesNodeRef;
+
+        private final Optional<NodeRef> waysNodeRef;
 
         private Geometry bbox;
 
-        public ConvertAndImportSink(QueueIterator<Feature> target, Context cmdLocator,
-                WorkingTree workTree, Platform platform, ProgressListener progressListener) {
+        private List<ChangeContainer> changes = new ArrayList<ChangeContainer>();
+
+        private List<Feature> features = new ArrayList<Feature>();
+
+        public ConvertAndImportSink(Context cmdLocator, WorkingTree workTree, Platform platform,
+                ProgressListener progressListener) {
             super();
-            this.target = target;
-            this.workTree = workTree;
+            this.context = cmdLocator;
             this.progressListener = progressListener;
             this.latestChangeset = 0;
             this.latestTimestamp = 0;
-            this.pointCache = new MapdbPointCache(platform);
-            Optional<NodeRef> waysNodeRef = cmdLocator.command(FindTreeChild.class)
+            this.pointCache = new DenseMappedPointCache(platform);
+            waysNodeRef = cmdLocator.command(FindTreeChild.class)
                     .setChildPath(OSMUtils.WAY_TYPE_NAME).setParent(workTree.getTree()).call();
-            Optional<NodeRef> nodesNodeRef = cmdLocator.command(FindTreeChild.class)
+            nodesNodeRef = cmdLocator.command(FindTreeChild.class)
                     .setChildPath(OSMUtils.NODE_TYPE_NAME).setParent(workTree.getTree()).call();
             checkArgument(waysNodeRef.isPresent() || nodesNodeRef.isPresent(),
                     "There is no OSM data currently in the repository");
@@ -234,17 +259,23 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             return wayCount;
         }
 
+        /**
+         * @return the features to insert and the {@link FeatureToDelete features to delete}, in
+         *         the order of the changes they come from
+         */
+        public List<Feature> getFeatures() {
+            return features;
+        }
+
         @Override
         public void complete() {
             try {
+                convert();
                 progressListener.setProgress(count);
                 progressListener.complete();
             } finally {
-                try {
-                    target.noMoreInput();
-                } finally {
-                    pointCache.dispose();
-                }
+                changes = null;
+                pointCache.dispose();
             }
         }
 
@@ -256,29 +287,129 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         @Override
         public void process(ChangeContainer container) {
             if (progressListener.isCanceled()) {
-                target.cancel();
                 throw new OsmosisRuntimeException("Cancelled by user");
             }
-            final EntityContainer entityContainer = container.getEntityContainer();
-            final Entity entity = entityContainer.getEntity();
+            changes.add(container);
+        }
+
+        private void convert() {
+            // the nodes in the diff, and the ones the changed ways use that are not in the diff
+            Set<String> diffNodes = new HashSet<String>();
+            Set<String> wayNodes = new HashSet<String>();
+            Set<String> modifiedNodes = new HashSet<String>();
+            Set<String> modifiedWays = new HashSet<String>();
+            for (ChangeContainer container : changes) {
+                final Entity entity = container.getEntityContainer().getEntity();
+                final ChangeAction changeAction = container.getAction();
+                if (changeAction.equals(ChangeAction.Delete)) {
+                    continue;
+                }
+                final String id = Long.toString(entity.getId());
+                if (entity instanceof Node) {
+                    diffNodes.add(id);
+                    if (changeAction.equals(ChangeAction.Modify)) {
+                        modifiedNodes.add(id);
+                    }
+                } else if (entity instanceof Way) {
+                    for (WayNode wayNode : ((Way) entity).getWayNodes()) {
+                        wayNodes.add(Long.toString(wayNode.getNodeId()));
+                    }
+                    if (changeAction.equals(ChangeAction.Modify)) {
+                        modifiedWays.add(id);
+                    }
+                }
+            }
+            wayNodes.removeAll(diffNodes);
+
+            Set<String> nodesToFind = new HashSet<String>(modifiedNodes);
+            nodesToFind.addAll(wayNodes);
+            Map<String, org.locationtech.geogig.api.Node> existingNodes = find(nodesNodeRef,
+                    nodesToFind);
+            Map<String, org.locationtech.geogig.api.Node> existingWays = find(waysNodeRef,
+                    modifiedWays);
+            cacheRepositoryNodes(wayNodes, existingNodes);
+
+            for (ChangeContainer container : changes) {
+                convert(container, existingNodes, existingWays);
+            }
+        }
+
+        /**
+         * @return the nodes of the tree referred to by {@code treeRef} with the given names
+         */
+        private Map<String, org.locationtech.geogig.api.Node> find(Optional<NodeRef> treeRef,
+                Set<String> names) {
+            if (!treeRef.isPresent() || names.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            ObjectDatabase db = context.objectDatabase();
+            RevTree tree = db.getTree(treeRef.get().getObjectId());
+            return new DepthSearch(db).getDirectChildren(tree, names);
+        }
+
+        /**
+         * Adds the location of the nodes the changed ways use, but that are not in the diff, to
+         * the point cache, fetching them from the repository in a single batch
+         */
+        private void cacheRepositoryNodes(Set<String> wayNodes,
+                Map<String, org.locationtech.geogig.api.Node> existingNodes) {
+            Multimap<ObjectId, Long> nodeIds = ArrayListMultimap.create();
+            for (String id : wayNodes) {
+                org.locationtech.geogig.api.Node node = existingNodes.get(id);
+                if (node != null) {
+                    nodeIds.put(node.getObjectId(), Long.valueOf(id));
+                }
+            }
+            if (nodeIds.isEmpty()) {
+                return;
+            }
+            FeatureBuilder builder = new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils
+                    .nodeType()));
+            Iterator<RevFeature> nodes = context.objectDatabase().getAll(nodeIds.keySet(),
+                    NOOP_LISTENER, RevFeature.class);
+            while (nodes.hasNext()) {
+                RevFeature node = nodes.next();
+                SimpleFeature feature = (SimpleFeature) builder.build(node.getId().toString(),
+                        node);
+                Coordinate location = ((Point) feature.getDefaultGeometry()).getCoordinate();
+                for (Long id : nodeIds.get(node.getId())) {
+                    OSMCoordinateSequence cs = CSFAC.create(1, 2);
+                    cs.setOrdinate(0, 0, location.x);
+                    cs.setOrdinate(0, 1, location.y);
+                    pointCache.put(id, cs);
+                }
+            }
+        }
+
+        private void convert(ChangeContainer container,
+                Map<String, org.locationtech.geogig.api.Node> existingNodes,
+                Map<String, org.locationtech.geogig.api.Node> existingWays) {
+            final Entity entity = container.getEntityContainer().getEntity();
             final ChangeAction changeAction = container.getAction();
             if (changeAction.equals(ChangeAction.Delete)) {
                 SimpleFeatureType ft = entity instanceof Node ? OSMUtils.nodeType() : OSMUtils
                         .wayType();
                 String id = Long.toString(entity.getId());
-                target.put(new FeatureToDelete(ft, id));
+                features.add(new FeatureToDelete(ft, id));
                 return;
             }
+            // a modified feature that's not in the repository, like one that was outside the
+            // bbox of a filtered import, is only added if it's now within it, as a created one
+            boolean filter = changeAction.equals(ChangeAction.Create);
             if (changeAction.equals(ChangeAction.Modify)) {
-                // Check that the feature to modify exist. If so, we will just treat it as an
-                // addition, overwriting the previous feature
-                SimpleFeatureType ft = entity instanceof Node ? OSMUtils.nodeType() : OSMUtils
-                        .wayType();
-                String path = ft.getName().getLocalPart();
-                Optional<org.locationtech.geogig.api.Node> opt = workTree.findUnstaged(path);
-                if (!opt.isPresent()) {
+                // Check that the tree of the feature to modify exists. If so, we will just treat
+                // it as an addition, overwriting the previous feature if there is one
+                Optional<NodeRef> treeRef = entity instanceof Node ? nodesNodeRef : waysNodeRef;
+                if (!treeRef.isPresent()) {
+                    if (entity instanceof Node) {
+                        // still usable by the ways in the diff
+                        parsePoint((Node) entity);
+                    }
                     return;
                 }
+                Map<String, org.locationtech.geogig.api.Node> existing = entity instanceof Node
+                        ? existingNodes : existingWays;
+                filter = !existing.containsKey(Long.toString(entity.getId()));
             }
 
             if (++count % 10 == 0) {
@@ -300,11 +431,9 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 return;
             }
             if (geom != null) {
-                System.err.printf("%s within %s? %s\n", geom, bbox, geom.within(bbox));
-                if (changeAction.equals(ChangeAction.Create) && geom.within(bbox)
-                        || changeAction.equals(ChangeAction.Modify)) {
+                if (!filter || geom.within(bbox)) {
                     Feature feature = converter.toFeature(entity, geom);
-                    target.put(feature);
+                    features.add(feature);
                 }
             }
         }
@@ -0,0 +1,403 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.locationtech.geogig.osm.internal.OSMUtils.NODE_TYPE_NAME;
+import static org.locationtech.geogig.osm.internal.OSMUtils.WAY_TYPE_NAME;
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureBuilder;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.RefParse;
+import org.locationtech.geogig.api.plumbing.UpdateRef;
+import org.locationtech.geogig.api.porcelain.ConfigGet;
+import org.locationtech.geogig.osm.internal.coordcache.DenseMappedPointCache;
+import org.locationtech.geogig.osm.internal.history.Change;
+import org.locationtech.geogig.osm.internal.history.Changeset;
+import org.locationtech.geogig.osm.internal.history.Primitive;
+import org.locationtech.geogig.osm.internal.history.Way;
+import org.locationtech.geogig.repository.DepthSearch;
+import org.locationtech.geogig.repository.SpatialOps;
+import org.locationtech.geogig.storage.Blobs;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+/**
+ * Replays a sequence of OSM changesets on the current branch, creating a commit for each one.
+ * <p>
+ * Instead of going through the working tree and index, the node and way trees of each changeset
+ * are built straight from the ones of the previous changeset with a {@link RevTreeBuilder}, and
+ * the commits are written and the branch updated in batches. The locations of the nodes are kept
+ * in a {@link DenseMappedPointCache} to build the way geometries, nodes not seen during the
+ * import are looked up in the node tree once per changeset.
+ * <p>
+ * The working tree and index must be clean, they are left pointing to the new branch tip.
+ */
+public class OSMHistoryImportOp extends AbstractGeoGigOp<Long> {
+
+    /**
+     * The number of commits written and applied to the branch at a time
+     */
+    private static final int COMMIT_BATCH_SIZE = 1000;
+
+    private static final PrecisionModel PRECISION_MODEL = new PrecisionModel(
+            1D / FixedPrecisionCoordinateConvertor.convertToDouble(1));
+
+    private static final OSMCoordinateSequenceFactory CSFAC = OSMCoordinateSequenceFactory
+            .instance();
+
+    private static final GeometryFactory GEOMF = new GeometryFactory(PRECISION_MODEL, 4326, CSFAC);
+
+    private static final RevFeatureType NODE_TYPE = RevFeatureTypeImpl.build(OSMUtils.nodeType());
+
+    private static final RevFeatureType WAY_TYPE = RevFeatureTypeImpl.build(OSMUtils.wayType());
+
+    private Iterator<Changeset> changesets;
+
+    private Envelope featureFilter;
+
+    private RevTree nodeTree;
+
+    private RevTree wayTree;
+
+    private DenseMappedPointCache pointCache;
+
+    /**
+     * @param changesets the changesets to import, in the order to apply them
+     * @return {@code this}
+     */
+    public OSMHistoryImportOp setChangesets(Iterator<Changeset> changesets) {
+        this.changesets = changesets;
+        return this;
+    }
+
+    /**
+     * @param featureFilter if given, only the nodes and ways that intersect it are imported
+     * @return {@code this}
+     */
+    public OSMHistoryImportOp setFeatureFilter(@Nullable Envelope featureFilter) {
+        this.featureFilter = featureFilter;
+        return this;
+    }
+
+    /**
+     * Executes the import.
+     *
+     * @return the number of commits created
+     */
+    @Override
+    protected Long _call() {
+        Preconditions.checkArgument(changesets != null, "No changesets provided");
+        Preconditions.checkState(workingTree().isClean() && index().isClean(),
+                "The working tree and index must be clean to import the OSM history");
+
+        final Optional<Ref> currentHead = command(RefParse.class).setName(Ref.HEAD).call();
+        Preconditions.checkState(currentHead.isPresent() && currentHead.get() instanceof SymRef,
+                "Cannot import the OSM history on a dettached HEAD");
+        final String branch = ((SymRef) currentHead.get()).getTarget();
+        final ObjectDatabase db = objectDatabase();
+
+        ObjectId parent = currentHead.get().getObjectId();
+        RevTree root = parent.isNull() ? RevTree.EMPTY : db.getTree(db.getCommit(parent)
+                .getTreeId());
+        nodeTree = childTree(root, NODE_TYPE_NAME);
+        wayTree = childTree(root, WAY_TYPE_NAME);
+        db.put(NODE_TYPE);
+        db.put(WAY_TYPE);
+
+        final ProgressListener progressListener = getProgressListener();
+        progressListener.started();
+        List<RevCommit> commits = new ArrayList<RevCommit>(COMMIT_BATCH_SIZE);
+        long lastChangeset = 0;
+        long count = 0;
+        pointCache = new DenseMappedPointCache(platform());
+        try {
+            while (changesets.hasNext() && !progressListener.isCanceled()) {
+                Changeset changeset = changesets.next();
+                Preconditions.checkArgument(!changeset.isOpen(),
+                        "Can't import past changeset %s as it is still open", changeset.getId());
+                Optional<Iterator<Change>> changes = changeset.getChanges().get();
+                if (changes.isPresent()) {
+                    root = apply(root, changes.get());
+                    RevCommit commit = commit(changeset, root.getId(), parent);
+                    commits.add(commit);
+                    parent = commit.getId();
+                    progressListener.setProgress(++count);
+                }
+                lastChangeset = changeset.getId();
+                if (commits.size() == COMMIT_BATCH_SIZE) {
+                    flush(branch, commits, lastChangeset);
+                }
+            }
+        } finally {
+            try {
+                // keep the changesets imported so far, even if the import failed
+                flush(branch, commits, lastChangeset);
+            } finally {
+                pointCache.dispose();
+            }
+        }
+        progressListener.complete();
+        return Long.valueOf(count);
+    }
+
+    /**
+     * Writes the pending commits, points the branch, working tree and index to the last one, and
+     * records the last imported changeset so that the import can be resumed
+     */
+    private void flush(String branch, List<RevCommit> commits, long lastChangeset) {
+        if (!commits.isEmpty()) {
+            objectDatabase().putAll(commits.iterator());
+            RevCommit last = commits.get(commits.size() - 1);
+            command(UpdateRef.class).setName(branch).setNewValue(last.getId()).call();
+            command(UpdateRef.class).setName(Ref.WORK_HEAD).setNewValue(last.getTreeId()).call();
+            command(UpdateRef.class).setName(Ref.STAGE_HEAD).setNewValue(last.getTreeId()).call();
+            commits.clear();
+        }
+        if (lastChangeset > 0) {
+            Blobs.putBlob(context.blobStore(), "osm/" + branch, String.valueOf(lastChangeset));
+        }
+    }
+
+    /**
+     * Applies the changes of a changeset, nodes first so that the ways can use them
+     *
+     * @return the new root tree
+     */
+    private RevTree apply(RevTree root, Iterator<Change> changes) {
+        List<Change> nodeChanges = new ArrayList<Change>();
+        List<Change> wayChanges = new ArrayList<Change>();
+        while (changes.hasNext()) {
+            Change change = changes.next();
+            if (change.getNode().isPresent()) {
+                nodeChanges.add(change);
+            } else if (change.getWay().isPresent()) {
+                wayChanges.add(change);
+            } // relations are ignored for the time being
+        }
+        if (nodeChanges.isEmpty() && wayChanges.isEmpty()) {
+            return root;
+        }
+
+        final ObjectDatabase db = objectDatabase();
+        List<RevFeature> features = new ArrayList<RevFeature>();
+        RevTreeBuilder rootBuilder = new RevTreeBuilder(db, root);
+        if (!nodeChanges.isEmpty()) {
+            RevTreeBuilder nodes = new RevTreeBuilder(db, nodeTree);
+            for (Change change : nodeChanges) {
+                org.locationtech.geogig.osm.internal.history.Node node = change.getNode().get();
+                Point location = node.getLocation().orNull();
+                if (location != null) {
+                    OSMCoordinateSequence cs = CSFAC.create(1, 2);
+                    cs.setOrdinate(0, 0, location.getX());
+                    cs.setOrdinate(0, 1, location.getY());
+                    pointCache.put(Long.valueOf(node.getId()), cs);
+                    location = GEOMF.createPoint(cs);
+                }
+                apply(change, node, location, NODE_TYPE, nodes, features);
+            }
+            nodeTree = nodes.build();
+            rootBuilder.put(treeNode(NODE_TYPE_NAME, nodeTree, NODE_TYPE));
+        }
+        if (!wayChanges.isEmpty()) {
+            cacheRepositoryNodes(wayChanges);
+            RevTreeBuilder ways = new RevTreeBuilder(db, wayTree);
+            for (Change change : wayChanges) {
+                Way way = change.getWay().get();
+                Geometry geom = Change.Type.delete.equals(change.getType()) ? null
+                        : parseLine(way);
+                apply(change, way, geom, WAY_TYPE, ways, features);
+            }
+            wayTree = ways.build();
+            rootBuilder.put(treeNode(WAY_TYPE_NAME, wayTree, WAY_TYPE));
+        }
+        db.putAll(features.iterator());
+        db.put(nodeTree);
+        db.put(wayTree);
+        RevTree newRoot = rootBuilder.build();
+        db.put(newRoot);
+        return newRoot;
+    }
+
+    private void apply(Change change, Primitive primitive, @Nullable Geometry geom,
+            RevFeatureType featureType, RevTreeBuilder tree, List<RevFeature> features) {
+        final String id = String.valueOf(primitive.getId());
+        if (Change.Type.delete.equals(change.getType())) {
+            tree.remove(id);
+            return;
+        }
+        Envelope bounds = geom == null ? null : geom.getEnvelopeInternal();
+        if (featureFilter != null && (bounds == null || !featureFilter.intersects(bounds))) {
+            return;
+        }
+        RevFeature feature = RevFeatureBuilder.build(toFeature(primitive, geom));
+        features.add(feature);
+        tree.put(Node.create(id, feature.getId(), featureType.getId(), TYPE.FEATURE, bounds));
+    }
+
+    /**
+     * Adds the location of the nodes the changed ways use, but that haven't been seen during this
+     * import, to the point cache, fetching them from the node tree in a single batch
+     */
+    private void cacheRepositoryNodes(List<Change> wayChanges) {
+        Set<String> missing = new TreeSet<String>();
+        for (Change change : wayChanges) {
+            for (Long nodeId : change.getWay().get().getNodes()) {
+                if (!pointCache.contains(nodeId.longValue())) {
+                    missing.add(nodeId.toString());
+                }
+            }
+        }
+        if (missing.isEmpty() || nodeTree.isEmpty()) {
+            return;
+        }
+        final ObjectDatabase db = objectDatabase();
+        Map<String, Node> found = new DepthSearch(db).getDirectChildren(nodeTree, missing);
+        Multimap<ObjectId, Long> nodeIds = ArrayListMultimap.create();
+        for (Map.Entry<String, Node> entry : found.entrySet()) {
+            nodeIds.put(entry.getValue().getObjectId(), Long.valueOf(entry.getKey()));
+        }
+        FeatureBuilder builder = new FeatureBuilder(NODE_TYPE);
+        Iterator<RevFeature> nodes = db.getAll(nodeIds.keySet(), NOOP_LISTENER, RevFeature.class);
+        while (nodes.hasNext()) {
+            RevFeature node = nodes.next();
+            SimpleFeature feature = (SimpleFeature) builder.build(node.getId().toString(), node);
+            Point location = (Point) feature.getAttribute("location");
+            if (location == null) {
+                continue;
+            }
+            for (Long id : nodeIds.get(node.getId())) {
+                OSMCoordinateSequence cs = CSFAC.create(1, 2);
+                cs.setOrdinate(0, 0, location.getX());
+                cs.setOrdinate(0, 1, location.getY());
+                pointCache.put(id, cs);
+            }
+        }
+    }
+
+    /**
+     * @return the way geometry with the nodes that can be found, or {@code null} if less than two
+     *         of them are found
+     */
+    @Nullable
+    private Geometry parseLine(Way way) {
+        ImmutableList<Long> nodes = way.getNodes();
+        List<Long> found = new ArrayList<Long>(nodes.size());
+        for (Long nodeId : nodes) {
+            if (pointCache.contains(nodeId.longValue())) {
+                found.add(nodeId);
+            }
+        }
+        if (found.size() < 2) {
+            return null;
+        }
+        CoordinateSequence coordinates = pointCache.get(found);
+        return GEOMF.createLineString(coordinates);
+    }
+
+    private RevTree childTree(RevTree root, String name) {
+        Optional<NodeRef> ref = new DepthSearch(objectDatabase()).find(root, name);
+        if (!ref.isPresent()) {
+            return RevTree.EMPTY;
+        }
+        return objectDatabase().getTree(ref.get().getObjectId());
+    }
+
+    private static Node treeNode(String name, RevTree tree, RevFeatureType featureType) {
+        return Node.create(name, tree.getId(), featureType.getId(), TYPE.TREE,
+                SpatialOps.boundsOf(tree));
+    }
+
+    private RevCommit commit(Changeset changeset, ObjectId treeId, ObjectId parent) {
+        String message;
+        if (changeset.getComment().isPresent()) {
+            message = changeset.getComment().get() + "\nchangeset " + changeset.getId();
+        } else {
+            message = "changeset " + changeset.getId();
+        }
+        String userName = changeset.getUserName();
+        if (userName == null) {
+            userName = command(ConfigGet.class).setName("user.name").call().orNull();
+        }
+        CommitBuilder builder = new CommitBuilder();
+        builder.setMessage(message);
+        builder.setAuthor(changeset.getUserName());
+        builder.setAuthorTimestamp(changeset.getCreated());
+        builder.setAuthorTimeZoneOffset(0);// osm timestamps are in GMT
+        builder.setCommitter(userName);
+        builder.setCommitterTimestamp(changeset.getClosed().get().longValue());
+        builder.setCommitterTimeZoneOffset(0);// osm timestamps are in GMT
+        List<ObjectId> parents = parent.isNull() ? Collections.<ObjectId> emptyList()
+                : ImmutableList.of(parent);
+        builder.setParentIds(parents);
+        builder.setTreeId(treeId);
+        return builder.build();
+    }
+
+    private static SimpleFeature toFeature(Primitive primitive, @Nullable Geometry geom) {
+        final boolean isNode = !(primitive instanceof Way);
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(isNode ? OSMUtils.nodeType()
+                : OSMUtils.wayType());
+
+        builder.set("visible", Boolean.valueOf(primitive.isVisible()));
+        builder.set("version", Integer.valueOf(primitive.getVersion()));
+        builder.set("timestamp", Long.valueOf(primitive.getTimestamp()));
+        builder.set("changeset", Long.valueOf(primitive.getChangesetId()));
+        builder.set("tags", primitive.getTags());
+        builder.set("user", primitive.getUserName() + ":" + primitive.getUserId());
+        if (isNode) {
+            builder.set("location", geom);
+        } else {
+            builder.set("way", geom);
+            ImmutableList<Long> nodeIds = ((Way) primitive).getNodes();
+            long[] nodes = new long[nodeIds.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = nodeIds.get(i).longValue();
+            }
+            builder.set("nodes", nodes);
+        }
+        return builder.buildFeature(String.valueOf(primitive.getId()));
+    }
+}
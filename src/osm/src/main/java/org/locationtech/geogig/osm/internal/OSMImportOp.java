@@ -17,9 +17,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
@@ -30,7 +37,7 @@ import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.hooks.Hookable;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
-import org.locationtech.geogig.osm.internal.coordcache.MapdbPointCache;
+import org.locationtech.geogig.osm.internal.coordcache.DenseMappedPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
 import org.locationtech.geogig.osm.internal.log.AddOSMLogEntry;
 import org.locationtech.geogig.osm.internal.log.OSMLogEntry;
@@ -49,14 +56,18 @@ import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -64,8 +75,6 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
 
-import crosby.binary.osmosis.OsmosisReader;
-
 /**
  * Imports data from OSM, whether from a URL that represents an endpoint that supports the OSM
  * overpass api, or from a file with OSM data
@@ -74,6 +83,8 @@ import crosby.binary.osmosis.OsmosisReader;
 @Hookable(name = "osmimport")
 public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OSMImportOp.class);
+
     private static final PrecisionModel PRECISION_MODEL = new PrecisionModel(
             1D / FixedPrecisionCoordinateConvertor.convertToDouble(1));
 
@@ -296,9 +307,12 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             compression = resolveCompressionMethod(file);
         }
 
+        // half of the threads are used to decode PBF blocks
+        final int threads = OSMUtils.resolveThreads(context(), "osm.import.threads");
+
         RunnableSource reader;
         if (pbf) {
-            reader = new OsmosisReader(dataIn);
+            reader = new ParallelPbfReader(dataIn, Math.max(1, threads / 2));
         } else {
             reader = new org.locationtech.geogig.osm.internal.XmlReader(dataIn, true, compression);
         }
@@ -309,21 +323,32 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             workTree.delete(OSMUtils.WAY_TYPE_NAME);
         }
 
-        final int queueCapacity = 100 * 1000;
+        final int queueCapacity = 100;
         final int timeout = 1;
         final TimeUnit timeoutUnit = TimeUnit.SECONDS;
-        // With this iterator and the osm parsing happening on a separate thread, we follow a
-        // producer/consumer approach so that the osm parse thread produces featrures into the
-        // iterator's queue, and WorkingTree.insert consumes them on this thread
-        QueueIterator<Feature> iterator = new QueueIterator<Feature>(queueCapacity, timeout,
-                timeoutUnit);
+        // With this iterator and the osm parsing and conversion happening on separate threads, we
+        // follow a producer/consumer approach so that the conversion threads produce batches of
+        // features into the iterator's queue, and WorkingTree.insert consumes them on this thread
+        QueueIterator<List<Feature>> iterator = new QueueIterator<List<Feature>>(queueCapacity,
+                timeout, timeoutUnit);
 
         ProgressListener progressListener = getProgressListener();
-        ConvertAndImportSink sink = new ConvertAndImportSink(converter, iterator, platform(),
-                mapping, noRaw, new SubProgressListener(progressListener, 100));
+        final ConvertAndImportSink sink = new ConvertAndImportSink(converter, iterator,
+                platform(), mapping, noRaw, threads, new SubProgressListener(progressListener,
+                        100));
         reader.setSink(sink);
 
-        Thread readerThread = new Thread(reader, "osm-import-reader-thread");
+        final RunnableSource source = reader;
+        Thread readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    source.run();
+                } catch (RuntimeException e) {
+                    sink.failed(e);
+                }
+            }
+        }, "osm-import-reader-thread");
         readerThread.start();
 
         Function<Feature, String> parentTreePathResolver = new Function<Feature, String>() {
@@ -346,8 +371,18 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
-        workTree.insert(parentTreePathResolver, iterator, noPorgressReportingListener, null, null);
+        Iterator<Feature> features = Iterators.concat(Iterators.transform(iterator,
+                new Function<List<Feature>, Iterator<Feature>>() {
+                    @Override
+                    public Iterator<Feature> apply(List<Feature> batch) {
+                        return batch.iterator();
+                    }
+                }));
+        workTree.insert(parentTreePathResolver, features, noPorgressReportingListener, null, null);
 
+        if (!progressListener.isCanceled()) {
+            sink.checkFailed();
+        }
         if (sink.getCount() == 0) {
             throw new EmptyOSMDownloadException();
         }
@@ -370,10 +405,16 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
     /**
      * A sink that processes OSM entities by converting them to GeoGig features and inserting them
      * into the repository working tree
-     * 
+     * <p>
+     * Entities are grouped in batches that are converted, and mapped if a mapping is given, on a
+     * pool of threads, each batch of resulting features is then handed over to the target queue at
+     * once. Since ways are built out of the coordinates of their nodes, all the pending node
+     * batches are converted before the first way batch is.
      */
     static class ConvertAndImportSink implements Sink {
 
+        private static final int BATCH_SIZE = 1000;
+
         private static final Function<WayNode, Long> NODELIST_TO_ID_LIST = new Function<WayNode, Long>() {
             @Override
             public Long apply(WayNode input) {
@@ -387,7 +428,7 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private int wayCount;
 
-        private int unableToProcessCount = 0;
+        private AtomicLong unableToProcessCount = new AtomicLong();
 
         private EntityConverter converter;
 
@@ -397,33 +438,67 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private PointCache pointCache;
 
-        private QueueIterator<Feature> target;
+        private QueueIterator<List<Feature>> target;
 
         private ProgressListener progressListener;
 
-        private Mapping mapping;
+        /**
+         * Mappings are not thread safe, each conversion thread gets its own copy
+         */
+        @Nullable
+        private ThreadLocal<Mapping> mapping;
 
         private boolean noRaw;
 
         private Stopwatch sw;
 
-        public ConvertAndImportSink(EntityConverter converter, QueueIterator<Feature> target,
-                Platform platform, Mapping mapping, boolean noRaw, ProgressListener progressListener) {
+        private final int threads;
+
+        private final ExecutorService converters;
+
+        /**
+         * Bounds the number of batches waiting to be converted
+         */
+        private final Semaphore inFlight;
+
+        private final int maxInFlight;
+
+        private List<Entity> batch = new ArrayList<Entity>(BATCH_SIZE);
+
+        private boolean nodesPending;
+
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        public ConvertAndImportSink(EntityConverter converter, QueueIterator<List<Feature>> target,
+                Platform platform, @Nullable final Mapping mapping, boolean noRaw, int threads,
+                ProgressListener progressListener) {
             super();
             this.converter = converter;
             this.target = target;
-            this.mapping = mapping;
+            if (mapping != null) {
+                final String mappingDefinition = mapping.toString();
+                this.mapping = new ThreadLocal<Mapping>() {
+                    @Override
+                    protected Mapping initialValue() {
+                        return Mapping.fromString(mappingDefinition);
+                    }
+                };
+            }
             this.noRaw = noRaw;
             this.progressListener = progressListener;
             this.latestChangeset = 0;
             this.latestTimestamp = 0;
-            // this.pointCache = new MappedPointCache(platform);
-            this.pointCache = new MapdbPointCache(platform);
+            this.pointCache = new DenseMappedPointCache(platform);
+            this.threads = threads;
+            this.converters = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setNameFormat("osm-import-converter-%d").build());
+            this.maxInFlight = 4 * threads;
+            this.inFlight = new Semaphore(maxInFlight);
             this.sw = Stopwatch.createStarted();
         }
 
         public long getUnprocessedCount() {
-            return unableToProcessCount;
+            return unableToProcessCount.get();
         }
 
         public long getCount() {
@@ -438,18 +513,44 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             return wayCount;
         }
 
+        /**
+         * Records a failure reading or converting entities and stops the consumer of the target
+         * queue, to be rethrown by {@link #checkFailed()}
+         */
+        void failed(RuntimeException e) {
+            failure.compareAndSet(null, e);
+            target.cancel();
+        }
+
+        /**
+         * Rethrows the first failure reading or converting entities, if any
+         */
+        void checkFailed() {
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+
         @Override
         public void complete() {
             try {
+                progressListener.setDescription(String.format("%,d entities read in %s", count,
+                        sw));
+                flush();
+                awaitConversions();
+                checkFailed();
                 progressListener.setProgress(count);
                 progressListener.complete();
                 sw.stop();
-                String msg = String.format("%,d entities processed in %s", count, sw);
+                String msg = String.format("%,d entities converted by %d threads in %s", count,
+                        threads, sw);
                 progressListener.setDescription(msg);
             } finally {
                 try {
                     target.noMoreInput();
                 } finally {
+                    converters.shutdown();
                     pointCache.dispose();
                 }
             }
@@ -457,11 +558,13 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         @Override
         public void release() {
+            converters.shutdownNow();
             pointCache.dispose();
         }
 
         @Override
         public void process(EntityContainer entityContainer) {
+            checkFailed();
             if (progressListener.isCanceled()) {
                 target.cancel();
                 throw new OsmosisRuntimeException("Cancelled by user");
@@ -472,37 +575,96 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
             latestChangeset = Math.max(latestChangeset, entity.getChangesetId());
             latestTimestamp = Math.max(latestTimestamp, entity.getTimestamp().getTime());
-            Geometry geom = null;
             switch (entity.getType()) {
             case Node:
                 nodeCount++;
-                geom = parsePoint((Node) entity);
                 break;
             case Way:
                 wayCount++;
-                geom = parseLine((Way) entity);
                 break;
             default:
                 return;
             }
-            if (geom != null) {
 
+            if (!batch.isEmpty() && batch.get(0).getType() != entity.getType()) {
+                flush();
+            }
+            batch.add(entity);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Hands the current batch over to the conversion threads
+         */
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<Entity> entities = batch;
+            batch = new ArrayList<Entity>(BATCH_SIZE);
+            if (entities.get(0) instanceof Node) {
+                nodesPending = true;
+            } else if (nodesPending) {
+                // ways need the coordinates of all the previous nodes in the point cache
+                awaitConversions();
+                nodesPending = false;
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            }
+            converters.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        convert(entities);
+                    } catch (RuntimeException e) {
+                        failed(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        }
+
+        private void awaitConversions() {
+            try {
+                inFlight.acquire(maxInFlight);
+                inFlight.release(maxInFlight);
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            }
+            checkFailed();
+        }
+
+        private void convert(List<Entity> entities) {
+            final Mapping mapping = this.mapping == null ? null : this.mapping.get();
+            List<Feature> features = new ArrayList<Feature>(entities.size());
+            for (Entity entity : entities) {
+                Geometry geom;
+                if (entity instanceof Node) {
+                    geom = parsePoint((Node) entity);
+                } else {
+                    geom = parseLine((Way) entity);
+                }
+                if (geom == null) {
+                    continue;
+                }
                 @Nullable
                 Feature feature = converter.toFeature(entity, geom);
                 if (mapping != null && feature != null) {
-                    List<MappedFeature> mapped = mapping.map(feature);
-                    if (!mapped.isEmpty()) {
-                        for (MappedFeature m : mapped) {
-                            target.put(m);
-                        }
-                    }
+                    features.addAll(mapping.map(feature));
                 }
                 if (feature == null || noRaw) {
-                    return;
+                    continue;
                 }
-
-                target.put(feature);
-
+                features.add(feature);
+            }
+            if (!features.isEmpty()) {
+                target.put(features);
             }
         }
 
@@ -551,7 +713,7 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             final List<WayNode> nodes = way.getWayNodes();
 
             if (nodes.size() < 2) {
-                unableToProcessCount++;
+                unableToProcessCount.incrementAndGet();
                 return null;
             }
 
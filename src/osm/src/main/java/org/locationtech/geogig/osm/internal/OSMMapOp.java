@@ -10,45 +10,108 @@
 package org.locationtech.geogig.osm.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.locationtech.geogig.osm.internal.OSMUtils.NODE_TYPE_NAME;
+import static org.locationtech.geogig.osm.internal.OSMUtils.WAY_TYPE_NAME;
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.Bounded;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.RevParse;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.osm.internal.log.OSMMappingLogEntry;
+import org.locationtech.geogig.osm.internal.log.ReadOSMMapping;
+import org.locationtech.geogig.osm.internal.log.ReadOSMMappingLogEntry;
 import org.locationtech.geogig.osm.internal.log.WriteOSMMappingEntries;
+import org.locationtech.geogig.repository.FeatureToDelete;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 /**
  * Creates new data in a geogig repository, based on the current OSM data in the repository and a
  * mapping that defines the schema to use for creating new features and the destination trees.
  * 
  * The source data used is the working tree data in the "node" and "way" trees.
- * 
+ * <p>
+ * Source features are fetched in batches and mapped on a pool of threads, whose size is given by
+ * the {@code osm.map.threads} config option and defaults to the number of available processors.
+ * The mapped features are streamed to the working tree as they are produced.
+ * <p>
+ * In {@link #setIncremental(boolean) incremental} mode, only the nodes and ways that changed since
+ * a rule was last applied are mapped again. Besides those, ways whose nodes moved are mapped again
+ * with their geometry rebuilt from the new node locations, and the rebuilt geometry is saved to
+ * the "way" tree as well.
  */
 public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OSMMapOp.class);
+
+    /**
+     * The number of source features fetched and mapped at a time
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Node locations are stored with float precision in the tree bounds, so the old location of a
+     * moved node is matched against the way bounds with this tolerance, in degrees
+     */
+    private static final double MOVED_NODE_TOLERANCE = 1E-5;
+
+    private static final RevFeatureType NODE_TYPE = RevFeatureTypeImpl.build(OSMUtils.nodeType());
+
+    private static final RevFeatureType WAY_TYPE = RevFeatureTypeImpl.build(OSMUtils.wayType());
+
     /**
      * The mapping to use
      */
@@ -59,6 +122,8 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
      */
     private String message;
 
+    private boolean incremental;
+
     /**
      * Sets the mapping to use
      * 
@@ -81,6 +146,19 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
         return this;
     }
 
+    /**
+     * Sets whether to map only the data that changed since each rule of the mapping was last
+     * applied, as recorded in the mapping log. Rules that were never applied, or that changed
+     * since, are applied to all the data. Defaults to {@code false}.
+     * 
+     * @param incremental whether to map only the changed data
+     * @return {@code this}
+     */
+    public OSMMapOp setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
     @Override
     protected RevTree _call() {
 
@@ -93,83 +171,482 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
         ObjectId oldTreeId = workingTree().getTree().getId();
 
-        Iterator<Feature> nodes;
+        final int threads = OSMUtils.resolveThreads(context(), "osm.map.threads");
+        final ExecutorService mappers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("osm-map-%d").build());
+        final int maxPending = 2 * threads;
+        try {
+            List<Iterator<List<Feature>>> batches = new ArrayList<Iterator<List<Feature>>>();
+            if (incremental) {
+                Map<ObjectId, List<MappingRule>> rulesByMappedTree = new LinkedHashMap<>();
+                List<MappingRule> unmappedRules = new ArrayList<MappingRule>();
+                for (MappingRule rule : mapping.getRules()) {
+                    Optional<ObjectId> mappedTree = lastMappedTree(rule);
+                    if (mappedTree.isPresent()) {
+                        if (!rulesByMappedTree.containsKey(mappedTree.get())) {
+                            rulesByMappedTree.put(mappedTree.get(), new ArrayList<MappingRule>());
+                        }
+                        rulesByMappedTree.get(mappedTree.get()).add(rule);
+                    } else {
+                        unmappedRules.add(rule);
+                    }
+                }
+                for (Map.Entry<ObjectId, List<MappingRule>> e : rulesByMappedTree.entrySet()) {
+                    batches.add(remap(new Mapping(e.getValue()), e.getKey(), oldTreeId, mappers,
+                            maxPending));
+                }
+                if (!unmappedRules.isEmpty()) {
+                    batches.add(map(new Mapping(unmappedRules), mappers, maxPending));
+                }
+            } else {
+                batches.add(map(mapping, mappers, maxPending));
+            }
+
+            Iterator<Feature> mapped = Iterators.concat(Iterators.transform(
+                    Iterators.concat(batches.iterator()),
+                    new Function<List<Feature>, Iterator<Feature>>() {
+                        @Override
+                        public Iterator<Feature> apply(List<Feature> batch) {
+                            return batch.iterator();
+                        }
+                    }));
+            if (!mapped.hasNext()) {
+                return workingTree().getTree();
+            }
+            Function<Feature, String> parentTreePathResolver = new Function<Feature, String>() {
+                @Override
+                public String apply(Feature input) {
+                    if (input instanceof MappedFeature) {
+                        return ((MappedFeature) input).getPath();
+                    }
+                    return input.getType().getName().getLocalPart();
+                }
+            };
+            workingTree().insert(parentTreePathResolver, mapped, new DefaultProgressListener(),
+                    null, null);
+        } finally {
+            mappers.shutdownNow();
+        }
+
+        ObjectId newTreeId = workingTree().getTree().getId();
+        // If the mapping generates the same mapped features that already exist, we do nothing
+        if (!newTreeId.equals(oldTreeId)) {
+            command(AddOp.class).call();
+            command(CommitOp.class).setMessage(message).call();
+            command(WriteOSMMappingEntries.class).setMapping(mapping)
+                    .setMappingLogEntry(new OSMMappingLogEntry(oldTreeId, newTreeId)).call();
+        }
+
+        return workingTree().getTree();
+
+    }
+
+    /**
+     * @return the working tree the rule was last applied to, if it's known and the rule didn't
+     *         change since
+     */
+    private Optional<ObjectId> lastMappedTree(MappingRule rule) {
+        Optional<OSMMappingLogEntry> entry = command(ReadOSMMappingLogEntry.class).setPath(
+                rule.getName()).call();
+        if (!entry.isPresent()) {
+            return Optional.absent();
+        }
+        final ObjectId mappedTree = entry.get().getPostMappingId();
+        if (!objectDatabase().exists(mappedTree)) {
+            return Optional.absent();
+        }
+        Optional<Mapping> lastMapping = command(ReadOSMMapping.class).setEntry(entry.get()).call();
+        if (!lastMapping.isPresent() || !lastMapping.get().getRules().contains(rule)) {
+            LOGGER.info("Mapping rule {} changed since it was last applied, mapping all the data",
+                    rule.getName());
+            return Optional.absent();
+        }
+        return Optional.of(mappedTree);
+    }
+
+    /**
+     * @return the mapped features of all the nodes and ways in the working tree
+     */
+    private Iterator<List<Feature>> map(Mapping mapping, ExecutorService mappers, int maxPending) {
+        Iterator<NodeRef> nodes;
         if (mapping.canUseNodes()) {
-            nodes = getFeatures("WORK_HEAD:node");
+            nodes = getFeatureRefs("WORK_HEAD:" + NODE_TYPE_NAME, null);
         } else {
             nodes = Collections.emptyIterator();
         }
-        Iterator<Feature> ways;
+        Iterator<NodeRef> ways;
         if (mapping.canUseWays()) {
-            ways = getFeatures("WORK_HEAD:way");
+            ways = getFeatureRefs("WORK_HEAD:" + WAY_TYPE_NAME, null);
         } else {
             ways = Collections.emptyIterator();
         }
-        Iterator<Feature> iterator = Iterators.concat(nodes, ways);
-
-        if (iterator.hasNext()) {
-            FeatureMapFlusher insertsByParent = new FeatureMapFlusher(workingTree());
-            while (iterator.hasNext()) {
-                Feature feature = iterator.next();
-                List<MappedFeature> mappedFeatures = mapping.map(feature);
-                if (!mappedFeatures.isEmpty()) {
-                    for (MappedFeature mapped : mappedFeatures) {
-                        String path = mapped.getPath();
-                        insertsByParent.put(path, mapped);
+        return new FeatureMapper(Iterators.concat(nodes, ways), mapping, mappers, maxPending);
+    }
+
+    /**
+     * @return the mapped features of the nodes and ways that changed between {@code mappedTree}
+     *         and {@code currentTree}, and of the ways whose nodes moved, along with the features
+     *         to delete from the mapped trees
+     */
+    private Iterator<List<Feature>> remap(final Mapping mapping, final ObjectId mappedTree,
+            final ObjectId currentTree, final ExecutorService mappers, final int maxPending) {
+
+        Iterator<DiffEntry> diffs = command(DiffTree.class).setOldTree(mappedTree)
+                .setNewTree(currentTree)
+                .setPathFilter(ImmutableList.of(NODE_TYPE_NAME, WAY_TYPE_NAME)).call();
+
+        // both are filled in while the changes are mapped, on the calling thread
+        final Multimap<ObjectId, Long> movedNodes = ArrayListMultimap.create();
+        final STRtree movedFrom = new STRtree();
+        final Set<String> changedWays = new HashSet<String>();
+
+        Iterator<DiffEntry> tracked = Iterators.transform(diffs,
+                new Function<DiffEntry, DiffEntry>() {
+                    @Override
+                    public DiffEntry apply(DiffEntry entry) {
+                        NodeRef newObject = entry.getNewObject();
+                        if (newObject == null) {
+                            return entry;
+                        }
+                        if (WAY_TYPE_NAME.equals(newObject.getParentPath())) {
+                            changedWays.add(newObject.name());
+                        } else if (entry.isChange()) {
+                            Optional<Envelope> from = entry.getOldObject().bounds();
+                            Optional<Envelope> to = newObject.bounds();
+                            if (from.isPresent() && to.isPresent()
+                                    && !from.get().equals(to.get())) {
+                                Envelope location = new Envelope(from.get());
+                                location.expandBy(MOVED_NODE_TOLERANCE);
+                                Long nodeId = Long.valueOf(newObject.name());
+                                movedFrom.insert(location, nodeId);
+                                movedNodes.put(newObject.getObjectId(), nodeId);
+                            }
+                        }
+                        return entry;
                     }
+                });
+        Iterator<List<Feature>> changes = new DiffMapper(tracked, mapping, mappers, maxPending);
+        if (!mapping.canUseWays()) {
+            return changes;
+        }
+
+        Iterator<List<Feature>> movedWays = new AbstractIterator<List<Feature>>() {
+
+            private Iterator<List<Feature>> delegate;
+
+            @Override
+            protected List<Feature> computeNext() {
+                // the moved nodes are only known once all the changes have been mapped
+                if (delegate == null) {
+                    delegate = remapMovedWays(mapping, currentTree, movedNodes, movedFrom,
+                            changedWays, mappers, maxPending);
                 }
+                return delegate.hasNext() ? delegate.next() : endOfData();
             }
-            insertsByParent.flushAll();
-
-            ObjectId newTreeId = workingTree().getTree().getId();
-            // If the mapping generates the same mapped features that already exist, we do nothing
-            if (!newTreeId.equals(oldTreeId)) {
-                command(AddOp.class).call();
-                command(CommitOp.class).setMessage(message).call();
-                command(WriteOSMMappingEntries.class).setMapping(mapping)
-                        .setMappingLogEntry(new OSMMappingLogEntry(oldTreeId, newTreeId)).call();
-            }
+        };
+        return Iterators.concat(changes, movedWays);
+    }
 
+    private Iterator<List<Feature>> remapMovedWays(Mapping mapping, ObjectId currentTree,
+            Multimap<ObjectId, Long> movedNodes, final STRtree movedFrom,
+            final Set<String> changedWays, ExecutorService mappers, int maxPending) {
+        if (movedNodes.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        Map<Long, Coordinate> locations = new HashMap<Long, Coordinate>();
+        Iterator<RevFeature> nodes = objectDatabase().getAll(movedNodes.keySet(), NOOP_LISTENER,
+                RevFeature.class);
+        FeatureBuilder nodeBuilder = new FeatureBuilder(NODE_TYPE);
+        while (nodes.hasNext()) {
+            RevFeature node = nodes.next();
+            Feature feature = nodeBuilder.build(node.getId().toString(), node);
+            Geometry location = (Geometry) ((SimpleFeature) feature).getDefaultGeometry();
+            for (Long nodeId : movedNodes.get(node.getId())) {
+                locations.put(nodeId, location.getCoordinate());
+            }
         }
 
-        return workingTree().getTree();
-
+        Predicate<Bounded> nearMovedNode = new Predicate<Bounded>() {
+            @Override
+            public boolean apply(Bounded bounded) {
+                Envelope bounds = new Envelope();
+                bounded.expand(bounds);
+                return bounds.isNull() || !movedFrom.query(bounds).isEmpty();
+            }
+        };
+        Iterator<NodeRef> candidates = Iterators.filter(
+                getFeatureRefs(currentTree + ":" + WAY_TYPE_NAME, nearMovedNode),
+                new Predicate<NodeRef>() {
+                    @Override
+                    public boolean apply(NodeRef way) {
+                        // changed ways were already mapped with their new geometry
+                        return !changedWays.contains(way.name());
+                    }
+                });
+        return new MovedWaysMapper(candidates, locations, mapping, mappers, maxPending);
     }
 
-    private Iterator<Feature> getFeatures(String ref) {
+    private Iterator<NodeRef> getFeatureRefs(String ref, @Nullable Predicate<Bounded> filter) {
         Optional<ObjectId> id = command(RevParse.class).setRefSpec(ref).call();
         if (!id.isPresent()) {
             return Collections.emptyIterator();
         }
         LsTreeOp op = command(LsTreeOp.class).setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES)
                 .setReference(ref);
+        if (filter != null) {
+            op.setBoundsFilter(filter);
+        }
+        return op.call();
+    }
 
-        Iterator<NodeRef> iterator = op.call();
+    private static List<ObjectId> objectIds(List<NodeRef> refs) {
+        List<ObjectId> ids = new ArrayList<ObjectId>(refs.size());
+        for (NodeRef ref : refs) {
+            ids.add(ref.getObjectId());
+        }
+        return ids;
+    }
 
-        Function<NodeRef, Feature> nodeRefToFeature = new Function<NodeRef, Feature>() {
+    /**
+     * @return the features with the given ids, by id
+     */
+    private Map<ObjectId, RevFeature> getAll(Iterable<ObjectId> ids) {
+        // identical features share the same object, so fetch each one once
+        Set<ObjectId> uniqueIds = new HashSet<ObjectId>();
+        for (ObjectId id : ids) {
+            uniqueIds.add(id);
+        }
+        final ObjectDatabase objects = objectDatabase();
+        Map<ObjectId, RevFeature> revFeatures = new HashMap<ObjectId, RevFeature>();
+        Iterator<RevFeature> all = objects.getAll(uniqueIds, NOOP_LISTENER, RevFeature.class);
+        while (all.hasNext()) {
+            RevFeature revFeature = all.next();
+            revFeatures.put(revFeature.getId(), revFeature);
+        }
+        return revFeatures;
+    }
 
-            private final Map<String, FeatureBuilder> builders = //
-                    ImmutableMap.<String, FeatureBuilder> of(//
-                            OSMUtils.NODE_TYPE_NAME, //
-                            new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils.nodeType())), //
-                            OSMUtils.WAY_TYPE_NAME, //
-                            new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils.wayType())));
+    /**
+     * Maps the batches of a source on a pool of threads and returns the mapped features of each
+     * batch in order, keeping at most {@code maxPending} batches in flight.
+     */
+    private abstract class ParallelMapper<T> extends AbstractIterator<List<Feature>> {
 
-            private final RevObjectParse parseCommand = command(RevObjectParse.class);
+        private final Iterator<List<T>> batches;
 
-            @Override
-            @Nullable
-            public Feature apply(@Nullable NodeRef ref) {
-                RevFeature revFeature = parseCommand.setObjectId(ref.getObjectId())
-                        .call(RevFeature.class).get();
-                final String parentPath = ref.getParentPath();
-                FeatureBuilder featureBuilder = builders.get(parentPath);
-                String fid = ref.name();
-                Feature feature = featureBuilder.build(fid, revFeature);
-                return feature;
+        private final ExecutorService mappers;
+
+        private final int maxPending;
+
+        private final Deque<Future<List<Feature>>> pending = new ArrayDeque<>();
+
+        /**
+         * Mappings are not thread safe, each mapping thread gets its own copy
+         */
+        private final ThreadLocal<Mapping> threadMapping;
+
+        ParallelMapper(Iterator<T> source, Mapping mapping, ExecutorService mappers,
+                int maxPending) {
+            this.batches = Iterators.partition(source, BATCH_SIZE);
+            this.mappers = mappers;
+            this.maxPending = maxPending;
+            final String mappingDefinition = mapping.toString();
+            this.threadMapping = new ThreadLocal<Mapping>() {
+                @Override
+                protected Mapping initialValue() {
+                    return Mapping.fromString(mappingDefinition);
+                }
+            };
+        }
+
+        @Override
+        protected List<Feature> computeNext() {
+            while (pending.size() < maxPending && batches.hasNext()) {
+                final List<T> batch = batches.next();
+                pending.addLast(mappers.submit(new Callable<List<Feature>>() {
+                    @Override
+                    public List<Feature> call() {
+                        List<Feature> mapped = new ArrayList<Feature>();
+                        map(batch, threadMapping.get(), mapped);
+                        return mapped;
+                    }
+                }));
+            }
+            if (pending.isEmpty()) {
+                return endOfData();
             }
+            try {
+                return pending.removeFirst().get();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
 
-        };
-        return Iterators.transform(iterator, nodeRefToFeature);
+        /**
+         * Maps a batch of the source, called on one of the mapping threads
+         */
+        protected abstract void map(List<T> batch, Mapping mapping, List<Feature> target);
+
+        /**
+         * Adds the features {@code feature} maps to, and if {@code deleteUnmapped} a feature to
+         * delete for each rule that can use it but doesn't map it
+         */
+        protected void map(Feature feature, boolean deleteUnmapped, Mapping mapping,
+                List<Feature> target) {
+            List<MappedFeature> mapped = mapping.map(feature);
+            target.addAll(mapped);
+            if (deleteUnmapped) {
+                Set<String> mappedPaths = new HashSet<String>();
+                for (MappedFeature f : mapped) {
+                    mappedPaths.add(f.getPath());
+                }
+                boolean isNode = NODE_TYPE_NAME.equals(feature.getType().getName()
+                        .getLocalPart());
+                delete(feature.getIdentifier().getID(), isNode, mappedPaths, mapping, target);
+            }
+        }
+
+        /**
+         * Adds a feature to delete from the tree of each rule that can use the node or way with
+         * the given id, but the ones in {@code except}
+         */
+        protected void delete(String id, boolean isNode, Collection<String> except,
+                Mapping mapping, List<Feature> target) {
+            for (MappingRule rule : mapping.getRules()) {
+                boolean canUse = isNode ? rule.canUseNodes() : rule.canUseWays();
+                if (canUse && !except.contains(rule.getName())) {
+                    target.add(new FeatureToDelete(rule.getFeatureType(), id));
+                }
+            }
+        }
+    }
+
+    private class FeatureMapper extends ParallelMapper<NodeRef> {
+
+        FeatureMapper(Iterator<NodeRef> source, Mapping mapping, ExecutorService mappers,
+                int maxPending) {
+            super(source, mapping, mappers, maxPending);
+        }
+
+        @Override
+        protected void map(List<NodeRef> batch, Mapping mapping, List<Feature> target) {
+            Map<ObjectId, RevFeature> revFeatures = getAll(objectIds(batch));
+            final FeatureBuilder nodeBuilder = new FeatureBuilder(NODE_TYPE);
+            final FeatureBuilder wayBuilder = new FeatureBuilder(WAY_TYPE);
+            for (NodeRef ref : batch) {
+                RevFeature revFeature = revFeatures.get(ref.getObjectId());
+                Preconditions.checkState(revFeature != null, "Feature %s not found",
+                        ref.getObjectId());
+                FeatureBuilder featureBuilder = NODE_TYPE_NAME.equals(ref.getParentPath())
+                        ? nodeBuilder : wayBuilder;
+                map(featureBuilder.build(ref.name(), revFeature), false, mapping, target);
+            }
+        }
+    }
+
+    /**
+     * Maps the added and modified nodes and ways, and deletes the features mapped from the
+     * removed ones or from the modified ones that are no longer mapped by a rule
+     */
+    private class DiffMapper extends ParallelMapper<DiffEntry> {
+
+        private final boolean mapNodes;
+
+        DiffMapper(Iterator<DiffEntry> source, Mapping mapping, ExecutorService mappers,
+                int maxPending) {
+            super(source, mapping, mappers, maxPending);
+            this.mapNodes = mapping.canUseNodes();
+        }
+
+        @Override
+        protected void map(List<DiffEntry> batch, Mapping mapping, List<Feature> target) {
+            List<ObjectId> ids = new ArrayList<ObjectId>(batch.size());
+            for (DiffEntry entry : batch) {
+                if (entry.getNewObject() != null && (mapNodes || !isNode(entry))) {
+                    ids.add(entry.newObjectId());
+                }
+            }
+            Map<ObjectId, RevFeature> revFeatures = getAll(ids);
+            final FeatureBuilder nodeBuilder = new FeatureBuilder(NODE_TYPE);
+            final FeatureBuilder wayBuilder = new FeatureBuilder(WAY_TYPE);
+            for (DiffEntry entry : batch) {
+                final boolean isNode = isNode(entry);
+                if (isNode && !mapNodes) {
+                    continue;
+                }
+                if (entry.isDelete()) {
+                    delete(entry.getOldObject().name(), isNode, ImmutableList.<String> of(),
+                            mapping, target);
+                    continue;
+                }
+                NodeRef ref = entry.getNewObject();
+                RevFeature revFeature = revFeatures.get(ref.getObjectId());
+                Preconditions.checkState(revFeature != null, "Feature %s not found",
+                        ref.getObjectId());
+                Feature feature = (isNode ? nodeBuilder : wayBuilder).build(ref.name(),
+                        revFeature);
+                map(feature, entry.isChange(), mapping, target);
+            }
+        }
+
+        private boolean isNode(DiffEntry entry) {
+            NodeRef ref = entry.getNewObject() == null ? entry.getOldObject() : entry
+                    .getNewObject();
+            return NODE_TYPE_NAME.equals(ref.getParentPath());
+        }
+    }
+
+    /**
+     * Rebuilds the geometry of the ways that use any of the moved nodes, saves it and maps the
+     * ways again
+     */
+    private class MovedWaysMapper extends ParallelMapper<NodeRef> {
+
+        private final Map<Long, Coordinate> locations;
+
+        MovedWaysMapper(Iterator<NodeRef> source, Map<Long, Coordinate> locations,
+                Mapping mapping, ExecutorService mappers, int maxPending) {
+            super(source, mapping, mappers, maxPending);
+            this.locations = locations;
+        }
+
+        @Override
+        protected void map(List<NodeRef> batch, Mapping mapping, List<Feature> target) {
+            Map<ObjectId, RevFeature> revFeatures = getAll(objectIds(batch));
+            final FeatureBuilder wayBuilder = new FeatureBuilder(WAY_TYPE);
+            for (NodeRef ref : batch) {
+                RevFeature revFeature = revFeatures.get(ref.getObjectId());
+                Preconditions.checkState(revFeature != null, "Feature %s not found",
+                        ref.getObjectId());
+                SimpleFeature way = (SimpleFeature) wayBuilder.build(ref.name(), revFeature);
+                long[] nodes = (long[]) way.getAttribute("nodes");
+                LineString line = (LineString) way.getDefaultGeometry();
+                if (nodes == null || line == null) {
+                    continue;
+                }
+                Coordinate[] coords = line.getCoordinates();
+                boolean moved = false;
+                for (int i = 0; i < nodes.length; i++) {
+                    Coordinate location = locations.get(Long.valueOf(nodes[i]));
+                    if (location != null) {
+                        if (coords.length != nodes.length) {
+                            LOGGER.debug("Way {} has a geometry that doesn't match its nodes",
+                                    ref.name());
+                            moved = false;
+                            break;
+                        }
+                        coords[i] = new Coordinate(location);
+                        moved = true;
+                    }
+                }
+                if (moved) {
+                    way.setDefaultGeometry(line.getFactory().createLineString(coords));
+                    target.add(way);
+                    map(way, true, mapping, target);
+                }
+            }
+        }
     }
 }
@@ -18,7 +18,9 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.data.DataUtilities;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
+import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.porcelain.ConfigGet;
 import org.locationtech.geogig.storage.FieldType;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
@@ -29,6 +31,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -116,6 +119,36 @@ public class OSMUtils {
         }
     };
 
+    /**
+     * Resolves the number of threads to use for a parallel operation, as configured by
+     * {@code confKey}, defaulting to the number of available processors if it's not set or is not
+     * a positive integer.
+     */
+    public static int resolveThreads(Context context, String confKey) {
+        Optional<String> configValue = context.command(ConfigGet.class).setName(confKey).call();
+        int threads = context.platform().availableProcessors();
+        if (configValue.isPresent()) {
+            try {
+                int tmpThreads = Integer.parseInt(configValue.get());
+                if (tmpThreads < 1) {
+                    LOGGER.warn("Value for {} must be at least 1 ({}). Using the default of {}",
+                            confKey, tmpThreads, threads);
+                } else {
+                    threads = tmpThreads;
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid value for {}: '{}'. Using the default of {}", confKey,
+                        configValue.get(), threads);
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * @return the way node ids, consecutive ids being usually close to each other they're stored
+     *         as varint deltas by the
+     *         {@link org.locationtech.geogig.storage.datastream.FormatCommonV2_1 2.1 format}
+     */
     public static long[] buildNodesArray(List<WayNode> wayNodes) {
         long[] nodeIds = new long[wayNodes.size()];
         for (int i = 0; i < wayNodes.size(); i++) {
@@ -125,6 +158,12 @@ public class OSMUtils {
         return nodeIds;
     }
 
+    /**
+     * @return the tags as a map of strings, stored with the most common keys as one byte
+     *         references by the
+     *         {@link org.locationtech.geogig.storage.datastream.FormatCommonV2_1 2.1 format}, or
+     *         {@code null} if there are no tags
+     */
     @Nullable
     public static Map<String, String> buildTagsMap(Iterable<Tag> collection) {
         Map<String, String> tags = Maps.newHashMap();
@@ -0,0 +1,196 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBlock;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveBlock;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import crosby.binary.osmosis.OsmosisBinaryParser;
+
+/**
+ * A PBF reader that decompresses and decodes the file blocks on a pool of threads, while the
+ * calling thread only reads the raw blocks and hands the decoded entities over to the sink.
+ * <p>
+ * Entities are handed over in the same order they have in the file, since consumers rely on
+ * nodes coming before the ways that reference them.
+ */
+class ParallelPbfReader implements RunnableSource {
+
+    private static final ImmutableSet<String> SUPPORTED_FEATURES = ImmutableSet.of(
+            "OsmSchema-V0.6", "DenseNodes");
+
+    private final InputStream input;
+
+    private final int threads;
+
+    private Sink sink;
+
+    /**
+     * @param input the PBF stream
+     * @param threads the number of threads to decode blocks with
+     */
+    public ParallelPbfReader(InputStream input, int threads) {
+        Preconditions.checkArgument(threads > 0);
+        this.input = input;
+        this.threads = threads;
+    }
+
+    @Override
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void run() {
+        final ExecutorService decoders = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("osm-import-decoder-%d").build());
+        // keep a few blocks ahead of the sink so that no decoder is idle waiting for it
+        final int maxPending = 2 * threads;
+        final Deque<Future<List<EntityContainer>>> pending = new ArrayDeque<>();
+        try {
+            sink.initialize(Collections.<String, Object> emptyMap());
+            DataInputStream in = new DataInputStream(input);
+            while (true) {
+                final int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                BlobHeader blobHeader = BlobHeader.parseFrom(header);
+                final byte[] blob = new byte[blobHeader.getDatasize()];
+                in.readFully(blob);
+
+                if ("OSMHeader".equals(blobHeader.getType())) {
+                    checkHeader(HeaderBlock.parseFrom(inflate(blob)));
+                } else if ("OSMData".equals(blobHeader.getType())) {
+                    pending.addLast(decoders.submit(new Callable<List<EntityContainer>>() {
+                        @Override
+                        public List<EntityContainer> call() throws Exception {
+                            return decode(blob);
+                        }
+                    }));
+                    if (pending.size() >= maxPending) {
+                        handOver(pending.removeFirst());
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                handOver(pending.removeFirst());
+            }
+            sink.complete();
+        } catch (IOException e) {
+            throw new OsmosisRuntimeException("Unable to process PBF stream", e);
+        } finally {
+            decoders.shutdownNow();
+            sink.release();
+        }
+    }
+
+    private void handOver(Future<List<EntityContainer>> block) {
+        List<EntityContainer> entities;
+        try {
+            entities = block.get();
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        for (EntityContainer entity : entities) {
+            sink.process(entity);
+        }
+    }
+
+    private static List<EntityContainer> decode(byte[] blob) throws IOException {
+        PrimitiveBlock block = PrimitiveBlock.parseFrom(inflate(blob));
+        final List<EntityContainer> entities = new ArrayList<EntityContainer>();
+        OsmosisBinaryParser parser = new OsmosisBinaryParser();
+        parser.setSink(new Sink() {
+            @Override
+            public void initialize(Map<String, Object> metaData) {
+            }
+
+            @Override
+            public void process(EntityContainer entityContainer) {
+                entities.add(entityContainer);
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void release() {
+            }
+        });
+        parser.parse(block);
+        return entities;
+    }
+
+    private static byte[] inflate(byte[] rawBlob) throws IOException {
+        Blob blob = Blob.parseFrom(rawBlob);
+        if (blob.hasRaw()) {
+            return blob.getRaw().toByteArray();
+        }
+        if (!blob.hasZlibData()) {
+            throw new OsmosisRuntimeException("Unsupported PBF blob compression");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob.getZlibData().toByteArray());
+            byte[] data = new byte[blob.getRawSize()];
+            inflater.inflate(data);
+            if (!inflater.finished()) {
+                throw new OsmosisRuntimeException("PBF blob is larger than its declared size");
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new OsmosisRuntimeException("Unable to decompress PBF blob", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void checkHeader(HeaderBlock header) {
+        for (String feature : header.getRequiredFeaturesList()) {
+            if (!SUPPORTED_FEATURES.contains(feature)) {
+                throw new OsmosisRuntimeException("File requires unknown feature: " + feature);
+            }
+        }
+    }
+}
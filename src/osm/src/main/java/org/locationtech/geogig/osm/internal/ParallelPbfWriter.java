@@ -0,0 +1,170 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import crosby.binary.osmosis.OsmosisSerializer;
+
+/**
+ * A PBF writer that encodes and compresses the file blocks on a pool of threads, while the
+ * calling thread only collects the entities and writes the encoded blocks out.
+ * <p>
+ * Entities are split in chunks of the size of a PBF block, each chunk is encoded on its own into
+ * a complete PBF stream, and the streams are written one after the other in the order the
+ * entities were received, leaving out the header block of all but the first one.
+ */
+public class ParallelPbfWriter implements Sink {
+
+    /**
+     * The number of entities of each chunk, the default number of entities per block of
+     * {@link OsmosisSerializer}
+     */
+    private static final int CHUNK_SIZE = 8000;
+
+    private final OutputStream output;
+
+    private final int threads;
+
+    private ExecutorService encoders;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private List<EntityContainer> chunk = new ArrayList<>(CHUNK_SIZE);
+
+    private boolean headerWritten;
+
+    /**
+     * @param output the stream to write the PBF file to, closed on {@link #release()}
+     * @param threads the number of threads to encode blocks with
+     */
+    public ParallelPbfWriter(OutputStream output, int threads) {
+        Preconditions.checkArgument(threads > 0);
+        this.output = new BufferedOutputStream(output);
+        this.threads = threads;
+    }
+
+    @Override
+    public void initialize(Map<String, Object> metaData) {
+        encoders = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("osm-export-encoder-%d").build());
+    }
+
+    @Override
+    public void process(EntityContainer entityContainer) {
+        chunk.add(entityContainer);
+        if (chunk.size() == CHUNK_SIZE) {
+            submit();
+        }
+    }
+
+    @Override
+    public void complete() {
+        // an empty chunk still gets encoded, so that there is a header block
+        if (!chunk.isEmpty() || (pending.isEmpty() && !headerWritten)) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            write(pending.removeFirst());
+        }
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new OsmosisRuntimeException("Unable to write PBF stream", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (encoders != null) {
+            encoders.shutdownNow();
+        }
+        try {
+            Closeables.close(output, true);
+        } catch (IOException e) {
+            //
+        }
+    }
+
+    private void submit() {
+        final List<EntityContainer> entities = chunk;
+        chunk = new ArrayList<>(CHUNK_SIZE);
+        pending.addLast(encoders.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return encode(entities);
+            }
+        }));
+        // keep a few chunks ahead of the output so that no encoder is idle waiting for it
+        if (pending.size() >= 2 * threads) {
+            write(pending.removeFirst());
+        }
+    }
+
+    private void write(Future<byte[]> encoded) {
+        byte[] blocks;
+        try {
+            blocks = encoded.get();
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        try {
+            int offset = 0;
+            while (offset < blocks.length) {
+                final int headerSize = ByteBuffer.wrap(blocks, offset, 4).getInt();
+                BlobHeader blobHeader = BlobHeader.parseFrom(Arrays.copyOfRange(blocks,
+                        offset + 4, offset + 4 + headerSize));
+                final int blockSize = 4 + headerSize + blobHeader.getDatasize();
+                if (!"OSMHeader".equals(blobHeader.getType()) || !headerWritten) {
+                    output.write(blocks, offset, blockSize);
+                }
+                offset += blockSize;
+            }
+            headerWritten = true;
+        } catch (IOException e) {
+            throw new OsmosisRuntimeException("Unable to write PBF stream", e);
+        }
+    }
+
+    private static byte[] encode(List<EntityContainer> entities) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OsmosisSerializer serializer = new OsmosisSerializer(new BlockOutputStream(bytes));
+        for (EntityContainer entity : entities) {
+            serializer.process(entity);
+        }
+        serializer.complete();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,344 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequenceFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+
+/**
+ * A {@link PointCache} that stores the fixed precision coordinates of each node at a position
+ * given by the node id, so that both saving and looking up a coordinate take constant time.
+ * <p>
+ * The node id space is split in pages of {@code 2^16} ids. A page starts as a small hash table
+ * on the heap and, once it holds enough nodes, becomes dense: a region of a memory mapped file
+ * with a slot for every id in the page. This way OSM extracts, whose node ids are clustered in
+ * dense ranges, get a flat array of coordinates, while scattered ids don't waste a full page
+ * each.
+ * <p>
+ * This class is thread safe. Lookups and puts on dense pages don't lock at all, puts on sparse
+ * pages lock only the page they go to.
+ */
+public class DenseMappedPointCache implements PointCache {
+
+    private static final Random RANDOM = new Random();
+
+    private static final OSMCoordinateSequenceFactory CSFAC = new OSMCoordinateSequenceFactory();
+
+    private static final int PAGE_BITS = 16;
+
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Each coordinate is stored as a long
+     */
+    private static final int PAGE_BYTES = PAGE_SIZE * 8;
+
+    /**
+     * Dense pages are mapped in segments of this many pages, to keep the number of mappings low
+     */
+    private static final int PAGES_PER_SEGMENT = 128;
+
+    private static final long SEGMENT_BYTES = (long) PAGES_PER_SEGMENT * PAGE_BYTES;
+
+    /**
+     * A sparse page becomes dense once it holds this many nodes, at which point the hash table
+     * takes about as much memory as the dense page
+     */
+    private static final int DENSE_THRESHOLD = PAGE_SIZE / 16;
+
+    /**
+     * The value of a slot with no coordinate, mapped files are zero filled. The encoding of
+     * coordinates flips the sign bit of the x ordinate, so no valid coordinate encodes to zero.
+     */
+    private static final long ABSENT = 0L;
+
+    private final File parentDir;
+
+    private final File file;
+
+    private RandomAccessFile randomAccessFile;
+
+    private FileChannel channel;
+
+    private final ConcurrentMap<Long, Page> pages = new ConcurrentHashMap<Long, Page>();
+
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    private int densePages;
+
+    public DenseMappedPointCache(Platform platform) {
+        final File tmpDir = platform.getTempDir();
+        checkState(tmpDir != null && tmpDir.isDirectory());
+        synchronized (RANDOM) {
+            this.parentDir = new File(tmpDir, "osmPointCache_" + Math.abs(RANDOM.nextInt()));
+        }
+        checkState(parentDir.exists() || parentDir.mkdirs());
+        this.parentDir.deleteOnExit();
+        this.file = new File(parentDir, "coordinates");
+        this.file.deleteOnExit();
+        try {
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    @Override
+    public void put(Long nodeId, OSMCoordinateSequence coord) {
+        Preconditions.checkNotNull(nodeId, "id is null");
+        Preconditions.checkNotNull(coord, "coord is null");
+        Preconditions.checkArgument(1 == coord.size(), "coord list size is not 1");
+
+        final long id = nodeId.longValue();
+        final Long pageIndex = Long.valueOf(id >> PAGE_BITS);
+        final int slot = (int) (id & PAGE_MASK);
+        final int[] ordinates = coord.ordinates();
+        final long value = encode(ordinates[0], ordinates[1]);
+
+        while (true) {
+            Page page = pages.get(pageIndex);
+            if (page == null) {
+                SparsePage newPage = new SparsePage();
+                page = pages.putIfAbsent(pageIndex, newPage);
+                if (page == null) {
+                    page = newPage;
+                }
+            }
+            if (page instanceof DensePage) {
+                ((DensePage) page).put(slot, value);
+                return;
+            }
+            SparsePage sparse = (SparsePage) page;
+            synchronized (sparse) {
+                if (sparse.promoted) {
+                    // lost the race against the promotion of the page, go to the dense one
+                    continue;
+                }
+                sparse.put(slot, value);
+                if (sparse.size >= DENSE_THRESHOLD) {
+                    DensePage dense = newDensePage();
+                    sparse.copyTo(dense);
+                    pages.put(pageIndex, dense);
+                    sparse.promoted = true;
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public OSMCoordinateSequence get(List<Long> ids) {
+        Preconditions.checkNotNull(ids, "ids is null");
+
+        final int size = ids.size();
+        OSMCoordinateSequence sequence = CSFAC.create(size);
+
+        // consecutive way nodes usually fall in the same page
+        long pageIndex = 0;
+        Page page = null;
+        for (int index = 0; index < size; index++) {
+            final long id = ids.get(index).longValue();
+            if (page == null || (id >> PAGE_BITS) != pageIndex) {
+                pageIndex = id >> PAGE_BITS;
+                page = pages.get(Long.valueOf(pageIndex));
+            }
+            final long value = page == null ? ABSENT : page.get((int) (id & PAGE_MASK));
+            if (value == ABSENT) {
+                throw new IllegalArgumentException("Node #" + id + " not found");
+            }
+            sequence.setOrdinate(index, 0, decodeX(value));
+            sequence.setOrdinate(index, 1, decodeY(value));
+        }
+        return sequence;
+    }
+
+    /**
+     * @return whether there is a coordinate for the given node
+     */
+    public boolean contains(long nodeId) {
+        Page page = pages.get(Long.valueOf(nodeId >> PAGE_BITS));
+        return page != null && page.get((int) (nodeId & PAGE_MASK)) != ABSENT;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (channel == null) {
+            return;
+        }
+        pages.clear();
+        segments.clear();
+        try {
+            Closeables.close(channel, true);
+            Closeables.close(randomAccessFile, true);
+        } catch (IOException e) {
+            //
+        }
+        channel = null;
+        randomAccessFile = null;
+        file.delete();
+        parentDir.delete();
+    }
+
+    private synchronized DensePage newDensePage() {
+        checkState(channel != null, "point cache is disposed");
+        final int segment = densePages / PAGES_PER_SEGMENT;
+        if (segment == segments.size()) {
+            try {
+                segments.add(channel.map(MapMode.READ_WRITE, segment * SEGMENT_BYTES,
+                        SEGMENT_BYTES));
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        final int offset = (densePages % PAGES_PER_SEGMENT) * PAGE_BYTES;
+        densePages++;
+        return new DensePage(segments.get(segment), offset);
+    }
+
+    private static long encode(int x, int y) {
+        return ((long) (x ^ Integer.MIN_VALUE) << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int decodeX(long value) {
+        return ((int) (value >>> 32)) ^ Integer.MIN_VALUE;
+    }
+
+    private static int decodeY(long value) {
+        return (int) value;
+    }
+
+    private static abstract class Page {
+
+        /**
+         * @return the encoded coordinate at {@code slot}, or {@link #ABSENT}
+         */
+        abstract long get(int slot);
+    }
+
+    /**
+     * A page backed by a region of a mapped segment. Absolute gets and puts don't change the
+     * state of the buffer, so threads can share it as long as they write different slots.
+     */
+    private static class DensePage extends Page {
+
+        private final MappedByteBuffer segment;
+
+        private final int offset;
+
+        DensePage(MappedByteBuffer segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        long get(int slot) {
+            return segment.getLong(offset + 8 * slot);
+        }
+
+        void put(int slot, long value) {
+            segment.putLong(offset + 8 * slot, value);
+        }
+    }
+
+    /**
+     * An open addressing hash table of slot to coordinate, guarded by its own lock.
+     */
+    private static class SparsePage extends Page {
+
+        /**
+         * Slots plus one, so that zero means an empty entry
+         */
+        private int[] keys = new int[16];
+
+        private long[] values = new long[16];
+
+        private int size;
+
+        /**
+         * Whether this page has been replaced by a dense one
+         */
+        private boolean promoted;
+
+        @Override
+        synchronized long get(int slot) {
+            final int key = slot + 1;
+            final int mask = keys.length - 1;
+            for (int i = hash(slot) & mask;; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                if (keys[i] == 0) {
+                    return ABSENT;
+                }
+            }
+        }
+
+        void put(int slot, long value) {
+            if (2 * (size + 1) > keys.length) {
+                int[] oldKeys = keys;
+                long[] oldValues = values;
+                keys = new int[2 * oldKeys.length];
+                values = new long[2 * oldValues.length];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        insert(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            insert(slot + 1, value);
+        }
+
+        private void insert(int key, long value) {
+            final int mask = keys.length - 1;
+            int i = hash(key - 1) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        void copyTo(DensePage dense) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    dense.put(keys[i] - 1, values[i]);
+                }
+            }
+        }
+
+        private static int hash(int slot) {
+            int h = slot * 0x9E3779B1;
+            return h ^ (h >>> 16);
+        }
+    }
+}
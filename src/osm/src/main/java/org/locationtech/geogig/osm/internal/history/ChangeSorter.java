@@ -0,0 +1,470 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Longs;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Sorts the changesets and primitives of a full history file by changeset, holding a bounded
+ * number of them in memory.
+ * <p>
+ * Once {@code maxBuffered} entries have been added, they are sorted and spilled to a run file in
+ * the temporary directory; {@link #sorted()} merges the runs back. Runs are merged into one when
+ * there are more than {@link #MAX_RUNS} of them, to bound the number of open files.
+ * <p>
+ * Within a changeset, its metadata sorts first, then its primitives by timestamp, in the order
+ * they were added for equal timestamps.
+ */
+class ChangeSorter {
+
+    static final int MAX_RUNS = 64;
+
+    private static final byte CHANGESET = 0;
+
+    private static final byte NODE = 1;
+
+    private static final byte WAY = 2;
+
+    private static final byte RELATION = 3;
+
+    private static final GeometryFactory GEOMFACT = new GeometryFactory();
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            int c = Longs.compare(e1.changesetId, e2.changesetId);
+            if (c == 0) {
+                c = Boolean.compare(e1.changeset == null, e2.changeset == null);
+            }
+            if (c == 0) {
+                c = Longs.compare(e1.timestamp, e2.timestamp);
+            }
+            if (c == 0) {
+                c = Longs.compare(e1.sequence, e2.sequence);
+            }
+            return c;
+        }
+    };
+
+    /**
+     * A changeset or primitive as sorted by a {@link ChangeSorter}
+     */
+    static class Entry {
+
+        private final long changesetId;
+
+        private final long timestamp;
+
+        private final long sequence;
+
+        private final Changeset changeset;
+
+        private final Primitive primitive;
+
+        private Entry(long sequence, Changeset changeset) {
+            this.changesetId = changeset.getId();
+            this.timestamp = 0L;
+            this.sequence = sequence;
+            this.changeset = changeset;
+            this.primitive = null;
+        }
+
+        private Entry(long sequence, Primitive primitive) {
+            this.changesetId = primitive.getChangesetId();
+            this.timestamp = primitive.getTimestamp();
+            this.sequence = sequence;
+            this.changeset = null;
+            this.primitive = primitive;
+        }
+
+        long getChangesetId() {
+            return changesetId;
+        }
+
+        /**
+         * @return the changeset metadata, or {@code null} if this entry is a primitive
+         */
+        @Nullable
+        Changeset getChangeset() {
+            return changeset;
+        }
+
+        /**
+         * @return the primitive, or {@code null} if this entry is a changeset metadata
+         */
+        @Nullable
+        Primitive getPrimitive() {
+            return primitive;
+        }
+    }
+
+    private final File tempDirectory;
+
+    private final int maxBuffered;
+
+    private List<Entry> buffer = new ArrayList<Entry>();
+
+    private List<File> runs = new ArrayList<File>();
+
+    private long sequence;
+
+    ChangeSorter(File tempDirectory, int maxBuffered) {
+        this.tempDirectory = tempDirectory;
+        this.maxBuffered = maxBuffered;
+    }
+
+    void add(Changeset changeset) throws IOException {
+        add(new Entry(sequence++, changeset));
+    }
+
+    void add(Primitive primitive) throws IOException {
+        add(new Entry(sequence++, primitive));
+    }
+
+    private void add(Entry entry) throws IOException {
+        buffer.add(entry);
+        if (buffer.size() >= maxBuffered) {
+            spill();
+        }
+    }
+
+    /**
+     * @return all the added entries, in changeset order. The run files are deleted once the
+     *         iterator is exhausted, or by {@link #close()}
+     */
+    PeekingIterator<Entry> sorted() throws IOException {
+        if (runs.isEmpty()) {
+            List<Entry> entries = buffer;
+            buffer = new ArrayList<Entry>();
+            Collections.sort(entries, ORDER);
+            return Iterators.peekingIterator(entries.iterator());
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        final List<File> merged = runs;
+        runs = new ArrayList<File>();
+        final Iterator<Entry> entries = merge(merged);
+        return Iterators.peekingIterator(new AbstractIterator<Entry>() {
+            @Override
+            protected Entry computeNext() {
+                if (entries.hasNext()) {
+                    return entries.next();
+                }
+                delete(merged);
+                return endOfData();
+            }
+        });
+    }
+
+    /**
+     * Deletes the run files not handed over to {@link #sorted()}
+     */
+    void close() {
+        buffer.clear();
+        delete(runs);
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, ORDER);
+        runs.add(write(buffer.iterator()));
+        buffer.clear();
+        if (runs.size() > MAX_RUNS) {
+            List<File> merged = runs;
+            runs = new ArrayList<File>();
+            try {
+                runs.add(write(merge(merged)));
+            } finally {
+                delete(merged);
+            }
+        }
+    }
+
+    private File write(Iterator<Entry> entries) throws IOException {
+        File run = File.createTempFile("history-", ".run", tempDirectory);
+        run.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(run), 64 * 1024));
+        try {
+            while (entries.hasNext()) {
+                write(entries.next(), out);
+            }
+        } finally {
+            out.close();
+        }
+        return run;
+    }
+
+    private static void delete(List<File> runs) {
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    private static Iterator<Entry> merge(List<File> runs) throws IOException {
+        final PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(runs.size());
+        try {
+            for (File run : runs) {
+                RunCursor cursor = new RunCursor(run);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (RunCursor cursor : queue) {
+                cursor.close();
+            }
+            throw e;
+        }
+        return new AbstractIterator<Entry>() {
+            @Override
+            protected Entry computeNext() {
+                RunCursor cursor = queue.poll();
+                if (cursor == null) {
+                    return endOfData();
+                }
+                Entry next = cursor.current;
+                try {
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                return next;
+            }
+        };
+    }
+
+    private static class RunCursor implements Comparable<RunCursor> {
+
+        private final DataInputStream in;
+
+        private Entry current;
+
+        RunCursor(File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run),
+                    64 * 1024));
+        }
+
+        /**
+         * @return whether there's a current entry, closing the run otherwise
+         */
+        boolean advance() throws IOException {
+            try {
+                current = read(in);
+            } catch (EOFException e) {
+                current = null;
+                close();
+            }
+            return current != null;
+        }
+
+        void close() {
+            Closeables.closeQuietly(in);
+        }
+
+        @Override
+        public int compareTo(RunCursor o) {
+            return ORDER.compare(current, o.current);
+        }
+    }
+
+    private static void write(Entry entry, DataOutputStream out) throws IOException {
+        final Changeset changeset = entry.changeset;
+        final Primitive primitive = entry.primitive;
+        if (changeset != null) {
+            out.writeByte(CHANGESET);
+            out.writeLong(entry.sequence);
+            out.writeLong(changeset.getId());
+            writeString(changeset.getUserName(), out);
+            out.writeLong(changeset.getUserId());
+            out.writeLong(changeset.getCreated());
+            Optional<Long> closed = changeset.getClosed();
+            out.writeBoolean(closed != null && closed.isPresent());
+            if (closed != null && closed.isPresent()) {
+                out.writeLong(closed.get().longValue());
+            }
+            out.writeBoolean(changeset.isOpen());
+            Optional<Envelope> bounds = changeset.getWgs84Bounds();
+            out.writeBoolean(bounds.isPresent());
+            if (bounds.isPresent()) {
+                out.writeDouble(bounds.get().getMinX());
+                out.writeDouble(bounds.get().getMaxX());
+                out.writeDouble(bounds.get().getMinY());
+                out.writeDouble(bounds.get().getMaxY());
+            }
+            writeString(changeset.getComment().orNull(), out);
+            writeTags(changeset.getTags(), out);
+            return;
+        }
+
+        if (primitive instanceof Node) {
+            out.writeByte(NODE);
+        } else if (primitive instanceof Way) {
+            out.writeByte(WAY);
+        } else {
+            out.writeByte(RELATION);
+        }
+        out.writeLong(entry.sequence);
+        out.writeLong(primitive.getId());
+        out.writeLong(primitive.getChangesetId());
+        out.writeBoolean(primitive.isVisible());
+        out.writeLong(primitive.getTimestamp());
+        out.writeInt(primitive.getVersion());
+        writeString(primitive.getUserName(), out);
+        out.writeLong(primitive.getUserId());
+        writeTags(primitive.getTags(), out);
+        if (primitive instanceof Node) {
+            Optional<Point> location = ((Node) primitive).getLocation();
+            out.writeBoolean(location.isPresent());
+            if (location.isPresent()) {
+                out.writeDouble(location.get().getX());
+                out.writeDouble(location.get().getY());
+            }
+        } else if (primitive instanceof Way) {
+            List<Long> nodes = ((Way) primitive).getNodes();
+            out.writeInt(nodes.size());
+            for (Long node : nodes) {
+                out.writeLong(node.longValue());
+            }
+        } else {
+            List<Relation.Member> members = ((Relation) primitive).getMembers();
+            out.writeInt(members.size());
+            for (Relation.Member member : members) {
+                out.writeUTF(member.getType());
+                out.writeLong(member.getRef());
+                writeString(member.getRole().orNull(), out);
+            }
+        }
+    }
+
+    private static Entry read(DataInputStream in) throws IOException {
+        final byte kind = in.readByte();
+        final long sequence = in.readLong();
+        if (kind == CHANGESET) {
+            Changeset changeset = new Changeset();
+            changeset.setId(in.readLong());
+            changeset.setUserName(readString(in));
+            changeset.setUserId(in.readLong());
+            changeset.setCreated(in.readLong());
+            if (in.readBoolean()) {
+                changeset.setClosed(in.readLong());
+            }
+            changeset.setOpen(in.readBoolean());
+            if (in.readBoolean()) {
+                double minx = in.readDouble();
+                double maxx = in.readDouble();
+                double miny = in.readDouble();
+                double maxy = in.readDouble();
+                changeset.setWgs84Bounds(new Envelope(minx, maxx, miny, maxy));
+            }
+            changeset.setComment(readString(in));
+            readTags(in, changeset.getTags());
+            return new Entry(sequence, changeset);
+        }
+
+        final Primitive primitive;
+        if (kind == NODE) {
+            primitive = new Node();
+        } else if (kind == WAY) {
+            primitive = new Way();
+        } else {
+            primitive = new Relation();
+        }
+        primitive.setId(in.readLong());
+        primitive.setChangesetId(in.readLong());
+        primitive.setVisible(in.readBoolean());
+        primitive.setTimestamp(in.readLong());
+        primitive.setVersion(in.readInt());
+        primitive.setUserName(readString(in));
+        primitive.setUserId(in.readLong());
+        readTags(in, primitive.getTags());
+        if (kind == NODE) {
+            if (in.readBoolean()) {
+                double x = in.readDouble();
+                double y = in.readDouble();
+                ((Node) primitive).setLocation(GEOMFACT.createPoint(new Coordinate(x, y)));
+            }
+        } else if (kind == WAY) {
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                ((Way) primitive).addNode(in.readLong());
+            }
+        } else {
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String type = in.readUTF();
+                long ref = in.readLong();
+                String role = readString(in);
+                ((Relation) primitive).addMember(new Relation.Member(type, ref, role));
+            }
+        }
+        return new Entry(sequence, primitive);
+    }
+
+    private static void writeTags(Map<String, String> tags, DataOutputStream out)
+            throws IOException {
+        out.writeInt(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            out.writeUTF(tag.getKey());
+            out.writeUTF(tag.getValue());
+        }
+    }
+
+    private static void readTags(DataInputStream in, Map<String, String> target)
+            throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            target.put(key, in.readUTF());
+        }
+    }
+
+    private static void writeString(@Nullable String value, DataOutputStream out)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -78,7 +78,7 @@ class ChangesetScanner {
      * </code>
      * </pre>
      */
-    private Changeset parse(XMLStreamReader reader) throws XMLStreamException {
+    static Changeset parse(XMLStreamReader reader) throws XMLStreamException {
         reader.require(START_ELEMENT, null, "changeset");
 
         Changeset changeset = new Changeset();
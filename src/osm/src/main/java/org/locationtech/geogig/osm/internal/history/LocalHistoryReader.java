@@ -0,0 +1,328 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.history;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Longs;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Reads OSM changesets from local files instead of the OSM API, as a {@link HistoryDownloader}
+ * does.
+ * <p>
+ * The source can be either:
+ * <ul>
+ * <li>A full history OSM XML file, optionally gzipped, with every version of each primitive. The
+ * primitives are grouped by the changeset they were created in, and the {@code changeset}
+ * elements in the file, if any, provide the changesets metadata.
+ * <li>A directory of osmChange files, one per changeset, named {@code <changeset id>.osc} or
+ * {@code <changeset id>.osc.gz}, or laid out as {@code <changeset id>/download.xml} as the
+ * {@link HistoryDownloader} saves them.
+ * </ul>
+ * Changesets are returned in the order they were opened, which is the order of their ids. The
+ * metadata of changesets not described by the source is taken from their changes: the user of the
+ * first change, and the timestamps of the first and last ones as the creation and closing times.
+ * <p>
+ * A full history file is streamed and its contents sorted by changeset on disk, in the
+ * {@link #setTempDirectory temporary directory}, so that only a bounded number of primitives are
+ * held in memory at a time. Each changeset is then read in full, which the changeset size limit
+ * of the OSM API keeps bounded too.
+ */
+public class LocalHistoryReader {
+
+    private static final ImmutableSet<String> PRIMITIVE_TAGS = ImmutableSet.of("node", "way",
+            "relation");
+
+    private static final Comparator<Change> TIMESTAMP_ORDER = new Comparator<Change>() {
+        @Override
+        public int compare(Change c1, Change c2) {
+            return Longs.compare(primitive(c1).getTimestamp(), primitive(c2).getTimestamp());
+        }
+    };
+
+    /**
+     * The number of primitives of a full history file held in memory while grouping them by
+     * changeset, before spilling them to disk
+     */
+    static final int DEFAULT_MAX_BUFFERED_CHANGES = 250_000;
+
+    private final File source;
+
+    private final long initialChangeset;
+
+    private final long finalChangeset;
+
+    private Predicate<Changeset> filter = Predicates.alwaysTrue();
+
+    private File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+
+    private int maxBufferedChanges = DEFAULT_MAX_BUFFERED_CHANGES;
+
+    /**
+     * @param source a full history file or a directory of changeset files
+     * @param initialChangeset initial changeset id
+     * @param finalChangeset final changeset id
+     */
+    public LocalHistoryReader(File source, long initialChangeset, long finalChangeset) {
+        checkArgument(source.exists(), "%s does not exist", source);
+        checkArgument(initialChangeset > 0 && initialChangeset <= finalChangeset);
+        this.source = source;
+        this.initialChangeset = initialChangeset;
+        this.finalChangeset = finalChangeset;
+    }
+
+    /**
+     * Changesets not accepted by the filter are still returned, but without changes
+     */
+    public void setChangesetFilter(Predicate<Changeset> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @param tempDirectory where to sort the contents of a full history file, defaults to the
+     *        {@code java.io.tmpdir} directory
+     */
+    public void setTempDirectory(File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sets how many primitives of a full history file are held in memory while grouping them by
+     * changeset, before spilling them to disk
+     */
+    void setMaxBufferedChanges(int maxBufferedChanges) {
+        checkArgument(maxBufferedChanges > 0);
+        this.maxBufferedChanges = maxBufferedChanges;
+    }
+
+    /**
+     * @return the changesets in the source within the configured range, in id order
+     */
+    public Iterator<Changeset> fetchChangesets() {
+        if (source.isDirectory()) {
+            return readDirectory();
+        }
+        return readHistoryFile();
+    }
+
+    private Iterator<Changeset> readHistoryFile() {
+        final ChangeSorter sorter = new ChangeSorter(tempDirectory, maxBufferedChanges);
+        final PeekingIterator<ChangeSorter.Entry> sorted;
+        InputStream stream = openStream(source);
+        try {
+            XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(stream,
+                    "UTF-8");
+            ChangesetContentsScanner scanner = new ChangesetContentsScanner();
+            int event = reader.next();
+            while (event != END_DOCUMENT) {
+                if (event == START_ELEMENT && "changeset".equals(reader.getLocalName())) {
+                    // leaves the reader at the next tag
+                    Changeset changeset = ChangesetScanner.parse(reader);
+                    if (inRange(changeset.getId())) {
+                        sorter.add(changeset);
+                    }
+                    event = reader.getEventType();
+                    continue;
+                }
+                if (event == START_ELEMENT && PRIMITIVE_TAGS.contains(reader.getLocalName())) {
+                    // history files only flag deleted versions
+                    final boolean visible = !"false".equals(reader.getAttributeValue(null,
+                            "visible"));
+                    Primitive primitive = scanner.parsePrimitive(reader);
+                    primitive.setVisible(visible);
+                    if (inRange(primitive.getChangesetId())) {
+                        sorter.add(primitive);
+                    }
+                }
+                event = reader.next();
+            }
+            sorted = sorter.sorted();
+        } catch (XMLStreamException | IOException e) {
+            sorter.close();
+            throw Throwables.propagate(e);
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+
+        return new AbstractIterator<Changeset>() {
+            @Override
+            protected Changeset computeNext() {
+                while (sorted.hasNext()) {
+                    final long id = sorted.peek().getChangesetId();
+                    Changeset described = null;
+                    List<Change> changes = new ArrayList<Change>();
+                    while (sorted.hasNext() && sorted.peek().getChangesetId() == id) {
+                        ChangeSorter.Entry entry = sorted.next();
+                        if (entry.getChangeset() != null) {
+                            described = entry.getChangeset();
+                        } else {
+                            Primitive primitive = entry.getPrimitive();
+                            changes.add(new Change(changeType(primitive), primitive));
+                        }
+                    }
+                    // only the changesets with changes in the file are returned
+                    if (!changes.isEmpty()) {
+                        return toChangeset(described, Long.valueOf(id), changes);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    private Iterator<Changeset> readDirectory() {
+        final NavigableMap<Long, File> files = new TreeMap<Long, File>();
+        for (File file : source.listFiles()) {
+            final String name = file.getName();
+            String id = null;
+            File changesFile = file;
+            if (file.isDirectory()) {
+                id = name;
+                changesFile = new File(file, "download.xml");
+            } else if (name.endsWith(".osc")) {
+                id = name.substring(0, name.length() - ".osc".length());
+            } else if (name.endsWith(".osc.gz")) {
+                id = name.substring(0, name.length() - ".osc.gz".length());
+            }
+            Long changesetId = id == null ? null : Longs.tryParse(id);
+            if (changesetId != null && inRange(changesetId.longValue()) && changesFile.isFile()) {
+                files.put(changesetId, changesFile);
+            }
+        }
+
+        return new AbstractIterator<Changeset>() {
+            @Override
+            protected Changeset computeNext() {
+                Map.Entry<Long, File> next = files.pollFirstEntry();
+                if (next == null) {
+                    return endOfData();
+                }
+                return toChangeset(null, next.getKey(), readChanges(next.getValue()));
+            }
+        };
+    }
+
+    private List<Change> readChanges(File file) {
+        List<Change> changes = new ArrayList<Change>();
+        InputStream stream = openStream(file);
+        try {
+            Iterator<Change> parsed = new ChangesetContentsScanner().parse(stream);
+            while (parsed.hasNext()) {
+                changes.add(parsed.next());
+            }
+        } catch (XMLStreamException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+        return changes;
+    }
+
+    private Changeset toChangeset(@Nullable Changeset described, Long id, List<Change> changes) {
+        // keep the version order of the changes to a same primitive
+        Collections.sort(changes, TIMESTAMP_ORDER);
+
+        Changeset changeset = described;
+        if (changeset == null) {
+            changeset = new Changeset();
+            changeset.setId(id.longValue());
+            changeset.setOpen(false);
+            if (!changes.isEmpty()) {
+                Primitive first = primitive(changes.get(0));
+                changeset.setUserName(first.getUserName());
+                changeset.setUserId(first.getUserId());
+                changeset.setCreated(first.getTimestamp());
+                changeset.setClosed(primitive(changes.get(changes.size() - 1)).getTimestamp());
+            } else {
+                changeset.setClosed(0L);
+            }
+            changeset.setWgs84Bounds(nodeBounds(changes));
+        }
+        if (filter.apply(changeset)) {
+            Optional<Iterator<Change>> contents = Optional.of(changes.iterator());
+            changeset.setChanges(Suppliers.ofInstance(contents));
+        }
+        return changeset;
+    }
+
+    private static Envelope nodeBounds(List<Change> changes) {
+        Envelope bounds = new Envelope();
+        for (Change change : changes) {
+            if (change.getNode().isPresent() && change.getNode().get().getLocation().isPresent()) {
+                bounds.expandToInclude(change.getNode().get().getLocation().get()
+                        .getCoordinate());
+            }
+        }
+        return bounds.isNull() ? null : bounds;
+    }
+
+    private boolean inRange(long changesetId) {
+        return changesetId >= initialChangeset && changesetId <= finalChangeset;
+    }
+
+    private static Change.Type changeType(Primitive primitive) {
+        if (!primitive.isVisible()) {
+            return Change.Type.delete;
+        }
+        return primitive.getVersion() == 1 ? Change.Type.create : Change.Type.modify;
+    }
+
+    private static Primitive primitive(Change change) {
+        if (change.getNode().isPresent()) {
+            return change.getNode().get();
+        }
+        if (change.getWay().isPresent()) {
+            return change.getWay().get();
+        }
+        return change.getRelation().get();
+    }
+
+    private static InputStream openStream(File file) {
+        try {
+            InputStream stream = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+            if (file.getName().endsWith(".gz")) {
+                stream = new GZIPInputStream(stream);
+            }
+            return stream;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureBuilder;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class EntityResolverTest extends RepositoryTestCase {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private ObjectDatabase objects;
+
+    private RevFeatureType nodeType;
+
+    private RevFeatureType wayType;
+
+    private RevFeature node1;
+
+    private RevFeature node2;
+
+    private RevFeature way1;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        objects = repo.objectDatabase();
+        nodeType = RevFeatureTypeImpl.build(OSMUtils.nodeType());
+        wayType = RevFeatureTypeImpl.build(OSMUtils.wayType());
+        objects.put(nodeType);
+        objects.put(wayType);
+
+        node1 = put(new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData(1, 5), 1, 2),
+                GEOMETRY_FACTORY.createPoint(new Coordinate(2, 1)));
+        // a feature created by an unsent change, with a temporary changeset id
+        node2 = put(new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData(2, -1), 3, 4),
+                GEOMETRY_FACTORY.createPoint(new Coordinate(4, 3)));
+        Way way = new Way(entityData(1, 5), ImmutableList.of(new WayNode(1), new WayNode(2)));
+        way1 = put(way, GEOMETRY_FACTORY.createLineString(new Coordinate[] {
+                new Coordinate(2, 1), new Coordinate(4, 3) }));
+    }
+
+    @Test
+    public void testResolveMixedTypes() {
+        List<NodeRef> refs = ImmutableList.of(//
+                ref("node", "1", node1, nodeType.getId()), //
+                ref("way", "1", way1, wayType.getId()), //
+                // the same feature under another id, fetched once and built twice
+                ref("node", "3", node1, nodeType.getId()), //
+                // no metadata id, resolved with the default types of each tree
+                ref("node", "2", node2, ObjectId.NULL), //
+                ref("way", "2", way1, ObjectId.forString("not stored")));
+
+        EntityResolver resolver = new EntityResolver(objects, Long.valueOf(10));
+        List<EntityContainer> entities = resolver.resolve(refs);
+        assertEquals(5, entities.size());
+
+        assertNode(entities.get(0).getEntity(), 1, 5, 1, 2);
+        Way way = (Way) entities.get(1).getEntity();
+        assertEquals(1, way.getId());
+        assertEquals(5, way.getChangesetId());
+        assertEquals(2, way.getWayNodes().size());
+        assertEquals(1, way.getWayNodes().get(0).getNodeId());
+        assertEquals(2, way.getWayNodes().get(1).getNodeId());
+        assertNode(entities.get(2).getEntity(), 3, 5, 1, 2);
+        // the temporary changeset id is replaced
+        assertNode(entities.get(3).getEntity(), 2, 10, 3, 4);
+        assertEquals(2, ((Way) entities.get(4).getEntity()).getId());
+
+        // cached builders are reused by later batches
+        entities = resolver.resolve(ImmutableList.of(ref("way", "1", way1, wayType.getId()),
+                ref("node", "2", node2, nodeType.getId())));
+        assertEquals(1, ((Way) entities.get(0).getEntity()).getId());
+        assertNode(entities.get(1).getEntity(), 2, 10, 3, 4);
+    }
+
+    @Test
+    public void testResolveIteratorInBatches() {
+        List<NodeRef> refs = Lists.newArrayList();
+        for (int i = 0; i < EntityResolver.BATCH_SIZE + 1; i++) {
+            refs.add(ref("node", String.valueOf(i + 1), node1, nodeType.getId()));
+        }
+        Iterator<EntityContainer> entities = new EntityResolver(objects, null).resolve(refs
+                .iterator());
+        List<EntityContainer> list = Lists.newArrayList(entities);
+        assertEquals(refs.size(), list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertNode(list.get(i).getEntity(), i + 1, 5, 1, 2);
+        }
+        assertFalse(new EntityResolver(objects, null).resolve(
+                Collections.<NodeRef> emptyIterator()).hasNext());
+    }
+
+    @Test
+    public void testMissingFeature() {
+        ObjectId missing = ObjectId.forString("missing feature");
+        Node node = Node.create("1", missing, nodeType.getId(), TYPE.FEATURE, null);
+        List<NodeRef> refs = ImmutableList.of(ref("node", "2", node2, nodeType.getId()),
+                new NodeRef(node, "node", nodeType.getId()));
+        try {
+            new EntityResolver(objects, null).resolve(refs);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(missing.toString()));
+        }
+    }
+
+    private RevFeature put(Entity entity, Geometry geom) {
+        RevFeature feature = RevFeatureBuilder.build(new EntityConverter().toFeature(entity,
+                geom));
+        objects.put(feature);
+        return feature;
+    }
+
+    private static NodeRef ref(String tree, String id, RevFeature feature, ObjectId metadataId) {
+        Node node = Node.create(id, feature.getId(), metadataId, TYPE.FEATURE, null);
+        return new NodeRef(node, tree, metadataId);
+    }
+
+    private static CommonEntityData entityData(long id, long changeset) {
+        return new CommonEntityData(id, 1, new Date(1000), new OsmUser(7, "alice"), changeset);
+    }
+
+    private static void assertNode(Entity entity, long id, long changeset, double lat,
+            double lon) {
+        org.openstreetmap.osmosis.core.domain.v0_6.Node node;
+        node = (org.openstreetmap.osmosis.core.domain.v0_6.Node) entity;
+        assertEquals(id, node.getId());
+        assertEquals(changeset, node.getChangesetId());
+        assertEquals(lat, node.getLatitude(), 1E-7);
+        assertEquals(lon, node.getLongitude(), 1E-7);
+        assertEquals("alice", node.getUser().getName());
+        assertEquals(7, node.getUser().getId());
+    }
+}
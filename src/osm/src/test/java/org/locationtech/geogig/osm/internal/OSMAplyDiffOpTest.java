@@ -14,16 +14,27 @@ import java.io.File;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.simple.SimpleFeature;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 
 public class OSMAplyDiffOpTest extends RepositoryTestCase {
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Override
     protected void setUpInternal() throws Exception {
         repo.configDatabase().put("user.name", "groldan");
@@ -82,4 +93,107 @@ public class OSMAplyDiffOpTest extends RepositoryTestCase {
         assertFalse(revFeature.isPresent());
 
     }
+
+    /**
+     * Modified features that are not in the repository are added if they are within the bbox of
+     * the imported data, as created ones, since they may have been outside of it when imported
+     */
+    @Test
+    public void testModifyMissingFeatures() throws Exception {
+        importData();
+
+        OSMReport report = applyDiff("<modify>\n" //
+                // inside the bbox
+                + node(4, 1.5, 1.5) //
+                + way(11, 2, 4) //
+                // outside the bbox
+                + node(5, 50, 50) //
+                + node(6, 60, 60) //
+                + way(12, 5, 6) //
+                + "</modify>\n");
+        assertEquals(5, report.getCount());
+        assertEquals(0, report.getUnpprocessedCount());
+
+        assertTrue(feature("node/4").isPresent());
+        assertTrue(feature("way/11").isPresent());
+        assertFalse(feature("node/5").isPresent());
+        assertFalse(feature("node/6").isPresent());
+        assertFalse(feature("way/12").isPresent());
+        Geometry way = wayGeometry("way/11");
+        assertEquals(new Coordinate(2, 2), way.getCoordinates()[0]);
+        assertEquals(new Coordinate(1.5, 1.5), way.getCoordinates()[1]);
+    }
+
+    /**
+     * A modified node that's not in the repository nor added to it is still used to build the
+     * ways of the diff that refer to it
+     */
+    @Test
+    public void testModifyWayWithMissingModifiedNode() throws Exception {
+        importData();
+
+        OSMReport report = applyDiff("<modify>\n" //
+                + node(5, 50, 50) //
+                + way(10, 1, 5) //
+                + "</modify>\n");
+        assertEquals(2, report.getCount());
+        assertEquals(0, report.getUnpprocessedCount());
+
+        assertFalse(feature("node/5").isPresent());
+        Geometry way = wayGeometry("way/10");
+        assertEquals(2, way.getNumPoints());
+        assertEquals(new Coordinate(1, 1), way.getCoordinates()[0]);
+        assertEquals(new Coordinate(50, 50), way.getCoordinates()[1]);
+    }
+
+    /**
+     * Imports nodes 1 to 3, at (1, 1), (2, 2) and (3, 3), and way 10 from node 1 to 2
+     */
+    private void importData() throws Exception {
+        File file = tempFolder.newFile("data.xml");
+        Files.write("<?xml version='1.0' encoding='UTF-8'?>\n" //
+                + "<osm version='0.6'>\n" //
+                + node(1, 1, 1) + node(2, 2, 2) + node(3, 3, 3) //
+                + way(10, 1, 2) //
+                + "</osm>\n", file, Charsets.UTF_8);
+        geogig.command(OSMImportOp.class).setDataSource(file.getAbsolutePath()).call();
+        assertTrue(feature("way/10").isPresent());
+    }
+
+    private OSMReport applyDiff(String changes) throws Exception {
+        File file = tempFolder.newFile("diff.xml");
+        Files.write("<?xml version='1.0' encoding='UTF-8'?>\n" //
+                + "<osmChange version='0.6'>\n" + changes + "</osmChange>\n", file,
+                Charsets.UTF_8);
+        return geogig.command(OSMApplyDiffOp.class).setDiffFile(file).call().get();
+    }
+
+    private static String node(long id, double lat, double lon) {
+        return String.format("<node id='%d' lat='%s' lon='%s' %s/>\n", id, lat, lon, common());
+    }
+
+    private static String way(long id, long... nodes) {
+        StringBuilder sb = new StringBuilder(String.format("<way id='%d' %s>\n", id, common()));
+        for (long node : nodes) {
+            sb.append(String.format(" <nd ref='%d'/>\n", node));
+        }
+        return sb.append("</way>\n").toString();
+    }
+
+    private static String common() {
+        return "version='1' timestamp='2010-01-01T00:00:00Z' changeset='1' uid='1' user='alice'";
+    }
+
+    private Optional<RevFeature> feature(String path) {
+        return geogig.command(RevObjectParse.class).setRefSpec("WORK_HEAD:" + path)
+                .call(RevFeature.class);
+    }
+
+    private Geometry wayGeometry(String path) {
+        Optional<RevFeature> feature = feature(path);
+        assertTrue(path, feature.isPresent());
+        FeatureBuilder builder = new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils.wayType()));
+        SimpleFeature way = (SimpleFeature) builder.build(path, feature.get());
+        return (Geometry) way.getAttribute("way");
+    }
 }
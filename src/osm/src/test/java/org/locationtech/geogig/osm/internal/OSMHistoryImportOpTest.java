@@ -0,0 +1,145 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.api.porcelain.LogOp;
+import org.locationtech.geogig.osm.internal.history.LocalHistoryReader;
+import org.locationtech.geogig.storage.Blobs;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+public class OSMHistoryImportOpTest extends RepositoryTestCase {
+
+    private static final String HISTORY = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version='0.6'>\n"
+            + " <changeset id='2' user='bob' uid='2' created_at='2010-01-02T00:00:00Z'"
+            + " closed_at='2010-01-02T01:00:00Z' open='false'>\n"
+            + "  <tag k='comment' v='moved a node'/>\n"
+            + " </changeset>\n"
+            + " <node id='1' version='1' timestamp='2010-01-01T00:00:00Z' uid='1' user='alice'"
+            + " changeset='1' visible='true' lat='1.0' lon='2.0'/>\n"
+            + " <node id='1' version='2' timestamp='2010-01-02T00:30:00Z' uid='2' user='bob'"
+            + " changeset='2' visible='true' lat='1.5' lon='2.5'/>\n"
+            + " <node id='2' version='1' timestamp='2010-01-01T00:00:01Z' uid='1' user='alice'"
+            + " changeset='1' visible='true' lat='3.0' lon='4.0'>\n"
+            + "  <tag k='amenity' v='bench'/>\n"
+            + " </node>\n"
+            + " <way id='1' version='1' timestamp='2010-01-01T00:00:02Z' uid='1' user='alice'"
+            + " changeset='1' visible='true'>\n"
+            + "  <nd ref='1'/>\n"
+            + "  <nd ref='2'/>\n"
+            + " </way>\n"
+            + " <way id='1' version='2' timestamp='2010-01-03T00:00:00Z' uid='1' user='alice'"
+            + " changeset='3' visible='false'/>\n"
+            + "</osm>\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File historyFile;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.configDatabase().put("user.name", "groldan");
+        repo.configDatabase().put("user.email", "groldan@boundlessgeo.com");
+        historyFile = tempFolder.newFile("history.osm");
+        Files.write(HISTORY, historyFile, Charsets.UTF_8);
+    }
+
+    @Test
+    public void testImportAndResume() throws Exception {
+        Long commits = importHistory(1, 2);
+        assertEquals(2, commits.longValue());
+        assertEquals("2", Blobs.getBlobAsString(repo.blobStore(), "osm/refs/heads/master")
+                .get());
+
+        List<RevCommit> log = Lists.newArrayList(geogig.command(LogOp.class).call());
+        assertEquals(2, log.size());
+        assertEquals("moved a node\nchangeset 2", log.get(0).getMessage());
+        assertEquals("bob", log.get(0).getAuthor().getName().get());
+        assertEquals("changeset 1", log.get(1).getMessage());
+        assertEquals("alice", log.get(1).getAuthor().getName().get());
+
+        // the first changeset creates both nodes and the way
+        assertEquals(2, tree("HEAD~1:node").size());
+        assertEquals(1, tree("HEAD~1:way").size());
+        SimpleFeature way1 = feature("HEAD~1:way/1", OSMUtils.wayType());
+        Geometry way = (Geometry) way1.getAttribute("way");
+        assertEquals(2, way.getNumPoints());
+        assertEquals(new Coordinate(2, 1), way.getCoordinates()[0]);
+        assertEquals(new Coordinate(4, 3), way.getCoordinates()[1]);
+
+        // the second one moves a node
+        SimpleFeature node1 = feature("HEAD:node/1", OSMUtils.nodeType());
+        Point node = (Point) node1.getAttribute("location");
+        assertEquals(new Coordinate(2.5, 1.5), node.getCoordinate());
+        assertEquals(tree("HEAD~1:way").getId(), tree("HEAD:way").getId());
+
+        // resuming after the last imported changeset deletes the way
+        long resumeFrom = 1 + Long.parseLong(Blobs.getBlobAsString(repo.blobStore(),
+                "osm/refs/heads/master").get());
+        commits = importHistory(resumeFrom, Long.MAX_VALUE);
+        assertEquals(1, commits.longValue());
+        assertEquals("3", Blobs.getBlobAsString(repo.blobStore(), "osm/refs/heads/master")
+                .get());
+
+        log = Lists.newArrayList(geogig.command(LogOp.class).call());
+        assertEquals(3, log.size());
+        assertEquals("changeset 3", log.get(0).getMessage());
+        assertEquals(log.get(1).getId(), log.get(0).getParentIds().get(0));
+        assertEquals(0, tree("HEAD:way").size());
+        assertEquals(2, tree("HEAD:node").size());
+
+        // the working tree and index follow the branch
+        assertEquals(log.get(0).getTreeId(), repo.workingTree().getTree().getId());
+        assertEquals(log.get(0).getTreeId(), repo.index().getTree().getId());
+    }
+
+    private Long importHistory(long initialChangeset, long finalChangeset) {
+        LocalHistoryReader reader = new LocalHistoryReader(historyFile, initialChangeset,
+                finalChangeset);
+        reader.setTempDirectory(tempFolder.getRoot());
+        return geogig.command(OSMHistoryImportOp.class).setChangesets(reader.fetchChangesets())
+                .call();
+    }
+
+    private RevTree tree(String refSpec) {
+        Optional<RevTree> tree = geogig.command(RevObjectParse.class).setRefSpec(refSpec)
+                .call(RevTree.class);
+        assertTrue(refSpec, tree.isPresent());
+        return tree.get();
+    }
+
+    private SimpleFeature feature(String refSpec, SimpleFeatureType type) {
+        Optional<RevFeature> feature = geogig.command(RevObjectParse.class).setRefSpec(refSpec)
+                .call(RevFeature.class);
+        assertTrue(refSpec, feature.isPresent());
+        FeatureBuilder builder = new FeatureBuilder(RevFeatureTypeImpl.build(type));
+        return (SimpleFeature) builder.build(feature.get().getId().toString(), feature.get());
+    }
+}
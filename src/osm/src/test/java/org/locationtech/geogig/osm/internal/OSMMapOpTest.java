@@ -19,9 +19,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.plumbing.ResolveFeatureType;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
@@ -33,12 +35,15 @@ import org.locationtech.geogig.storage.BlobStore;
 import org.locationtech.geogig.storage.Blobs;
 import org.locationtech.geogig.storage.FieldType;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.PropertyDescriptor;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
 
 public class OSMMapOpTest extends RepositoryTestCase {
     @Rule
@@ -497,4 +502,68 @@ public class OSMMapOpTest extends RepositoryTestCase {
         assertEquals(4, list.size());
     }
 
+
+    @Test
+    public void testIncrementalMapping() throws Exception {
+        String filename = OSMImportOp.class.getResource("ways.xml").getFile();
+        final File file = new File(filename);
+        geogig.command(OSMImportOp.class).setDataSource(file.getAbsolutePath()).call();
+        geogig.command(AddOp.class).call();
+        geogig.command(CommitOp.class).setMessage("msg").call();
+
+        Map<String, AttributeDefinition> fields = Maps.newHashMap();
+        Map<String, List<String>> filter = Maps.newHashMap();
+        filter.put("oneway", Lists.newArrayList("yes"));
+        fields.put("geom", new AttributeDefinition("geom", FieldType.LINESTRING));
+        fields.put("lit", new AttributeDefinition("lit", FieldType.STRING));
+        Map<String, List<String>> filterExclude = Maps.newHashMap();
+        MappingRule mappingRule = new MappingRule("onewaystreets", filter, filterExclude, fields,
+                null);
+        Mapping mapping = new Mapping(Lists.newArrayList(mappingRule));
+        geogig.command(OSMMapOp.class).setMapping(mapping).call();
+
+        // move the first node of the way
+        WorkingTree workTree = geogig.getRepository().workingTree();
+        FeatureBuilder nodeBuilder = new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils
+                .nodeType()));
+        RevFeature revNode = geogig.command(RevObjectParse.class)
+                .setRefSpec("WORK_HEAD:node/345117525").call(RevFeature.class).get();
+        SimpleFeature node = (SimpleFeature) nodeBuilder.build("345117525", revNode);
+        node.setDefaultGeometry(new GeometryFactory().createPoint(new Coordinate(7.1925,
+                50.7394)));
+        workTree.insert(OSMUtils.NODE_TYPE_NAME, node);
+        geogig.command(AddOp.class).call();
+        geogig.command(CommitOp.class).setMessage("move node").call();
+
+        geogig.command(OSMMapOp.class).setMapping(mapping).setIncremental(true).call();
+
+        String wkt = "LINESTRING (7.1925 50.7394, 7.1923127 50.7396946, 7.1923444 50.7397419, 7.1924199 50.7397781)";
+        Optional<RevFeature> mapped = geogig.command(RevObjectParse.class)
+                .setRefSpec("HEAD:onewaystreets/31045880").call(RevFeature.class);
+        assertTrue(mapped.isPresent());
+        assertEquals(wkt, mapped.get().getValues().get(2).get().toString());
+        Optional<RevFeature> way = geogig.command(RevObjectParse.class)
+                .setRefSpec("HEAD:way/31045880").call(RevFeature.class);
+        assertEquals(wkt, way.get().getValues().get(7).get().toString());
+
+        // the way is no longer a one way street
+        FeatureBuilder wayBuilder = new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils
+                .wayType()));
+        SimpleFeature wayFeature = (SimpleFeature) wayBuilder.build("31045880", way.get());
+        @SuppressWarnings("unchecked")
+        Map<String, String> tags = Maps.newHashMap((Map<String, String>) wayFeature
+                .getAttribute("tags"));
+        tags.remove("oneway");
+        wayFeature.setAttribute("tags", tags);
+        workTree.insert(OSMUtils.WAY_TYPE_NAME, wayFeature);
+        geogig.command(AddOp.class).call();
+        geogig.command(CommitOp.class).setMessage("two way").call();
+
+        geogig.command(OSMMapOp.class).setMapping(mapping).setIncremental(true).call();
+
+        mapped = geogig.command(RevObjectParse.class)
+                .setRefSpec("HEAD:onewaystreets/31045880").call(RevFeature.class);
+        assertFalse(mapped.isPresent());
+    }
+
 }
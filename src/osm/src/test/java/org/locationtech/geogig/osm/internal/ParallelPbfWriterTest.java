@@ -0,0 +1,131 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+
+public class ParallelPbfWriterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final int numNodes = 20000;
+        final int numWays = 100;
+        List<EntityContainer> entities = new ArrayList<EntityContainer>();
+        for (long id = 1; id <= numNodes; id++) {
+            Node node = new Node(entityData(id), (id % 180) - 90D, (id % 360) - 180D);
+            entities.add(new NodeContainer(node));
+        }
+        for (long id = 1; id <= numWays; id++) {
+            List<WayNode> wayNodes = new ArrayList<WayNode>();
+            wayNodes.add(new WayNode(id));
+            wayNodes.add(new WayNode(id + 1));
+            entities.add(new WayContainer(new Way(entityData(id), wayNodes)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelPbfWriter writer = new ParallelPbfWriter(out, 3);
+        writer.initialize(Collections.<String, Object> emptyMap());
+        for (EntityContainer entity : entities) {
+            writer.process(entity);
+        }
+        writer.complete();
+        writer.release();
+
+        byte[] pbf = out.toByteArray();
+        assertEquals(1, countHeaderBlocks(pbf));
+
+        List<EntityContainer> read = read(pbf);
+        assertEquals(entities.size(), read.size());
+        for (int i = 0; i < entities.size(); i++) {
+            assertEquals(entities.get(i).getEntity().getType(), read.get(i).getEntity().getType());
+            assertEquals(entities.get(i).getEntity().getId(), read.get(i).getEntity().getId());
+        }
+        Node last = (Node) read.get(numNodes - 1).getEntity();
+        assertEquals((numNodes % 180) - 90D, last.getLatitude(), 1E-7);
+        assertEquals((numNodes % 360) - 180D, last.getLongitude(), 1E-7);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelPbfWriter writer = new ParallelPbfWriter(out, 2);
+        writer.initialize(Collections.<String, Object> emptyMap());
+        writer.complete();
+        writer.release();
+
+        byte[] pbf = out.toByteArray();
+        assertEquals(1, countHeaderBlocks(pbf));
+        assertTrue(read(pbf).isEmpty());
+    }
+
+    private static CommonEntityData entityData(long id) {
+        return new CommonEntityData(id, 1, new Date(0), OsmUser.NONE, 1L);
+    }
+
+    private static int countHeaderBlocks(byte[] pbf) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pbf));
+        int count = 0;
+        while (in.available() > 0) {
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            BlobHeader blobHeader = BlobHeader.parseFrom(header);
+            if ("OSMHeader".equals(blobHeader.getType())) {
+                count++;
+            }
+            in.skipBytes(blobHeader.getDatasize());
+        }
+        return count;
+    }
+
+    private static List<EntityContainer> read(byte[] pbf) {
+        final List<EntityContainer> entities = new ArrayList<EntityContainer>();
+        ParallelPbfReader reader = new ParallelPbfReader(new ByteArrayInputStream(pbf), 2);
+        reader.setSink(new Sink() {
+            @Override
+            public void initialize(Map<String, Object> metaData) {
+            }
+
+            @Override
+            public void process(EntityContainer entityContainer) {
+                entities.add(entityContainer);
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void release() {
+            }
+        });
+        reader.run();
+        return entities;
+    }
+}
@@ -0,0 +1,73 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Platform;
+
+import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+
+public class DenseMappedPointCacheTest extends PointCacheTest {
+
+    @Override
+    protected DenseMappedPointCache createCache(Platform platform) {
+        return new DenseMappedPointCache(platform);
+    }
+
+    @Test
+    public void testZeroCoordinate() {
+        cache.put(1L, coord(0, 0));
+        CoordinateSequence sequence = cache.get(ImmutableList.of(1L));
+        assertEquals(0D, sequence.getOrdinate(0, 0), 1E-9);
+        assertEquals(0D, sequence.getOrdinate(0, 1), 1E-9);
+    }
+
+    @Test
+    public void testNegativeAndScatteredIds() {
+        List<Long> ids = ImmutableList.of(-1L, -70000L, 0L, 5000000000L, Long.MAX_VALUE,
+                Long.MIN_VALUE);
+        for (int i = 0; i < ids.size(); i++) {
+            cache.put(ids.get(i), coord(-180 + i, -90 + i));
+        }
+        CoordinateSequence sequence = cache.get(ids);
+        assertEquals(ids.size(), sequence.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(-180D + i, sequence.getOrdinate(i, 0), 1E-7);
+            assertEquals(-90D + i, sequence.getOrdinate(i, 1), 1E-7);
+        }
+    }
+
+    /**
+     * Fills pages past the point where they become dense and checks the coordinates saved before
+     * and after are all kept
+     */
+    @Test
+    public void testDensePages() {
+        final int numNodes = 3 * 65536;
+        List<Long> ids = new ArrayList<Long>(numNodes);
+        for (int n = 0; n < numNodes; n++) {
+            long id = 1000L + n;
+            cache.put(id, coord(n % 180, n % 90));
+            ids.add(id);
+        }
+        // overwrite a node in a dense page
+        cache.put(1000L, coord(10, 20));
+
+        CoordinateSequence sequence = cache.get(ids);
+        assertEquals(numNodes, sequence.size());
+        assertEquals(10D, sequence.getOrdinate(0, 0), 1E-7);
+        assertEquals(20D, sequence.getOrdinate(0, 1), 1E-7);
+        for (int n = 1; n < numNodes; n++) {
+            assertEquals(n % 180, sequence.getOrdinate(n, 0), 1E-7);
+            assertEquals(n % 90, sequence.getOrdinate(n, 1), 1E-7);
+        }
+    }
+}
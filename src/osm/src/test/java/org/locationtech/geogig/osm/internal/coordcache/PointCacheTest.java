@@ -36,7 +36,7 @@ import com.vividsolutions.jts.geom.CoordinateSequence;
 
 public abstract class PointCacheTest extends Assert {
 
-    private PointCache cache;
+    protected PointCache cache;
 
     @Rule
     public ExpectedException thrown = ExpectedException.none();
@@ -253,7 +253,7 @@ public abstract class PointCacheTest extends Assert {
         return sizeContainer.get();
     }
 
-    private OSMCoordinateSequence coord(double x, double y) {
+    protected OSMCoordinateSequence coord(double x, double y) {
         return new OSMCoordinateSequence(new Coordinate[] { new Coordinate(x, y) });
     }
 }
@@ -0,0 +1,196 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.history;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.PeekingIterator;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class ChangeSorterTest extends Assert {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File tempDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDirectory = tempFolder.newFolder("sort");
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        ChangeSorter sorter = new ChangeSorter(tempDirectory, 1000);
+        addAll(sorter, 500);
+        assertEquals(0, tempDirectory.list().length);
+        assertSorted(sorter.sorted(), 500);
+    }
+
+    @Test
+    public void testSpillAndMerge() throws Exception {
+        // more than MAX_RUNS runs of 10 entries
+        ChangeSorter sorter = new ChangeSorter(tempDirectory, 10);
+        addAll(sorter, 10 * (ChangeSorter.MAX_RUNS + 10));
+        assertTrue(tempDirectory.list().length <= ChangeSorter.MAX_RUNS);
+        assertSorted(sorter.sorted(), 10 * (ChangeSorter.MAX_RUNS + 10));
+        assertEquals(0, tempDirectory.list().length);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        ChangeSorter sorter = new ChangeSorter(tempDirectory, 10);
+        addAll(sorter, 100);
+        assertTrue(tempDirectory.list().length > 0);
+        sorter.close();
+        assertEquals(0, tempDirectory.list().length);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Changeset changeset = new Changeset();
+        changeset.setId(5);
+        changeset.setUserName("bob");
+        changeset.setUserId(2);
+        changeset.setCreated(1000);
+        changeset.setClosed(2000);
+        changeset.setWgs84Bounds(new Envelope(1, 2, 3, 4));
+        changeset.setComment("fixed a street");
+        changeset.getTags().put("source", "survey");
+
+        Node node = new Node();
+        setCommon(node, 1, 5, 1500);
+        node.setLocation(new GeometryFactory().createPoint(new Coordinate(1.5, 3.5)));
+        Node deleted = new Node();
+        setCommon(deleted, 2, 5, 1400);
+        deleted.setVisible(false);
+        deleted.setUserName(null);
+        Way way = new Way();
+        setCommon(way, 1, 5, 1600);
+        way.addNode(1);
+        way.addNode(2);
+        Relation relation = new Relation();
+        setCommon(relation, 1, 5, 1700);
+        relation.addMember(new Relation.Member("way", 1, "outer"));
+        relation.addMember(new Relation.Member("node", 2, null));
+
+        ChangeSorter sorter = new ChangeSorter(tempDirectory, 1);
+        sorter.add(relation);
+        sorter.add(way);
+        sorter.add(node);
+        sorter.add(deleted);
+        sorter.add(changeset);
+        PeekingIterator<ChangeSorter.Entry> sorted = sorter.sorted();
+
+        Changeset readChangeset = sorted.next().getChangeset();
+        assertEquals(5, readChangeset.getId());
+        assertEquals("bob", readChangeset.getUserName());
+        assertEquals(2, readChangeset.getUserId());
+        assertEquals(1000, readChangeset.getCreated());
+        assertEquals(2000, readChangeset.getClosed().get().longValue());
+        assertFalse(readChangeset.isOpen());
+        assertEquals(new Envelope(1, 2, 3, 4), readChangeset.getWgs84Bounds().get());
+        assertEquals("fixed a street", readChangeset.getComment().get());
+        assertEquals("survey", readChangeset.getTags().get("source"));
+
+        Node readDeleted = (Node) sorted.next().getPrimitive();
+        assertEquals(2, readDeleted.getId());
+        assertFalse(readDeleted.isVisible());
+        assertNull(readDeleted.getUserName());
+        assertFalse(readDeleted.getLocation().isPresent());
+
+        Node readNode = (Node) sorted.next().getPrimitive();
+        assertEquals(1, readNode.getId());
+        assertEquals(5, readNode.getChangesetId());
+        assertEquals(1500, readNode.getTimestamp());
+        assertEquals(3, readNode.getVersion());
+        assertEquals("alice", readNode.getUserName());
+        assertEquals(1, readNode.getUserId());
+        assertTrue(readNode.isVisible());
+        assertEquals("bench", readNode.getTags().get("amenity"));
+        assertEquals(new Coordinate(1.5, 3.5), readNode.getLocation().get().getCoordinate());
+
+        Way readWay = (Way) sorted.next().getPrimitive();
+        assertEquals(ImmutableList.of(1L, 2L), readWay.getNodes());
+
+        Relation readRelation = (Relation) sorted.next().getPrimitive();
+        assertEquals(2, readRelation.getMembers().size());
+        Relation.Member outer = readRelation.getMembers().get(0);
+        assertEquals("way", outer.getType());
+        assertEquals(1, outer.getRef());
+        assertEquals("outer", outer.getRole().get());
+        assertFalse(readRelation.getMembers().get(1).getRole().isPresent());
+
+        assertFalse(sorted.hasNext());
+    }
+
+    /**
+     * Adds nodes in random changesets and timestamps, the node id being the order they're added
+     * in, and the metadata of some of the changesets
+     */
+    private void addAll(ChangeSorter sorter, int count) throws Exception {
+        Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            Node node = new Node();
+            setCommon(node, i, 1 + random.nextInt(count / 10), random.nextInt(5));
+            sorter.add(node);
+            if (i % 100 == 0) {
+                Changeset changeset = new Changeset();
+                changeset.setId(1 + random.nextInt(count / 10));
+                sorter.add(changeset);
+            }
+        }
+    }
+
+    private void assertSorted(PeekingIterator<ChangeSorter.Entry> sorted, int count) {
+        int nodes = 0;
+        ChangeSorter.Entry previous = null;
+        while (sorted.hasNext()) {
+            ChangeSorter.Entry entry = sorted.next();
+            if (entry.getChangeset() == null) {
+                nodes++;
+            }
+            if (previous != null) {
+                assertTrue(previous.getChangesetId() <= entry.getChangesetId());
+                if (previous.getChangesetId() == entry.getChangesetId()) {
+                    // metadata first, then by timestamp and the order they were added in
+                    if (previous.getPrimitive() != null) {
+                        assertNull(entry.getChangeset());
+                        Primitive p1 = previous.getPrimitive();
+                        Primitive p2 = entry.getPrimitive();
+                        assertTrue(p1.getTimestamp() < p2.getTimestamp()
+                                || (p1.getTimestamp() == p2.getTimestamp() && p1.getId() < p2
+                                        .getId()));
+                    }
+                }
+            }
+            previous = entry;
+        }
+        assertEquals(count, nodes);
+    }
+
+    private static void setCommon(Primitive primitive, long id, long changeset, long timestamp) {
+        primitive.setId(id);
+        primitive.setChangesetId(changeset);
+        primitive.setTimestamp(timestamp);
+        primitive.setVersion(3);
+        primitive.setVisible(true);
+        primitive.setUserName("alice");
+        primitive.setUserId(1);
+        primitive.getTags().put("amenity", "bench");
+    }
+}
@@ -0,0 +1,168 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.osm.internal.history;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class LocalHistoryReaderTest extends Assert {
+
+    private static final String HISTORY = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version='0.6'>\n"
+            + " <changeset id='2' user='bob' uid='2' created_at='2010-01-02T00:00:00Z'"
+            + " closed_at='2010-01-02T01:00:00Z' open='false'>\n"
+            + "  <tag k='comment' v='moved a node'/>\n"
+            + " </changeset>\n"
+            + " <node id='1' version='1' timestamp='2010-01-01T00:00:00Z' uid='1' user='alice'"
+            + " changeset='1' visible='true' lat='1.0' lon='2.0'/>\n"
+            + " <node id='1' version='2' timestamp='2010-01-02T00:30:00Z' uid='2' user='bob'"
+            + " changeset='2' visible='true' lat='1.5' lon='2.5'/>\n"
+            + " <node id='2' version='1' timestamp='2010-01-01T00:00:01Z' uid='1' user='alice'"
+            + " changeset='1' lat='3.0' lon='4.0'>\n"
+            + "  <tag k='amenity' v='bench'/>\n"
+            + " </node>\n"
+            + " <way id='1' version='1' timestamp='2010-01-01T00:00:02Z' uid='1' user='alice'"
+            + " changeset='1' visible='true'>\n"
+            + "  <nd ref='1'/>\n"
+            + "  <nd ref='2'/>\n"
+            + " </way>\n"
+            + " <way id='1' version='2' timestamp='2010-01-03T00:00:00Z' uid='1' user='alice'"
+            + " changeset='3' visible='false'/>\n"
+            + "</osm>\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File historyFile;
+
+    @Before
+    public void setUp() throws Exception {
+        historyFile = tempFolder.newFile("history.osm");
+        Files.write(HISTORY, historyFile, Charsets.UTF_8);
+    }
+
+    @Test
+    public void testReadDirectory() throws Exception {
+        File directory = new File(getClass().getResource("01_10/changeset").toURI());
+        LocalHistoryReader reader = new LocalHistoryReader(directory, 1, 10);
+        List<Changeset> changesets = Lists.newArrayList(reader.fetchChangesets());
+        assertEquals(10, changesets.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, changesets.get(i).getId());
+        }
+
+        Changeset first = changesets.get(0);
+        assertEquals("guggis", first.getUserName());
+        assertFalse(first.isOpen());
+        assertTrue(first.getWgs84Bounds().isPresent());
+        List<Change> changes = Lists.newArrayList(first.getChanges().get().get());
+        assertEquals(3, changes.size());// see 01_10/changeset/1/download.xml
+        assertTrue(changes.get(0).getNode().isPresent());
+        assertTrue(changes.get(1).getNode().isPresent());
+        assertTrue(changes.get(2).getWay().isPresent());
+
+        // 01_10/changeset/10/download.xml is empty
+        assertFalse(changesets.get(9).getChanges().get().get().hasNext());
+    }
+
+    @Test
+    public void testChangesetRange() throws Exception {
+        File directory = new File(getClass().getResource("01_10/changeset").toURI());
+        LocalHistoryReader reader = new LocalHistoryReader(directory, 3, 5);
+        List<Changeset> changesets = Lists.newArrayList(reader.fetchChangesets());
+        assertEquals(3, changesets.size());
+        assertEquals(3, changesets.get(0).getId());
+        assertEquals(5, changesets.get(2).getId());
+
+        reader = new LocalHistoryReader(historyFile, 2, Long.MAX_VALUE);
+        changesets = Lists.newArrayList(reader.fetchChangesets());
+        assertEquals(2, changesets.size());
+        assertEquals(2, changesets.get(0).getId());
+    }
+
+    @Test
+    public void testReadHistoryFile() throws Exception {
+        LocalHistoryReader reader = new LocalHistoryReader(historyFile, 1, Long.MAX_VALUE);
+        assertHistory(Lists.newArrayList(reader.fetchChangesets()));
+    }
+
+    @Test
+    public void testSortHistoryFileOnDisk() throws Exception {
+        File tempDirectory = tempFolder.newFolder("sort");
+        LocalHistoryReader reader = new LocalHistoryReader(historyFile, 1, Long.MAX_VALUE);
+        reader.setTempDirectory(tempDirectory);
+        reader.setMaxBufferedChanges(1);
+        Iterator<Changeset> changesets = reader.fetchChangesets();
+        assertTrue(tempDirectory.list().length > 1);
+        assertHistory(Lists.newArrayList(changesets));
+        // the runs are deleted once read
+        assertEquals(0, tempDirectory.list().length);
+    }
+
+    private void assertHistory(List<Changeset> changesets) {
+        assertEquals(3, changesets.size());
+
+        Changeset first = changesets.get(0);
+        assertEquals(1, first.getId());
+        assertEquals("alice", first.getUserName());
+        assertFalse(first.getComment().isPresent());
+        assertEquals(ParsingUtils.parseDateTime("2010-01-01T00:00:00Z"), first.getCreated());
+        assertEquals(ParsingUtils.parseDateTime("2010-01-01T00:00:02Z"), first.getClosed()
+                .get().longValue());
+        List<Change> changes = Lists.newArrayList(first.getChanges().get().get());
+        assertEquals(3, changes.size());
+        for (Change change : changes) {
+            assertEquals(Change.Type.create, change.getType());
+        }
+        // in timestamp order, the node without a visible attribute is not a delete
+        assertEquals(1, changes.get(0).getNode().get().getId());
+        assertEquals(2, changes.get(1).getNode().get().getId());
+        assertEquals("bench", changes.get(1).getNode().get().getTags().get("amenity"));
+        assertEquals(1, changes.get(2).getWay().get().getId());
+
+        Changeset second = changesets.get(1);
+        assertEquals("moved a node", second.getComment().get());
+        assertEquals("bob", second.getUserName());
+        changes = Lists.newArrayList(second.getChanges().get().get());
+        assertEquals(1, changes.size());
+        assertEquals(Change.Type.modify, changes.get(0).getType());
+        assertEquals(2.5, changes.get(0).getNode().get().getLocation().get().getX(), 1E-9);
+
+        changes = Lists.newArrayList(changesets.get(2).getChanges().get().get());
+        assertEquals(1, changes.size());
+        assertEquals(Change.Type.delete, changes.get(0).getType());
+        assertTrue(changes.get(0).getWay().isPresent());
+    }
+
+    @Test
+    public void testChangesetFilter() throws Exception {
+        LocalHistoryReader reader = new LocalHistoryReader(historyFile, 1, Long.MAX_VALUE);
+        reader.setChangesetFilter(new Predicate<Changeset>() {
+            @Override
+            public boolean apply(Changeset changeset) {
+                return changeset.getId() != 2;
+            }
+        });
+        List<Changeset> changesets = Lists.newArrayList(reader.fetchChangesets());
+        assertEquals(3, changesets.size());
+        assertTrue(changesets.get(0).getChanges().get().isPresent());
+        assertFalse(changesets.get(1).getChanges().get().isPresent());
+        assertTrue(changesets.get(2).getChanges().get().isPresent());
+    }
+}
@@ -24,7 +24,9 @@ import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.GraphAncestors;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.LowestCommonAncestor;
 import org.locationtech.geogig.storage.SynchronizedGraphDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -428,6 +430,16 @@ abstract class JEGraphDatabase extends SynchronizedGraphDatabase {
             return depth;
         }
 
+        @Override
+        public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+            return LowestCommonAncestor.find(this, leftId, rightId);
+        }
+
+        @Override
+        public List<ObjectId> getAncestors(ObjectId commitId, int limit) {
+            return GraphAncestors.breadthFirst(this, commitId, limit);
+        }
+
         @Override
         public void setProperty(ObjectId commitId, String propertyName, String propertyValue) {
             NodeData node = getNodeInternal(commitId, true);
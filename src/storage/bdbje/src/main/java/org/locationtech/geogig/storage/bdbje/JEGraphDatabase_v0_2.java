@@ -42,7 +42,15 @@ public class JEGraphDatabase_v0_2 extends JEGraphDatabase {
     @Inject
     public JEGraphDatabase_v0_2(final ConfigDatabase config, final EnvironmentBuilder envProvider,
             final Hints hints) {
-        super(config, envProvider, BINDING_V2, "0.2", hints);
+        this(config, envProvider, "0.2", hints);
+    }
+
+    /**
+     * For later storage versions that keep the graph format of this one
+     */
+    protected JEGraphDatabase_v0_2(final ConfigDatabase config,
+            final EnvironmentBuilder envProvider, final String formatVersion, final Hints hints) {
+        super(config, envProvider, BINDING_V2, formatVersion, hints);
     }
 
     private static class GraphNodeBinding extends TupleBinding<NodeData> {
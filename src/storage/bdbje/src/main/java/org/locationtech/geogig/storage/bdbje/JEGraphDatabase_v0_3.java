@@ -0,0 +1,25 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.storage.bdbje;
+
+import org.locationtech.geogig.repository.Hints;
+import org.locationtech.geogig.storage.ConfigDatabase;
+
+import com.google.inject.Inject;
+
+/**
+ * Graph database of the 0.3 storage version, which only changed the serialization of the revision
+ * objects and stores the graph as {@link JEGraphDatabase_v0_2} does
+ */
+public class JEGraphDatabase_v0_3 extends JEGraphDatabase_v0_2 {
+
+    @Inject
+    public JEGraphDatabase_v0_3(final ConfigDatabase config, final EnvironmentBuilder envProvider,
+            final Hints hints) {
+        super(config, envProvider, "0.3", hints);
+    }
+}
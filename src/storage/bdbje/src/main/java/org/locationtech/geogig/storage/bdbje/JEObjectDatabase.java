@@ -43,6 +43,7 @@ import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.fs.FileBlobStore;
 import org.locationtech.geogig.storage.fs.FileConflictsDatabase;
 import org.slf4j.Logger;
@@ -390,6 +391,30 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             return;
         }
 
+        bulkInsert(objects, listener);
+    }
+
+    /**
+     * Overrides to save the raw objects through the same bulk insert as
+     * {@link #putAll(Iterator, BulkOpListener)}, objects in this database's format are only
+     * compressed and not parsed.
+     */
+    @Override
+    public void putRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkWritable();
+
+        if (!objects.hasNext()) {
+            return;
+        }
+        bulkInsert(objects, listener);
+    }
+
+    /**
+     * @param objects an iterator of either {@link RevObject}s or {@link RawObject}s
+     */
+    private void bulkInsert(final Iterator<?> objects, final BulkOpListener listener) {
         final int buffSize = 256 * 1024;
         BulkInsert task = new BulkInsert(objects, listener, buffSize);
 
@@ -406,9 +431,9 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
         private int buffSize;
 
-        private Iterator<? extends RevObject> objects;
+        private Iterator<?> objects;
 
-        public BulkInsert(final Iterator<? extends RevObject> objects,
+        public BulkInsert(final Iterator<?> objects,
                 final BulkOpListener listener, final int buffSize) {
             this.objects = objects;
             this.listener = listener;
@@ -491,11 +516,20 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             if (!objects.hasNext()) {
                 return false;
             }
-            RevObject o = objects.next();
+            final Object next = objects.next();
+            final ObjectId id;
             int offset = out.size();
-            writeObject(o, out);
+            if (next instanceof RawObject) {
+                RawObject raw = (RawObject) next;
+                id = raw.getId();
+                writeRaw(raw, out);
+            } else {
+                RevObject o = (RevObject) next;
+                id = o.getId();
+                writeObject(o, out);
+            }
             int size = out.size() - offset;
-            offsets.put(o.getId(), new int[] { offset, size });
+            offsets.put(id, new int[] { offset, size });
 
             return true;
         }
@@ -26,7 +26,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 import javax.sql.DataSource;
 
@@ -36,13 +35,17 @@ import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.GraphDepth;
+import org.locationtech.geogig.storage.LowestCommonAncestor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ListMultimap;
 import com.google.inject.Inject;
 
 /**
@@ -159,31 +162,136 @@ public class PGGraphDatabase implements GraphDatabase {
         return mapped == null ? null : mapped.toObjectId();
     }
 
+    /**
+     * Fetches the edges of all the commit's ancestors with a single recursive query, and computes
+     * the shortest distance to one that has no parents out of them with {@link GraphDepth}.
+     * <p>
+     * The ancestors are deduplicated on the {@code OBJECTID} fields rather than on the composite
+     * type itself, which PostgreSQL can't hash in recursive queries before version 14.
+     */
     @Override
     public int getDepth(ObjectId commitId) {
-        int depth = 0;
-
-        Queue<PGId> q = Lists.newLinkedList();
-        Iterables.addAll(q, outgoing(PGId.valueOf(commitId), dataSource));
-
-        List<PGId> next = Lists.newArrayList();
-        while (!q.isEmpty()) {
-            depth++;
-            while (!q.isEmpty()) {
-                PGId n = q.poll();
-                List<PGId> parents = Lists.newArrayList(outgoing(n, dataSource));
-                if (parents.size() == 0) {
-                    return depth;
+        final PGId node = PGId.valueOf(commitId);
+        ListMultimap<ObjectId, ObjectId> parents = new DbOp<ListMultimap<ObjectId, ObjectId>>() {
+            @Override
+            protected ListMultimap<ObjectId, ObjectId> doRun(Connection cx) throws IOException,
+                    SQLException {
+                String sql = format("WITH RECURSIVE ancestors(h1, h2, h3) AS ("
+                        + "SELECT CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT) UNION "
+                        + "SELECT ((e.dst).h1), ((e.dst).h2), ((e.dst).h3) FROM ancestors a "
+                        + "JOIN %s e ON e.src = CAST(ROW(a.h1, a.h2, a.h3) AS OBJECTID)) "
+                        + "SELECT a.h1, a.h2, a.h3, ((e.dst).h1), ((e.dst).h2), ((e.dst).h3) "
+                        + "FROM ancestors a "
+                        + "JOIN %s e ON e.src = CAST(ROW(a.h1, a.h2, a.h3) AS OBJECTID)", EDGES,
+                        EDGES);
+
+                ListMultimap<ObjectId, ObjectId> parents = ArrayListMultimap.create();
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node))) {
+                    node.setArgs(ps, 1);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            parents.put(PGId.valueOf(rs, 1).toObjectId(),
+                                    PGId.valueOf(rs, 4).toObjectId());
+                        }
+                    }
+                }
+                return parents;
+            }
+        }.run(dataSource);
+        return GraphDepth.of(commitId, parents);
+    }
+
+    /**
+     * Walks the ancestry with a single recursive query; PostgreSQL evaluates the recursive term one
+     * level at a time and only as far as the outer {@code LIMIT} requires, so the closest
+     * ancestors come first.
+     */
+    @Override
+    public List<ObjectId> getAncestors(final ObjectId commitId, final int limit) {
+        final PGId node = PGId.valueOf(commitId);
+        return new DbOp<List<ObjectId>>() {
+            @Override
+            protected List<ObjectId> doRun(Connection cx) throws IOException, SQLException {
+                String sql = format("WITH RECURSIVE ancestors(h1, h2, h3) AS ("
+                        + "SELECT CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT) UNION "
+                        + "SELECT ((e.dst).h1), ((e.dst).h2), ((e.dst).h3) FROM ancestors a "
+                        + "JOIN %s e ON e.src = CAST(ROW(a.h1, a.h2, a.h3) AS OBJECTID)) "
+                        + "SELECT h1, h2, h3 FROM ancestors LIMIT ?", EDGES);
+
+                List<ObjectId> ancestors = new ArrayList<>();
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node, limit))) {
+                    node.setArgs(ps, 1);
+                    // one more row for the commit itself
+                    ps.setInt(4, limit + 1);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ObjectId id = PGId.valueOf(rs, 1).toObjectId();
+                            if (!commitId.equals(id)) {
+                                ancestors.add(id);
+                            }
+                        }
+                    }
                 }
+                return ancestors;
+            }
+        }.run(dataSource);
+    }
+
+    /**
+     * Computes the set of lowest common ancestors with a single recursive query, falling back to
+     * {@link LowestCommonAncestor} to pick one only if there are more than one (e.g. criss-cross
+     * merges).
+     */
+    @Override
+    public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+        final PGId left = PGId.valueOf(leftId);
+        final PGId right = PGId.valueOf(rightId);
+        List<PGId> ancestors = new DbOp<List<PGId>>() {
+            @Override
+            protected List<PGId> doRun(Connection cx) throws IOException, SQLException {
+                // recursive terms dedupe on the OBJECTID fields, the composite type isn't
+                // hashable in recursive queries before PostgreSQL 14
+                final String id = "CAST(ROW(%1$s.h1, %1$s.h2, %1$s.h3) AS OBJECTID)";
+                final String dst = "((e.dst).h1), ((e.dst).h2), ((e.dst).h3)";
+                String sql = format("WITH RECURSIVE "
+                        + "l(h1, h2, h3) AS ("
+                        + "SELECT CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT) UNION "
+                        + "SELECT " + dst + " FROM %1$s e JOIN l ON e.src = " + format(id, "l")
+                        + "), "
+                        + "r(h1, h2, h3) AS ("
+                        + "SELECT CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT) UNION "
+                        + "SELECT " + dst + " FROM %1$s e JOIN r ON e.src = " + format(id, "r")
+                        + "), "
+                        + "common(h1, h2, h3) AS (SELECT * FROM l INTERSECT SELECT * FROM r), "
+                        + "older(h1, h2, h3) AS ("
+                        + "SELECT " + dst + " FROM %1$s e JOIN common c ON e.src = "
+                        + format(id, "c") + " UNION "
+                        + "SELECT " + dst + " FROM %1$s e JOIN older o ON e.src = "
+                        + format(id, "o") + ") "
+                        + "SELECT h1, h2, h3 FROM common EXCEPT SELECT h1, h2, h3 FROM older",
+                        EDGES);
 
-                Iterables.addAll(next, parents);
+                List<PGId> ancestors = new ArrayList<>(1);
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, left, right))) {
+                    left.setArgs(ps, 1);
+                    right.setArgs(ps, 4);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ancestors.add(PGId.valueOf(rs, 1));
+                        }
+                    }
+                }
+                return ancestors;
             }
+        }.run(dataSource);
 
-            q.addAll(next);
-            next.clear();
+        if (ancestors.isEmpty()) {
+            return Optional.absent();
         }
-
-        return depth;
+        if (ancestors.size() == 1) {
+            return Optional.of(ancestors.get(0).toObjectId());
+        }
+        return LowestCommonAncestor.find(this, leftId, rightId);
     }
 
     @Override
@@ -68,8 +68,10 @@ import org.locationtech.geogig.storage.ConflictsDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2_1;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,6 +84,7 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.ning.compress.lzf.LZFInputStream;
@@ -126,7 +129,8 @@ public class PGObjectDatabase implements ObjectDatabase {
      */
     private static final ObjectSerializingFactory[] SUPPORTED_FORMATS = { //
             DataStreamSerializationFactoryV1.INSTANCE, //
-            DataStreamSerializationFactoryV2.INSTANCE //
+            DataStreamSerializationFactoryV2.INSTANCE, //
+            DataStreamSerializationFactoryV2_1.INSTANCE //
     };
 
     @Inject
@@ -531,6 +535,35 @@ public class PGObjectDatabase implements ObjectDatabase {
         }
     }
 
+    /**
+     * Queries the objects in batches of {@code getAllBatchSize} ids, like
+     * {@link #getAll(Iterable, BulkOpListener, Class)} does, but without parsing them.
+     */
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        checkNotNull(ids, "ids is null");
+        checkNotNull(listener, "listener is null");
+        checkState(isOpen(), "Database is closed");
+        config.checkRepositoryExists();
+
+        final Iterator<List<ObjectId>> partitions = Iterators.partition(ids.iterator(),
+                getAllBatchSize);
+
+        return Iterators.concat(Iterators.transform(partitions,
+                new Function<List<ObjectId>, Iterator<RawObject>>() {
+                    @Override
+                    public Iterator<RawObject> apply(List<ObjectId> partition) {
+                        List<ObjectId> queryIds = new ArrayList<>(partition);
+                        GetRawOp op = new GetRawOp(queryIds, listener, PGObjectDatabase.this);
+                        try {
+                            return op.call().iterator();
+                        } catch (Exception e) {
+                            throw Throwables.propagate(e);
+                        }
+                    }
+                }));
+    }
+
     @Override
     public boolean put(final RevObject object) {
         checkNotNull(object, "argument object is null");
@@ -610,6 +643,43 @@ public class PGObjectDatabase implements ObjectDatabase {
         return writeObject(object, serializer);
     }
 
+    /**
+     * Reads the serialized object out of its binary representation as stored in the database,
+     * without parsing it.
+     */
+    protected RawObject readRaw(InputStream bytes, ObjectId id) {
+        try {
+            final int serialVersionHeader = bytes.read();
+            assert serialVersionHeader >= 0 && serialVersionHeader < SUPPORTED_FORMATS.length;
+            final ObjectSerializingFactory serializer = SUPPORTED_FORMATS[serialVersionHeader];
+            return new RawObject(id, ByteStreams.toByteArray(bytes), serializer);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading object " + id, e);
+        }
+    }
+
+    /**
+     * Writes the serialized object to its binary representation as stored in the database, as is
+     * if it's in one of the supported formats, or re-encoded with {@code serializer} otherwise.
+     */
+    private static final byte[] writeRaw(RawObject object, ObjectSerializingFactory serializer) {
+        for (int header = SUPPORTED_FORMATS.length - 1; header >= 0; header--) {
+            if (object.isFormat(SUPPORTED_FORMATS[header])) {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                LZFOutputStream cout = new LZFOutputStream(bout);
+                try {
+                    cout.write(header);
+                    cout.write(object.getData());
+                    cout.close();
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+                return bout.toByteArray();
+            }
+        }
+        return writeObject(object.read(), serializer);
+    }
+
     private static final byte[] writeObject(RevObject object, ObjectSerializingFactory serializer) {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         LZFOutputStream cout = new LZFOutputStream(bout);
@@ -720,19 +790,44 @@ public class PGObjectDatabase implements ObjectDatabase {
         return future;
     }
 
-    private static class GetAllOp extends DbOp<List<RevObject>>
-            implements Callable<List<RevObject>> {
+    private static class GetAllOp extends AbstractGetAllOp<RevObject> {
+
+        public GetAllOp(List<ObjectId> ids, BulkOpListener listener, PGObjectDatabase db,
+                @Nullable TYPE type) {
+            super(ids, listener, db, type);
+        }
+
+        @Override
+        protected RevObject decode(ObjectId id, byte[] bytes) throws IOException {
+            return db.readObject(new LZFInputStream(new ByteArrayInputStream(bytes)), id);
+        }
+    }
+
+    private static class GetRawOp extends AbstractGetAllOp<RawObject> {
+
+        public GetRawOp(List<ObjectId> ids, BulkOpListener listener, PGObjectDatabase db) {
+            super(ids, listener, db, null);
+        }
+
+        @Override
+        protected RawObject decode(ObjectId id, byte[] bytes) throws IOException {
+            return db.readRaw(new LZFInputStream(new ByteArrayInputStream(bytes)), id);
+        }
+    }
+
+    private static abstract class AbstractGetAllOp<T> extends DbOp<List<T>>
+            implements Callable<List<T>> {
 
         private final List<ObjectId> queryIds;
 
         private final BulkOpListener callback;
 
-        private final PGObjectDatabase db;
+        protected final PGObjectDatabase db;
 
         @Nullable
         private final TYPE type;
 
-        public GetAllOp(List<ObjectId> ids, BulkOpListener listener, PGObjectDatabase db,
+        public AbstractGetAllOp(List<ObjectId> ids, BulkOpListener listener, PGObjectDatabase db,
                 @Nullable TYPE type) {
             this.queryIds = ids;
             this.callback = listener;
@@ -740,8 +835,10 @@ public class PGObjectDatabase implements ObjectDatabase {
             this.type = type;
         }
 
+        protected abstract T decode(ObjectId id, byte[] bytes) throws IOException;
+
         @Override
-        protected List<RevObject> doRun(Connection cx) throws IOException, SQLException {
+        protected List<T> doRun(Connection cx) throws IOException, SQLException {
 
             final TableNames tables = db.config.getTables();
             final String tableName;
@@ -773,7 +870,7 @@ public class PGObjectDatabase implements ObjectDatabase {
                     tableName);
 
             final int queryCount = queryIds.size();
-            List<RevObject> found = new ArrayList<>(queryCount);
+            List<T> found = new ArrayList<>(queryCount);
 
             try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, queryIds))) {
 
@@ -788,18 +885,16 @@ public class PGObjectDatabase implements ObjectDatabase {
                                 queryCount, sw.elapsed(TimeUnit.MILLISECONDS)));
                     }
                     try {
-                        InputStream in;
                         ObjectId id;
                         byte[] bytes;
-                        RevObject obj;
+                        T obj;
                         while (rs.next()) {
                             id = PGId.valueOf(rs, 1).toObjectId();
                             // only add those that are in the query set. The resultset may contain
                             // more due to hash1 clashes
                             if (queryIds.remove(id)) {
                                 bytes = rs.getBytes(4);
-                                in = new LZFInputStream(new ByteArrayInputStream(bytes));
-                                obj = db.readObject(in, id);
+                                obj = decode(id, bytes);
                                 found.add(obj);
                                 callback.found(id, Integer.valueOf(bytes.length));
                             }
@@ -834,11 +929,11 @@ public class PGObjectDatabase implements ObjectDatabase {
         }
 
         @Override
-        public List<RevObject> call() throws Exception {
+        public List<T> call() throws Exception {
 
             db.getAllCount.incrementAndGet();
             Stopwatch sw = Stopwatch.createStarted();
-            List<RevObject> found = run(db.dataSource);
+            List<T> found = run(db.dataSource);
             db.getAllTimeNanos.addAndGet(sw.stop().elapsed(TimeUnit.NANOSECONDS));
             db.getAllObjectCount.addAndGet(found.size());
             return found;
@@ -1032,6 +1127,21 @@ public class PGObjectDatabase implements ObjectDatabase {
         }
     };
 
+    private static class RawEncoder implements Function<RawObject, EncodedObject> {
+
+        private final ObjectSerializingFactory serializer;
+
+        RawEncoder(ObjectSerializingFactory serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public EncodedObject apply(RawObject obj) {
+            byte[] bytes = writeRaw(obj, serializer);
+            return new EncodedObject(obj.getId(), obj.getType(), bytes);
+        }
+    }
+
     /**
      * Override to optimize batch insert.
      */
@@ -1042,11 +1152,28 @@ public class PGObjectDatabase implements ObjectDatabase {
         checkWritable();
         config.checkRepositoryExists();
 
+        insert(Iterators.transform(objects, new Encoder(serializer)), listener);
+    }
+
+    /**
+     * Uses the same batch insert as {@link #putAll(Iterator, BulkOpListener)}.
+     */
+    @Override
+    public void putRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkWritable();
+        config.checkRepositoryExists();
+
+        insert(Iterators.transform(objects, new RawEncoder(serializer)), listener);
+    }
+
+    private void insert(final Iterator<EncodedObject> objects, final BulkOpListener listener) {
         final int maxTasks = Math.max(1,
                 Math.min(Runtime.getRuntime().availableProcessors(), this.threadPoolSize) / 2);
 
-        final Iterator<List<EncodedObject>> encoded = Iterators
-                .partition(Iterators.transform(objects, new Encoder(serializer)), putAllBatchSize);
+        final Iterator<List<EncodedObject>> encoded = Iterators.partition(objects,
+                putAllBatchSize);
 
         final BlockingQueue<List<EncodedObject>> queue = new ArrayBlockingQueue<>(2 + maxTasks);
 
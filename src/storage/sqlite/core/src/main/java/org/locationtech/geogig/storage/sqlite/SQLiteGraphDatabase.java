@@ -13,20 +13,21 @@ import static org.locationtech.geogig.storage.sqlite.SQLiteStorage.FORMAT_NAME;
 import static org.locationtech.geogig.storage.sqlite.SQLiteStorage.VERSION;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.LowestCommonAncestor;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 
 /**
  * Base class for SQLite based graph database.
@@ -121,29 +122,29 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
 
     @Override
     public int getDepth(ObjectId commitId) {
-        int depth = 0;
-
-        Queue<String> q = Lists.newLinkedList();
-        Iterables.addAll(q, outgoing(commitId.toString(), cx));
-
-        List<String> next = Lists.newArrayList();
-        while (!q.isEmpty()) {
-            depth++;
-            while (!q.isEmpty()) {
-                String n = q.poll();
-                List<String> parents = Lists.newArrayList(outgoing(n, cx));
-                if (parents.size() == 0) {
-                    return depth;
-                }
-
-                Iterables.addAll(next, parents);
-            }
+        return depth(commitId.toString(), cx);
+    }
 
-            q.addAll(next);
-            next.clear();
+    @Override
+    public List<ObjectId> getAncestors(ObjectId commitId, int limit) {
+        List<ObjectId> ancestors = new ArrayList<ObjectId>();
+        for (String node : ancestors(commitId.toString(), limit, cx)) {
+            ancestors.add(ObjectId.valueOf(node));
         }
+        return ancestors;
+    }
 
-        return depth;
+    @Override
+    public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+        List<String> ancestors = lowestCommonAncestors(leftId.toString(), rightId.toString(), cx);
+        if (ancestors.isEmpty()) {
+            return Optional.absent();
+        }
+        if (ancestors.size() == 1) {
+            return Optional.of(ObjectId.valueOf(ancestors.get(0)));
+        }
+        // more than one merge base (criss-cross merge), let the generic algorithm pick one
+        return LowestCommonAncestor.find(this, leftId, rightId);
     }
 
     @Override
@@ -255,6 +256,28 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
      */
     protected abstract Iterable<String> incoming(String node, T cx);
 
+    /**
+     * Returns the length of the shortest path from the specified node to a node with no outgoing
+     * relationships, computed by the database in a single query.
+     */
+    protected abstract int depth(String node, T cx);
+
+    /**
+     * Returns up to {@code limit} nodes reachable from the specified node through outgoing
+     * relationships, closest first and excluding the node itself, computed by the database in a
+     * single query.
+     */
+    protected abstract List<String> ancestors(String node, int limit, T cx);
+
+    /**
+     * Returns the common ancestors of two nodes that are not themselves ancestors of another common
+     * ancestor, computed by the database in a single query.
+     * <p>
+     * A node is considered an ancestor of itself, so if {@code left} is an ancestor of
+     * {@code right} the result is {@code left}, and vice versa.
+     */
+    protected abstract List<String> lowestCommonAncestors(String left, String right, T cx);
+
     /**
      * Clears the contents of the graph.
      */
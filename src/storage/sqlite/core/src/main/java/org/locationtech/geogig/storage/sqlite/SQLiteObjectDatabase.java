@@ -37,6 +37,7 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
 import com.google.common.base.Function;
@@ -44,6 +45,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 /**
  * Base class for SQLite based object database.
@@ -220,6 +222,43 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
         }
     }
 
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return filter(transform(ids, new Function<ObjectId, RawObject>() {
+            @Override
+            public RawObject apply(ObjectId id) {
+                InputStream bytes = get(id.toString(), cx);
+                if (bytes == null) {
+                    listener.notFound(id);
+                    return null;
+                }
+                try {
+                    byte[] data = ByteStreams.toByteArray(bytes);
+                    listener.found(id, data.length);
+                    return new RawObject(id, data, serializer);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        }), Predicates.notNull()).iterator();
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RawObject obj = objects.next();
+            String id = obj.getId().toString();
+            try {
+                InputStream bytes = obj.isFormat(serializer) ? obj.getInput() : writeObject(obj
+                        .read());
+                put(id, bytes, cx);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to serialize object: " + obj);
+            }
+            listener.inserted(obj.getId(), null);
+        }
+    }
+
     @Override
     public boolean delete(ObjectId objectId) {
         return delete(objectId.toString(), cx);
@@ -26,9 +26,12 @@ import javax.sql.DataSource;
 
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.GraphDepth;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.inject.Inject;
 
 /**
@@ -295,6 +298,100 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         return matches;
     }
 
+    /**
+     * Fetches the edges of all the node's ancestors with a single recursive query, visiting each
+     * ancestor once, and computes the shortest distance to one that has no parents out of them
+     * with {@link GraphDepth}.
+     */
+    @Override
+    public int depth(final String node, DataSource ds) {
+        ListMultimap<String, String> parents = new DbOp<ListMultimap<String, String>>() {
+            @Override
+            protected ListMultimap<String, String> doRun(Connection cx) throws SQLException {
+                String sql = format("WITH RECURSIVE ancestors(id) AS ("
+                        + "SELECT ? UNION SELECT e.dst FROM ancestors a JOIN %s e ON e.src = a.id) "
+                        + "SELECT e.src, e.dst FROM ancestors a JOIN %s e ON e.src = a.id",
+                        EDGES, EDGES);
+
+                ListMultimap<String, String> parents = ArrayListMultimap.create();
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node))) {
+                    ps.setString(1, node);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            parents.put(rs.getString(1), rs.getString(2));
+                        }
+                    }
+                }
+                return parents;
+            }
+        }.run(ds);
+        return GraphDepth.of(node, parents);
+    }
+
+    /**
+     * Walks the ancestry with a single recursive query; SQLite visits the recursive rows in FIFO
+     * order, so the {@code LIMIT} keeps the closest ancestors.
+     */
+    @Override
+    public List<String> ancestors(final String node, final int limit, DataSource ds) {
+        return new DbOp<List<String>>() {
+            @Override
+            protected List<String> doRun(Connection cx) throws SQLException {
+                String sql = format("WITH RECURSIVE ancestors(id) AS ("
+                        + "SELECT ? UNION SELECT e.dst FROM ancestors a JOIN %s e ON e.src = a.id "
+                        + "LIMIT ?) SELECT id FROM ancestors", EDGES);
+
+                List<String> ancestors = new ArrayList<>();
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node, limit))) {
+                    ps.setString(1, node);
+                    // one more row for the node itself
+                    ps.setInt(2, limit + 1);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String id = rs.getString(1);
+                            if (!node.equals(id)) {
+                                ancestors.add(id);
+                            }
+                        }
+                    }
+                }
+                return ancestors;
+            }
+        }.run(ds);
+    }
+
+    @Override
+    public List<String> lowestCommonAncestors(final String left, final String right,
+            DataSource ds) {
+        return new DbOp<List<String>>() {
+            @Override
+            protected List<String> doRun(Connection cx) throws SQLException {
+                String sql = format("WITH RECURSIVE "
+                        + "l(id) AS (SELECT ? UNION "
+                        + "SELECT e.dst FROM %s e JOIN l ON e.src = l.id), "
+                        + "r(id) AS (SELECT ? UNION "
+                        + "SELECT e.dst FROM %s e JOIN r ON e.src = r.id), "
+                        + "common(id) AS (SELECT id FROM l INTERSECT SELECT id FROM r), "
+                        + "older(id) AS (SELECT e.dst FROM %s e JOIN common c ON e.src = c.id "
+                        + "UNION SELECT e.dst FROM %s e JOIN older o ON e.src = o.id) "
+                        + "SELECT id FROM common WHERE id NOT IN (SELECT id FROM older)", EDGES,
+                        EDGES, EDGES, EDGES);
+
+                List<String> ancestors = new ArrayList<>(1);
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, left, right))) {
+                    ps.setString(1, left);
+                    ps.setString(2, right);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ancestors.add(rs.getString(1));
+                        }
+                    }
+                }
+                return ancestors;
+            }
+        }.run(ds);
+    }
+
     @Override
     public void clear(DataSource ds) {
         new DbOp<Void>() {
@@ -22,6 +22,9 @@ public class Variants {
     public static final MediaType CSV_MEDIA_TYPE = new MediaType("text/csv",
             "Comma-separated Values");
 
+    public static final MediaType NDJSON_MEDIA_TYPE = new MediaType("application/x-ndjson",
+            "Newline delimited JSON");
+
     public static final MediaType GEOPKG_MEDIA_TYPE = new MediaType(
             "application/octet-stream;type=geopackage", "GeoPackage database file");
 
@@ -33,6 +36,8 @@ public class Variants {
 
     public static final Variant CSV = new Variant(CSV_MEDIA_TYPE);
 
+    public static final Variant NDJSON = new Variant(NDJSON_MEDIA_TYPE);
+
     public static final Variant GEOPKG = new Variant(GEOPKG_MEDIA_TYPE);
 
     public static Optional<Variant> getVariantByExtension(Request request, List<Variant> supported) {
@@ -44,6 +49,8 @@ public class Variants {
             v = JSON;
         } else if ("csv".equals(extension) && supported.contains(CSV)) {
             v = CSV;
+        } else if ("ndjson".equals(extension) && supported.contains(NDJSON)) {
+            v = NDJSON;
         } else if ("geopkg".equals(extension) && supported.contains(GEOPKG)) {
             v = GEOPKG;
         }
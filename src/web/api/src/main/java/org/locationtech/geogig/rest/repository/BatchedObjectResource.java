@@ -11,6 +11,10 @@ package org.locationtech.geogig.rest.repository;
 
 import static org.locationtech.geogig.rest.repository.RESTUtils.getGeogig;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -39,7 +43,10 @@ import org.restlet.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.google.common.io.CountingOutputStream;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -86,6 +93,7 @@ public class BatchedObjectResource extends Finder {
             LOGGER.info("Serving request to send objects based on message {}", messageJson);
             final List<ObjectId> want = new ArrayList<ObjectId>();
             final List<ObjectId> have = new ArrayList<ObjectId>();
+            List<ObjectId> deltaBase = null;
 
             if (messageJson.isJsonObject()) {
                 final JsonObject message = messageJson.getAsJsonObject();
@@ -111,21 +119,71 @@ public class BatchedObjectResource extends Finder {
                         have.add(ObjectId.valueOf(e.getAsJsonPrimitive().getAsString()));
                     }
                 }
+                // the client asks for delta encoded features by telling which commits it has
+                if (message.has("deltas") && message.get("deltas").isJsonArray()) {
+                    deltaBase = new ArrayList<ObjectId>();
+                    for (final JsonElement e : message.get("deltas").getAsJsonArray()) {
+                        if (e.isJsonPrimitive()) {
+                            deltaBase.add(ObjectId.valueOf(e.getAsJsonPrimitive().getAsString()));
+                        }
+                    }
+                }
             }
 
             Request request = getRequest();
             final GeoGIG ggit = getGeogig(request).get();
             final Repository repository = ggit.getRepository();
-            final Deduplicator deduplicator = ggit.command(CreateDeduplicator.class).call();
 
+            final Optional<PackCache> cache = PackCache.of(ggit);
+            final String key = PackCache.key(want, have, deltaBase);
+            if (cache.isPresent()) {
+                Optional<InputStream> cached = cache.get().open(key);
+                if (cached.isPresent()) {
+                    LOGGER.info("Serving cached pack {}", key);
+                    getResponse().setEntity(new CachedPackRepresentation(cached.get()));
+                    return;
+                }
+            }
+
+            final Deduplicator deduplicator = ggit.command(CreateDeduplicator.class).call();
             BinaryPackedObjects packer = new BinaryPackedObjects(repository.objectDatabase());
-            Representation rep = new RevObjectBinaryRepresentation(packer, want, have, deduplicator);
+            if (deltaBase != null) {
+                packer.setDeltaBase(deltaBase);
+            }
+            RevObjectBinaryRepresentation rep = new RevObjectBinaryRepresentation(packer, want,
+                    have, deduplicator);
+            if (cache.isPresent()) {
+                rep.setCache(cache.get(), key);
+            }
             Response response = getResponse();
             response.setEntity(rep);
         }
     }
 
-    private static class RevObjectBinaryRepresentation extends OutputRepresentation {
+    /**
+     * Streams a pack from the {@link PackCache}, closing it once written
+     */
+    private static class CachedPackRepresentation extends OutputRepresentation {
+
+        private final InputStream pack;
+
+        public CachedPackRepresentation(InputStream pack) {
+            super(MediaType.APPLICATION_OCTET_STREAM);
+            this.pack = pack;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            try {
+                ByteStreams.copy(pack, out);
+                out.flush();
+            } finally {
+                Closeables.closeQuietly(pack);
+            }
+        }
+    }
+
+    static class RevObjectBinaryRepresentation extends OutputRepresentation {
         private final BinaryPackedObjects packer;
 
         private final List<ObjectId> want;
@@ -134,6 +192,10 @@ public class BatchedObjectResource extends Finder {
 
         private Deduplicator deduplicator;
 
+        private PackCache cache;
+
+        private String cacheKey;
+
         public RevObjectBinaryRepresentation( //
                 BinaryPackedObjects packer, //
                 List<ObjectId> want, //
@@ -147,16 +209,41 @@ public class BatchedObjectResource extends Finder {
             this.deduplicator = deduplicator;
         }
 
+        /**
+         * Sets the cache to add the pack to, under {@code key}, once it's completely written
+         */
+        public void setCache(PackCache cache, String key) {
+            this.cache = cache;
+            this.cacheKey = key;
+        }
+
         @Override
         public void write(final OutputStream out) throws IOException {
             CountingOutputStream counting = new CountingOutputStream(out);
             OutputStream output = counting;
+            File tempFile = null;
+            OutputStream tempOut = null;
+            if (cache != null) {
+                try {
+                    tempFile = cache.newTempFile();
+                    tempOut = new BufferedOutputStream(new FileOutputStream(tempFile));
+                    output = new TeeOutputStream(counting, tempOut);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to cache pack", e);
+                }
+            }
             try {
                 ObjectFunnel funnel;
                 funnel = ObjectFunnels.newFunnel(output, DataStreamSerializationFactoryV1.INSTANCE);
                 packer.write(funnel, want, have, false, deduplicator);
                 counting.flush();
                 funnel.close();
+                if (tempOut != null) {
+                    tempOut.close();
+                    tempOut = null;
+                    cache.put(cacheKey, tempFile);
+                    tempFile = null;
+                }
             } catch (IOException e) {
                 e.printStackTrace();
                 throw e;
@@ -165,6 +252,52 @@ public class BatchedObjectResource extends Finder {
                 throw e;
             } finally {
                 deduplicator.release();
+                if (tempOut != null) {
+                    Closeables.close(tempOut, true);
+                }
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies everything written to it to the cached pack file as well
+     */
+    private static class TeeOutputStream extends FilterOutputStream {
+
+        private final OutputStream copy;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            copy.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                copy.close();
             }
         }
     }
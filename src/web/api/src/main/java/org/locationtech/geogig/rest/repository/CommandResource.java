@@ -12,6 +12,8 @@ package org.locationtech.geogig.rest.repository;
 import static org.locationtech.geogig.rest.Variants.CSV;
 import static org.locationtech.geogig.rest.Variants.CSV_MEDIA_TYPE;
 import static org.locationtech.geogig.rest.Variants.JSON;
+import static org.locationtech.geogig.rest.Variants.NDJSON;
+import static org.locationtech.geogig.rest.Variants.NDJSON_MEDIA_TYPE;
 import static org.locationtech.geogig.rest.Variants.XML;
 import static org.locationtech.geogig.rest.Variants.getVariantByExtension;
 import static org.locationtech.geogig.rest.repository.RESTUtils.getGeogig;
@@ -29,9 +31,11 @@ import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandResponseJettisonRepresentation;
 import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.NDJsonRepresentation;
 import org.locationtech.geogig.web.api.ParameterSet;
 import org.locationtech.geogig.web.api.StreamResponse;
 import org.locationtech.geogig.web.api.StreamWriterRepresentation;
+import org.locationtech.geogig.web.api.StreamingCommandResponse;
 import org.locationtech.geogig.web.api.WebAPICommand;
 import org.restlet.Context;
 import org.restlet.data.Form;
@@ -63,6 +67,7 @@ public class CommandResource extends Resource {
         variants.add(XML);
         variants.add(JSON);
         variants.add(CSV);
+        variants.add(NDJSON);
 
         final String commandName = getCommandName();
 
@@ -195,7 +200,7 @@ public class CommandResource extends Resource {
         if (format == CSV_MEDIA_TYPE) {
             return new StreamWriterRepresentation(format, StreamResponse.error(ex.getMessage()));
         }
-        return new CommandResponseJettisonRepresentation(format,
+        return new CommandResponseJettisonRepresentation(errorFormat(format),
                 CommandResponse.error(ex.getMessage()), getJSONPCallback());
 
     }
@@ -216,8 +221,16 @@ public class CommandResource extends Resource {
         if (format == CSV_MEDIA_TYPE) {
             return new StreamWriterRepresentation(format, StreamResponse.error(stack));
         }
-        return new CommandResponseJettisonRepresentation(format, CommandResponse.error(stack),
-                getJSONPCallback());
+        return new CommandResponseJettisonRepresentation(errorFormat(format),
+                CommandResponse.error(stack), getJSONPCallback());
+    }
+
+    /**
+     * Errors of newline delimited JSON requests are sent as a JSON response, which is a single
+     * line and hence still a valid newline delimited JSON one.
+     */
+    private MediaType errorFormat(MediaType format) {
+        return format == NDJSON_MEDIA_TYPE ? MediaType.APPLICATION_JSON : format;
     }
 
     private String getJSONPCallback() {
@@ -235,6 +248,8 @@ public class CommandResource extends Resource {
                 retval = MediaType.APPLICATION_JSON;
             } else if (requested.equalsIgnoreCase("csv")) {
                 retval = CSV_MEDIA_TYPE;
+            } else if (requested.equalsIgnoreCase("ndjson")) {
+                retval = NDJSON_MEDIA_TYPE;
             } else {
                 throw new RestletException("Invalid output_format '" + requested + "'",
                         org.restlet.data.Status.CLIENT_ERROR_BAD_REQUEST);
@@ -281,6 +296,13 @@ public class CommandResource extends Resource {
                 }
                 return new StreamWriterRepresentation(format, streamContent);
             }
+            if (format == NDJSON_MEDIA_TYPE) {
+                if (!(responseContent instanceof StreamingCommandResponse)) {
+                    throw new CommandSpecException(
+                            "Unsupported Media Type: This response is not available as application/x-ndjson.");
+                }
+                return new NDJsonRepresentation((StreamingCommandResponse) responseContent);
+            }
             if (format != MediaType.APPLICATION_JSON && format != MediaType.APPLICATION_XML) {
                 throw new CommandSpecException(
                         "Unsupported Media Type: This response is only compatible with application/json and application/xml.");
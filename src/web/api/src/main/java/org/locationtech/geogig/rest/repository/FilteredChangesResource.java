@@ -17,15 +17,12 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import org.locationtech.geogig.api.GeoGIG;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RepositoryFilter;
 import org.locationtech.geogig.api.RevCommit;
-import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
-import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.remote.BinaryPackedChanges;
 import org.locationtech.geogig.remote.FilteredDiffIterator;
 import org.locationtech.geogig.repository.Repository;
@@ -40,11 +37,13 @@ import org.restlet.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Gets a set of changes that match a provided filter from a particular commit.
@@ -92,6 +91,9 @@ public class FilteredChangesResource extends Finder {
 
                 ObjectId commitId = ObjectId.NULL;
 
+                // absent if the client doesn't tell, which disables skipping trees by their bounds
+                Optional<Envelope> trackedBounds = Optional.absent();
+
                 if (messageJson.isJsonObject()) {
                     final JsonObject message = messageJson.getAsJsonObject();
                     final JsonArray trackedArray;
@@ -111,6 +113,18 @@ public class FilteredChangesResource extends Finder {
                             tracked.add(ObjectId.valueOf(e.getAsJsonPrimitive().getAsString()));
                         }
                     }
+                    if (message.has("trackedBounds")
+                            && message.get("trackedBounds").isJsonArray()) {
+                        JsonArray boundsArray = message.get("trackedBounds").getAsJsonArray();
+                        Envelope bounds = new Envelope();
+                        if (boundsArray.size() == 4) {
+                            bounds.init(boundsArray.get(0).getAsDouble(),
+                                    boundsArray.get(1).getAsDouble(),
+                                    boundsArray.get(2).getAsDouble(),
+                                    boundsArray.get(3).getAsDouble());
+                        }
+                        trackedBounds = Optional.of(bounds);
+                    }
 
                     if (message.has("filter") && message.get("filter").isJsonArray()) {
                         JsonArray filterArray = message.get("filter").getAsJsonArray();
@@ -149,16 +163,8 @@ public class FilteredChangesResource extends Finder {
 
                 RevCommit commit = repository.getCommit(commitId);
 
-                ObjectId parent = ObjectId.NULL;
-                if (commit.getParentIds().size() > 0) {
-                    parent = commit.getParentIds().get(0);
-                }
-
-                Iterator<DiffEntry> changes = ggit.command(DiffOp.class)
-                        .setNewVersion(commit.getId()).setOldVersion(parent).setReportTrees(true)
-                        .call();
-                FilteredDiffIterator filteredChanges = new FilteredDiffIterator(changes,
-                        repository, filter) {
+                FilteredDiffIterator filteredChanges = new FilteredDiffIterator(commit,
+                        repository, filter, trackedBounds) {
                     @Override
                     protected boolean trackingObject(ObjectId objectId) {
                         return tracked.contains(objectId);
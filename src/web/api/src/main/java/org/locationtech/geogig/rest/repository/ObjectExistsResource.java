@@ -11,7 +11,9 @@ package org.locationtech.geogig.rest.repository;
 
 import static org.locationtech.geogig.rest.repository.RESTUtils.getGeogig;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Writer;
 import java.util.List;
 
@@ -24,14 +26,19 @@ import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.resource.Representation;
 import org.restlet.resource.Resource;
+import org.restlet.resource.StringRepresentation;
 import org.restlet.resource.Variant;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 
 /**
- *
+ * Answers whether objects exist in the repository: a single one given by the {@code oid} query
+ * parameter on GET, or a batch of them given one per line in the body of a POST, in which case
+ * the response is a line with a {@code 1} or {@code 0} for each of them, in the same order.
  */
 public class ObjectExistsResource extends Resource {
 
@@ -43,6 +50,38 @@ public class ObjectExistsResource extends Resource {
         variants.add(new ObjectExistsRepresentation());
     }
 
+    @Override
+    public boolean allowPost() {
+        return true;
+    }
+
+    @Override
+    public void post(Representation entity) {
+        Optional<GeoGIG> ggit = getGeogig(getRequest());
+        Preconditions.checkState(ggit.isPresent());
+        Repository repository = ggit.get().getRepository();
+
+        StringBuilder result = new StringBuilder();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getStream(),
+                    "US-ASCII"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    result.append(repository.blobExists(ObjectId.valueOf(line)) ? '1' : '0');
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        getResponse().setEntity(new StringRepresentation(result, MediaType.TEXT_PLAIN));
+    }
+
     private class ObjectExistsRepresentation extends WriterRepresentation {
         public ObjectExistsRepresentation() {
             super(MediaType.TEXT_PLAIN);
@@ -0,0 +1,211 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.rest.repository;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.porcelain.ConfigGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * A disk cache of the packs served by {@link BatchedObjectResource}, so that repeated requests for
+ * the same commits (e.g. many clients cloning the same tag) are served by streaming a file instead
+ * of walking and serializing the objects again.
+ * <p>
+ * Packs are keyed by the wanted, had and delta base commits of the request. Since objects are
+ * immutable, a cached pack never goes stale; the cache is only bounded by the
+ * {@code web.packcache.size} config option, in bytes, evicting the least recently used packs
+ * first. A size of {@code 0} disables the cache.
+ * <p>
+ * The cache lives in the {@code packcache} folder of the repository directory and its state is
+ * the folder itself (the last modified time of each pack tells when it was last used), so it's
+ * shared by all the requests and survives restarts.
+ */
+class PackCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackCache.class);
+
+    static final String SIZE_CONFIG = "web.packcache.size";
+
+    static final long DEFAULT_SIZE = 512L * 1024 * 1024;
+
+    private static final String PACK_SUFFIX = ".pack";
+
+    private static final String TEMP_PREFIX = "tmp-";
+
+    /**
+     * Temporary files older than this are leftovers of a crashed server and are removed on
+     * eviction
+     */
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    PackCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the pack cache of the repository, or absent if it's disabled or the repository is
+     *         not stored in the file system
+     */
+    static Optional<PackCache> of(GeoGIG geogig) {
+        URI location = geogig.getRepository().getLocation();
+        if (!"file".equals(location.getScheme())) {
+            return Optional.absent();
+        }
+        long maxSize = DEFAULT_SIZE;
+        Optional<String> configured = geogig.command(ConfigGet.class).setName(SIZE_CONFIG).call();
+        if (configured.isPresent()) {
+            try {
+                maxSize = Long.parseLong(configured.get().trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid value for {}: '{}'. Using the default value of {} bytes",
+                        SIZE_CONFIG, configured.get(), DEFAULT_SIZE);
+            }
+        }
+        if (maxSize <= 0) {
+            return Optional.absent();
+        }
+        File directory = new File(new File(location), "packcache");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("Unable to create pack cache directory {}", directory);
+            return Optional.absent();
+        }
+        return Optional.of(new PackCache(directory, maxSize));
+    }
+
+    /**
+     * @return the cache key for a pack of {@code want} commits and their history up to
+     *         {@code have}, optionally delta encoded against {@code deltaBase}
+     */
+    static String key(List<ObjectId> want, List<ObjectId> have,
+            @Nullable List<ObjectId> deltaBase) {
+        StringBuilder sb = new StringBuilder();
+        append(sb.append("want:"), want);
+        append(sb.append("have:"), have);
+        if (deltaBase != null) {
+            append(sb.append("deltas:"), deltaBase);
+        }
+        return ObjectId.forString(sb.toString()).toString();
+    }
+
+    private static void append(StringBuilder sb, List<ObjectId> ids) {
+        List<ObjectId> sorted = new ArrayList<ObjectId>(ids);
+        Collections.sort(sorted);
+        for (ObjectId id : sorted) {
+            sb.append(id).append(',');
+        }
+    }
+
+    /**
+     * Opens the cached pack for {@code key}, marking it as recently used.
+     * <p>
+     * The pack is opened right away so that evicting it concurrently doesn't cut it short: an open
+     * file keeps its contents until it's closed, or can't be deleted at all, depending on the
+     * platform.
+     * 
+     * @return a stream over the cached pack, to be closed by the caller, or absent if there's no
+     *         pack for {@code key}
+     */
+    Optional<InputStream> open(String key) {
+        File pack = new File(directory, key + PACK_SUFFIX);
+        if (!pack.isFile() || !pack.setLastModified(System.currentTimeMillis())) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.<InputStream> of(new FileInputStream(pack));
+        } catch (FileNotFoundException e) {
+            // evicted in the meantime
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * @return a new temporary file to write a pack to, to be handed over to {@link #put} once
+     *         complete
+     */
+    File newTempFile() throws IOException {
+        return File.createTempFile(TEMP_PREFIX, PACK_SUFFIX, directory);
+    }
+
+    /**
+     * Adds the complete pack in {@code tempFile} to the cache under {@code key} and evicts the
+     * least recently used packs if the cache exceeds its size.
+     */
+    void put(String key, File tempFile) throws IOException {
+        File pack = new File(directory, key + PACK_SUFFIX);
+        if (tempFile.length() > maxSize) {
+            tempFile.delete();
+            return;
+        }
+        Files.move(tempFile.toPath(), pack.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                if (file.getName().startsWith(TEMP_PREFIX)) {
+                    if (now - file.lastModified() > STALE_TEMP_MILLIS) {
+                        file.delete();
+                    }
+                    return false;
+                }
+                return file.getName().endsWith(PACK_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+                LOGGER.debug("Evicted {} from the pack cache", files[i].getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.web.api;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.locationtech.geogig.rest.Variants;
+import org.locationtech.geogig.rest.WriterRepresentation;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Writes a {@link StreamingCommandResponse} as newline delimited JSON.
+ * <p>
+ * The size of the representation is unknown, so it is sent with chunked transfer encoding as it
+ * is written. An error raised once the response has started is reported as a last
+ * <code>{"error":"..."}</code> line, since the response status has already been sent.
+ */
+public class NDJsonRepresentation extends WriterRepresentation {
+
+    final StreamingCommandResponse impl;
+
+    public NDJsonRepresentation(StreamingCommandResponse impl) {
+        super(Variants.NDJSON_MEDIA_TYPE);
+        this.impl = impl;
+    }
+
+    @Override
+    public void write(Writer writer) throws IOException {
+        NDJsonWriter out = new NDJsonWriter(writer);
+        try {
+            impl.write(out);
+        } catch (Exception e) {
+            out.writeError(Throwables.getRootCause(e).getMessage());
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,235 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.web.api;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevPerson;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes newline delimited JSON, one JSON object per line, straight to a {@link Writer}.
+ * <p>
+ * Unlike the {@link ResponseWriter}, there is no intermediate XML model: each entry is written
+ * as soon as it is given, and the output is flushed every {@link #FLUSH_INTERVAL} lines so that
+ * clients get the entries while the rest of the response is still being computed.
+ */
+public class NDJsonWriter {
+
+    static final int FLUSH_INTERVAL = 100;
+
+    private final Writer out;
+
+    /**
+     * One element per open object or array, {@code true} once it has a member
+     */
+    private final Deque<Boolean> scopes = new ArrayDeque<Boolean>();
+
+    private int unflushedLines;
+
+    public NDJsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a top level object, or an object element of the current array.
+     */
+    public void startObject() throws IOException {
+        separator();
+        out.write('{');
+        scopes.push(Boolean.FALSE);
+    }
+
+    /**
+     * Starts an object member of the current object.
+     */
+    public void startObject(String name) throws IOException {
+        name(name);
+        out.write('{');
+        scopes.push(Boolean.FALSE);
+    }
+
+    /**
+     * Ends the current object, and the current line if it is a top level object.
+     */
+    public void endObject() throws IOException {
+        Preconditions.checkState(!scopes.isEmpty(), "no object to end");
+        scopes.pop();
+        out.write('}');
+        if (scopes.isEmpty()) {
+            out.write('\n');
+            if (++unflushedLines == FLUSH_INTERVAL) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Starts an array member of the current object.
+     */
+    public void startArray(String name) throws IOException {
+        name(name);
+        out.write('[');
+        scopes.push(Boolean.FALSE);
+    }
+
+    public void endArray() throws IOException {
+        Preconditions.checkState(!scopes.isEmpty(), "no array to end");
+        scopes.pop();
+        out.write(']');
+    }
+
+    /**
+     * Writes a string member of the current object, {@code null} values are written as JSON
+     * nulls.
+     */
+    public void field(String name, @Nullable String value) throws IOException {
+        name(name);
+        out.write(value == null ? "null" : JSONObject.quote(value));
+    }
+
+    public void field(String name, long value) throws IOException {
+        name(name);
+        out.write(Long.toString(value));
+    }
+
+    /**
+     * Writes a string element of the current array.
+     */
+    public void value(String value) throws IOException {
+        separator();
+        out.write(JSONObject.quote(value));
+    }
+
+    /**
+     * Sends the lines written so far to the client.
+     */
+    public void flush() throws IOException {
+        out.flush();
+        unflushedLines = 0;
+    }
+
+    /**
+     * Writes the line ending a response that was cut short, given the cursor to resume it from.
+     */
+    public void writeCursor(String cursor) throws IOException {
+        startObject();
+        field("cursor", cursor);
+        endObject();
+    }
+
+    /**
+     * Writes the line ending a response that failed after some entries were sent, on a line of
+     * its own even if the failure happened while an entry was being written.
+     */
+    public void writeError(@Nullable String message) throws IOException {
+        if (!scopes.isEmpty()) {
+            scopes.clear();
+            out.write('\n');
+        }
+        startObject();
+        field("error", message);
+        endObject();
+    }
+
+    /**
+     * Writes a commit as a line, with the same members as {@link ResponseWriter#writeCommit}.
+     */
+    public void writeCommit(RevCommit commit, @Nullable Integer adds, @Nullable Integer modifies,
+            @Nullable Integer removes) throws IOException {
+        startObject();
+        field("id", commit.getId().toString());
+        field("tree", commit.getTreeId().toString());
+        startArray("parents");
+        for (ObjectId parentId : commit.getParentIds()) {
+            value(parentId.toString());
+        }
+        endArray();
+        writePerson("author", commit.getAuthor());
+        writePerson("committer", commit.getCommitter());
+        if (adds != null) {
+            field("adds", adds.intValue());
+        }
+        if (modifies != null) {
+            field("modifies", modifies.intValue());
+        }
+        if (removes != null) {
+            field("removes", removes.intValue());
+        }
+        field("message", commit.getMessage());
+        endObject();
+    }
+
+    private void writePerson(String name, RevPerson p) throws IOException {
+        startObject(name);
+        field("name", p.getName().orNull());
+        field("email", p.getEmail().orNull());
+        field("timestamp", p.getTimestamp());
+        field("timeZoneOffset", p.getTimeZoneOffset());
+        endObject();
+    }
+
+    /**
+     * Writes a diff entry as a line, with the same members as
+     * {@link ResponseWriter#writeDiffEntries}.
+     */
+    public void writeDiffEntry(DiffEntry entry) throws IOException {
+        NodeRef oldObject = entry.getOldObject();
+        NodeRef newObject = entry.getNewObject();
+        startObject();
+        field("changeType", entry.changeType().toString());
+        field("newPath", newObject == null ? "" : newObject.path());
+        field("newObjectId", (newObject == null ? ObjectId.NULL : newObject.getObjectId())
+                .toString());
+        field("path", oldObject == null ? "" : oldObject.path());
+        field("oldObjectId", (oldObject == null ? ObjectId.NULL : oldObject.getObjectId())
+                .toString());
+        endObject();
+    }
+
+    /**
+     * Writes a tree node as a line, with the same members as
+     * {@link ResponseWriter#writeLsTreeResponse}.
+     */
+    public void writeNode(NodeRef node, boolean verbose) throws IOException {
+        startObject();
+        field("path", node.path());
+        if (verbose) {
+            field("metadataId", node.getMetadataId().toString());
+            field("type", node.getType().toString().toLowerCase());
+            field("objectId", node.getObjectId().toString());
+        }
+        endObject();
+    }
+
+    private void name(String name) throws IOException {
+        Preconditions.checkState(!scopes.isEmpty(), "members can only be written in an object");
+        separator();
+        out.write(JSONObject.quote(name));
+        out.write(':');
+    }
+
+    private void separator() throws IOException {
+        if (scopes.isEmpty()) {
+            return;
+        }
+        if (scopes.pop().booleanValue()) {
+            out.write(',');
+        }
+        scopes.push(Boolean.TRUE);
+    }
+}
@@ -0,0 +1,76 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.web.api;
+
+import java.util.Iterator;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * A {@link CommandResponse} listing entries that can also be streamed as newline delimited JSON,
+ * one entry per line, when the {@code application/x-ndjson} format is requested.
+ * <p>
+ * A streamed response that stops before its last entry ends with a <code>{"cursor":"..."}</code>
+ * line. Given back to the command as its {@code cursor} parameter, the cursor resumes the listing
+ * right after the last entry sent, regardless of entries added in between, whereas an offset
+ * would shift with them.
+ */
+public abstract class StreamingCommandResponse extends CommandResponse {
+
+    /**
+     * Write the command response entries to the provided {@link NDJsonWriter}.
+     * 
+     * @param out the output stream
+     * @throws Exception
+     */
+    public abstract void write(NDJsonWriter out) throws Exception;
+
+    /**
+     * @param key the key of the last entry sent, as given to {@link #resumeAfter}
+     * @return the cursor to resume a listing after the entry with the given key
+     */
+    public static String encodeCursor(String key) {
+        return BaseEncoding.base64Url().omitPadding().encode(key.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Skips the entries up to and including the one the cursor was created for. Skipped entries
+     * are only keyed, not written, so the entries iterator must return them in the same order
+     * every time.
+     * 
+     * @param entries the entries of the listing
+     * @param cursor the cursor given by a previous response, or {@code null} to start at the first
+     *        entry
+     * @param key the function computing the cursor key of an entry
+     * @return the entries following the cursor
+     * @throws CommandSpecException if the cursor is malformed or none of the entries matches it
+     */
+    public static <T> Iterator<T> resumeAfter(Iterator<T> entries, @Nullable String cursor,
+            Function<? super T, String> key) {
+        if (cursor == null) {
+            return entries;
+        }
+        final String lastKey;
+        try {
+            lastKey = new String(BaseEncoding.base64Url().omitPadding().decode(cursor),
+                    Charsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CommandSpecException("Invalid cursor '" + cursor + "'");
+        }
+        while (entries.hasNext()) {
+            if (lastKey.equals(key.apply(entries.next()))) {
+                return entries;
+            }
+        }
+        throw new CommandSpecException("The cursor '" + cursor
+                + "' doesn't match any entry of this listing");
+    }
+}
@@ -18,13 +18,19 @@ import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.NDJsonWriter;
 import org.locationtech.geogig.web.api.ParameterSet;
 import org.locationtech.geogig.web.api.ResponseWriter;
+import org.locationtech.geogig.web.api.StreamingCommandResponse;
 
 /**
  * Interface for the Diff operation in GeoGig.
  * 
  * Web interface for {@link DiffOp}
+ * <p>
+ * Diff entries can be streamed as newline delimited JSON, in which case the whole diff is sent in
+ * a single response, regardless of {@code page} and {@code show}: the diff trees are walked in
+ * parallel, so the entries have no stable order a cursor could resume from.
  */
 
 public class Diff extends AbstractWebAPICommand {
@@ -123,17 +129,31 @@ public class Diff extends AbstractWebAPICommand {
         final Iterator<DiffEntry> diff = geogig.command(DiffOp.class).setOldVersion(oldRefSpec)
                 .setNewVersion(newRefSpec).setFilter(pathFilter).call();
 
-        context.setResponseContent(new CommandResponse() {
+        if (showGeometryChanges) {
+            context.setResponseContent(new CommandResponse() {
+                @Override
+                public void write(ResponseWriter out) throws Exception {
+                    out.start();
+                    out.writeGeometryChanges(geogig, diff, page, elementsPerPage);
+                    out.finish();
+                }
+            });
+            return;
+        }
+        context.setResponseContent(new StreamingCommandResponse() {
             @Override
             public void write(ResponseWriter out) throws Exception {
                 out.start();
-                if (showGeometryChanges) {
-                    out.writeGeometryChanges(geogig, diff, page, elementsPerPage);
-                } else {
-                    out.writeDiffEntries("diff", page * elementsPerPage, elementsPerPage, diff);
-                }
+                out.writeDiffEntries("diff", page * elementsPerPage, elementsPerPage, diff);
                 out.finish();
             }
+
+            @Override
+            public void write(NDJsonWriter out) throws Exception {
+                while (diff.hasNext()) {
+                    out.writeDiffEntry(diff.next());
+                }
+            }
         });
     }
 }
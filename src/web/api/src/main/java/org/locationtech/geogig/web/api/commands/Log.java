@@ -40,9 +40,11 @@ import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.NDJsonWriter;
 import org.locationtech.geogig.web.api.ParameterSet;
 import org.locationtech.geogig.web.api.ResponseWriter;
 import org.locationtech.geogig.web.api.StreamResponse;
+import org.locationtech.geogig.web.api.StreamingCommandResponse;
 import org.opengis.feature.type.PropertyDescriptor;
 
 import com.google.common.base.Function;
@@ -54,9 +56,15 @@ import com.google.common.collect.Iterators;
  * Interface for the Log operation in GeoGig.
  * 
  * Web interface for {@link LogOp}
+ * <p>
+ * Commit listings can be streamed as newline delimited JSON, in which case all the commits are
+ * sent unless {@code show} is given, and the {@code cursor} of a response cut short resumes the
+ * listing.
  */
 public class Log extends AbstractWebAPICommand {
 
+    private static final Function<RevCommit, String> COMMIT_KEY = (c) -> c.getId().toString();
+
     Integer skip;
 
     Integer limit;
@@ -75,6 +83,10 @@ public class Log extends AbstractWebAPICommand {
 
     private int elementsPerPage;
 
+    private Integer streamLimit;
+
+    String cursor;
+
     boolean firstParentOnly;
 
     boolean countChanges = false;
@@ -94,6 +106,8 @@ public class Log extends AbstractWebAPICommand {
         setUntilTime(options.getFirstValue("untilTime"));
         setPage(parseInt(options, "page", 0));
         setElementsPerPage(parseInt(options, "show", 30));
+        setStreamLimit(parseInt(options, "show", null));
+        setCursor(options.getFirstValue("cursor"));
         setFirstParentOnly(Boolean.valueOf(options.getFirstValue("firstParentOnly", "false")));
         setCountChanges(Boolean.valueOf(options.getFirstValue("countChanges", "false")));
         setReturnRange(Boolean.valueOf(options.getFirstValue("returnRange", "false")));
@@ -181,6 +195,26 @@ public class Log extends AbstractWebAPICommand {
         this.elementsPerPage = elementsPerPage;
     }
 
+    /**
+     * Mutator for the streamLimit variable
+     * 
+     * @param streamLimit - the number of commits to stream in the response, {@code null} to
+     *        stream them all
+     */
+    public void setStreamLimit(Integer streamLimit) {
+        this.streamLimit = streamLimit;
+    }
+
+    /**
+     * Mutator for the cursor variable
+     * 
+     * @param cursor - the cursor returned by a previous streamed response, to list the commits
+     *        following the last one it sent
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     /**
      * Mutator for the firstParentOnly variable
      * 
@@ -271,7 +305,8 @@ public class Log extends AbstractWebAPICommand {
             }
         }
 
-        final Iterator<RevCommit> log = op.call();
+        final Iterator<RevCommit> log = StreamingCommandResponse.resumeAfter(op.call(), cursor,
+                COMMIT_KEY);
 
         Iterators.advance(log, page * elementsPerPage);
 
@@ -318,13 +353,28 @@ public class Log extends AbstractWebAPICommand {
 
             final Iterator<CommitWithChangeCounts> summarizedLog = Iterators.transform(log,
                     changeCountFunctor);
-            context.setResponseContent(new CommandResponse() {
+            context.setResponseContent(new StreamingCommandResponse() {
                 @Override
                 public void write(ResponseWriter out) throws Exception {
                     out.start();
                     out.writeCommitsWithChangeCounts(summarizedLog, elementsPerPage);
                     out.finish();
                 }
+
+                @Override
+                public void write(NDJsonWriter out) throws Exception {
+                    RevCommit last = null;
+                    int count = 0;
+                    while (summarizedLog.hasNext()
+                            && (streamLimit == null || count < streamLimit.intValue())) {
+                        CommitWithChangeCounts entry = summarizedLog.next();
+                        last = entry.getCommit();
+                        out.writeCommit(last, entry.getAdds(), entry.getModifies(),
+                                entry.getRemoves());
+                        count++;
+                    }
+                    writeCursor(out, last, summarizedLog);
+                }
             });
         } else if (summary) {
             if (paths != null && paths.size() > 0) {
@@ -339,20 +389,51 @@ public class Log extends AbstractWebAPICommand {
                 throw new CommandSpecException(
                         "You must specify a feature type path when getting a summary.");
             }
-        } else {
-            final boolean rangeLog = returnRange;
+        } else if (returnRange) {
             context.setResponseContent(new CommandResponse() {
                 @Override
                 public void write(ResponseWriter out) throws Exception {
                     out.start();
-                    out.writeCommits(log, elementsPerPage, rangeLog);
+                    out.writeCommits(log, elementsPerPage, true);
                     out.finish();
                 }
             });
+        } else {
+            context.setResponseContent(new StreamingCommandResponse() {
+                @Override
+                public void write(ResponseWriter out) throws Exception {
+                    out.start();
+                    out.writeCommits(log, elementsPerPage, false);
+                    out.finish();
+                }
+
+                @Override
+                public void write(NDJsonWriter out) throws Exception {
+                    RevCommit last = null;
+                    int count = 0;
+                    while (log.hasNext()
+                            && (streamLimit == null || count < streamLimit.intValue())) {
+                        last = log.next();
+                        out.writeCommit(last, null, null, null);
+                        count++;
+                    }
+                    writeCursor(out, last, log);
+                }
+            });
         }
 
     }
 
+    /**
+     * Ends a streamed response with the cursor to the remaining commits, if any
+     */
+    private void writeCursor(NDJsonWriter out, RevCommit last, Iterator<?> remaining)
+            throws Exception {
+        if (last != null && remaining.hasNext()) {
+            out.writeCursor(StreamingCommandResponse.encodeCursor(COMMIT_KEY.apply(last)));
+        }
+    }
+
     private void writeCSV(GeoGIG geogig, Writer out, Iterator<RevCommit> log) throws Exception {
         String response = "ChangeType,FeatureId,CommitId,Parent CommitIds,Author Name,Author Email,Author Commit Time,Committer Name,Committer Email,Committer Commit Time,Commit Message";
         out.write(response);
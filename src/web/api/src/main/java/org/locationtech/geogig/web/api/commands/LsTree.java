@@ -18,17 +18,25 @@ import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandContext;
-import org.locationtech.geogig.web.api.CommandResponse;
+import org.locationtech.geogig.web.api.NDJsonWriter;
 import org.locationtech.geogig.web.api.ParameterSet;
 import org.locationtech.geogig.web.api.ResponseWriter;
+import org.locationtech.geogig.web.api.StreamingCommandResponse;
+
+import com.google.common.base.Function;
 
 /**
  * Interface for the Ls-Tree operation in GeoGig
  * 
  * Web interface for {@link LsTreeOp}
+ * <p>
+ * Nodes can be streamed as newline delimited JSON, in which case all the nodes are sent unless
+ * {@code show} is given, and the {@code cursor} of a response cut short resumes the listing.
  */
 public class LsTree extends AbstractWebAPICommand {
 
+    private static final Function<NodeRef, String> NODE_KEY = (n) -> n.path();
+
     boolean includeTrees;
 
     boolean onlyTrees;
@@ -39,6 +47,10 @@ public class LsTree extends AbstractWebAPICommand {
 
     List<String> refList;
 
+    Integer streamLimit;
+
+    String cursor;
+
     public LsTree(ParameterSet options) {
         super(options);
         setIncludeTrees(Boolean.valueOf(options.getFirstValue("showTree", "false")));
@@ -46,6 +58,8 @@ public class LsTree extends AbstractWebAPICommand {
         setRecursive(Boolean.valueOf(options.getFirstValue("recursive", "false")));
         setVerbose(Boolean.valueOf(options.getFirstValue("verbose", "false")));
         setRefList(Arrays.asList(options.getValuesArray("path")));
+        setStreamLimit(parseInt(options, "show", null));
+        setCursor(options.getFirstValue("cursor"));
     }
 
     /**
@@ -93,6 +107,26 @@ public class LsTree extends AbstractWebAPICommand {
         this.refList = refList;
     }
 
+    /**
+     * Mutator for the streamLimit variable
+     * 
+     * @param streamLimit - the number of nodes to stream in the response, {@code null} to stream
+     *        them all
+     */
+    public void setStreamLimit(Integer streamLimit) {
+        this.streamLimit = streamLimit;
+    }
+
+    /**
+     * Mutator for the cursor variable
+     * 
+     * @param cursor - the cursor returned by a previous streamed response, to list the nodes
+     *        following the last one it sent
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
@@ -121,10 +155,11 @@ public class LsTree extends AbstractWebAPICommand {
 
         final Context geogig = this.getCommandLocator(context);
 
-        final Iterator<NodeRef> iter = geogig.command(LsTreeOp.class).setReference(ref)
-                .setStrategy(lsStrategy).call();
+        final Iterator<NodeRef> iter = StreamingCommandResponse.resumeAfter(
+                geogig.command(LsTreeOp.class).setReference(ref).setStrategy(lsStrategy).call(),
+                cursor, NODE_KEY);
 
-        context.setResponseContent(new CommandResponse() {
+        context.setResponseContent(new StreamingCommandResponse() {
 
             @Override
             public void write(ResponseWriter out) throws Exception {
@@ -132,6 +167,20 @@ public class LsTree extends AbstractWebAPICommand {
                 out.writeLsTreeResponse(iter, verbose);
                 out.finish();
             }
+
+            @Override
+            public void write(NDJsonWriter out) throws Exception {
+                NodeRef last = null;
+                int count = 0;
+                while (iter.hasNext() && (streamLimit == null || count < streamLimit.intValue())) {
+                    last = iter.next();
+                    out.writeNode(last, verbose);
+                    count++;
+                }
+                if (last != null && iter.hasNext()) {
+                    out.writeCursor(StreamingCommandResponse.encodeCursor(NODE_KEY.apply(last)));
+                }
+            }
         });
 
     }
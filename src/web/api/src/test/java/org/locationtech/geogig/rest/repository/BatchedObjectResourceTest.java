@@ -0,0 +1,110 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.plumbing.CreateDeduplicator;
+import org.locationtech.geogig.api.plumbing.RevParse;
+import org.locationtech.geogig.remote.BinaryPackedObjects;
+import org.locationtech.geogig.rest.repository.BatchedObjectResource.RevObjectBinaryRepresentation;
+import org.locationtech.geogig.web.api.TestData;
+import org.locationtech.geogig.web.api.TestRepository;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+public class BatchedObjectResourceTest {
+
+    @Rule
+    public TestRepository testRepo = new TestRepository();
+
+    private GeoGIG geogig;
+
+    private File directory;
+
+    private PackCache cache;
+
+    private List<ObjectId> want;
+
+    @Before
+    public void before() throws Exception {
+        geogig = testRepo.getGeogig();
+        new TestData(geogig).init().loadDefaultData();
+        directory = testRepo.tmpFolder().newFolder("packcache");
+        cache = new PackCache(directory, 1024 * 1024);
+        want = ImmutableList.of(geogig.command(RevParse.class).setRefSpec("HEAD").call().get());
+    }
+
+    @Test
+    public void testCachesWrittenPack() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        newRepresentation().write(out);
+
+        String key = PackCache.key(want, ImmutableList.<ObjectId> of(), null);
+        Optional<InputStream> cached = cache.open(key);
+        assertTrue(cached.isPresent());
+        try (InputStream in = cached.get()) {
+            assertArrayEquals(out.toByteArray(), ByteStreams.toByteArray(in));
+        }
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testFailedWriteNotCached() throws IOException {
+        // the client goes away after a few bytes
+        FilterOutputStream out = new FilterOutputStream(new ByteArrayOutputStream()) {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 100) {
+                    throw new IOException("Connection reset by peer");
+                }
+                super.write(b);
+            }
+        };
+        try {
+            newRepresentation().write(out);
+            fail("Expected failure writing to a closed connection");
+        } catch (IOException | RuntimeException e) {
+            assertEquals("Connection reset by peer", Throwables.getRootCause(e).getMessage());
+        }
+
+        String key = PackCache.key(want, ImmutableList.<ObjectId> of(), null);
+        assertFalse(cache.open(key).isPresent());
+        // the partial pack is gone too
+        assertEquals(0, directory.list().length);
+    }
+
+    private RevObjectBinaryRepresentation newRepresentation() {
+        BinaryPackedObjects packer = new BinaryPackedObjects(
+                geogig.getRepository().objectDatabase());
+        RevObjectBinaryRepresentation rep = new RevObjectBinaryRepresentation(packer, want,
+                ImmutableList.<ObjectId> of(), geogig.command(CreateDeduplicator.class).call());
+        rep.setCache(cache, PackCache.key(want, ImmutableList.<ObjectId> of(), null));
+        return rep;
+    }
+}
@@ -0,0 +1,143 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class PackCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void before() throws IOException {
+        directory = tmp.newFolder("packcache");
+    }
+
+    @Test
+    public void testKey() {
+        ObjectId a = ObjectId.forString("a");
+        ObjectId b = ObjectId.forString("b");
+        ObjectId c = ObjectId.forString("c");
+
+        String key = PackCache.key(ImmutableList.of(a, b), ImmutableList.of(c), null);
+        assertEquals(key, PackCache.key(ImmutableList.of(b, a), ImmutableList.of(c), null));
+
+        assertNotEquals(key, PackCache.key(ImmutableList.of(a), ImmutableList.of(b, c), null));
+        assertNotEquals(key, PackCache.key(ImmutableList.of(a, b, c), ImmutableList.<ObjectId> of(),
+                null));
+        assertNotEquals(key, PackCache.key(ImmutableList.of(a, b), ImmutableList.of(c),
+                ImmutableList.<ObjectId> of()));
+        assertNotEquals(
+                PackCache.key(ImmutableList.of(a, b), ImmutableList.of(c), ImmutableList.of(a)),
+                PackCache.key(ImmutableList.of(a, b), ImmutableList.of(c), ImmutableList.of(b)));
+    }
+
+    @Test
+    public void testPutAndOpen() throws IOException {
+        PackCache cache = new PackCache(directory, 1024);
+        assertFalse(isCached(cache, "key"));
+
+        byte[] contents = put(cache, "key", 100);
+        assertArrayEquals(contents, read(cache, "key"));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        PackCache cache = new PackCache(directory, 250);
+        put(cache, "first", 100);
+        put(cache, "second", 100);
+        setLastUsed("first", 2000);
+        setLastUsed("second", 3000);
+
+        // reading a pack marks it as recently used
+        read(cache, "first");
+
+        put(cache, "third", 100);
+        assertTrue(isCached(cache, "first"));
+        assertFalse(isCached(cache, "second"));
+        assertTrue(isCached(cache, "third"));
+    }
+
+    @Test
+    public void testOpenPackSurvivesEviction() throws IOException {
+        PackCache cache = new PackCache(directory, 150);
+        byte[] contents = put(cache, "first", 100);
+
+        Optional<InputStream> open = cache.open("first");
+        assertTrue(open.isPresent());
+        // make it the one to evict
+        setLastUsed("first", 2000);
+        put(cache, "second", 100);
+
+        try (InputStream in = open.get()) {
+            assertArrayEquals(contents, ByteStreams.toByteArray(in));
+        }
+        assertFalse(isCached(cache, "first"));
+    }
+
+    @Test
+    public void testOversizedPackNotCached() throws IOException {
+        PackCache cache = new PackCache(directory, 50);
+        put(cache, "key", 100);
+        assertFalse(isCached(cache, "key"));
+        assertEquals(0, directory.list().length);
+    }
+
+    private byte[] put(PackCache cache, String key, int size) throws IOException {
+        byte[] contents = new byte[size];
+        Arrays.fill(contents, (byte) key.hashCode());
+        File tempFile = cache.newTempFile();
+        Files.write(contents, tempFile);
+        cache.put(key, tempFile);
+        return contents;
+    }
+
+    private byte[] read(PackCache cache, String key) throws IOException {
+        Optional<InputStream> open = cache.open(key);
+        assertTrue(open.isPresent());
+        try (InputStream in = open.get()) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private boolean isCached(PackCache cache, String key) throws IOException {
+        Optional<InputStream> open = cache.open(key);
+        if (open.isPresent()) {
+            open.get().close();
+        }
+        return open.isPresent();
+    }
+
+    private void setLastUsed(String key, long millisAgo) {
+        File pack = new File(directory, key + ".pack");
+        assertTrue(pack.setLastModified(System.currentTimeMillis() - millisAgo));
+    }
+}
@@ -10,6 +10,7 @@
 package org.locationtech.geogig.web.api;
 
 import static org.locationtech.geogig.rest.Variants.CSV_MEDIA_TYPE;
+import static org.locationtech.geogig.rest.Variants.NDJSON_MEDIA_TYPE;
 
 import java.util.function.Function;
 
@@ -124,6 +125,13 @@ public class TestContext extends ExternalResource {
                 }
                 return new StreamWriterRepresentation(format, streamResponse);
             }
+            if (format == NDJSON_MEDIA_TYPE) {
+                if (!(commandResponse instanceof StreamingCommandResponse)) {
+                    throw new CommandSpecException(
+                            "Unsupported Media Type: This response is not available as application/x-ndjson.");
+                }
+                return new NDJsonRepresentation((StreamingCommandResponse) commandResponse);
+            }
             if (format != MediaType.APPLICATION_JSON && format != MediaType.APPLICATION_XML) {
                 throw new CommandSpecException(
                         "Unsupported Media Type: This response is only compatible with application/json and application/xml.");
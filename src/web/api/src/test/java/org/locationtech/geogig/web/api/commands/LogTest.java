@@ -0,0 +1,127 @@
+/* Copyright (c) 2016 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ */
+package org.locationtech.geogig.web.api.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.rest.Variants;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.AbstractWebOpTest;
+import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.ParameterSet;
+import org.locationtech.geogig.web.api.TestParams;
+import org.locationtech.geogig.web.api.WebAPICommand;
+import org.restlet.resource.Representation;
+
+import com.google.common.base.Splitter;
+
+public class LogTest extends AbstractWebOpTest {
+
+    private List<RevCommit> commits;
+
+    @Override
+    protected String getRoute() {
+        return "log";
+    }
+
+    @Override
+    protected Class<? extends AbstractWebAPICommand> getCommandClass() {
+        return Log.class;
+    }
+
+    @Before
+    public void createCommits() {
+        GeoGIG geogig = testContext.get().getGeoGIG();
+        geogig.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("gabriel").call();
+        geogig.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("gabriel@example.com").call();
+        commits = new ArrayList<RevCommit>();
+        for (int i = 0; i < 5; i++) {
+            commits.add(0, geogig.command(CommitOp.class).setAllowEmpty(true)
+                    .setMessage("commit " + i).call());
+        }
+    }
+
+    @Test
+    public void testBuildParameters() {
+        ParameterSet options = TestParams.of("show", "2", "cursor", "abc");
+        Log op = (Log) buildCommand(options);
+        assertEquals("abc", op.cursor);
+    }
+
+    @Test
+    public void testStreamAll() throws Exception {
+        WebAPICommand cmd = buildCommand(TestParams.of());
+        cmd.run(testContext.get());
+
+        List<JSONObject> lines = getNDJsonResponse();
+        assertEquals(commits.size(), lines.size());
+        for (int i = 0; i < commits.size(); i++) {
+            assertEquals(commits.get(i).getId().toString(), lines.get(i).getString("id"));
+            assertEquals(commits.get(i).getMessage(), lines.get(i).getString("message"));
+        }
+        assertEquals("gabriel", lines.get(0).getJSONObject("author").getString("name"));
+    }
+
+    @Test
+    public void testStreamWithCursor() throws Exception {
+        WebAPICommand cmd = buildCommand(TestParams.of("show", "2"));
+        cmd.run(testContext.get());
+
+        List<JSONObject> lines = getNDJsonResponse();
+        assertEquals(3, lines.size());
+        assertEquals(commits.get(1).getId().toString(), lines.get(1).getString("id"));
+        String cursor = lines.get(2).getString("cursor");
+
+        testContext.reset();
+        cmd = buildCommand(TestParams.of("cursor", cursor));
+        cmd.run(testContext.get());
+
+        lines = getNDJsonResponse();
+        assertEquals(3, lines.size());
+        assertEquals(commits.get(2).getId().toString(), lines.get(0).getString("id"));
+        assertEquals(commits.get(4).getId().toString(), lines.get(2).getString("id"));
+        assertFalse(lines.get(2).has("cursor"));
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        WebAPICommand cmd = buildCommand(TestParams.of("cursor", "bm90IGEgY29tbWl0"));
+        ex.expect(CommandSpecException.class);
+        ex.expectMessage("doesn't match any entry");
+        cmd.run(testContext.get());
+    }
+
+    private List<JSONObject> getNDJsonResponse() throws Exception {
+        Representation representation = getResponseRepresentation(Variants.NDJSON_MEDIA_TYPE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        representation.write(out);
+        String content = out.toString("UTF-8");
+        assertTrue(content.endsWith("\n"));
+
+        List<JSONObject> lines = new ArrayList<JSONObject>();
+        for (String line : Splitter.on('\n').omitEmptyStrings().split(content)) {
+            lines.add(new JSONObject(line));
+        }
+        return lines;
+    }
+}